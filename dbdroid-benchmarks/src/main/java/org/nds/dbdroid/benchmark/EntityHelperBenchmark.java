@@ -0,0 +1,74 @@
+package org.nds.dbdroid.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.nds.dbdroid.benchmark.entity.Person;
+import org.nds.dbdroid.helper.EntityHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reflection on the entities: the values read to save an entity, and the fields written to hydrate it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityHelperBenchmark {
+
+    private Person person;
+
+    private Field nameField;
+
+    private Field ageField;
+
+    @Setup
+    public void setUp() {
+        person = new Person("name", Integer.valueOf(42), Long.valueOf(1300000000000L), Double.valueOf(12.5), Boolean.TRUE);
+        person.set_id(Integer.valueOf(1));
+        nameField = EntityHelper.getFieldByColumnName("name", Person.class);
+        ageField = EntityHelper.getFieldByColumnName("age", Person.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> getColumnNamesWithValues() {
+        return EntityHelper.getColumnNamesWithValues(person);
+    }
+
+    @Benchmark
+    public Object readField() {
+        return EntityHelper.readField(nameField, person);
+    }
+
+    @Benchmark
+    public Integer readFieldConverted() {
+        return EntityHelper.readField(ageField, person, Integer.class);
+    }
+
+    @Benchmark
+    public Person writeField() {
+        EntityHelper.writeField(nameField, "other", person);
+        return person;
+    }
+
+    /**
+     * The value read from the database is not always of the field type (ex: a Long for an Integer field)
+     */
+    @Benchmark
+    public Person writeFieldConverted() {
+        EntityHelper.writeField(ageField, Long.valueOf(43), person);
+        return person;
+    }
+}
@@ -0,0 +1,92 @@
+package org.nds.dbdroid.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nds.dbdroid.benchmark.entity.Person;
+import org.nds.dbdroid.jdbc.JdbcDataBaseManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads and writes of entities in an in-memory H2 database.<br/>
+ * Run with the GC profiler to get the bytes allocated per hydrated entity and per save (<code>gc.alloc.rate.norm</code>):
+ * <code>java -jar target/benchmarks.jar Hydration -prof gc</code>. The forks run with a small heap, as on a device: the GC pauses show in the
+ * <code>gc.time</code> and in the variance of the scores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms32m", "-Xmx32m" })
+public class HydrationBenchmark {
+
+    private static final int ROW_COUNT = 100;
+
+    private JdbcDataBaseManager dbManager;
+
+    private Person person;
+
+    private Integer id;
+
+    private int saveCount;
+
+    @Setup
+    public void setUp() throws Exception {
+        dbManager = new JdbcDataBaseManager(getClass().getResourceAsStream("dbdroid.xml"), "jdbc:h2:mem:hydration;DB_CLOSE_DELAY=-1", "sa", "");
+        dbManager.open();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            person = dbManager.saveOrUpdate(new Person("name" + i, Integer.valueOf(i), Long.valueOf(1300000000000L + i), Double.valueOf(i / 2.0),
+                    Boolean.valueOf(i % 2 == 0)));
+        }
+        id = person.get_id();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dbManager.close();
+    }
+
+    /**
+     * Scores per hydrated entity
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public List<Person> findAll() {
+        return dbManager.findAll(Person.class);
+    }
+
+    @Benchmark
+    public Person findById() {
+        return dbManager.findById(id, Person.class);
+    }
+
+    @Benchmark
+    public Person update() {
+        // Modified at each call, so that the dirty checking does not skip the write
+        person.setAge(Integer.valueOf(saveCount++ & 0xFF));
+        return dbManager.saveOrUpdate(person);
+    }
+
+    /**
+     * Scores per pair of insert and delete: the size of the table does not change during the measure
+     */
+    @Benchmark
+    public Person insertAndDelete() {
+        Person inserted = dbManager.saveOrUpdate(new Person("inserted", Integer.valueOf(1), Long.valueOf(1300000000000L), Double.valueOf(1.0),
+                Boolean.TRUE));
+        dbManager.delete(inserted);
+        return inserted;
+    }
+}
@@ -0,0 +1,41 @@
+package org.nds.dbdroid.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.extensions.surf.util.ISO8601DateFormat;
+
+/**
+ * Dates stored as ISO 8601 strings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ISO8601DateFormatBenchmark {
+
+    private Date date = new Date(1300000000000L);
+
+    private String isoDate = "2011-03-13T08:06:40.000+01:00";
+
+    @Benchmark
+    public String format() {
+        return ISO8601DateFormat.format(date);
+    }
+
+    @Benchmark
+    public Date parse() {
+        return ISO8601DateFormat.parse(isoDate);
+    }
+}
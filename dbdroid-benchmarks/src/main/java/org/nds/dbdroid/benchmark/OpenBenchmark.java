@@ -0,0 +1,56 @@
+package org.nds.dbdroid.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nds.dbdroid.jdbc.JdbcDataBaseManager;
+import org.nds.dbdroid.startup.StartupReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup of a database manager: parsing of the configuration, scan of the DAO package, creation of the DAOs and generation of the tables in a new
+ * in-memory database.<br/>
+ * The cold startup, the one the users wait for, is measured by the single shot mode: each fork runs a new JVM.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OpenBenchmark {
+
+    private int databaseCount;
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public StartupReport coldOpen() throws Exception {
+        return open();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Fork(1)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public StartupReport warmOpen() throws Exception {
+        return open();
+    }
+
+    private StartupReport open() throws Exception {
+        String url = "jdbc:h2:mem:open" + (databaseCount++);
+        JdbcDataBaseManager dbManager = new JdbcDataBaseManager(getClass().getResourceAsStream("dbdroid.xml"), url, "sa", "");
+        dbManager.open();
+        try {
+            return dbManager.getStartupReport();
+        } finally {
+            dbManager.close();
+        }
+    }
+}
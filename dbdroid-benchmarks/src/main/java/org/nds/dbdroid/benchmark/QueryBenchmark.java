@@ -0,0 +1,107 @@
+package org.nds.dbdroid.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.nds.dbdroid.benchmark.entity.Person;
+import org.nds.dbdroid.jdbc.JdbcDataBaseManager;
+import org.nds.dbdroid.jdbc.JdbcQueryValueResolver;
+import org.nds.dbdroid.query.LogicalOperator;
+import org.nds.dbdroid.query.Operator;
+import org.nds.dbdroid.query.Query;
+import org.nds.dbdroid.query.QueryValueResolver;
+import org.nds.dbdroid.type.DbDroidType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of the queries and of their values, without running them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private JdbcDataBaseManager dbManager;
+
+    private Query query;
+
+    private QueryValueResolver resolver;
+
+    private String stringValue;
+
+    private Integer integerValue;
+
+    private ArrayList<String> collectionValue;
+
+    private int[] arrayValue;
+
+    @Setup
+    public void setUp() throws Exception {
+        dbManager = new JdbcDataBaseManager(getClass().getResourceAsStream("dbdroid.xml"), "jdbc:h2:mem:query;DB_CLOSE_DELAY=-1", "sa", "");
+        dbManager.open();
+
+        collectionValue = new ArrayList<String>(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"));
+        query = dbManager.createQuery(Person.class);
+        query.add(Query.createExpression("age", Integer.valueOf(18), DbDroidType.INTEGER, Operator.GREATER_THAN_OR_EQUAL));
+        query.add(Query.createLogicalExpression(Query.createExpression("name", collectionValue, DbDroidType.STRING, Operator.IN),
+                Query.createExpression("active", Boolean.TRUE, DbDroidType.BOOLEAN, Operator.EQUAL), LogicalOperator.OR));
+        query.orderBy("name DESC");
+
+        resolver = new JdbcQueryValueResolver();
+        stringValue = "O'Neil";
+        integerValue = Integer.valueOf(42);
+        arrayValue = new int[100];
+        for (int i = 0; i < arrayValue.length; i++) {
+            arrayValue[i] = i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dbManager.close();
+    }
+
+    @Benchmark
+    public String toExpressionString() {
+        return query.toExpressionString();
+    }
+
+    @Benchmark
+    public String getShape() {
+        return query.getShape();
+    }
+
+    @Benchmark
+    public String resolveString() {
+        return resolver.toString(stringValue);
+    }
+
+    @Benchmark
+    public String resolveInteger() {
+        return resolver.toString(integerValue);
+    }
+
+    @Benchmark
+    public String resolveCollection() {
+        return resolver.toString(collectionValue);
+    }
+
+    @Benchmark
+    public String resolvePrimitiveArray() {
+        return resolver.toString(arrayValue);
+    }
+}
@@ -0,0 +1,58 @@
+package org.nds.dbdroid.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nds.dbdroid.helper.ScriptParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the scripts run at startup (<code>dbdroid.script</code> and the migrations).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptParserBenchmark {
+
+    @Param({ "10", "1000" })
+    private int queryCount;
+
+    private String script;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < queryCount; i++) {
+            if (i % 10 == 0) {
+                sb.append("-- Block ").append(i / 10).append('\n').append('\n');
+            }
+            if (i % 2 == 0) {
+                sb.append("INSERT INTO PERSON (_ID, NAME, AGE) VALUES (").append(i).append(", 'name").append(i).append("', 42);\n");
+            } else {
+                // Query on several lines
+                sb.append("UPDATE PERSON\n   SET NAME = 'other").append(i).append("'\n WHERE _ID = ").append(i - 1).append(";\n");
+            }
+        }
+        script = sb.toString();
+    }
+
+    @Benchmark
+    public List<String> parse() throws IOException {
+        return ScriptParser.parse(new StringReader(script));
+    }
+}
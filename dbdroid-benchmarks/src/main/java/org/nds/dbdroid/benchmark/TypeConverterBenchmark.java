@@ -0,0 +1,75 @@
+package org.nds.dbdroid.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversions of {@link DefaultTypeConverter} used when the entities are read and written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeConverterBenchmark {
+
+    // Not final: the values must not be constant-folded
+    private Integer integerValue = Integer.valueOf(42);
+
+    private Long longValue = Long.valueOf(42);
+
+    private Long timeValue = Long.valueOf(1300000000000L);
+
+    private String integerString = "42";
+
+    private String booleanString = "true";
+
+    private Date date = new Date(1300000000000L);
+
+    @Benchmark
+    public Integer sameType() {
+        return DefaultTypeConverter.INSTANCE.convert(Integer.class, integerValue);
+    }
+
+    @Benchmark
+    public Integer stringToInteger() {
+        return DefaultTypeConverter.INSTANCE.convert(Integer.class, integerString);
+    }
+
+    @Benchmark
+    public String integerToString() {
+        return DefaultTypeConverter.INSTANCE.convert(String.class, integerValue);
+    }
+
+    @Benchmark
+    public Integer longToInteger() {
+        return DefaultTypeConverter.INSTANCE.convert(Integer.class, longValue);
+    }
+
+    @Benchmark
+    public Boolean stringToBoolean() {
+        return DefaultTypeConverter.INSTANCE.convert(Boolean.class, booleanString);
+    }
+
+    @Benchmark
+    public Date longToDate() {
+        return DefaultTypeConverter.INSTANCE.convert(Date.class, timeValue);
+    }
+
+    @Benchmark
+    public String dateToString() {
+        return DefaultTypeConverter.INSTANCE.convert(String.class, date);
+    }
+}
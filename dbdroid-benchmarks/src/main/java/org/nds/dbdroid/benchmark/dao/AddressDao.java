@@ -0,0 +1,13 @@
+package org.nds.dbdroid.benchmark.dao;
+
+import org.nds.dbdroid.DataBaseManager;
+import org.nds.dbdroid.benchmark.entity.Address;
+import org.nds.dbdroid.dao.AndroidDAO;
+
+public class AddressDao extends AndroidDAO<Address, Integer> {
+
+    public AddressDao(DataBaseManager dbManager) {
+        super(dbManager);
+    }
+
+}
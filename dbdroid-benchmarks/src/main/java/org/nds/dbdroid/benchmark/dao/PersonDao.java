@@ -0,0 +1,13 @@
+package org.nds.dbdroid.benchmark.dao;
+
+import org.nds.dbdroid.DataBaseManager;
+import org.nds.dbdroid.benchmark.entity.Person;
+import org.nds.dbdroid.dao.AndroidDAO;
+
+public class PersonDao extends AndroidDAO<Person, Integer> {
+
+    public PersonDao(DataBaseManager dbManager) {
+        super(dbManager);
+    }
+
+}
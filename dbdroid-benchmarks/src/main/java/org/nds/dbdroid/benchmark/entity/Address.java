@@ -0,0 +1,53 @@
+package org.nds.dbdroid.benchmark.entity;
+
+import org.nds.dbdroid.annotation.Entity;
+import org.nds.dbdroid.annotation.Id;
+
+@Entity
+public class Address {
+
+    @Id
+    private Integer _id;
+
+    private Integer personId;
+
+    private String street;
+
+    private String city;
+
+    // Default Constructor
+    public Address() {
+    }
+
+    public Integer get_id() {
+        return _id;
+    }
+
+    public void set_id(Integer _id) {
+        this._id = _id;
+    }
+
+    public Integer getPersonId() {
+        return personId;
+    }
+
+    public void setPersonId(Integer personId) {
+        this.personId = personId;
+    }
+
+    public String getStreet() {
+        return street;
+    }
+
+    public void setStreet(String street) {
+        this.street = street;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+}
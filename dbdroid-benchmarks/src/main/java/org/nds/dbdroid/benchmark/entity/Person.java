@@ -0,0 +1,83 @@
+package org.nds.dbdroid.benchmark.entity;
+
+import org.nds.dbdroid.annotation.Column;
+import org.nds.dbdroid.annotation.Entity;
+import org.nds.dbdroid.annotation.Id;
+
+@Entity
+public class Person {
+
+    @Id
+    private Integer _id;
+
+    private String name;
+
+    private Integer age;
+
+    @Column(name = "created_on")
+    private Long created;
+
+    private Double score;
+
+    private Boolean active;
+
+    // Default Constructor
+    public Person() {
+    }
+
+    public Person(String name, Integer age, Long created, Double score, Boolean active) {
+        this.name = name;
+        this.age = age;
+        this.created = created;
+        this.score = score;
+        this.active = active;
+    }
+
+    public Integer get_id() {
+        return _id;
+    }
+
+    public void set_id(Integer _id) {
+        this._id = _id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public Long getCreated() {
+        return created;
+    }
+
+    public void setCreated(Long created) {
+        this.created = created;
+    }
+
+    public Double getScore() {
+        return score;
+    }
+
+    public void setScore(Double score) {
+        this.score = score;
+    }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public void setActive(Boolean active) {
+        this.active = active;
+    }
+}
@@ -1,43 +1,92 @@
 package org.nds.dbdroid;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import org.nds.dbdroid.annotation.Entity;
+import org.nds.dbdroid.concurrent.DataBaseExecutor;
+import org.nds.dbdroid.concurrent.NamedThreadFactory;
+import org.nds.dbdroid.concurrent.WriteBehindQueue;
 import org.nds.dbdroid.config.ConfigXMLErrorHandler;
 import org.nds.dbdroid.config.ConfigXMLHandler;
+import org.nds.dbdroid.connection.ConnectionProvider;
+import org.nds.dbdroid.dao.AndroidDAO;
 import org.nds.dbdroid.dao.IAndroidDAO;
 import org.nds.dbdroid.exception.DBDroidException;
+import org.nds.dbdroid.helper.DirtyTracker;
 import org.nds.dbdroid.helper.EntityHelper;
+import org.nds.dbdroid.helper.EntityMetadata;
+import org.nds.dbdroid.helper.SchemaDiff;
+import org.nds.dbdroid.helper.ScriptParser;
+import org.nds.dbdroid.helper.TableSchema;
+import org.nds.dbdroid.metrics.DataBaseMetrics;
+import org.nds.dbdroid.metrics.Operation;
+import org.nds.dbdroid.metrics.OperationTimer;
+import org.nds.dbdroid.metrics.QueryLog;
+import org.nds.dbdroid.migration.Migration;
+import org.nds.dbdroid.query.AggregateFunction;
+import org.nds.dbdroid.query.Expression;
+import org.nds.dbdroid.query.ExpressionRenderer;
 import org.nds.dbdroid.query.LogicalExpression;
 import org.nds.dbdroid.query.LogicalOperator;
 import org.nds.dbdroid.query.Operator;
+import org.nds.dbdroid.query.Order;
 import org.nds.dbdroid.query.Query;
+import org.nds.dbdroid.query.QueryCache;
 import org.nds.dbdroid.query.QueryValueResolver;
 import org.nds.dbdroid.query.SimpleExpression;
 import org.nds.dbdroid.service.IAndroidService;
+import org.nds.dbdroid.startup.StartupListener;
+import org.nds.dbdroid.startup.StartupPhase;
+import org.nds.dbdroid.startup.StartupRecorder;
+import org.nds.dbdroid.startup.StartupReport;
 import org.nds.dbdroid.type.DataType;
+import org.nds.dbdroid.type.LazyValue;
+import org.nds.dbdroid.type.TypedValue;
 import org.nds.logging.Logger;
 import org.nds.logging.LoggerFactory;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXNotRecognizedException;
 import org.xml.sax.XMLReader;
 
+/**
+ * Entry point of dbdroid: loads the configuration, generates the tables and gives access to the DAOs and services.<br/>
+ * A backend extends this class and implements the <code>on*</code> hooks; the public operations delegate to them, so that the manager can track
+ * the entities, cache the queries and record the metrics whatever the backend.<br/>
+ * <br/>
+ * <b>Backends written for 1.2.1 and earlier</b> implement the public methods <code>delete</code>, <code>findAll</code>, <code>findById</code>,
+ * <code>saveOrUpdate</code>, <code>rawQuery</code> and <code>queryList</code>: they still compile and run, and the default hooks delegate to
+ * these methods, but their operations bypass the dirty checking, the query cache, the write-behind queue and the metrics. To get them, move the
+ * implementations to {@link #onDelete(Object)}, {@link #onFindAll(Class)}, {@link #onFindById(Serializable, Class)},
+ * {@link #onSaveOrUpdate(Object)}, {@link #onRawQuery(String)} and {@link #onQueryList(Query)}, with the same signatures.
+ */
 public abstract class DataBaseManager {
 
     private static final Logger log = LoggerFactory.getLogger(DataBaseManager.class);
@@ -52,11 +101,36 @@ public abstract class DataBaseManager {
     private static final String UPDATE_VALUE = "update";
     private static final String RESET_VALUE = "reset";
 
+    private static final int DEFAULT_IN_LIST_CHUNK_SIZE = 500;
+
+    private static final int DEFAULT_QUERY_CACHE_MAX_ROWS = 10000;
+
+    private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1000;
+
+    private static final int WRITE_BEHIND_BATCH_SIZE = 100;
+
+    private static final int DEFAULT_QUERY_LOG_SIZE = 100;
+
+    private static final int DEFAULT_STARTUP_THREADS = 1;
+
     private enum PropertyKey {
         GENERATE_DB("dbdroid.generate"),
         SHOW_QUERY("dbdroid.show_query"),
         SCRIPT("dbdroid.script"),
-        SCRIPT_ENCODING("dbdroid.script_encoding");
+        SCRIPT_ENCODING("dbdroid.script_encoding"),
+        MIGRATIONS("dbdroid.migrations"),
+        STARTUP_THREADS("dbdroid.startup_threads"),
+        SHOW_STARTUP("dbdroid.show_startup"),
+        METRICS("dbdroid.metrics"),
+        SLOW_QUERY_THRESHOLD("dbdroid.slow_query_threshold"),
+        QUERY_LOG_SIZE("dbdroid.query_log_size"),
+        DIRTY_CHECKING("dbdroid.dirty_checking"),
+        IN_LIST_CHUNK_SIZE("dbdroid.in_list_chunk_size"),
+        QUERY_CACHE_SIZE("dbdroid.query_cache_size"),
+        QUERY_CACHE_MAX_ROWS("dbdroid.query_cache_max_rows"),
+        ASYNC_READER_THREADS("dbdroid.async_reader_threads"),
+        ASYNC_QUEUE_CAPACITY("dbdroid.async_queue_capacity"),
+        WRITE_BEHIND_LATENCY("dbdroid.write_behind_latency");
 
         private String key;
 
@@ -86,7 +160,7 @@ public abstract class DataBaseManager {
     private ClassLoader classLoader;
 
     private Properties properties;
-    private Map<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>> daos = new HashMap<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>>();
+    private Map<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>> daos = new LinkedHashMap<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>>();
     private Map<Class<? extends IAndroidService>, IAndroidService> services = new HashMap<Class<? extends IAndroidService>, IAndroidService>();
 
     private final List<Class<?>> entities = new ArrayList<Class<?>>();
@@ -99,6 +173,43 @@ public abstract class DataBaseManager {
 
     private final Map<Class<?>, Field[]> fieldsFromEntity = new HashMap<Class<?>, Field[]>();
 
+    private final Map<Class<?>, TableSchema> schemaFromEntity = new HashMap<Class<?>, TableSchema>();
+
+    private DirtyTracker dirtyTracker;
+
+    private int inListChunkSize = DEFAULT_IN_LIST_CHUNK_SIZE;
+
+    private QueryCache queryCache;
+
+    private DataBaseExecutor executor;
+
+    private int asyncReaderThreads = Runtime.getRuntime().availableProcessors();
+
+    private int asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+
+    private long writeBehindLatency;
+
+    private WriteBehindQueue writeBehindQueue;
+
+    private ConnectionProvider<Object> connectionProvider;
+
+    private volatile DataBaseMetrics metrics;
+
+    private volatile QueryLog queryLog;
+
+    private final List<StartupListener> startupListeners = new CopyOnWriteArrayList<StartupListener>();
+
+    /** Recorder of the opening in progress */
+    private StartupRecorder startupRecorder;
+
+    private volatile StartupReport startupReport;
+
+    /** Set by {@link #close()}: the connection provider is closed, the manager cannot be opened again */
+    private volatile boolean closed;
+
+    /** Connection used by the operation running in the current thread */
+    private final ThreadLocal<ConnectionHolder> currentConnection = new ThreadLocal<ConnectionHolder>();
+
     public DataBaseManager(InputStream config) {
         this.config = config;
     }
@@ -121,18 +232,487 @@ public abstract class DataBaseManager {
         this.classLoader = classLoader;
     }
 
-    public final void open() throws DBDroidException {
-        if (config != null) {
-            loadConfig(config, xmlConfigValidating);
+    /**
+     * Tracks the modifications of the entities loaded or saved through this manager, so that an update can write only the modified columns (see
+     * {@link #getDirtyColumnIndexes(Object)}) and that an update without modification is skipped. Default value is false.<br/>
+     * Can also be enabled with the property 'dbdroid.dirty_checking'.
+     * 
+     * @param dirtyCheckingEnabled
+     */
+    public final void setDirtyCheckingEnabled(boolean dirtyCheckingEnabled) {
+        this.dirtyTracker = dirtyCheckingEnabled ? (dirtyTracker != null ? dirtyTracker : new DirtyTracker()) : null;
+    }
+
+    public final boolean isDirtyCheckingEnabled() {
+        return dirtyTracker != null;
+    }
+
+    /**
+     * Maximum number of values of an IN condition sent to the database engine in one query. A query with a larger IN list is split into several
+     * queries whose results are merged, unless it is paginated or grouped. Default value is 500, 0 disables the split.<br/>
+     * Can also be set with the property 'dbdroid.in_list_chunk_size'.
+     * 
+     * @param inListChunkSize
+     */
+    public final void setInListChunkSize(int inListChunkSize) {
+        this.inListChunkSize = inListChunkSize;
+    }
+
+    public final int getInListChunkSize() {
+        return inListChunkSize;
+    }
+
+    /**
+     * Cache of the results of the cacheable queries (see {@link Query#setCacheable(boolean)}). Default value is null (no cache).<br/>
+     * Can also be created with the properties 'dbdroid.query_cache_size' (maximum number of results) and 'dbdroid.query_cache_max_rows' (maximum
+     * number of rows of all the results, 10000 by default).
+     * 
+     * @param queryCache
+     */
+    public final void setQueryCache(QueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * Returns the query cache, which gives the hit rate of the cached queries.
+     * 
+     * @return the {@link QueryCache}, or <code>null</code> if there is no cache
+     */
+    public final QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Executor of the asynchronous operations (findByIdAsync, saveOrUpdateAsync...). By default, an executor is created the first time it is
+     * needed, with the number of reader threads set by the property 'dbdroid.async_reader_threads' (number of processors by default) and the queue
+     * capacity set by the property 'dbdroid.async_queue_capacity' (1000 by default). The executor is shut down when the manager is closed.
+     * 
+     * @param executor
+     */
+    public final synchronized void setExecutor(DataBaseExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Enables the write-behind mode: saveOrUpdate of an entity with an id enqueues it, the writes of the same entity are collapsed, and the last
+     * states are written in batches by a background thread at most latencyMillis later. The new entities (without id) are written immediately.<br/>
+     * The pending writes are flushed by {@link #flush()}, before the queries, the raw queries and when the manager is closed. Default value is 0
+     * (disabled).<br/>
+     * Can also be set with the property 'dbdroid.write_behind_latency'.
+     * 
+     * @param latencyMillis
+     *            : maximum delay of a write in milliseconds, 0 to disable the write-behind mode
+     */
+    public final synchronized void setWriteBehindLatency(long latencyMillis) {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.close();
+            writeBehindQueue = null;
+        }
+        this.writeBehindLatency = latencyMillis;
+        startWriteBehind();
+    }
+
+    private synchronized void startWriteBehind() {
+        if (writeBehindLatency > 0 && writeBehindQueue == null) {
+            writeBehindQueue = new WriteBehindQueue(new WriteBehindQueue.Writer() {
+
+                public void write(List<Object> entities) {
+                    saveOrUpdateAll(entities);
+                }
+            }, writeBehindLatency, WRITE_BEHIND_BATCH_SIZE);
+        }
+    }
+
+    public final synchronized boolean isWriteBehindEnabled() {
+        return writeBehindLatency > 0;
+    }
+
+    /**
+     * Writes the entities pending in the write-behind queue, if the write-behind mode is enabled.
+     * 
+     * @throws IllegalStateException
+     *             if a background write has failed since the last flush: its entities stay pending, and are written by the next flush
+     */
+    public final void flush() {
+        WriteBehindQueue queue = getWriteBehindQueue();
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+
+    /**
+     * Flushes the write-behind queue before an operation acquires its connection: the writes of the queue need the writer connection. An operation
+     * called by another one reuses its connection, the calling operation has already flushed.
+     */
+    private void flushPending() {
+        if (currentConnection.get() == null) {
+            flush();
+        }
+    }
+
+    private synchronized WriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
+    public final synchronized DataBaseExecutor getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            executor = new DataBaseExecutor(asyncReaderThreads, asyncQueueCapacity);
+        }
+        return executor;
+    }
+
+    /**
+     * Provider of the database connections. When a provider is set, each operation acquires a reader connection (findById, findAll, queries...) or
+     * the writer connection (saveOrUpdate, delete, rawQuery...) for its duration, available in the hooks with {@link #getCurrentConnection()}. The
+     * operations called by another operation in the same thread reuse its connection, unless a write is called inside a read. The provider is
+     * closed when the manager is closed.
+     * 
+     * @param connectionProvider
+     */
+    @SuppressWarnings("unchecked")
+    public final synchronized void setConnectionProvider(ConnectionProvider<?> connectionProvider) {
+        this.connectionProvider = (ConnectionProvider<Object>) connectionProvider;
+    }
+
+    public final synchronized ConnectionProvider<?> getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    /**
+     * Returns the connection acquired for the operation running in the current thread
+     * 
+     * @return the connection, or <code>null</code> if no {@link ConnectionProvider} is set
+     */
+    @SuppressWarnings("unchecked")
+    protected final <C> C getCurrentConnection() {
+        ConnectionHolder holder = currentConnection.get();
+        return holder != null ? (C) holder.connection : null;
+    }
+
+    /**
+     * Acquires the connection of an operation, or reuses the connection of the calling operation
+     * 
+     * @return the connection holder to pass to {@link #endConnection(Object)}
+     */
+    private Object beginConnection(boolean write) {
+        ConnectionProvider<Object> provider;
+        synchronized (this) {
+            provider = connectionProvider;
+        }
+        if (provider == null) {
+            return null;
+        }
+        ConnectionHolder holder = currentConnection.get();
+        if (holder != null && (holder.write || !write)) {
+            holder.depth++;
+            return holder;
+        }
+        Object connection = write ? provider.acquireWriter() : provider.acquireReader();
+        holder = new ConnectionHolder(provider, connection, write, holder);
+        currentConnection.set(holder);
+        return holder;
+    }
+
+    private void endConnection(Object token) {
+        if (token == null) {
+            return;
+        }
+        ConnectionHolder holder = (ConnectionHolder) token;
+        if (holder.depth > 0) {
+            holder.depth--;
+            return;
+        }
+        if (holder.previous != null) {
+            currentConnection.set(holder.previous);
         } else {
-            log.warn("XML dbdroid configuration not found." + (config == null ? "Config inputStream object is NULL." : ""));
+            currentConnection.remove();
+        }
+        holder.provider.release(holder.connection);
+    }
+
+    /**
+     * Opens the manager: loads the configuration, opens the database and starts the write-behind mode
+     * 
+     * @throws DBDroidException
+     *             if the manager cannot be opened, or has been closed
+     */
+    public final void open() throws DBDroidException {
+        if (closed) {
+            throw new DBDroidException("The manager has been closed and cannot be opened again: create a new manager");
+        }
+        StartupReport report;
+        startupRecorder = new StartupRecorder();
+        try {
+            if (config != null) {
+                loadConfig(config, xmlConfigValidating);
+            } else {
+                log.warn("XML dbdroid configuration not found." + (config == null ? "Config inputStream object is NULL." : ""));
+            }
+
+            beginPhase(StartupPhase.OPEN_ENGINE);
+            try {
+                onOpen();
+            } finally {
+                endPhase(StartupPhase.OPEN_ENGINE);
+            }
+
+            startWriteBehind();
+            report = startupRecorder.toReport();
+        } finally {
+            startupRecorder = null;
+        }
+
+        startupReport = report;
+        if (properties != null && Boolean.parseBoolean(properties.getProperty(PropertyKey.SHOW_STARTUP.toString()))) {
+            log.info(report.toString());
+        }
+        for (StartupListener listener : startupListeners) {
+            try {
+                listener.onStartup(report);
+            } catch (RuntimeException e) {
+                log.warn("Startup listener " + listener + " failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Sets the metrics recording the latency and the rows of each operation, per entity and per query (see {@link DataBaseMetrics}). The metrics
+     * are exported to their sink when the manager is closed.<br/>
+     * The property <code>dbdroid.metrics</code> set to <code>true</code> enables the metrics. By default, no metrics are recorded.
+     * 
+     * @param metrics
+     *            : the metrics, or <code>null</code> to disable them
+     */
+    public final void setMetrics(DataBaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public final DataBaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns <code>true</code> if the operations are recorded: the database engines measure the hydration time only in this case (see
+     * {@link #addHydrationNanos(long)}).
+     * 
+     * @return <code>true</code> if the metrics are enabled
+     */
+    protected final boolean isMetricsEnabled() {
+        return metrics != null;
+    }
+
+    /**
+     * Reports the time spent by the database engine to convert rows to entities, in the operation running in the current thread
+     * 
+     * @param nanos
+     *            : hydration time in nanoseconds
+     */
+    protected final void addHydrationNanos(long nanos) {
+        DataBaseMetrics current = metrics;
+        if (current != null) {
+            current.addHydrationNanos(nanos);
+        }
+    }
+
+    /**
+     * Sets the log capturing the slow queries (see {@link QueryLog}).<br/>
+     * The properties <code>dbdroid.show_query</code>, <code>dbdroid.slow_query_threshold</code> and <code>dbdroid.query_log_size</code> create a
+     * query log writing the captured queries to the log. By default, no query is captured.
+     * 
+     * @param queryLog
+     *            : the query log, or <code>null</code> to capture no query
+     */
+    public final void setQueryLog(QueryLog queryLog) {
+        this.queryLog = queryLog;
+    }
+
+    public final QueryLog getQueryLog() {
+        return queryLog;
+    }
+
+    private OperationTimer startTimer() {
+        DataBaseMetrics currentMetrics = metrics;
+        return currentMetrics != null || queryLog != null ? new OperationTimer(currentMetrics) : null;
+    }
+
+    private void stopTimer(OperationTimer timer, Operation operation, Class<?> entityClass, Serializable id, Object entity, long rows) {
+        if (timer == null) {
+            return;
+        }
+        long nanos = timer.stop(operation, entityClass, null, rows, null);
+        QueryLog currentLog = queryLog;
+        if (currentLog != null && currentLog.isCaptured(nanos)) {
+            Object[] bindValues = null;
+            String[] columns = null;
+            Serializable entityId = entity != null ? getIdOrNull(entity) : id;
+            if (entityId != null) {
+                bindValues = new Object[] { entityId };
+                EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+                columns = new String[] { metadata.getColumnName(metadata.getIdColumnIndex()) };
+            }
+            currentLog.capture(operation, entityClass, null, columns, bindValues, nanos, rows, findCaller());
+        }
+    }
+
+    private void stopTimer(OperationTimer timer, Operation operation, Query query, long rows, Boolean cacheHit) {
+        if (timer == null) {
+            return;
+        }
+        String shape = query.getShape();
+        long nanos = timer.stop(operation, query.getEntityClass(), shape, rows, cacheHit);
+        QueryLog currentLog = queryLog;
+        if (currentLog != null && currentLog.isCaptured(nanos)) {
+            List<SimpleExpression> parameters = query.getShapeParameters();
+            String[] columns = new String[parameters.size()];
+            Object[] bindValues = new Object[parameters.size()];
+            for (int i = 0; i < bindValues.length; i++) {
+                columns[i] = parameters.get(i).getName();
+                TypedValue typedValue = parameters.get(i).getTypedValue();
+                bindValues[i] = typedValue != null ? typedValue.getValue() : null;
+            }
+            currentLog.capture(operation, query.getEntityClass(), shape, columns, bindValues, nanos, rows, findCaller());
+        }
+    }
+
+    /**
+     * Returns the first method of the call stack outside dbdroid and this manager: usually the DAO method which ran the query
+     */
+    private String findCaller() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            int innerClass = className.indexOf('$');
+            if (innerClass > 0) {
+                className = className.substring(0, innerClass);
+            }
+            if (!isInternalClass(className)) {
+                return element.toString();
+            }
+        }
+        return null;
+    }
+
+    private boolean isInternalClass(String className) {
+        if (className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("sun.") || className.startsWith("jdk.")
+                || className.startsWith("org.nds.dbdroid.query.") || className.startsWith("org.nds.dbdroid.concurrent.")
+                || className.startsWith("org.nds.dbdroid.metrics.") || className.equals(AndroidDAO.class.getName())) {
+            return true;
+        }
+        for (Class<?> clazz = getClass(); clazz != null && !Object.class.equals(clazz); clazz = clazz.getSuperclass()) {
+            if (clazz.getName().equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the query log configured by the properties, before the properties which run queries
+     */
+    private void configureQueryLog() {
+        if (properties == null) {
+            return;
+        }
+        boolean showQuery = Boolean.parseBoolean(properties.getProperty(PropertyKey.SHOW_QUERY.toString(), "false").trim());
+        String threshold = properties.getProperty(PropertyKey.SLOW_QUERY_THRESHOLD.toString());
+        if (!showQuery && threshold == null) {
+            return;
+        }
+        String size = properties.getProperty(PropertyKey.QUERY_LOG_SIZE.toString());
+        QueryLog newQueryLog = new QueryLog(size != null ? Integer.parseInt(size.trim()) : DEFAULT_QUERY_LOG_SIZE, showQuery ? 0 : Long
+                .parseLong(threshold.trim()), TimeUnit.MILLISECONDS);
+        newQueryLog.setLogged(true);
+        setQueryLog(newQueryLog);
+    }
+
+    /**
+     * Adds a listener notified at the end of each {@link #open()}
+     * 
+     * @param listener
+     *            : startup listener
+     */
+    public final void addStartupListener(StartupListener listener) {
+        startupListeners.add(listener);
+    }
+
+    public final void removeStartupListener(StartupListener listener) {
+        startupListeners.remove(listener);
+    }
+
+    /**
+     * Returns the report of the last {@link #open()}: duration and heap growth of each phase, and startup counters.<br/>
+     * The report is logged at the opening when the property <code>dbdroid.show_startup</code> is <code>true</code>.
+     * 
+     * @return the startup report, or <code>null</code> if the manager has not been opened
+     */
+    public final StartupReport getStartupReport() {
+        return startupReport;
+    }
+
+    private void beginPhase(StartupPhase phase) {
+        if (startupRecorder != null) {
+            startupRecorder.begin(phase);
+        }
+    }
+
+    private void endPhase(StartupPhase phase) {
+        if (startupRecorder != null) {
+            startupRecorder.end(phase);
         }
+    }
 
-        onOpen();
+    private void count(StartupReport.Counter counter, long value) {
+        if (startupRecorder != null) {
+            startupRecorder.add(counter, value);
+        }
     }
 
+    /**
+     * Closes the manager: runs the submitted asynchronous operations, writes the entities pending in the write-behind queue, and closes the
+     * database and the connection provider.<br/>
+     * The manager cannot be reused: a closed manager cannot be opened again.
+     * 
+     * @throws DBDroidException
+     */
     public final void close() throws DBDroidException {
+        closed = true;
+        DataBaseExecutor currentExecutor;
+        WriteBehindQueue queue;
+        synchronized (this) {
+            currentExecutor = executor;
+            executor = null;
+            queue = writeBehindQueue;
+            writeBehindQueue = null;
+        }
+        if (currentExecutor != null) {
+            // The submitted operations are run before closing
+            currentExecutor.shutdown();
+            try {
+                currentExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DBDroidException("Interrupted while waiting for the asynchronous operations", e);
+            }
+        }
+        if (queue != null) {
+            // Write the pending entities
+            queue.close();
+        }
         onClose();
+        ConnectionProvider<Object> provider;
+        synchronized (this) {
+            provider = connectionProvider;
+        }
+        if (provider != null) {
+            provider.close();
+        }
+        DataBaseMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            try {
+                currentMetrics.export();
+            } catch (RuntimeException e) {
+                log.warn("Cannot export the metrics: " + e.getMessage(), e);
+            }
+        }
     }
 
     private void loadConfig(InputStream config, boolean validate) throws DBDroidException {
@@ -157,7 +737,14 @@ public abstract class DataBaseManager {
             ConfigXMLHandler configXMLHandler = getConfigXMLHandler(this, classLoader);
             reader.setErrorHandler(new ConfigXMLErrorHandler());
             reader.setContentHandler(configXMLHandler);
-            reader.parse(new InputSource(config));
+            configXMLHandler.setStartupRecorder(startupRecorder);
+            beginPhase(StartupPhase.PARSE_CONFIG);
+            try {
+                reader.parse(new InputSource(config));
+            } finally {
+                endPhase(StartupPhase.PARSE_CONFIG);
+                configXMLHandler.setStartupRecorder(null);
+            }
 
             daos = configXMLHandler.getDaos();
             services = configXMLHandler.getServices();
@@ -166,7 +753,12 @@ public abstract class DataBaseManager {
             throw new DBDroidException("XML Pasing Exception = " + e, e);
         }
 
-        initializeMaps();
+        beginPhase(StartupPhase.INITIALIZE_ENTITIES);
+        try {
+            initializeMaps();
+        } finally {
+            endPhase(StartupPhase.INITIALIZE_ENTITIES);
+        }
 
         processProperties();
     }
@@ -175,31 +767,83 @@ public abstract class DataBaseManager {
         return new ConfigXMLHandler(this, classLoader);
     }
 
+    /**
+     * Builds the metadata of the entities and checks them, in the calling thread by default. With the property <code>dbdroid.startup_threads</code>
+     * greater than 1, the entities are checked concurrently by this number of threads: when several entities are invalid, the error reported is the
+     * error of the first one, in the order of the configuration.
+     */
     private void initializeMaps() throws DBDroidException {
+        // A DAO registered with several classes is checked once
+        List<Callable<EntityInfo>> tasks = new ArrayList<Callable<EntityInfo>>();
+        Map<Class<?>, IAndroidDAO<?, Serializable>> entityDaos = new LinkedHashMap<Class<?>, IAndroidDAO<?, Serializable>>();
+        for (IAndroidDAO<?, Serializable> dao : daos.values()) {
+            final Class<?> entityClass = dao.getEntityClass();
+            if (!entityDaos.containsKey(entityClass)) {
+                entityDaos.put(entityClass, dao);
+                tasks.add(new Callable<EntityInfo>() {
+
+                    public EntityInfo call() throws Exception {
+                        return checkEntity(entityClass);
+                    }
+                });
+            }
+        }
+
+        String value = properties != null ? properties.getProperty(PropertyKey.STARTUP_THREADS.toString()) : null;
+        int threads = Math.min(tasks.size(), value != null ? Integer.parseInt(value.trim()) : DEFAULT_STARTUP_THREADS);
+        List<EntityInfo> infos = new ArrayList<EntityInfo>(tasks.size());
         try {
-            for (Map.Entry<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>> e : daos.entrySet()) {
-                IAndroidDAO<?, Serializable> dao = e.getValue();
-                Class<?> entityClass = dao.getEntityClass();
-                log.debug("entityClass: " + entityClass);
-                String tableName = EntityHelper.getTableName(entityClass);
-                log.debug("Table name: " + tableName);
-                Field[] fields = EntityHelper.getFields(entityClass);
-                log.debug("fields: " + Arrays.toString(fields));
-
-                entities.add(entityClass);
-                daoFromEntity.put(entityClass, dao);
-                entityFromTableName.put(tableName, entityClass);
-                tableNameFromEntity.put(entityClass, tableName);
-                fieldsFromEntity.put(entityClass, fields);
-
-                onCheckEntity(entityClass);
+            if (threads > 1) {
+                ExecutorService pool = Executors.newFixedThreadPool(threads, new NamedThreadFactory("dbdroid-startup"));
+                try {
+                    // The futures are in the order of the tasks
+                    for (Future<EntityInfo> future : pool.invokeAll(tasks)) {
+                        infos.add(future.get());
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
+            } else {
+                for (Callable<EntityInfo> task : tasks) {
+                    infos.add(task.call());
+                }
             }
+        } catch (ExecutionException e) {
+            throw new DBDroidException(e.getCause().getMessage(), e.getCause());
         } catch (Exception e) {
             throw new DBDroidException(e.getMessage(), e);
         }
+
+        count(StartupReport.Counter.ENTITIES, infos.size());
+        for (EntityInfo info : infos) {
+            entities.add(info.entityClass);
+            daoFromEntity.put(info.entityClass, entityDaos.get(info.entityClass));
+            entityFromTableName.put(info.tableName, info.entityClass);
+            tableNameFromEntity.put(info.entityClass, info.tableName);
+            fieldsFromEntity.put(info.entityClass, info.fields);
+            schemaFromEntity.put(info.entityClass, info.schema);
+        }
+    }
+
+    private EntityInfo checkEntity(Class<?> entityClass) throws DBDroidException {
+        log.debug("entityClass: " + entityClass);
+        String tableName = EntityHelper.getTableName(entityClass);
+        log.debug("Table name: " + tableName);
+        Field[] fields = EntityHelper.getFields(entityClass);
+        log.debug("fields: " + Arrays.toString(fields));
+        TableSchema schema = TableSchema.forEntity(tableName, entityClass);
+
+        if (EntityMetadata.forClass(entityClass).hasLazyColumns() && !isOverridden("onLoadColumn", Class.class, Serializable.class, String.class)
+                && !isOverridden("onFindById", Serializable.class, Class.class) && !isOverridden("findById", Serializable.class, Class.class)) {
+            throw new DBDroidException("The entity " + entityClass.getName() + " has lazy columns: the backend " + getClass().getName()
+                    + " must implement onLoadColumn(Class, Serializable, String) or onFindById(Serializable, Class)");
+        }
+        onCheckEntity(entityClass);
+        return new EntityInfo(entityClass, tableName, fields, schema);
     }
 
     private void processProperties() throws DBDroidException {
+        configureQueryLog();
         for (Map.Entry<Object, Object> entry : properties.entrySet()) {
             String key = (String) entry.getKey();
             String value = (String) entry.getValue();
@@ -218,9 +862,61 @@ public abstract class DataBaseManager {
                         break;
                     case SCRIPT_ENCODING:
                         log.debug("-- script encoding: " + value + " --");
+                        break;
+                    case MIGRATIONS:
+                        // Run after the other properties, once the tables are generated
+                        log.debug("-- migrations: " + value + " --");
+                        break;
+                    case DIRTY_CHECKING:
+                        log.debug("-- dirty checking: " + value + " --");
+                        setDirtyCheckingEnabled(Boolean.valueOf(value).booleanValue());
+                        break;
+                    case IN_LIST_CHUNK_SIZE:
+                        log.debug("-- IN list chunk size: " + value + " --");
+                        setInListChunkSize(Integer.parseInt(value.trim()));
+                        break;
+                    case QUERY_CACHE_SIZE:
+                        log.debug("-- query cache size: " + value + " --");
+                        String maxRows = properties.getProperty(PropertyKey.QUERY_CACHE_MAX_ROWS.toString());
+                        int size = Integer.parseInt(value.trim());
+                        setQueryCache(size > 0 ? new QueryCache(size, maxRows != null ? Integer.parseInt(maxRows.trim()) : DEFAULT_QUERY_CACHE_MAX_ROWS)
+                                : null);
+                        break;
+                    case QUERY_CACHE_MAX_ROWS:
+                        log.debug("-- query cache max rows: " + value + " --");
+                        break;
+                    case STARTUP_THREADS:
+                        // Read by initializeMaps()
+                        log.debug("-- startup threads: " + value + " --");
+                        break;
+                    case METRICS:
+                        log.debug("-- metrics: " + value + " --");
+                        setMetrics(Boolean.parseBoolean(value.trim()) ? new DataBaseMetrics() : null);
+                        break;
+                    case SHOW_STARTUP:
+                        log.debug("-- show startup --");
+                        break;
+                    case ASYNC_READER_THREADS:
+                        log.debug("-- async reader threads: " + value + " --");
+                        asyncReaderThreads = Integer.parseInt(value.trim());
+                        break;
+                    case ASYNC_QUEUE_CAPACITY:
+                        log.debug("-- async queue capacity: " + value + " --");
+                        asyncQueueCapacity = Integer.parseInt(value.trim());
+                        break;
+                    case WRITE_BEHIND_LATENCY:
+                        log.debug("-- write-behind latency: " + value + " --");
+                        setWriteBehindLatency(Long.parseLong(value.trim()));
+                        break;
                     case SHOW_QUERY:
                         log.debug("-- show query --");
                         break;
+                    case SLOW_QUERY_THRESHOLD:
+                        log.debug("-- slow query threshold: " + value + " ms --");
+                        break;
+                    case QUERY_LOG_SIZE:
+                        log.debug("-- query log size: " + value + " --");
+                        break;
                     default:
                         log.info("Property key: " + key + " (value: " + value + ")");
                 }
@@ -228,6 +924,11 @@ public abstract class DataBaseManager {
                 log.warn("Unknown property key: " + key);
             }
         }
+
+        String migrations = properties.getProperty(PropertyKey.MIGRATIONS.toString());
+        if (migrations != null) {
+            runMigrations(migrations, properties.getProperty(PropertyKey.SCRIPT_ENCODING.toString()));
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -244,27 +945,965 @@ public abstract class DataBaseManager {
         if (service == null) {
             throw new NullPointerException("Service class '" + serviceClass + "' not found. Verify the XML dbdroid configuration.");
         }
-        return service;
+        return service;
+    }
+
+    protected final List<Class<?>> getEntities() {
+        return entities;
+    }
+
+    protected final IAndroidDAO<?, Serializable> getDAOFromEntity(Class<?> entity) {
+        return daoFromEntity.get(entity);
+    }
+
+    protected final String getTableNameFromEntity(Class<?> entity) {
+        return tableNameFromEntity.get(entity);
+    }
+
+    protected final Class<?> getEntityFromTableName(String tableName) {
+        return entityFromTableName.get(tableName);
+    }
+
+    protected final Field[] getFieldsFromEntity(Class<?> entity) {
+        return fieldsFromEntity.get(entity);
+    }
+
+    /**
+     * Deletes {@link Entity}
+     * 
+     * @param entity
+     *            : {@link Entity} to delete
+     */
+    public void delete(Object entity) {
+        OperationTimer timer = startTimer();
+        Object connection = beginConnection(true);
+        try {
+            WriteBehindQueue queue = getWriteBehindQueue();
+            if (queue != null) {
+                queue.remove(entity.getClass(), getIdOrNull(entity));
+            }
+            onDelete(entity);
+            if (queryCache != null) {
+                queryCache.invalidate(entity.getClass());
+            }
+            if (dirtyTracker != null) {
+                dirtyTracker.remove(entity);
+            }
+            stopTimer(timer, Operation.DELETE, entity.getClass(), null, entity, 1);
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Finds all rows in database for {@link Entity} class in argument
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param entityClass
+     *            : {@link Entity} class to find
+     * @return list of rows converted to {@link Entity} objects E
+     */
+    public <E> List<E> findAll(Class<E> entityClass) {
+        OperationTimer timer = startTimer();
+        flushPending();
+        Object connection = beginConnection(false);
+        try {
+            List<E> entities = onFindAll(entityClass);
+            loaded(entities);
+            stopTimer(timer, Operation.FIND_ALL, entityClass, null, null, entities != null ? entities.size() : 0);
+            return entities;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Finds a row in database for {@link Entity} class in argument and with id in argument
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param id
+     *            : id to find in database
+     * @param entityClass
+     *            : {@link Entity} class to find
+     * @return row converted to {@link Entity} object E
+     */
+    public <E> E findById(Serializable id, Class<E> entityClass) {
+        OperationTimer timer = startTimer();
+        Object connection = beginConnection(false);
+        try {
+            WriteBehindQueue queue = getWriteBehindQueue();
+            if (queue != null) {
+                // Read your writes
+                Object pending = queue.getPending(entityClass, id);
+                if (pending != null) {
+                    stopTimer(timer, Operation.FIND_BY_ID, entityClass, id, null, 1);
+                    return entityClass.cast(pending);
+                }
+            }
+            E entity = onFindById(id, entityClass);
+            loaded(entity);
+            stopTimer(timer, Operation.FIND_BY_ID, entityClass, id, null, entity != null ? 1 : 0);
+            return entity;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Saves an {@link Entity} object. If the dirty checking is enabled and the entity has not been modified since it was loaded or saved, nothing is
+     * written.
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param entity
+     *            : {@link Entity} object
+     * @return {@link Entity} object saved or updated
+     */
+    public <E> E saveOrUpdate(E entity) {
+        OperationTimer timer = startTimer();
+        Object connection = beginConnection(true);
+        try {
+            if (dirtyTracker != null) {
+                int[] dirtyColumns = dirtyTracker.getDirtyColumnIndexes(entity);
+                if (dirtyColumns != null && dirtyColumns.length == 0) {
+                    log.debug("Entity not modified, skip the update");
+                    stopTimer(timer, Operation.SAVE_OR_UPDATE, entity.getClass(), null, entity, 0);
+                    return entity;
+                }
+            }
+            WriteBehindQueue queue = getWriteBehindQueue();
+            if (queue != null) {
+                Serializable id = getIdOrNull(entity);
+                if (id != null) {
+                    queue.enqueue(entity.getClass(), id, entity);
+                    // Written later, by the batch
+                    stopTimer(timer, Operation.SAVE_OR_UPDATE, entity.getClass(), null, entity, 0);
+                    return entity;
+                }
+            }
+            E savedEntity = onSaveOrUpdate(entity);
+            saved(savedEntity);
+            stopTimer(timer, Operation.SAVE_OR_UPDATE, entity.getClass(), null, entity, 1);
+            return savedEntity;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Writes a batch of entities from the write-behind queue
+     */
+    private void saveOrUpdateAll(List<Object> entities) {
+        OperationTimer timer = startTimer();
+        Object connection = beginConnection(true);
+        try {
+            List<Object> savedEntities = onSaveOrUpdateAll(entities);
+            for (Object savedEntity : savedEntities) {
+                saved(savedEntity);
+            }
+            stopTimer(timer, Operation.SAVE_OR_UPDATE_ALL, null, null, null, entities.size());
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    private void saved(Object savedEntity) {
+        if (savedEntity == null) {
+            return;
+        }
+        if (queryCache != null) {
+            queryCache.invalidate(savedEntity.getClass());
+        }
+        if (dirtyTracker != null) {
+            dirtyTracker.snapshot(savedEntity);
+        }
+    }
+
+    private static Serializable getIdOrNull(Object entity) {
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        if (metadata.getIdColumnIndex() < 0) {
+            return null;
+        }
+        return (Serializable) EntityHelper.readField(metadata.getIdField(), entity);
+    }
+
+    /**
+     * Runs the query in argument
+     * 
+     * @param query
+     *            : the raw query.
+     */
+    public void rawQuery(String query) {
+        OperationTimer timer = startTimer();
+        flushPending();
+        Object connection = beginConnection(true);
+        try {
+            onRawQuery(query);
+            if (timer != null) {
+                String normalizedQuery = DataBaseMetrics.normalize(query);
+                long nanos = timer.stop(Operation.RAW_QUERY, null, normalizedQuery, 0, null);
+                QueryLog currentLog = queryLog;
+                if (currentLog != null && currentLog.isCaptured(nanos)) {
+                    currentLog.capture(Operation.RAW_QUERY, null, normalizedQuery, null, DataBaseMetrics.getLiterals(query).toArray(), nanos, 0,
+                            findCaller());
+                }
+            }
+            if (queryCache != null) {
+                // The raw query may have modified any table
+                queryCache.invalidateAll();
+            }
+            if (dirtyTracker != null) {
+                // The raw query may have modified any row
+                dirtyTracker.clear();
+            }
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Finds asynchronously a row in database for {@link Entity} class in argument and with id in argument (see
+     * {@link #findById(Serializable, Class)}).
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param id
+     *            : id to find in database
+     * @param entityClass
+     *            : {@link Entity} class to find
+     * @return the {@link Future} of the row converted to {@link Entity} object E
+     */
+    public final <E> Future<E> findByIdAsync(final Serializable id, final Class<E> entityClass) {
+        return getExecutor().submitRead(new Callable<E>() {
+
+            public E call() {
+                return findById(id, entityClass);
+            }
+        });
+    }
+
+    /**
+     * Finds asynchronously all rows in database for {@link Entity} class in argument (see {@link #findAll(Class)}).
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param entityClass
+     *            : {@link Entity} class to find
+     * @return the {@link Future} of the list of rows converted to {@link Entity} objects E
+     */
+    public final <E> Future<List<E>> findAllAsync(final Class<E> entityClass) {
+        return getExecutor().submitRead(new Callable<List<E>>() {
+
+            public List<E> call() {
+                return findAll(entityClass);
+            }
+        });
+    }
+
+    /**
+     * Saves asynchronously an {@link Entity} object (see {@link #saveOrUpdate(Object)}). The writes are run one at a time, in submission order.
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param entity
+     *            : {@link Entity} object
+     * @return the {@link Future} of the {@link Entity} object saved or updated
+     */
+    public final <E> Future<E> saveOrUpdateAsync(final E entity) {
+        return getExecutor().submitWrite(new Callable<E>() {
+
+            public E call() {
+                return saveOrUpdate(entity);
+            }
+        });
+    }
+
+    /**
+     * Deletes asynchronously an {@link Entity} (see {@link #delete(Object)}). The writes are run one at a time, in submission order.
+     * 
+     * @param entity
+     *            : {@link Entity} to delete
+     * @return the {@link Future} of the deletion
+     */
+    public final Future<Void> deleteAsync(final Object entity) {
+        return getExecutor().submitWrite(new Callable<Void>() {
+
+            public Void call() {
+                delete(entity);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs asynchronously a query according to the Query object in argument (see {@link #queryList(Query)}).
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param query
+     *            : Query object
+     * @return the {@link Future} of the list of {@link Entity} objects found with the Query
+     */
+    public final <E> Future<List<E>> queryListAsync(final Query query) {
+        return getExecutor().submitRead(new Callable<List<E>>() {
+
+            public List<E> call() {
+                return queryList(query);
+            }
+        });
+    }
+
+    /**
+     * Runs a query according to the Query object in argument, and return the query result.<br/>
+     * Method called in the method queryList() from Query object. The result of a cacheable query is served from the query cache if it is still
+     * valid.
+     * 
+     * @param <E>
+     *            : {@link Entity} type
+     * @param query
+     *            : Query object
+     * @return: List of {@link Entity} objects found with the Query
+     */
+    public <E> List<E> queryList(Query query) {
+        OperationTimer timer = startTimer();
+        if (query.isAlwaysEmpty()) {
+            stopTimer(timer, Operation.QUERY_LIST, query, 0, null);
+            return new ArrayList<E>(0);
+        }
+        flushPending();
+        Object connection = beginConnection(false);
+        try {
+
+            QueryCache cache = query.isCacheable() ? queryCache : null;
+            Object key = null;
+            long generation = 0;
+            if (cache != null) {
+                key = query.getCacheKey();
+                @SuppressWarnings("unchecked")
+                List<E> cached = (List<E>) cache.get(key, query.getEntityClass());
+                if (cached != null) {
+                    // New entities: bind their lazy columns and track them
+                    loaded(cached);
+                    stopTimer(timer, Operation.QUERY_LIST, query, cached.size(), Boolean.TRUE);
+                    return cached;
+                }
+                // Read before running the query: a write during the query makes the result stale
+                generation = cache.getGeneration(query.getEntityClass());
+            }
+
+            List<E> entities = executeQueryList(query);
+            loaded(entities);
+            if (cache != null && entities != null) {
+                cache.put(key, query.getEntityClass(), generation, entities);
+            }
+            stopTimer(timer, Operation.QUERY_LIST, query, entities != null ? entities.size() : 0, cache != null ? Boolean.FALSE : null);
+            return entities;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Runs a query according to the Query object in argument, and return the values of the selected columns (see {@link Query#select(String...)}).
+     * <br/>
+     * Method called in the method queryTuples() from Query object.
+     * 
+     * @param query
+     *            : Query object
+     * @return list of tuples, in the order of the selection
+     */
+    public final List<Object[]> queryTuples(Query query) {
+        OperationTimer timer = startTimer();
+        if (!query.isAlwaysEmpty()) {
+            flushPending();
+        }
+        Object connection = beginConnection(false);
+        try {
+            if (query.getSelection() == null) {
+                throw new IllegalArgumentException("No column selected in the query on " + query.getEntityClass().getName());
+            }
+            List<Object[]> tuples = query.isAlwaysEmpty() ? new ArrayList<Object[]>(0) : null;
+            if (tuples == null) {
+                tuples = executeQueryTuples(query);
+            }
+            stopTimer(timer, Operation.QUERY_TUPLES, query, tuples != null ? tuples.size() : 0, null);
+            return tuples;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Runs a query according to the Query object in argument, and converts the values of the selected columns to objects of the result class.<br/>
+     * Method called in the method queryList(Class&lt;D&gt; resultClass) from Query object.
+     * 
+     * @param <D>
+     *            : result type
+     * @param query
+     *            : Query object
+     * @param resultClass
+     *            : result class, with a default constructor
+     * @return list of result objects
+     */
+    public final <D> List<D> queryList(Query query, Class<D> resultClass) {
+        String[] selection = query.getSelection();
+        List<Object[]> tuples = queryTuples(query);
+
+        Field[] fields = new Field[selection.length];
+        for (int i = 0; i < selection.length; i++) {
+            fields[i] = EntityHelper.getFieldByColumnName(selection[i], resultClass);
+            if (fields[i] == null) {
+                throw new IllegalArgumentException("No field mapped to the column '" + selection[i] + "' in " + resultClass.getName());
+            }
+        }
+
+        List<D> results = new ArrayList<D>(tuples.size());
+        try {
+            for (Object[] tuple : tuples) {
+                D result = resultClass.newInstance();
+                for (int i = 0; i < fields.length; i++) {
+                    EntityHelper.writeField(fields[i], tuple[i], result);
+                }
+                results.add(result);
+            }
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + resultClass.getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + resultClass.getName(), e);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the values of the single selected column of the query.<br/>
+     * Method called in the method queryLongColumn() from Query object.
+     * 
+     * @param query
+     *            : Query object with one selected column
+     * @return column values, NULL values are returned as 0
+     */
+    public final long[] queryLongColumn(Query query) {
+        List<Object[]> tuples = querySingleColumn(query);
+        long[] values = new long[tuples.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = tuples.get(i)[0];
+            if (value != null) {
+                values[i] = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values of the single selected column of the query.<br/>
+     * Method called in the method queryDoubleColumn() from Query object.
+     * 
+     * @param query
+     *            : Query object with one selected column
+     * @return column values, NULL values are returned as 0
+     */
+    public final double[] queryDoubleColumn(Query query) {
+        List<Object[]> tuples = querySingleColumn(query);
+        double[] values = new double[tuples.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = tuples.get(i)[0];
+            if (value != null) {
+                values[i] = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+            }
+        }
+        return values;
+    }
+
+    private List<Object[]> querySingleColumn(Query query) {
+        OperationTimer timer = startTimer();
+        if (!query.isAlwaysEmpty()) {
+            flushPending();
+        }
+        Object connection = beginConnection(false);
+        try {
+            String[] selection = query.getSelection();
+            if (selection == null || selection.length != 1) {
+                throw new IllegalArgumentException("One column must be selected in the query on " + query.getEntityClass().getName());
+            }
+            List<Object[]> tuples = query.isAlwaysEmpty() ? new ArrayList<Object[]>(0) : null;
+            if (tuples == null) {
+                tuples = executeQueryTuples(query);
+            }
+            stopTimer(timer, Operation.QUERY_TUPLES, query, tuples != null ? tuples.size() : 0, null);
+            return tuples;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the number of rows found by the query.<br/>
+     * Method called in the method count() from Query object.
+     * 
+     * @param query
+     *            : Query object
+     * @return number of rows
+     */
+    public final long count(Query query) {
+        OperationTimer timer = startTimer();
+        if (!query.isAlwaysEmpty()) {
+            flushPending();
+        }
+        Object connection = beginConnection(false);
+        try {
+            long count = 0;
+            if (!query.isAlwaysEmpty()) {
+                // Distinct rows of different chunks can be equal, projected or not
+                List<Query> chunks = !query.isDistinct() ? splitInList(query) : null;
+                if (chunks == null) {
+                    count = onCount(query);
+                } else {
+                    for (Query chunk : chunks) {
+                        count += onCount(chunk);
+                    }
+                }
+            }
+            stopTimer(timer, Operation.COUNT, query, 1, null);
+            return count;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the query finds at least one row.<br/>
+     * Method called in the method exists() from Query object.
+     * 
+     * @param query
+     *            : Query object
+     * @return <code>true</code> if a row is found
+     */
+    public final boolean exists(Query query) {
+        OperationTimer timer = startTimer();
+        if (!query.isAlwaysEmpty()) {
+            flushPending();
+        }
+        Object connection = beginConnection(false);
+        try {
+            boolean exists = false;
+            if (!query.isAlwaysEmpty()) {
+                List<Query> chunks = splitInList(query);
+                if (chunks == null) {
+                    exists = onExists(query);
+                } else {
+                    for (int i = 0; i < chunks.size() && !exists; i++) {
+                        exists = onExists(chunks.get(i));
+                    }
+                }
+            }
+            stopTimer(timer, Operation.EXISTS, query, 1, null);
+            return exists;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Computes an aggregate function on a column of the rows found by the query.<br/>
+     * Method called in the methods sum, min, max and avg from Query object.<br/>
+     * The function is computed on each chunk of a large IN list and the results are merged, except for the distinct queries.
+     * 
+     * @param query
+     *            : Query object
+     * @param function
+     *            : aggregate function
+     * @param column
+     *            : column name of the entity
+     * @return the aggregate value, or <code>null</code> if there is no value
+     */
+    public final Object aggregate(Query query, AggregateFunction function, String column) {
+        OperationTimer timer = startTimer();
+        if (!query.isAlwaysEmpty()) {
+            flushPending();
+        }
+        Object connection = beginConnection(false);
+        try {
+            if (function == null) {
+                throw new IllegalArgumentException("The aggregate function must not be null");
+            }
+            if (column == null || EntityMetadata.forClass(query.getEntityClass()).getColumnIndex(column) < 0) {
+                throw new IllegalArgumentException("Unknown column '" + column + "' for the entity " + query.getEntityClass().getName());
+            }
+            Object value;
+            if (query.isAlwaysEmpty()) {
+                value = function == AggregateFunction.COUNT ? Long.valueOf(0) : null;
+            } else {
+                value = executeAggregate(query, function, column);
+            }
+            stopTimer(timer, Operation.AGGREGATE, query, 1, null);
+            return value;
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    /**
+     * Computes the aggregate function on each chunk of a large IN list, and merges the results: the average is computed from the sums and the
+     * counts of the chunks.
+     */
+    @SuppressWarnings("unchecked")
+    private Object executeAggregate(Query query, AggregateFunction function, String column) {
+        // The values of distinct rows of different chunks can be equal
+        List<Query> chunks = !query.isDistinct() ? splitInList(query) : null;
+        if (chunks == null) {
+            return onAggregate(query, function, column);
+        }
+        AggregateFunction chunkFunction = function == AggregateFunction.AVG ? AggregateFunction.SUM : function;
+        long count = 0;
+        Number sum = null;
+        Comparable<Object> extremum = null;
+        for (Query chunk : chunks) {
+            Object value = onAggregate(chunk, chunkFunction, column);
+            if (function == AggregateFunction.AVG && value != null) {
+                count += ((Number) onAggregate(chunk, AggregateFunction.COUNT, column)).longValue();
+            }
+            if (value == null) {
+                continue;
+            }
+            switch (function) {
+                case COUNT:
+                    count += ((Number) value).longValue();
+                    break;
+                case SUM:
+                case AVG:
+                    Number number = (Number) value;
+                    if (sum == null) {
+                        sum = number;
+                    } else if (sum instanceof Long && number instanceof Long) {
+                        sum = Long.valueOf(sum.longValue() + number.longValue());
+                    } else {
+                        sum = Double.valueOf(sum.doubleValue() + number.doubleValue());
+                    }
+                    break;
+                default:
+                    Comparable<Object> comparable = (Comparable<Object>) value;
+                    if (extremum == null || (function == AggregateFunction.MIN ? comparable.compareTo(extremum) < 0 : comparable.compareTo(extremum) > 0)) {
+                        extremum = comparable;
+                    }
+                    break;
+            }
+        }
+
+        switch (function) {
+            case COUNT:
+                return Long.valueOf(count);
+            case SUM:
+                return sum;
+            case AVG:
+                return sum != null && count > 0 ? Double.valueOf(sum.doubleValue() / count) : null;
+            default:
+                return extremum;
+        }
+    }
+
+    private <E> List<E> executeQueryList(Query query) {
+        // The merged entities are sorted in memory, which is not possible with a raw ORDER BY clause
+        List<Order> orders = query.getOrders();
+        List<Query> chunks = orders != null ? splitInList(query) : null;
+        if (chunks == null) {
+            return onQueryList(query);
+        }
+        List<E> entities = new ArrayList<E>();
+        for (Query chunk : chunks) {
+            List<E> list = onQueryList(chunk);
+            if (list != null) {
+                entities.addAll(list);
+            }
+        }
+        if (!orders.isEmpty()) {
+            Collections.sort(entities, new EntityComparator(EntityMetadata.forClass(query.getEntityClass()), orders));
+        }
+        return entities;
+    }
+
+    private List<Object[]> executeQueryTuples(Query query) {
+        // The merged tuples cannot be sorted, and distinct tuples of different chunks can be equal
+        List<Order> orders = query.getOrders();
+        List<Query> chunks = orders != null && orders.isEmpty() && !query.isDistinct() ? splitInList(query) : null;
+        if (chunks == null) {
+            return onQueryTuples(query);
+        }
+        List<Object[]> tuples = new ArrayList<Object[]>();
+        for (Query chunk : chunks) {
+            List<Object[]> list = onQueryTuples(chunk);
+            if (list != null) {
+                tuples.addAll(list);
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * Splits the query in argument if it has an IN condition with more values than the IN list chunk size.
+     * 
+     * @param query
+     *            : query to split
+     * @return the queries to run, with an IN condition on a chunk of values each, or <code>null</code> if the query must not be split
+     */
+    private List<Query> splitInList(Query query) {
+        if (inListChunkSize <= 0 || query.getFirstRow() >= 0 || query.getMaxRows() >= 0 || query.getGroupBy() != null) {
+            return null;
+        }
+
+        List<Expression> conditions = query.getOptimizedExpressions();
+        SimpleExpression inList = findLargestInList(conditions);
+        if (inList == null || getInListSize(inList) <= inListChunkSize) {
+            return null;
+        }
+
+        List<Object> values = getInListValues(inList);
+        log.debug("Split the IN list of " + values.size() + " values on " + inList.getName() + " in chunks of " + inListChunkSize);
+        List<Query> chunks = new ArrayList<Query>(values.size() / inListChunkSize + 1);
+        for (int from = 0; from < values.size(); from += inListChunkSize) {
+            List<Object> chunkValues = values.subList(from, Math.min(from + inListChunkSize, values.size()));
+            SimpleExpression chunkExpression = new SimpleExpression(inList.getName(), new TypedValue(chunkValues, inList.getTypedValue().getType()),
+                    Operator.IN);
+            List<Expression> chunkConditions = new ArrayList<Expression>(conditions.size());
+            for (Expression condition : conditions) {
+                chunkConditions.add(condition == inList ? chunkExpression : condition);
+            }
+            chunks.add(query.withExpressions(chunkConditions));
+        }
+        return chunks;
+    }
+
+    private static SimpleExpression findLargestInList(List<Expression> conditions) {
+        SimpleExpression largest = null;
+        int largestSize = 0;
+        if (conditions != null) {
+            for (Expression condition : conditions) {
+                if (condition instanceof SimpleExpression && ((SimpleExpression) condition).getOperator() == Operator.IN) {
+                    int size = getInListSize((SimpleExpression) condition);
+                    if (size > largestSize) {
+                        largest = (SimpleExpression) condition;
+                        largestSize = size;
+                    }
+                }
+            }
+        }
+        return largest;
+    }
+
+    private static int getInListSize(SimpleExpression inList) {
+        Object value = inList.getTypedValue() != null ? inList.getTypedValue().getValue() : null;
+        if (value instanceof Collection<?>) {
+            return ((Collection<?>) value).size();
+        } else if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the distinct values of an IN condition, in their order: a value repeated in two chunks would return its rows twice
+     */
+    private static List<Object> getInListValues(SimpleExpression inList) {
+        Object value = inList.getTypedValue().getValue();
+        Map<Object, Object> values = new LinkedHashMap<Object, Object>();
+        if (value instanceof Collection<?>) {
+            for (Object element : (Collection<?>) value) {
+                putInListValue(values, element);
+            }
+        } else {
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                putInListValue(values, Array.get(value, i));
+            }
+        }
+        return new ArrayList<Object>(values.values());
+    }
+
+    private static void putInListValue(Map<Object, Object> values, Object value) {
+        // 1 and 1L select the same rows
+        Object key = value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ? Long
+                .valueOf(((Number) value).longValue()) : value;
+        if (!values.containsKey(key)) {
+            values.put(key, value);
+        }
+    }
+
+    /**
+     * Sorts the entities merged from several queries, NULL values first
+     */
+    private static final class EntityComparator implements Comparator<Object> {
+
+        private final Field[] fields;
+        private final boolean[] ascending;
+
+        EntityComparator(EntityMetadata metadata, List<Order> orders) {
+            this.fields = new Field[orders.size()];
+            this.ascending = new boolean[orders.size()];
+            for (int i = 0; i < fields.length; i++) {
+                Order order = orders.get(i);
+                fields[i] = metadata.getField(metadata.getColumnIndex(order.getColumn()));
+                ascending[i] = order.isAscending();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public int compare(Object entity1, Object entity2) {
+            for (int i = 0; i < fields.length; i++) {
+                Object value1 = EntityHelper.readField(fields[i], entity1);
+                Object value2 = EntityHelper.readField(fields[i], entity2);
+                int result;
+                if (value1 == null || value2 == null) {
+                    result = value1 == null ? (value2 == null ? 0 : -1) : 1;
+                } else {
+                    result = ((Comparable<Object>) value1).compareTo(value2);
+                }
+                if (result != 0) {
+                    return ascending[i] ? result : -result;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the ordinals of the columns modified since the entity was loaded or saved. Can be used in {@link #onSaveOrUpdate(Object)} to write
+     * only the modified columns. The column names are given by {@link EntityMetadata#getColumnName(int)}.
+     * 
+     * @param entity
+     *            : {@link Entity} object
+     * @return the modified column ordinals, or <code>null</code> if the dirty checking is disabled or the entity is not tracked (all the columns
+     *         must be written)
+     */
+    protected final int[] getDirtyColumnIndexes(Object entity) {
+        return dirtyTracker != null ? dirtyTracker.getDirtyColumnIndexes(entity) : null;
+    }
+
+    /**
+     * Opens a stream on the value of a lazy column (see {@link LazyValue}), without loading the value in memory if it is not loaded yet.
+     * 
+     * @param entity
+     *            : {@link Entity} object
+     * @param columnName
+     *            : name of a column mapped to a {@link LazyValue} field
+     * @return an {@link InputStream} on the column value, or <code>null</code> if the value is NULL
+     * @throws IOException
+     */
+    public final InputStream openColumnStream(Object entity, String columnName) throws IOException {
+        LazyValue<?> lazyValue = getLazyValue(entity, columnName);
+        return lazyValue != null ? lazyValue.openStream() : null;
+    }
+
+    /**
+     * Writes the value of a lazy column (see {@link LazyValue}) from the stream in argument
+     * 
+     * @param entity
+     *            : {@link Entity} object
+     * @param columnName
+     *            : name of a column mapped to a {@link LazyValue} field
+     * @param value
+     *            : stream on the new binary value
+     * @throws IOException
+     */
+    public final void writeColumnStream(Object entity, String columnName, InputStream value) throws IOException {
+        Object connection = beginConnection(true);
+        try {
+            Class<?> entityClass = entity.getClass();
+            EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+            int index = metadata.getColumnIndex(columnName);
+            if (index < 0 || !metadata.isLazy(index)) {
+                throw new IllegalArgumentException("Column '" + columnName + "' is not a lazy column of " + entityClass.getName());
+            }
+            Serializable id = (Serializable) EntityHelper.readField(metadata.getIdField(), entity);
+            onWriteColumnStream(entityClass, id, columnName, value);
+            if (queryCache != null) {
+                queryCache.invalidate(entityClass);
+            }
+            // The value written is not loaded
+            EntityHelper.writeField(metadata.getField(index), new LazyValue<Object>(new ColumnLoader(entityClass, id, columnName)), entity);
+            if (dirtyTracker != null) {
+                dirtyTracker.snapshot(entity);
+            }
+        } finally {
+            endConnection(connection);
+        }
+    }
+
+    private LazyValue<?> getLazyValue(Object entity, String columnName) {
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        int index = metadata.getColumnIndex(columnName);
+        if (index < 0 || !metadata.isLazy(index)) {
+            throw new IllegalArgumentException("Column '" + columnName + "' is not a lazy column of " + entity.getClass().getName());
+        }
+        return (LazyValue<?>) EntityHelper.readField(metadata.getField(index), entity);
+    }
+
+    private void loaded(List<?> entities) {
+        if (entities != null) {
+            for (Object entity : entities) {
+                loaded(entity);
+            }
+        }
+    }
+
+    /**
+     * Binds the lazy columns of an entity loaded by the backend, and takes its snapshot for the dirty checking
+     */
+    private void loaded(Object entity) {
+        if (entity == null) {
+            return;
+        }
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        if (metadata.hasLazyColumns()) {
+            Serializable id = (Serializable) EntityHelper.readField(metadata.getIdField(), entity);
+            for (int i = 0; i < metadata.getColumnCount(); i++) {
+                if (metadata.isLazy(i)) {
+                    Field field = metadata.getField(i);
+                    LazyValue<?> lazyValue = (LazyValue<?>) EntityHelper.readField(field, entity);
+                    if (lazyValue == null || !lazyValue.isLoaded()) {
+                        ColumnLoader loader = new ColumnLoader(entity.getClass(), id, metadata.getColumnName(i));
+                        EntityHelper.writeField(field, new LazyValue<Object>(loader), entity);
+                    }
+                }
+            }
+        }
+        if (dirtyTracker != null) {
+            dirtyTracker.snapshot(entity);
+        }
     }
 
-    protected final List<Class<?>> getEntities() {
-        return entities;
-    }
+    /**
+     * Loads the value of a lazy column with {@link DataBaseManager#onLoadColumn(Class, Serializable, String)}
+     */
+    private final class ColumnLoader implements LazyValue.Loader {
 
-    protected final IAndroidDAO<?, Serializable> getDAOFromEntity(Class<?> entity) {
-        return daoFromEntity.get(entity);
-    }
+        private final Class<?> entityClass;
+        private final Serializable id;
+        private final String columnName;
 
-    protected final String getTableNameFromEntity(Class<?> entity) {
-        return tableNameFromEntity.get(entity);
-    }
+        ColumnLoader(Class<?> entityClass, Serializable id, String columnName) {
+            this.entityClass = entityClass;
+            this.id = id;
+            this.columnName = columnName;
+        }
 
-    protected final Class<?> getEntityFromTableName(String tableName) {
-        return entityFromTableName.get(tableName);
-    }
+        public Object load() {
+            Object connection = beginConnection(false);
+            try {
+                return onLoadColumn(entityClass, id, columnName);
+            } finally {
+                endConnection(connection);
+            }
+        }
 
-    protected final Field[] getFieldsFromEntity(Class<?> entity) {
-        return fieldsFromEntity.get(entity);
+        public InputStream openStream() throws IOException {
+            Object connection = beginConnection(false);
+            try {
+                return onOpenColumnStream(entityClass, id, columnName);
+            } finally {
+                endConnection(connection);
+            }
+        }
     }
 
     public final Query createQuery(Class<?> entityClass) {
@@ -272,15 +1911,20 @@ public abstract class DataBaseManager {
     }
 
     public final String toExpressionString(SimpleExpression expression) {
-        String name = expression.getName();
-        String expr = toExpressionString(expression.getOperator(), expression.getValue(getQueryValueResolver()));
-        return name + expr;
+        return createExpressionRenderer().render(expression);
     }
 
     public final String toExpressionString(LogicalExpression expression) {
-        String expr1 = expression.getExpression1().toQueryString(this);
-        String expr2 = toExpressionString(expression.getLogicalOperator(), expression.getExpression2().toQueryString(this));
-        return expr1 + expr2;
+        return createExpressionRenderer().render(expression);
+    }
+
+    /**
+     * Returns a new {@link ExpressionRenderer}, rendering the expressions of a query in one buffer.
+     * 
+     * @return the {@link ExpressionRenderer}
+     */
+    public final ExpressionRenderer createExpressionRenderer() {
+        return onCreateExpressionRenderer();
     }
 
     public final String toExpressionString(Operator operator, String value) {
@@ -291,38 +1935,168 @@ public abstract class DataBaseManager {
         return onExpressionString(logicalOperator, expression);
     }
 
+    /**
+     * Generates the tables in one transaction: the DDL statements may be batched by the database engine until the commit.
+     */
     private void generateDataBase(String type) throws DBDroidException {
+        boolean create = CREATE_VALUE.equalsIgnoreCase(type);
+        boolean update = UPDATE_VALUE.equalsIgnoreCase(type);
+        boolean reset = RESET_VALUE.equalsIgnoreCase(type);
+        if (!create && !update && !reset) {
+            return;
+        }
+        beginPhase(StartupPhase.GENERATE_DATABASE);
+        Object connection = beginConnection(true);
         try {
-            for (Map.Entry<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>> e : daos.entrySet()) {
-                IAndroidDAO<?, Serializable> dao = e.getValue();
-                Class<?> entityClass = dao.getEntityClass();
-                log.debug("entityClass: " + entityClass);
-                String tableName = tableNameFromEntity.get(entityClass);
-                log.debug("Table name: " + tableName);
-                Field[] fields = fieldsFromEntity.get(entityClass);
-                log.debug("fields: " + Arrays.toString(fields));
-
-                if (CREATE_VALUE.equalsIgnoreCase(type)) {
-                    onCreateTable(tableName, fields);
-                } else if (UPDATE_VALUE.equalsIgnoreCase(type)) {
-                    onUpdateTable(tableName, fields);
-                } else if (RESET_VALUE.equalsIgnoreCase(type)) {
-                    onResetTable(tableName, fields);
+            // Schemas stored by the previous generation, null if the engine does not store them
+            Map<String, String> storedSchemas = update ? onReadSchemas() : null;
+            Map<String, String> schemas = new LinkedHashMap<String, String>();
+
+            onBeginTransaction();
+            try {
+                for (Class<?> entityClass : entities) {
+                    String tableName = tableNameFromEntity.get(entityClass);
+                    Field[] fields = fieldsFromEntity.get(entityClass);
+                    TableSchema schema = schemaFromEntity.get(entityClass);
+                    schemas.put(tableName, schema.getDescriptor());
+
+                    if (create) {
+                        onCreateTable(tableName, fields);
+                    } else if (reset) {
+                        onResetTable(tableName, fields);
+                    } else if (storedSchemas == null) {
+                        onUpdateTable(tableName, fields);
+                    } else {
+                        SchemaDiff diff = schema.diff(TableSchema.parse(tableName, storedSchemas.get(tableName)));
+                        if (diff.isEmpty()) {
+                            log.debug("Table " + tableName + " not modified");
+                            continue;
+                        }
+                        log.debug(diff.toString());
+                        onUpdateTable(tableName, fields, diff);
+                    }
+                    count(StartupReport.Counter.TABLES_GENERATED, 1);
+                }
+                onWriteSchemas(schemas);
+                onCommit();
+            } catch (Exception e) {
+                try {
+                    onRollback();
+                } catch (Exception re) {
+                    log.error("Cannot roll back the generation of the tables", re);
                 }
+                throw e;
             }
+        } catch (DBDroidException e) {
+            throw e;
         } catch (Exception e) {
             throw new DBDroidException(e.getMessage(), e);
+        } finally {
+            endConnection(connection);
+            endPhase(StartupPhase.GENERATE_DATABASE);
         }
     }
 
     private void runScript(String scriptPath, String encoding) throws DBDroidException {
+        beginPhase(StartupPhase.RUN_SCRIPT);
         try {
             List<String> queries = getQueries(scriptPath, encoding);
             for (String query : queries) {
                 rawQuery(query.trim());
+                count(StartupReport.Counter.STATEMENTS_EXECUTED, 1);
             }
         } catch (Exception e) {
             throw new DBDroidException(e.getMessage(), e);
+        } finally {
+            endPhase(StartupPhase.RUN_SCRIPT);
+        }
+    }
+
+    /**
+     * Runs the pending migrations of the locations in argument, in the order of their versions.<br/>
+     * The locations are separated by commas: script files (with the classpath: prefix for the resources), or directories of the file system whose
+     * .sql files are all migrations.
+     */
+    private void runMigrations(String locations, String encoding) throws DBDroidException {
+        beginPhase(StartupPhase.RUN_MIGRATIONS);
+        try {
+            applyMigrations(locations.split(","), encoding);
+        } finally {
+            endPhase(StartupPhase.RUN_MIGRATIONS);
+        }
+    }
+
+    private void applyMigrations(String[] locations, String encoding) throws DBDroidException {
+        List<Migration> migrations = new ArrayList<Migration>();
+        try {
+            for (String location : locations) {
+                location = location.trim();
+                if (location.length() == 0) {
+                    continue;
+                }
+                File directory = new File(location);
+                if (!location.startsWith(CLASSPATH_PREFIX) && directory.isDirectory()) {
+                    File[] files = directory.listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            if (file.isFile() && file.getName().endsWith(".sql")) {
+                                migrations.add(new Migration(file.getPath(), getQueries(file.getPath(), encoding)));
+                            }
+                        }
+                    }
+                } else {
+                    migrations.add(new Migration(location, getQueries(location, encoding)));
+                }
+            }
+        } catch (IOException e) {
+            throw new DBDroidException("Cannot read the migrations: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new DBDroidException(e.getMessage(), e);
+        }
+        Collections.sort(migrations);
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i - 1).compareTo(migrations.get(i)) == 0) {
+                throw new DBDroidException("Several migrations with the version " + migrations.get(i).getVersion() + ": "
+                        + migrations.get(i - 1).getLocation() + ", " + migrations.get(i).getLocation());
+            }
+        }
+
+        Object connection = beginConnection(true);
+        try {
+            Map<String, Long> applied = onReadAppliedMigrations();
+            if (applied == null) {
+                log.warn("The applied migrations are not recorded by " + getClass().getName() + ": all the migrations are run");
+            }
+            for (Migration migration : migrations) {
+                Long checksum = applied != null ? applied.get(migration.getVersion()) : null;
+                if (checksum != null) {
+                    if (checksum.longValue() != migration.getChecksum()) {
+                        throw new DBDroidException("The migration " + migration + " has been modified after it was applied: " + migration.getLocation());
+                    }
+                    continue;
+                }
+
+                log.info("Applying the migration " + migration);
+                onBeginTransaction();
+                try {
+                    for (String query : migration.getQueries()) {
+                        rawQuery(query.trim());
+                        count(StartupReport.Counter.STATEMENTS_EXECUTED, 1);
+                    }
+                    onMigrationApplied(migration);
+                    onCommit();
+                    count(StartupReport.Counter.MIGRATIONS_APPLIED, 1);
+                } catch (Exception e) {
+                    try {
+                        onRollback();
+                    } catch (DBDroidException rollbackException) {
+                        log.error("Cannot roll back the migration " + migration + ": " + rollbackException.getMessage(), rollbackException);
+                    }
+                    throw new DBDroidException("The migration " + migration + " failed", e);
+                }
+            }
+        } finally {
+            endConnection(connection);
         }
     }
 
@@ -341,57 +2115,15 @@ public abstract class DataBaseManager {
                 throw new IOException("Script file not found with path: " + value);
             }
 
-            BufferedReader reader = null;
-            InputStreamReader isReader = null;
+            InputStreamReader reader = null;
             try {
-                isReader = encoding != null ? new InputStreamReader(is, encoding) : new InputStreamReader(is);
-                reader = new BufferedReader(isReader);
-
-                String line;
-                String query = "";
-                while ((line = reader.readLine()) != null) {
-                    // Skip empty lines
-                    if (line.trim().equals("")) {
-                        continue;
-                    }
-
-                    // Skip comments
-                    if (line.startsWith("--") || line.startsWith("//") || line.startsWith("#")) {
-                        continue;
-                    }
-
-                    query += " " + line;
-
-                    if (query.endsWith("/")) { // complete command
-                        query = query.replace('/', ' '); // Remove the '/' since
-                                                         // jdbc complains
-                        queries.add(replaceArguments(query, (String[]) null));
-                        query = "";
-                    } else if (query.contains(";")) { // One or several complete
-                                                      // query(ies)
-                        String[] q = query.split(";");
-                        // Loop on different queries
-                        for (int i = 0; i < (q.length - 1); i++) {
-                            queries.add(replaceArguments(q[i], (String[]) null));
-                        }
-                        // Check if the line ends with
-                        if (query.endsWith(";")) {
-                            queries.add(replaceArguments(q[q.length - 1], (String[]) null));
-                            query = "";
-                        } else {
-                            query = q[q.length - 1];
-                        }
-                    }
-                }
+                reader = encoding != null ? new InputStreamReader(is, encoding) : new InputStreamReader(is);
+                queries = ScriptParser.parse(reader);
             } finally {
                 try {
                     is.close();
                 } catch (Exception exc) {
                 }
-                try {
-                    isReader.close();
-                } catch (Exception exc) {
-                }
                 try {
                     reader.close();
                 } catch (Exception exc) {
@@ -401,17 +2133,6 @@ public abstract class DataBaseManager {
         return queries;
     }
 
-    private static String replaceArguments(String sqlQuery, String... args) {
-        String query = sqlQuery;
-        if (args != null) {
-            for (int a = 0; a < args.length; a++) {
-                query = query.replace("&" + (a + 1), args[a]);
-            }
-        }
-
-        return query;
-    }
-
     /**
      * Opens the connection to the database
      * 
@@ -429,7 +2150,8 @@ public abstract class DataBaseManager {
     public abstract void onClose() throws DBDroidException;
 
     /**
-     * Checks if the {@link Entity} class is valid. If not, this method returns an {@link DBDroidException}
+     * Checks if the {@link Entity} class is valid. If not, this method returns an {@link DBDroidException}<br/>
+     * At the opening, this method may be called concurrently for different entities.
      * 
      * @param entityClass
      *            : {@link Entity} class to check
@@ -462,6 +2184,49 @@ public abstract class DataBaseManager {
      */
     protected abstract void onUpdateTable(String tableName, Field[] fields) throws DBDroidException;
 
+    /**
+     * Updates a table whose schema changed since the previous generation (see {@link #onReadSchemas()}).<br/>
+     * By default, calls {@link #onUpdateTable(String, Field[])}: the backends can override this method to apply the differences only.
+     * 
+     * @param tableName
+     *            : table name
+     * @param fields
+     *            : {@link Entity} fields used to update the table
+     * @param diff
+     *            : differences between the stored schema and the {@link Entity} fields
+     * @throws DBDroidException
+     *             throwed if the table cannot be updated
+     */
+    protected void onUpdateTable(String tableName, Field[] fields, SchemaDiff diff) throws DBDroidException {
+        onUpdateTable(tableName, fields);
+    }
+
+    /**
+     * Reads the table schemas stored by {@link #onWriteSchemas(Map)} at the previous generation. With the 'update' generation, only the tables whose
+     * schema changed are updated.<br/>
+     * By default, returns <code>null</code>: the schemas are not stored and all the tables are updated.
+     * 
+     * @return the schema descriptor of each table name (see {@link TableSchema#getDescriptor()}), or <code>null</code> if not supported
+     * @throws DBDroidException
+     *             throwed if the schemas cannot be read
+     */
+    protected Map<String, String> onReadSchemas() throws DBDroidException {
+        return null;
+    }
+
+    /**
+     * Stores the table schemas after a generation of the database, replacing the stored ones.<br/>
+     * By default, does nothing.
+     * 
+     * @param schemas
+     *            : schema descriptor of each table name (see {@link TableSchema#getDescriptor()})
+     * @throws DBDroidException
+     *             throwed if the schemas cannot be written
+     */
+    protected void onWriteSchemas(Map<String, String> schemas) throws DBDroidException {
+        // Schemas not stored
+    }
+
     /**
      * Resets a table
      * 
@@ -473,13 +2238,78 @@ public abstract class DataBaseManager {
      */
     protected abstract void onResetTable(String tableName, Field[] fields) throws DBDroidException;
 
+    /**
+     * Returns the migrations applied to the database (see {@link Migration}), recorded by {@link #onMigrationApplied(Migration)}.<br/>
+     * By default, returns <code>null</code>: the migrations are not recorded and all the migrations are run at each opening.
+     * 
+     * @return the checksum of each applied migration version, or <code>null</code> if not supported
+     * @throws DBDroidException
+     *             throwed if the applied migrations cannot be read
+     */
+    protected Map<String, Long> onReadAppliedMigrations() throws DBDroidException {
+        return null;
+    }
+
+    /**
+     * Records a migration, after its queries and in the same transaction.<br/>
+     * By default, does nothing.
+     * 
+     * @param migration
+     *            : applied migration
+     * @throws DBDroidException
+     *             throwed if the migration cannot be recorded
+     */
+    protected void onMigrationApplied(Migration migration) throws DBDroidException {
+        // Migrations not recorded
+    }
+
+    /**
+     * Begins a transaction on the current connection.<br/>
+     * By default, does nothing: each query is committed on its own.
+     * 
+     * @throws DBDroidException
+     *             throwed if the transaction cannot be started
+     */
+    protected void onBeginTransaction() throws DBDroidException {
+        // No transaction
+    }
+
+    /**
+     * Commits the transaction started by {@link #onBeginTransaction()}.<br/>
+     * By default, does nothing.
+     * 
+     * @throws DBDroidException
+     *             throwed if the transaction cannot be committed
+     */
+    protected void onCommit() throws DBDroidException {
+        // No transaction
+    }
+
+    /**
+     * Rolls back the transaction started by {@link #onBeginTransaction()}.<br/>
+     * By default, does nothing.
+     * 
+     * @throws DBDroidException
+     *             throwed if the transaction cannot be rolled back
+     */
+    protected void onRollback() throws DBDroidException {
+        // No transaction
+    }
+
     /**
      * Deletes {@link Entity}
      * 
      * @param entity
      *            : {@link Entity} to delete
+     * @throws IllegalStateException
+     *             if the backend implements neither this hook nor {@link #delete(Object)}
      */
-    public abstract void delete(Object entity);
+    protected void onDelete(Object entity) {
+        if (!isOverridden("delete", Object.class)) {
+            throw missingHook("onDelete(Object)");
+        }
+        delete(entity);
+    }
 
     /**
      * Finds all rows in database for {@link Entity} class in argument
@@ -489,8 +2319,15 @@ public abstract class DataBaseManager {
      * @param entityClass
      *            : {@link Entity} class to find
      * @return list of rows converted to {@link Entity} objects E
+     * @throws IllegalStateException
+     *             if the backend implements neither this hook nor {@link #findAll(Class)}
      */
-    public abstract <E> List<E> findAll(Class<E> entityClass);
+    protected <E> List<E> onFindAll(Class<E> entityClass) {
+        if (!isOverridden("findAll", Class.class)) {
+            throw missingHook("onFindAll(Class)");
+        }
+        return findAll(entityClass);
+    }
 
     /**
      * Finds a row in database for {@link Entity} class in argument and with id in argument
@@ -502,8 +2339,15 @@ public abstract class DataBaseManager {
      * @param entityClass
      *            : {@link Entity} class to find
      * @return row converted to {@link Entity} object E
+     * @throws IllegalStateException
+     *             if the backend implements neither this hook nor {@link #findById(Serializable, Class)}
      */
-    public abstract <E> E findById(Serializable id, Class<E> entityClass);
+    protected <E> E onFindById(Serializable id, Class<E> entityClass) {
+        if (!isOverridden("findById", Serializable.class, Class.class)) {
+            throw missingHook("onFindById(Serializable, Class)");
+        }
+        return findById(id, entityClass);
+    }
 
     /**
      * Saves an {@link Entity} object
@@ -513,28 +2357,297 @@ public abstract class DataBaseManager {
      * @param entity
      *            : {@link Entity} object
      * @return {@link Entity} object saved or updated
+     * @throws IllegalStateException
+     *             if the backend implements neither this hook nor {@link #saveOrUpdate(Object)}
      */
-    public abstract <E> E saveOrUpdate(E entity);
+    protected <E> E onSaveOrUpdate(E entity) {
+        if (!isOverridden("saveOrUpdate", Object.class)) {
+            throw missingHook("onSaveOrUpdate(Object)");
+        }
+        return saveOrUpdate(entity);
+    }
 
     /**
      * Runs the query in argument
      * 
      * @param query
      *            : the raw query.
+     * @throws IllegalStateException
+     *             if the backend implements neither this hook nor {@link #rawQuery(String)}
+     */
+    protected void onRawQuery(String query) {
+        if (!isOverridden("rawQuery", String.class)) {
+            throw missingHook("onRawQuery(String)");
+        }
+        rawQuery(query);
+    }
+
+    /**
+     * Saves a batch of {@link Entity} objects from the write-behind queue (see {@link #setWriteBehindLatency(long)}).<br/>
+     * By default, the entities are saved one by one with {@link #onSaveOrUpdate(Object)}: the backends should override this method to write them in
+     * one transaction.
+     * 
+     * @param entities
+     *            : {@link Entity} objects
+     * @return {@link Entity} objects saved or updated
      */
-    public abstract void rawQuery(String query);
+    protected List<Object> onSaveOrUpdateAll(List<Object> entities) {
+        List<Object> savedEntities = new ArrayList<Object>(entities.size());
+        for (Object entity : entities) {
+            savedEntities.add(onSaveOrUpdate(entity));
+        }
+        return savedEntities;
+    }
 
     /**
      * Runs a query according to the Query object in argument, and return the query result.<br/>
-     * Method called in the method queryList() from Query object.
+     * Method called in the method queryList(Query query).
      * 
      * @param <E>
      *            : {@link Entity} type
      * @param query
      *            : Query object
      * @return: List of {@link Entity} objects found with the Query
+     * @throws IllegalStateException
+     *             if the backend implements neither this hook nor {@link #queryList(Query)}
+     */
+    protected <E> List<E> onQueryList(Query query) {
+        if (!isOverridden("queryList", Query.class)) {
+            throw missingHook("onQueryList(Query)");
+        }
+        return queryList(query);
+    }
+
+    /**
+     * Returns <code>true</code> if the backend overrides the method in argument. The default hooks delegate to the public operations overridden by
+     * the backends written for 1.2.1 and earlier; a backend overriding an operation and calling its super method must implement the hook.
+     */
+    private boolean isOverridden(String name, Class<?>... parameterTypes) {
+        for (Class<?> clazz = getClass(); clazz != DataBaseManager.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not declared by this class
+            }
+        }
+        return false;
+    }
+
+    private IllegalStateException missingHook(String hook) {
+        return new IllegalStateException("The backend " + getClass().getName() + " must implement " + hook);
+    }
+
+    /**
+     * Runs a query according to the Query object in argument, and returns the values of the selected columns (see {@link Query#getSelection()}).<br/>
+     * By default, the entities are loaded with {@link #onQueryList(Query)} and the selected values are read from them: the backends should override
+     * this method to read only the selected columns.
+     * 
+     * @param query
+     *            : Query object with selected columns
+     * @return list of tuples, in the order of the selection
+     */
+    protected List<Object[]> onQueryTuples(Query query) {
+        return projectColumns(query, query.getSelection());
+    }
+
+    /**
+     * Returns the number of rows found by the query.<br/>
+     * By default, the entities are loaded with {@link #onQueryList(Query)} and counted: the backends should override this method to count the rows
+     * without creating the entities.
+     * 
+     * @param query
+     *            : Query object
+     * @return number of rows
+     */
+    protected long onCount(Query query) {
+        List<?> entities = onQueryList(query);
+        return entities != null ? entities.size() : 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the query finds at least one row.<br/>
+     * By default, the rows are counted with {@link #onCount(Query)}: the backends should override this method to stop at the first row.
+     * 
+     * @param query
+     *            : Query object
+     * @return <code>true</code> if a row is found
+     */
+    protected boolean onExists(Query query) {
+        return onCount(query) > 0;
+    }
+
+    /**
+     * Computes an aggregate function on a column of the rows found by the query. NULL values are ignored.<br/>
+     * By default, the column values are read with {@link #onQueryList(Query)} and the function is computed in memory: the backends should override
+     * this method to compute it in the database engine.
+     * 
+     * @param query
+     *            : Query object
+     * @param function
+     *            : aggregate function
+     * @param column
+     *            : column name of the entity
+     * @return a {@link Long} for COUNT, a {@link Long} (integer column) or a {@link Double} for SUM, a {@link Double} for AVG, a column value for
+     *         MIN and MAX, or <code>null</code> if there is no value (except for COUNT)
+     */
+    @SuppressWarnings("unchecked")
+    protected Object onAggregate(Query query, AggregateFunction function, String column) {
+        List<Object[]> tuples = projectColumns(query, new String[] { column });
+
+        long count = 0;
+        long longSum = 0;
+        double doubleSum = 0;
+        boolean integral = true;
+        Comparable<Object> extremum = null;
+        for (Object[] tuple : tuples) {
+            Object value = tuple[0];
+            if (value == null) {
+                continue;
+            }
+            count++;
+            switch (function) {
+                case SUM:
+                case AVG:
+                    Number number = value instanceof Number ? (Number) value : Double.valueOf(value.toString());
+                    if (integral && (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)) {
+                        longSum += number.longValue();
+                    } else {
+                        integral = false;
+                        doubleSum += number.doubleValue();
+                    }
+                    break;
+                case MIN:
+                case MAX:
+                    Comparable<Object> comparable = (Comparable<Object>) value;
+                    if (extremum == null || (function == AggregateFunction.MIN ? comparable.compareTo(extremum) < 0 : comparable.compareTo(extremum) > 0)) {
+                        extremum = comparable;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        switch (function) {
+            case COUNT:
+                return Long.valueOf(count);
+            case SUM:
+                if (count == 0) {
+                    return null;
+                }
+                return integral ? (Object) Long.valueOf(longSum) : (Object) Double.valueOf(doubleSum + longSum);
+            case AVG:
+                return count == 0 ? null : Double.valueOf((doubleSum + longSum) / count);
+            default:
+                return extremum;
+        }
+    }
+
+    /**
+     * Reads the values of the columns in argument from the entities returned by {@link #onQueryList(Query)}
+     */
+    private List<Object[]> projectColumns(Query query, String[] selection) {
+        EntityMetadata metadata = EntityMetadata.forClass(query.getEntityClass());
+        Field[] fields = new Field[selection.length];
+        for (int i = 0; i < selection.length; i++) {
+            fields[i] = metadata.getField(metadata.getColumnIndex(selection[i]));
+        }
+
+        List<?> entities = onQueryList(query);
+        List<Object[]> tuples = new ArrayList<Object[]>(entities != null ? entities.size() : 0);
+        if (entities != null) {
+            for (Object entity : entities) {
+                Object[] tuple = new Object[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    tuple[i] = EntityHelper.readField(fields[i], entity);
+                }
+                tuples.add(tuple);
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * Loads the value of a lazy column (see {@link LazyValue}) of the row with the id in argument.<br/>
+     * By default, the row is loaded with {@link #onFindById(Serializable, Class)} and the value is read from the entity: the backends which do not
+     * read the lazy columns with the row must override this method. The manager cannot be opened with entities having lazy columns if the backend
+     * implements neither this method nor {@link #onFindById(Serializable, Class)}.
+     * 
+     * @param entityClass
+     *            : {@link Entity} class
+     * @param id
+     *            : id of the row
+     * @param columnName
+     *            : lazy column name
+     * @return the column value
+     * @throws IllegalStateException
+     *             if the backend does not read the lazy columns with the row and does not override this method
+     */
+    protected Object onLoadColumn(Class<?> entityClass, Serializable id, String columnName) {
+        Object entity = onFindById(id, entityClass);
+        if (entity == null) {
+            return null;
+        }
+        EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+        LazyValue<?> lazyValue = (LazyValue<?>) EntityHelper.readField(metadata.getField(metadata.getColumnIndex(columnName)), entity);
+        if (lazyValue != null && !lazyValue.isLoaded()) {
+            // Loading it would call this method again
+            throw new IllegalStateException("The backend " + getClass().getName() + " does not read the lazy columns with the row: it must implement "
+                    + "onLoadColumn(Class, Serializable, String)");
+        }
+        return lazyValue != null ? lazyValue.get() : null;
+    }
+
+    /**
+     * Opens a stream on a lazy binary column. By default, the value is loaded with {@link #onLoadColumn(Class, Serializable, String)}: the backends
+     * able to stream a column should override this method.
+     * 
+     * @param entityClass
+     *            : {@link Entity} class
+     * @param id
+     *            : id of the row
+     * @param columnName
+     *            : lazy column name
+     * @return an {@link InputStream} on the column value, or <code>null</code> if the value is NULL
+     * @throws IOException
+     */
+    protected InputStream onOpenColumnStream(Class<?> entityClass, Serializable id, String columnName) throws IOException {
+        Object value = onLoadColumn(entityClass, id, columnName);
+        return value != null ? new LazyValue<Object>(value).openStream() : null;
+    }
+
+    /**
+     * Writes a lazy binary column from a stream. By default, the stream is read in memory and the entity is saved with
+     * {@link #onSaveOrUpdate(Object)}: the backends able to stream a column should override this method.
+     * 
+     * @param entityClass
+     *            : {@link Entity} class
+     * @param id
+     *            : id of the row
+     * @param columnName
+     *            : lazy column name
+     * @param value
+     *            : stream on the new value
+     * @throws IOException
      */
-    public abstract <E> List<E> queryList(Query query);
+    protected void onWriteColumnStream(Class<?> entityClass, Serializable id, String columnName, InputStream value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = value.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+
+        Object entity = onFindById(id, entityClass);
+        if (entity == null) {
+            throw new IOException("No row found for " + entityClass.getName() + " with id " + id);
+        }
+        EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+        Field field = metadata.getField(metadata.getColumnIndex(columnName));
+        EntityHelper.writeField(field, new LazyValue<Object>(out.toByteArray()), entity);
+        onSaveOrUpdate(entity);
+    }
 
     /**
      * This method returns a DataType Object, containing the mapping between the java types and the DbDroidTypes and the database types
@@ -551,6 +2664,17 @@ public abstract class DataBaseManager {
      */
     protected abstract QueryValueResolver getQueryValueResolver();
 
+    /**
+     * Creates the {@link ExpressionRenderer} used to render the expressions of the queries.<br/>
+     * By default, the renderer uses the methods onExpressionString(Operator operator, String value) and onExpressionString(LogicalOperator
+     * logicalOperator, String expression): the backends can return a subclass which appends the operators directly in the buffer.
+     * 
+     * @return the {@link ExpressionRenderer}
+     */
+    protected ExpressionRenderer onCreateExpressionRenderer() {
+        return new ExpressionRenderer(this, getQueryValueResolver());
+    }
+
     /**
      * Returns a {@link String} representing the {@link SimpleExpression} in argument. This method can use the {@link QueryValueResolver} object in
      * argument to replace a value by a {@link String} recognized by the database engine in a query.<br/>
@@ -605,4 +2729,37 @@ public abstract class DataBaseManager {
      */
     protected abstract String onExpressionString(LogicalOperator logicalOperator, String expression);
 
+    /**
+     * Metadata of an entity built at the opening
+     */
+    private static final class EntityInfo {
+
+        private final Class<?> entityClass;
+        private final String tableName;
+        private final Field[] fields;
+        private final TableSchema schema;
+
+        EntityInfo(Class<?> entityClass, String tableName, Field[] fields, TableSchema schema) {
+            this.entityClass = entityClass;
+            this.tableName = tableName;
+            this.fields = fields;
+            this.schema = schema;
+        }
+    }
+
+    private static final class ConnectionHolder {
+
+        private final ConnectionProvider<Object> provider;
+        private final Object connection;
+        private final boolean write;
+        private final ConnectionHolder previous;
+        private int depth;
+
+        ConnectionHolder(ConnectionProvider<Object> provider, Object connection, boolean write, ConnectionHolder previous) {
+            this.provider = provider;
+            this.connection = connection;
+            this.write = write;
+            this.previous = previous;
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package org.nds.dbdroid.concurrent;
+
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.nds.logging.Logger;
+import org.nds.logging.LoggerFactory;
+
+/**
+ * Executor of the asynchronous database operations, with a single-writer / multi-reader policy suited to the SQLite-style engines:
+ * <ul>
+ * <li>the writes are run one at a time, in submission order, by a single writer thread,</li>
+ * <li>the reads are run concurrently by a pool of reader threads,</li>
+ * <li>a read waits for the writes submitted before it, so that it sees their result.</li>
+ * </ul>
+ * The queues are bounded: a task submitted when the queue is full is rejected with a
+ * {@link java.util.concurrent.RejectedExecutionException}.
+ */
+public class DataBaseExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(DataBaseExecutor.class);
+
+    private final ThreadPoolExecutor writer;
+
+    private final ThreadPoolExecutor readers;
+
+    private final Object writeMonitor = new Object();
+
+    /** Ordinal of the last write submitted */
+    private long submittedWrites;
+
+    /** Ordinals of the writes submitted and not terminated yet */
+    private final TreeSet<Long> pendingWrites = new TreeSet<Long>();
+
+    /**
+     * Creates an executor
+     * 
+     * @param readerThreads
+     *            : number of reader threads
+     * @param queueCapacity
+     *            : maximum number of waiting tasks, for the writes and for the reads
+     */
+    public DataBaseExecutor(int readerThreads, int queueCapacity) {
+        if (readerThreads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("The number of reader threads and the queue capacity must be greater than 0");
+        }
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory(
+                "dbdroid-writer"));
+        this.readers = new ThreadPoolExecutor(readerThreads, readerThreads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+                queueCapacity), new NamedThreadFactory("dbdroid-reader"));
+    }
+
+    /**
+     * Submits a read operation, run after the writes already submitted
+     * 
+     * @param <V>
+     *            : result type
+     * @param task
+     *            : read operation
+     * @return the {@link Future} of the result
+     */
+    public <V> Future<V> submitRead(final Callable<V> task) {
+        final long writes;
+        synchronized (writeMonitor) {
+            writes = submittedWrites;
+        }
+        FutureTask<V> future = new FutureTask<V>(new Callable<V>() {
+
+            public V call() throws Exception {
+                awaitWrites(writes);
+                return task.call();
+            }
+        });
+        readers.execute(future);
+        return future;
+    }
+
+    /**
+     * Submits a write operation, run by the writer thread after the writes already submitted
+     * 
+     * @param <V>
+     *            : result type
+     * @param task
+     *            : write operation
+     * @return the {@link Future} of the result
+     */
+    public <V> Future<V> submitWrite(Callable<V> task) {
+        WriteTask<V> future = new WriteTask<V>(task);
+        synchronized (writeMonitor) {
+            // Holding the monitor: the write cannot terminate before it is registered, and no read sees a write which is then rejected
+            future.ordinal = submittedWrites + 1;
+            writer.execute(future);
+            submittedWrites = future.ordinal;
+            pendingWrites.add(Long.valueOf(future.ordinal));
+        }
+        return future;
+    }
+
+    private void writeTerminated(long ordinal) {
+        synchronized (writeMonitor) {
+            if (pendingWrites.remove(Long.valueOf(ordinal))) {
+                writeMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void awaitWrites(long writes) throws InterruptedException {
+        synchronized (writeMonitor) {
+            while (!pendingWrites.isEmpty() && pendingWrites.first().longValue() <= writes) {
+                writeMonitor.wait();
+            }
+        }
+    }
+
+    /**
+     * Write operation: terminated when its task has returned, or when it is cancelled before being run
+     */
+    private final class WriteTask<V> extends FutureTask<V> {
+
+        private long ordinal;
+
+        private volatile boolean started;
+
+        WriteTask(Callable<V> task) {
+            super(task);
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            try {
+                super.run();
+            } finally {
+                writeTerminated(ordinal);
+            }
+        }
+
+        @Override
+        protected void done() {
+            // A write cancelled while running is terminated when its task returns
+            if (isCancelled() && !started) {
+                writeTerminated(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Rejects the new tasks; the tasks already submitted are run.
+     */
+    public void shutdown() {
+        writer.shutdown();
+        readers.shutdown();
+    }
+
+    /**
+     * Waits for the tasks submitted before {@link #shutdown()}
+     * 
+     * @param timeout
+     * @param unit
+     * @return <code>true</code> if all the tasks are terminated
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = writer.awaitTermination(timeout, unit);
+        terminated &= readers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (!terminated) {
+            log.warn("Database tasks still running after " + timeout + " " + unit);
+        }
+        return terminated;
+    }
+
+    public boolean isShutdown() {
+        return writer.isShutdown();
+    }
+}
@@ -0,0 +1,314 @@
+package org.nds.dbdroid.concurrent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nds.logging.Logger;
+import org.nds.logging.LoggerFactory;
+
+/**
+ * Write-behind queue of entities to save: the writes of the same entity (class and id) are collapsed, only the last state is written.<br/>
+ * The entities are written in batches by a background thread, at most the latency window after they are enqueued, or when {@link #flush()} is
+ * called. The entities of a batch which cannot be written stay pending: they are written by the next flush.
+ */
+public final class WriteBehindQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /**
+     * Writes a batch of entities
+     */
+    public interface Writer {
+
+        void write(List<Object> entities);
+    }
+
+    private final Writer writer;
+
+    private final int maxBatchSize;
+
+    /** Keys of the pending entities, in the order of their first write */
+    private final ConcurrentLinkedQueue<EntityKey> order = new ConcurrentLinkedQueue<EntityKey>();
+
+    /** Last state of the pending entities */
+    private final ConcurrentMap<EntityKey, Object> pending = new ConcurrentHashMap<EntityKey, Object>();
+
+    /** Lock of the pending batches, never held while a batch is written */
+    private final Object flushLock = new Object();
+
+    /** Thread writing the pending entities: the batches are written one at a time, in order (guarded by flushLock) */
+    private Thread writingThread;
+
+    /** Keys of the entities of a failed batch, written first by the next flush (guarded by flushLock) */
+    private final List<EntityKey> retry = new ArrayList<EntityKey>();
+
+    /** Failure of a background flush, thrown by the next synchronous flush (guarded by flushLock) */
+    private RuntimeException failure;
+
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * Creates a queue and starts its background flusher
+     *
+     * @param writer
+     *            : writer of the batches
+     * @param latencyMillis
+     *            : maximum time in milliseconds between two flushes
+     * @param maxBatchSize
+     *            : maximum number of entities written in one batch
+     */
+    public WriteBehindQueue(Writer writer, long latencyMillis, int maxBatchSize) {
+        if (latencyMillis <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The latency and the batch size must be greater than 0");
+        }
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "dbdroid-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.flusher.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    writePending(true);
+                } catch (RuntimeException e) {
+                    log.error("Write-behind flush failed: " + e.getMessage(), e);
+                }
+            }
+        }, latencyMillis, latencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Enqueues the entity in argument, replacing the pending state of the same entity
+     *
+     * @param entityClass
+     *            : entity class
+     * @param id
+     *            : entity id, not null
+     * @param entity
+     *            : entity to write
+     */
+    public void enqueue(Class<?> entityClass, Serializable id, Object entity) {
+        EntityKey key = new EntityKey(entityClass, id);
+        enqueued.incrementAndGet();
+        if (pending.put(key, entity) == null) {
+            // Not pending: the flusher has already taken the previous state, if any
+            order.offer(key);
+        }
+    }
+
+    /**
+     * Returns the pending state of an entity, so that a read sees the writes not flushed yet
+     *
+     * @param entityClass
+     *            : entity class
+     * @param id
+     *            : entity id
+     * @return the pending entity, or <code>null</code>
+     */
+    public Object getPending(Class<?> entityClass, Serializable id) {
+        return id != null ? pending.get(new EntityKey(entityClass, id)) : null;
+    }
+
+    /**
+     * Removes the pending state of an entity, which will not be written
+     *
+     * @param entityClass
+     *            : entity class
+     * @param id
+     *            : entity id
+     * @return the removed entity, or <code>null</code>
+     */
+    public Object remove(Class<?> entityClass, Serializable id) {
+        return id != null ? pending.remove(new EntityKey(entityClass, id)) : null;
+    }
+
+    /**
+     * Writes all the pending entities in the calling thread, after the batch being written by another thread. Must not be called while holding a
+     * resource needed by the writer (the writer connection of the database).
+     * 
+     * @throws IllegalStateException
+     *             if a background flush has failed since the last call: its entities stay pending, and are written by the next flush
+     * @throws RuntimeException
+     *             the failure of the writer: the entities of the failed batch stay pending
+     */
+    public void flush() {
+        writePending(false);
+    }
+
+    private void writePending(boolean background) {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        synchronized (flushLock) {
+            if (writingThread == current) {
+                // Flush called by the writer: the pending entities are written when it returns
+                return;
+            }
+            while (writingThread != null) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            RuntimeException previous = background ? null : failure;
+            if (previous != null) {
+                failure = null;
+                if (interrupted) {
+                    current.interrupt();
+                }
+                throw new IllegalStateException("Write-behind flush failed: " + previous.getMessage(), previous);
+            }
+            writingThread = current;
+        }
+        RuntimeException error = null;
+        try {
+            List<EntityKey> keys = new ArrayList<EntityKey>(Math.min(maxBatchSize, 64));
+            List<Object> batch = new ArrayList<Object>(Math.min(maxBatchSize, 64));
+            while (nextBatch(keys, batch)) {
+                write(keys, batch);
+            }
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            synchronized (flushLock) {
+                if (background && error != null) {
+                    failure = error;
+                }
+                writingThread = null;
+                flushLock.notifyAll();
+            }
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Takes the next pending entities, up to the batch size
+     */
+    private boolean nextBatch(List<EntityKey> keys, List<Object> batch) {
+        synchronized (flushLock) {
+            EntityKey key;
+            while (batch.size() < maxBatchSize && (key = !retry.isEmpty() ? retry.remove(0) : order.poll()) != null) {
+                Object entity = pending.remove(key);
+                if (entity != null) {
+                    keys.add(key);
+                    batch.add(entity);
+                }
+            }
+        }
+        return !batch.isEmpty();
+    }
+
+    private void write(List<EntityKey> keys, List<Object> batch) {
+        try {
+            writer.write(batch);
+        } catch (RuntimeException e) {
+            requeue(keys, batch);
+            throw e;
+        }
+        written.addAndGet(batch.size());
+        keys.clear();
+        batch.clear();
+    }
+
+    /**
+     * Puts back the entities of a failed batch, before the other pending entities; a newer state of the same entity is kept
+     */
+    private void requeue(List<EntityKey> keys, List<Object> batch) {
+        List<EntityKey> failed = new ArrayList<EntityKey>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            EntityKey key = keys.get(i);
+            if (pending.putIfAbsent(key, batch.get(i)) == null) {
+                failed.add(key);
+            }
+        }
+        synchronized (flushLock) {
+            retry.addAll(0, failed);
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes the pending entities
+     */
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (flushLock) {
+            // The failure of a background flush is superseded by this last write
+            failure = null;
+        }
+        writePending(false);
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Returns the number of entities enqueued
+     *
+     * @return enqueued entities
+     */
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    /**
+     * Returns the number of entities written: the difference with {@link #getEnqueuedCount()} is the number of collapsed writes and of pending
+     * entities
+     *
+     * @return written entities
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    private static final class EntityKey {
+
+        private final Class<?> entityClass;
+        private final Serializable id;
+
+        EntityKey(Class<?> entityClass, Serializable id) {
+            this.entityClass = entityClass;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return entityClass.hashCode() * 31 + id.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof EntityKey)) {
+                return false;
+            }
+            EntityKey other = (EntityKey) obj;
+            return entityClass.equals(other.entityClass) && id.equals(other.id);
+        }
+    }
+}
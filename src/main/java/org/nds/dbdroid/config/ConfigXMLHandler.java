@@ -7,9 +7,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.reflect.FieldUtils;
@@ -18,6 +20,9 @@ import org.nds.dbdroid.dao.AndroidDAO;
 import org.nds.dbdroid.dao.IAndroidDAO;
 import org.nds.dbdroid.reflect.utils.ReflectUtils;
 import org.nds.dbdroid.service.IAndroidService;
+import org.nds.dbdroid.startup.StartupPhase;
+import org.nds.dbdroid.startup.StartupRecorder;
+import org.nds.dbdroid.startup.StartupReport;
 import org.nds.logging.Logger;
 import org.nds.logging.LoggerFactory;
 import org.nds.package_info.ClassPathPackageInfo;
@@ -45,7 +50,7 @@ public class ConfigXMLHandler extends DefaultHandler {
     private Element current = null;
 
     private Properties properties;
-    private final Map<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>> daos = new HashMap<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>>();
+    private final Map<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>> daos = new LinkedHashMap<Class<? extends IAndroidDAO<?, Serializable>>, IAndroidDAO<?, Serializable>>();
     private final Map<Class<? extends IAndroidService>, IAndroidService> services = new HashMap<Class<? extends IAndroidService>, IAndroidService>();
 
     private final DataBaseManager dbManager;
@@ -53,6 +58,8 @@ public class ConfigXMLHandler extends DefaultHandler {
 
     private final boolean skipInnerClass = false;
 
+    private StartupRecorder startupRecorder;
+
     public ConfigXMLHandler(DataBaseManager dbManager, ClassLoader classLoader) {
         this.dbManager = dbManager;
         if (classLoader != null) {
@@ -62,6 +69,16 @@ public class ConfigXMLHandler extends DefaultHandler {
         }
     }
 
+    /**
+     * Sets the recorder of the package scanning and the DAO creation
+     * 
+     * @param startupRecorder
+     *            : startup recorder, <code>null</code> to record nothing
+     */
+    public void setStartupRecorder(StartupRecorder startupRecorder) {
+        this.startupRecorder = startupRecorder;
+    }
+
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 
@@ -202,11 +219,13 @@ public class ConfigXMLHandler extends DefaultHandler {
             return;
         }
 
+        beginPhase(StartupPhase.CREATE_DAOS);
         try {
             Class<? extends IAndroidDAO<?, Serializable>> daoClass = (Class<? extends IAndroidDAO<?, Serializable>>) clazz;
-            Constructor<? extends IAndroidDAO<?, Serializable>> constr = daoClass.getConstructor(new Class[] { DataBaseManager.class });
-            IAndroidDAO<?, Serializable> dao = constr.newInstance(new Object[] { dbManager });
             if (!daos.containsKey(daoClass)) {
+                Constructor<? extends IAndroidDAO<?, Serializable>> constr = daoClass.getConstructor(new Class[] { DataBaseManager.class });
+                IAndroidDAO<?, Serializable> dao = constr.newInstance(new Object[] { dbManager });
+                count(StartupReport.Counter.DAOS_CREATED, 1);
                 daos.put(daoClass, dao);
                 // Retrieve DAO interface
                 List<Class<?>> interfaces = ClassUtils.getAllInterfaces(daoClass);
@@ -230,6 +249,8 @@ public class ConfigXMLHandler extends DefaultHandler {
             throw new SAXException("IllegalAccessException for Class '" + clazz + "'", e);
         } catch (InvocationTargetException e) {
             throw new SAXException("InvocationTargetException for Class '" + clazz + "'", e);
+        } finally {
+            endPhase(StartupPhase.CREATE_DAOS);
         }
     }
 
@@ -254,11 +275,18 @@ public class ConfigXMLHandler extends DefaultHandler {
         for (File directory : dirs) {
             findDAOClasses(directory, packageName);
         }*/
-        ClassPathPackageInfoSource classPathSource = new ClassPathPackageInfoSource();
+        beginPhase(StartupPhase.SCAN_PACKAGES);
+        try {
+            ClassPathPackageInfoSource classPathSource = new ClassPathPackageInfoSource();
 
-        ClassPathPackageInfo cppi = classPathSource.getPackageInfo(packageName);
-        for (Class<?> clazz : cppi.getTopLevelClassesRecursive()) {
-            retrieveDAO(clazz);
+            ClassPathPackageInfo cppi = classPathSource.getPackageInfo(packageName);
+            Set<Class<?>> classes = cppi.getTopLevelClassesRecursive();
+            count(StartupReport.Counter.CLASSES_SCANNED, classes.size());
+            for (Class<?> clazz : classes) {
+                retrieveDAO(clazz);
+            }
+        } finally {
+            endPhase(StartupPhase.SCAN_PACKAGES);
         }
     }
 
@@ -318,10 +346,12 @@ public class ConfigXMLHandler extends DefaultHandler {
             return;
         }
 
+        beginPhase(StartupPhase.CREATE_DAOS);
         try {
             Class<? extends IAndroidService> serviceClass = (Class<? extends IAndroidService>) clazz;
             Constructor<? extends IAndroidService> constr = serviceClass.getConstructor();
             IAndroidService service = constr.newInstance();
+            count(StartupReport.Counter.SERVICES_CREATED, 1);
             if (!services.containsKey(serviceClass)) {
                 services.put(serviceClass, service);
                 // Retrieve Service interface
@@ -346,6 +376,8 @@ public class ConfigXMLHandler extends DefaultHandler {
             throw new SAXException("IllegalAccessException for Class '" + clazz + "'", e);
         } catch (InvocationTargetException e) {
             throw new SAXException("InvocationTargetException for Class '" + clazz + "'", e);
+        } finally {
+            endPhase(StartupPhase.CREATE_DAOS);
         }
     }
 
@@ -360,13 +392,38 @@ public class ConfigXMLHandler extends DefaultHandler {
      * @throws URISyntaxException
      */
     private void retrieveServiceClasses(String packageName) throws ClassNotFoundException, IOException, SAXException, URISyntaxException {
-        ClassPathPackageInfoSource classPathSource = new ClassPathPackageInfoSource();
-
-        ClassPathPackageInfo cppi = classPathSource.getPackageInfo(packageName);
-        for (Class<?> clazz : cppi.getTopLevelClassesRecursive()) {
-            if (IAndroidService.class.isAssignableFrom(clazz)) {
-                retrieveService(clazz);
+        beginPhase(StartupPhase.SCAN_PACKAGES);
+        try {
+            ClassPathPackageInfoSource classPathSource = new ClassPathPackageInfoSource();
+
+            ClassPathPackageInfo cppi = classPathSource.getPackageInfo(packageName);
+            Set<Class<?>> classes = cppi.getTopLevelClassesRecursive();
+            count(StartupReport.Counter.CLASSES_SCANNED, classes.size());
+            for (Class<?> clazz : classes) {
+                if (IAndroidService.class.isAssignableFrom(clazz)) {
+                    retrieveService(clazz);
+                }
             }
+        } finally {
+            endPhase(StartupPhase.SCAN_PACKAGES);
+        }
+    }
+
+    private void beginPhase(StartupPhase phase) {
+        if (startupRecorder != null) {
+            startupRecorder.begin(phase);
+        }
+    }
+
+    private void endPhase(StartupPhase phase) {
+        if (startupRecorder != null) {
+            startupRecorder.end(phase);
+        }
+    }
+
+    private void count(StartupReport.Counter counter, long value) {
+        if (startupRecorder != null) {
+            startupRecorder.add(counter, value);
         }
     }
 
@@ -0,0 +1,39 @@
+package org.nds.dbdroid.connection;
+
+/**
+ * Provides the database connections used by a {@link org.nds.dbdroid.DataBaseManager}: reader connections for the read operations, and one writer
+ * connection for the write operations (the WAL-style model, where the readers never wait behind a write transaction).<br/>
+ * The connection type depends on the database engine (SQLiteDatabase, java.sql.Connection...).
+ * 
+ * @param <C>
+ *            : connection type
+ */
+public interface ConnectionProvider<C> {
+
+    /**
+     * Returns a connection for read operations, waiting if all the reader connections are in use.
+     * 
+     * @return a reader connection, to release with {@link #release(Object)}
+     */
+    C acquireReader();
+
+    /**
+     * Returns the writer connection, waiting if it is used by another thread.
+     * 
+     * @return the writer connection, to release with {@link #release(Object)}
+     */
+    C acquireWriter();
+
+    /**
+     * Releases a connection returned by {@link #acquireReader()} or {@link #acquireWriter()}
+     * 
+     * @param connection
+     *            : connection to release
+     */
+    void release(C connection);
+
+    /**
+     * Closes all the connections
+     */
+    void close();
+}
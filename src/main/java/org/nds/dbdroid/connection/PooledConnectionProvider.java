@@ -0,0 +1,180 @@
+package org.nds.dbdroid.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.nds.logging.Logger;
+import org.nds.logging.LoggerFactory;
+
+/**
+ * {@link ConnectionProvider} with a pool of reader connections, opened when needed up to a maximum, and a single writer connection used by one
+ * thread at a time.<br/>
+ * The subclasses open and close the connections of the database engine.
+ * 
+ * @param <C>
+ *            : connection type
+ */
+public abstract class PooledConnectionProvider<C> implements ConnectionProvider<C> {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledConnectionProvider.class);
+
+    /** Interval in milliseconds between two checks of the provider state while waiting for a reader */
+    private static final long READER_WAIT_MILLIS = 100;
+
+    private final int maxReaders;
+
+    private final BlockingQueue<C> idleReaders = new LinkedBlockingQueue<C>();
+
+    private final List<C> readers = new ArrayList<C>();
+
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+
+    private C writer;
+
+    private boolean closed;
+
+    /**
+     * Creates a provider
+     * 
+     * @param maxReaders
+     *            : maximum number of reader connections
+     */
+    public PooledConnectionProvider(int maxReaders) {
+        if (maxReaders <= 0) {
+            throw new IllegalArgumentException("The maximum number of readers must be greater than 0");
+        }
+        this.maxReaders = maxReaders;
+    }
+
+    /**
+     * Opens a read-only connection
+     * 
+     * @return the new connection
+     */
+    protected abstract C openReader();
+
+    /**
+     * Opens the writer connection
+     * 
+     * @return the new connection
+     */
+    protected abstract C openWriter();
+
+    /**
+     * Closes a connection opened by {@link #openReader()} or {@link #openWriter()}
+     * 
+     * @param connection
+     *            : connection to close
+     */
+    protected abstract void closeConnection(C connection);
+
+    /**
+     * Returns an idle reader connection, opens a new one if the maximum is not reached, or waits for a reader to be released.
+     * 
+     * @return a reader connection
+     * @throws IllegalStateException
+     *             if the provider is closed, including while waiting for a reader
+     */
+    public C acquireReader() {
+        C reader = idleReaders.poll();
+        if (reader != null) {
+            return reader;
+        }
+        synchronized (readers) {
+            checkOpen();
+            if (readers.size() < maxReaders) {
+                reader = openReader();
+                readers.add(reader);
+                return reader;
+            }
+        }
+        try {
+            // The readers are not released anymore once the provider is closed
+            while (true) {
+                reader = idleReaders.poll(READER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (reader != null) {
+                    return reader;
+                }
+                synchronized (readers) {
+                    checkOpen();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a reader connection", e);
+        }
+    }
+
+    public C acquireWriter() {
+        writerLock.lock();
+        try {
+            synchronized (readers) {
+                checkOpen();
+                if (writer == null) {
+                    writer = openWriter();
+                }
+                return writer;
+            }
+        } catch (RuntimeException e) {
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    public void release(C connection) {
+        if (connection == null) {
+            return;
+        }
+        if (connection == writer && writerLock.isHeldByCurrentThread()) {
+            writerLock.unlock();
+        } else {
+            synchronized (readers) {
+                // Otherwise already closed with the provider
+                if (!closed) {
+                    idleReaders.offer(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all the connections, including the connections in use: they must not be used anymore.<br/>
+     * The threads waiting for a reader get an {@link IllegalStateException}.
+     */
+    public void close() {
+        synchronized (readers) {
+            closed = true;
+            for (C reader : readers) {
+                close(reader);
+            }
+            readers.clear();
+            idleReaders.clear();
+            if (writer != null) {
+                close(writer);
+                writer = null;
+            }
+        }
+    }
+
+    private void close(C connection) {
+        try {
+            closeConnection(connection);
+        } catch (RuntimeException e) {
+            log.error("Cannot close the connection: " + e.getMessage(), e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The connection provider is closed");
+        }
+    }
+
+    public int getMaxReaders() {
+        return maxReaders;
+    }
+}
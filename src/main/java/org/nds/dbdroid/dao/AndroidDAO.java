@@ -3,8 +3,10 @@ package org.nds.dbdroid.dao;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.nds.dbdroid.DataBaseManager;
+import org.nds.dbdroid.query.Query;
 import org.nds.logging.Logger;
 import org.nds.logging.LoggerFactory;
 
@@ -50,4 +52,32 @@ public class AndroidDAO<T, ID extends Serializable> implements IAndroidDAO<T, ID
         return this.dbManager.saveOrUpdate(entity);
     }
 
+    public Future<T> findByIdAsync(Serializable id) {
+        log.debug("Find Entity by Id asynchronously: " + id);
+        return this.dbManager.findByIdAsync(id, entityClass);
+    }
+
+    public Future<List<T>> findAllAsync() {
+        log.debug("Find all Entities asynchronously");
+        return this.dbManager.findAllAsync(entityClass);
+    }
+
+    public Future<T> saveOrUpdateAsync(T entity) {
+        log.debug("Save or Update Entity asynchronously");
+        return this.dbManager.saveOrUpdateAsync(entity);
+    }
+
+    public Future<Void> deleteAsync(T entity) {
+        log.debug("Delete Entity asynchronously");
+        return this.dbManager.deleteAsync(entity);
+    }
+
+    public Future<List<T>> queryListAsync(Query query) {
+        log.debug("Query Entities asynchronously");
+        if (!entityClass.equals(query.getEntityClass())) {
+            throw new IllegalArgumentException("The query must be on the entity " + entityClass.getName());
+        }
+        return this.dbManager.queryListAsync(query);
+    }
+
 }
@@ -2,6 +2,9 @@ package org.nds.dbdroid.dao;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.Future;
+
+import org.nds.dbdroid.query.Query;
 
 public interface IAndroidDAO<T, ID extends Serializable> {
 
@@ -15,4 +18,14 @@ public interface IAndroidDAO<T, ID extends Serializable> {
 
     void delete(T entity);
 
+    Future<T> findByIdAsync(ID id);
+
+    Future<List<T>> findAllAsync();
+
+    Future<T> saveOrUpdateAsync(T entity);
+
+    Future<Void> deleteAsync(T entity);
+
+    Future<List<T>> queryListAsync(Query query);
+
 }
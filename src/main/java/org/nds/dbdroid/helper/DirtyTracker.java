@@ -0,0 +1,228 @@
+package org.nds.dbdroid.helper;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.nds.dbdroid.type.LazyValue;
+import org.nds.logging.Logger;
+import org.nds.logging.LoggerFactory;
+
+/**
+ * Snapshot-based dirty checking of {@link org.nds.dbdroid.annotation.Entity} objects.<br/>
+ * A snapshot of the column values is taken when an entity is loaded or saved. Comparing the entity with its snapshot gives the columns modified
+ * since, so that an update can write only these columns, or be skipped if nothing changed.<br/>
+ * Entities are tracked by identity and weakly referenced: the snapshot is discarded when the entity is garbage collected.
+ */
+public final class DirtyTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(DirtyTracker.class);
+
+    private static final int[] NO_COLUMNS = new int[0];
+
+    private final Map<EntityReference, Object[]> snapshots = new HashMap<EntityReference, Object[]>();
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /**
+     * Takes a snapshot of the column values of the entity in argument, replacing the previous one.
+     *
+     * @param entity
+     *            : loaded or saved entity
+     */
+    public synchronized void snapshot(Object entity) {
+        if (entity == null) {
+            return;
+        }
+        expungeStaleEntries();
+
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        Object[] values = new Object[metadata.getColumnCount()];
+        for (int i = 0; i < values.length; i++) {
+            // Copy the mutable values, so that an in-place modification is detected
+            values[i] = EntityHelper.copyValue(readValue(metadata.getField(i), entity));
+        }
+        snapshots.put(new EntityReference(entity, queue), values);
+    }
+
+    /**
+     * Stops tracking the entity in argument
+     *
+     * @param entity
+     *            : deleted entity
+     */
+    public synchronized void remove(Object entity) {
+        if (entity != null) {
+            snapshots.remove(new EntityReference(entity, null));
+        }
+    }
+
+    /**
+     * Stops tracking all entities
+     */
+    public synchronized void clear() {
+        snapshots.clear();
+        expungeStaleEntries();
+    }
+
+    /**
+     * Returns the ordinals (see {@link EntityMetadata#getColumnIndex(String)}) of the columns modified since the last snapshot of the entity.
+     *
+     * @param entity
+     *            : entity to check
+     * @return the modified column ordinals, an empty array if nothing changed, or <code>null</code> if the entity is not tracked (all columns must
+     *         be considered as modified)
+     */
+    public synchronized int[] getDirtyColumnIndexes(Object entity) {
+        if (entity == null) {
+            return null;
+        }
+        expungeStaleEntries();
+
+        Object[] values = snapshots.get(new EntityReference(entity, null));
+        if (values == null) {
+            return null;
+        }
+
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        int[] dirty = null;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!valueEquals(values[i], readValue(metadata.getField(i), entity))) {
+                if (dirty == null) {
+                    dirty = new int[values.length - i];
+                }
+                dirty[count++] = i;
+            }
+        }
+        if (dirty == null) {
+            return NO_COLUMNS;
+        }
+        if (count < dirty.length) {
+            int[] result = new int[count];
+            System.arraycopy(dirty, 0, result, 0, count);
+            dirty = result;
+        }
+
+        return dirty;
+    }
+
+    public synchronized boolean isTracked(Object entity) {
+        return entity != null && snapshots.containsKey(new EntityReference(entity, null));
+    }
+
+    public synchronized int size() {
+        expungeStaleEntries();
+        return snapshots.size();
+    }
+
+    private void expungeStaleEntries() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            snapshots.remove(reference);
+        }
+    }
+
+    private static Object readValue(Field field, Object entity) {
+        try {
+            Object value = field.get(entity);
+            if (value instanceof LazyValue<?>) {
+                // Compare the holder and its modifications, without loading the value
+                return new LazyState((LazyValue<?>) value);
+            }
+            return value;
+        } catch (IllegalAccessException e) {
+            log.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static boolean valueEquals(Object snapshot, Object value) {
+        if (snapshot == value) {
+            return true;
+        } else if (snapshot == null || value == null) {
+            return false;
+        } else if (snapshot instanceof byte[] && value instanceof byte[]) {
+            return Arrays.equals((byte[]) snapshot, (byte[]) value);
+        } else if (snapshot instanceof char[] && value instanceof char[]) {
+            return Arrays.equals((char[]) snapshot, (char[]) value);
+        } else if (snapshot instanceof Object[] && value instanceof Object[]) {
+            return Arrays.equals((Object[]) snapshot, (Object[]) value);
+        } else if (snapshot.getClass().isArray() && value.getClass().isArray()) {
+            int length = Array.getLength(snapshot);
+            if (length != Array.getLength(value)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!Array.get(snapshot, i).equals(Array.get(value, i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return snapshot.equals(value);
+    }
+
+    /**
+     * State of a {@link LazyValue}: the same holder without call to {@link LazyValue#set(Object)} is not modified
+     */
+    private static final class LazyState {
+
+        private final LazyValue<?> lazyValue;
+        private final int modificationCount;
+
+        LazyState(LazyValue<?> lazyValue) {
+            this.lazyValue = lazyValue;
+            this.modificationCount = lazyValue.getModificationCount();
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(lazyValue) + modificationCount;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LazyState)) {
+                return false;
+            }
+            LazyState other = (LazyState) obj;
+            return lazyValue == other.lazyValue && modificationCount == other.modificationCount;
+        }
+    }
+
+    /**
+     * Weak reference comparing the referents by identity
+     */
+    private static final class EntityReference extends WeakReference<Object> {
+
+        private final int hash;
+
+        EntityReference(Object entity, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.hash = System.identityHashCode(entity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof EntityReference)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((EntityReference) obj).get();
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package org.nds.dbdroid.helper;
 
-import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
+import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.reflect.FieldUtils;
 import org.nds.dbdroid.annotation.Column;
 import org.nds.dbdroid.annotation.Entity;
 import org.nds.dbdroid.annotation.Id;
 import org.nds.dbdroid.reflect.utils.AnnotationUtils;
-import org.nds.dbdroid.reflect.utils.ReflectUtils;
+import org.nds.dbdroid.type.DbDroidType;
+import org.nds.dbdroid.type.LazyValue;
 import org.nds.logging.Logger;
 import org.nds.logging.LoggerFactory;
 
@@ -36,75 +43,55 @@ public final class EntityHelper {
     }
 
     public static Field[] getFields(Class<?> entityClass) {
-        return ReflectUtils.getPropertyFields(entityClass);
+        return EntityMetadata.forClass(entityClass).getFields().clone();
     }
 
     public static Map<String, Object> getColumnNamesWithValues(Object entity) {
-        Map<String, Object> map = new HashMap<String, Object>();
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        Field[] fields = metadata.getFields();
+        String[] columnNames = metadata.getColumnNames();
 
-        Field[] fields = getFields(entity.getClass());
-        for (Field field : fields) {
-            String columnName = getColumnName(field);
+        Map<String, Object> map = new HashMap<String, Object>((int) (fields.length / 0.75f) + 1);
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
             Object value = readField(field, entity);
-            if (isIdField(field) && value == null) { // Don't store id field with value is NULL
+            if (value == null && isIdField(field)) { // Don't store id field with value is NULL
                 continue;
             }
-            map.put(columnName, value);
+            if (metadata.isLazy(i) && value != null) {
+                LazyValue<?> lazyValue = (LazyValue<?>) value;
+                if (!lazyValue.isLoaded()) { // Not loaded, so not modified
+                    continue;
+                }
+                value = lazyValue.get();
+            }
+            map.put(columnNames[i], value);
         }
 
         return map;
     }
 
     public static Field getIdField(Class<?> entityClass) {
-        // Retrieve the ID field
-        java.lang.reflect.Field field = AnnotationUtils.findField(entityClass, Id.class);
-        if (field == null) {
-            field = FieldUtils.getField(entityClass, "_id", true);
-            if (field == null) {
-                throw new IllegalArgumentException("No fields are found with the 'Id' annotation or '_id' name.");
-            }
-        }
-
-        return field;
+        return EntityMetadata.forClass(entityClass).getIdField();
     }
 
     public static boolean isIdField(Field field) {
-        Annotation idAnnotation = AnnotationUtils.getAnnotation(field, Id.class);
-        return idAnnotation != null;
+        return AnnotationUtils.getAnnotation(field, Id.class) != null;
     }
 
     public static Field getFieldByColumnName(String columnName, Class<?> entityClass) {
-        // Search a field with a Column annotation where name is columnName
-        Field[] fields = AnnotationUtils.findFields(entityClass, Column.class);
-        for (Field field : fields) {
-            Annotation[] annotations = AnnotationUtils.getAnnotations(field);
-            for (Annotation annotation : annotations) {
-                // Retrieve the column name is defined 
-                if (Column.class.equals(annotation.annotationType())) {
-                    String colName = ((Column) annotation).name();
-                    if (columnName.equals(colName)) {
-                        return field;
-                    }
-                }
-            }
-        }
-
-        // Search a field where field name is columnName
-        return FieldUtils.getField(entityClass, columnName, true);
+        return EntityMetadata.forClass(entityClass).getFieldByColumnName(columnName);
     }
 
     public static String getColumnName(Field field) {
         String columnName = null;
 
         if (field != null) {
-            Annotation[] annotations = AnnotationUtils.getAnnotations(field);
-            for (Annotation annotation : annotations) {
-                // Retrieve the column name is defined 
-                if (Column.class.equals(annotation.annotationType())) {
-                    columnName = ((Column) annotation).name();
-                }
-            }
-            if (columnName == null) {
+            // Retrieve the column name is defined
+            Column column = AnnotationUtils.getAnnotation(field, Column.class);
+            if (column != null) {
+                columnName = column.name();
+            } else {
                 // Set the column name if Column annotation not defined
                 columnName = field.getName().toLowerCase();
             }
@@ -113,6 +100,34 @@ public final class EntityHelper {
         return columnName;
     }
 
+    public static boolean isLazyField(Field field) {
+        return LazyValue.class.equals(field.getType());
+    }
+
+    /**
+     * Returns the type of the value stored in the field: the field type, or the type argument of a {@link LazyValue} field.
+     * 
+     * @param field
+     * @return the value type
+     */
+    public static Class<?> getValueType(Field field) {
+        if (!isLazyField(field)) {
+            return field.getType();
+        }
+        Type genericType = field.getGenericType();
+        if (genericType instanceof ParameterizedType) {
+            Type valueType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (valueType instanceof Class<?>) {
+                return (Class<?>) valueType;
+            } else if (valueType instanceof GenericArrayType && ((GenericArrayType) valueType).getGenericComponentType() instanceof Class<?>) {
+                // byte[] type argument on some VMs
+                Class<?> componentType = (Class<?>) ((GenericArrayType) valueType).getGenericComponentType();
+                return Array.newInstance(componentType, 0).getClass();
+            }
+        }
+        throw new IllegalArgumentException("The type of the LazyValue field '" + field.getName() + "' must be defined (ex: LazyValue<byte[]>)");
+    }
+
     public static void writeField(Field field, Object value, Object entity) {
         try {
             Object v = DefaultTypeConverter.INSTANCE.convert(field.getType(), value);
@@ -132,8 +147,238 @@ public final class EntityHelper {
         return value;
     }
 
+    /**
+     * Copies a mutable column value (array, date or calendar), so that the copy is not modified with the original.
+     * 
+     * @param value
+     *            : column value
+     * @return a copy of the mutable value, or the value itself
+     */
+    public static Object copyValue(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        } else if (value instanceof Date) {
+            return ((Date) value).clone();
+        } else if (value instanceof Calendar) {
+            return ((Calendar) value).clone();
+        }
+        return value;
+    }
+
     public static <T> T readField(Field field, Object entity, Class<T> type) {
         Object value = readField(field, entity);
         return DefaultTypeConverter.INSTANCE.convert(type, value);
     }
+
+    /**
+     * Hydrates the entity in argument from the row in argument, column by column ordinal, without intermediate map.<br/>
+     * The lazy columns (see {@link EntityMetadata#isLazy(int)}) are not read: their {@link LazyValue} is bound by the DataBaseManager.
+     * 
+     * @param reader
+     *            : row to read
+     * @param entity
+     *            : entity to fill
+     */
+    public static void readRow(RowReader reader, Object entity) {
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        int columnCount = metadata.getColumnCount();
+        for (int i = 0; i < columnCount; i++) {
+            if (metadata.isLazy(i)) { // Loaded on demand
+                continue;
+            }
+            Field field = metadata.getField(i);
+            try {
+                readColumn(reader, i, metadata.getColumnType(i), field, entity);
+            } catch (IllegalAccessException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the entity in argument to the row in argument, column by column ordinal, without intermediate map.<br/>
+     * As for {@link #getColumnNamesWithValues(Object)}, the id column is not written if its value is NULL, and a lazy column is not written if its
+     * value has not been loaded.
+     * 
+     * @param entity
+     *            : entity to write
+     * @param writer
+     *            : row to fill
+     */
+    public static void writeRow(Object entity, RowWriter writer) {
+        EntityMetadata metadata = EntityMetadata.forClass(entity.getClass());
+        int columnCount = metadata.getColumnCount();
+        int idIndex = metadata.getIdColumnIndex();
+        for (int i = 0; i < columnCount; i++) {
+            Field field = metadata.getField(i);
+            try {
+                if (metadata.isLazy(i)) {
+                    writeLazyColumn(writer, i, metadata.getColumnType(i), field, entity);
+                    continue;
+                }
+                writeColumn(writer, i, metadata.getColumnType(i), field, entity, i == idIndex);
+            } catch (IllegalAccessException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void readColumn(RowReader reader, int index, DbDroidType type, Field field, Object entity) throws IllegalAccessException {
+        Class<?> fieldType = field.getType();
+        if (reader.isNull(index)) {
+            if (!fieldType.isPrimitive()) {
+                field.set(entity, null);
+            }
+            return;
+        }
+        if (type == null) {
+            field.set(entity, DefaultTypeConverter.INSTANCE.convert(fieldType, reader.getObject(index)));
+            return;
+        }
+
+        boolean primitive = fieldType.isPrimitive();
+        switch (type) {
+            case BOOLEAN:
+                if (primitive) {
+                    field.setBoolean(entity, reader.getBoolean(index));
+                } else {
+                    field.set(entity, Boolean.valueOf(reader.getBoolean(index)));
+                }
+                break;
+            case SHORT:
+                if (primitive) {
+                    field.setShort(entity, reader.getShort(index));
+                } else {
+                    field.set(entity, Short.valueOf(reader.getShort(index)));
+                }
+                break;
+            case INTEGER:
+                if (primitive) {
+                    field.setInt(entity, reader.getInt(index));
+                } else {
+                    field.set(entity, Integer.valueOf(reader.getInt(index)));
+                }
+                break;
+            case LONG:
+                if (primitive) {
+                    field.setLong(entity, reader.getLong(index));
+                } else {
+                    field.set(entity, Long.valueOf(reader.getLong(index)));
+                }
+                break;
+            case FLOAT:
+                if (primitive) {
+                    field.setFloat(entity, reader.getFloat(index));
+                } else {
+                    field.set(entity, Float.valueOf(reader.getFloat(index)));
+                }
+                break;
+            case DOUBLE:
+                if (primitive) {
+                    field.setDouble(entity, reader.getDouble(index));
+                } else {
+                    field.set(entity, Double.valueOf(reader.getDouble(index)));
+                }
+                break;
+            case STRING:
+                field.set(entity, reader.getString(index));
+                break;
+            case BINARY:
+                field.set(entity, reader.getBlob(index));
+                break;
+            default:
+                // The converter does not support the primitive types
+                Class<?> targetType = primitive ? ClassUtils.primitiveToWrapper(fieldType) : fieldType;
+                field.set(entity, DefaultTypeConverter.INSTANCE.convert(targetType, reader.getObject(index)));
+        }
+    }
+
+    private static void writeLazyColumn(RowWriter writer, int index, DbDroidType type, Field field, Object entity) throws IllegalAccessException {
+        LazyValue<?> lazyValue = (LazyValue<?>) field.get(entity);
+        if (lazyValue == null) {
+            writer.putNull(index);
+        } else if (lazyValue.isLoaded()) { // Not loaded, so not modified
+            writeValue(writer, index, type, lazyValue.get());
+        }
+    }
+
+    private static void writeColumn(RowWriter writer, int index, DbDroidType type, Field field, Object entity, boolean idField)
+            throws IllegalAccessException {
+        if (field.getType().isPrimitive()) {
+            switch (type) {
+                case BOOLEAN:
+                    writer.putBoolean(index, field.getBoolean(entity));
+                    return;
+                case SHORT:
+                    writer.putShort(index, field.getShort(entity));
+                    return;
+                case INTEGER:
+                    writer.putInt(index, field.getInt(entity));
+                    return;
+                case LONG:
+                    writer.putLong(index, field.getLong(entity));
+                    return;
+                case FLOAT:
+                    writer.putFloat(index, field.getFloat(entity));
+                    return;
+                case DOUBLE:
+                    writer.putDouble(index, field.getDouble(entity));
+                    return;
+                default:
+                    writer.putObject(index, field.get(entity));
+                    return;
+            }
+        }
+
+        Object value = field.get(entity);
+        if (value == null && idField) { // Don't store id field with value is NULL
+            return;
+        }
+        writeValue(writer, index, type, value);
+    }
+
+    private static void writeValue(RowWriter writer, int index, DbDroidType type, Object value) {
+        if (value == null) {
+            writer.putNull(index);
+            return;
+        }
+        if (type == null) {
+            writer.putObject(index, value);
+            return;
+        }
+
+        switch (type) {
+            case BOOLEAN:
+                writer.putBoolean(index, ((Boolean) value).booleanValue());
+                break;
+            case SHORT:
+                writer.putShort(index, ((Short) value).shortValue());
+                break;
+            case INTEGER:
+                writer.putInt(index, ((Integer) value).intValue());
+                break;
+            case LONG:
+                writer.putLong(index, ((Long) value).longValue());
+                break;
+            case FLOAT:
+                writer.putFloat(index, ((Float) value).floatValue());
+                break;
+            case DOUBLE:
+                writer.putDouble(index, ((Double) value).doubleValue());
+                break;
+            case STRING:
+                writer.putString(index, (String) value);
+                break;
+            case BINARY:
+                writer.putBlob(index, (byte[]) value);
+                break;
+            default:
+                writer.putObject(index, value);
+        }
+    }
 }
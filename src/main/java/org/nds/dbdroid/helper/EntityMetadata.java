@@ -0,0 +1,242 @@
+package org.nds.dbdroid.helper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.reflect.FieldUtils;
+import org.nds.dbdroid.annotation.Column;
+import org.nds.dbdroid.annotation.Id;
+import org.nds.dbdroid.reflect.utils.AnnotationIndex;
+import org.nds.dbdroid.reflect.utils.ReflectUtils;
+import org.nds.dbdroid.type.DataType;
+import org.nds.dbdroid.type.DbDroidType;
+
+/**
+ * Mapping metadata of an {@link org.nds.dbdroid.annotation.Entity} class: property fields, column names, id field and column name → field index.<br/>
+ * The metadata is computed once per entity class and cached, so that row hydration does not need to scan the class for each cell.
+ */
+public final class EntityMetadata {
+
+    private static final ConcurrentMap<Class<?>, EntityMetadata> METADATA = new ConcurrentHashMap<Class<?>, EntityMetadata>();
+
+    private final Class<?> entityClass;
+
+    private final Field[] fields;
+
+    private final String[] columnNames;
+
+    private final DbDroidType[] columnTypes;
+
+    private final boolean[] lazyColumns;
+
+    private final boolean hasLazyColumns;
+
+    private final Map<String, Integer> columnIndexes;
+
+    private final Field idField;
+
+    private final int idColumnIndex;
+
+    private final ConcurrentMap<String, Field> fieldsByColumnName = new ConcurrentHashMap<String, Field>();
+
+    private EntityMetadata(Class<?> entityClass) {
+        this.entityClass = entityClass;
+
+        AnnotationIndex index = AnnotationIndex.forClass(entityClass);
+
+        this.fields = ReflectUtils.getPropertyFields(entityClass);
+        this.columnNames = new String[fields.length];
+        this.columnTypes = new DbDroidType[fields.length];
+        this.lazyColumns = new boolean[fields.length];
+        boolean lazy = false;
+        this.columnIndexes = new HashMap<String, Integer>((int) (fields.length / 0.75f) + 1);
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            if (!Modifier.isPublic(field.getModifiers())) {
+                field.setAccessible(true);
+            }
+            columnNames[i] = EntityHelper.getColumnName(field);
+            columnTypes[i] = DataType.getBasicDbDroidType(EntityHelper.getValueType(field));
+            lazyColumns[i] = EntityHelper.isLazyField(field);
+            lazy |= lazyColumns[i];
+            if (!columnIndexes.containsKey(columnNames[i])) {
+                columnIndexes.put(columnNames[i], Integer.valueOf(i));
+            }
+        }
+        this.hasLazyColumns = lazy;
+
+        // Retrieve the ID field
+        Field[] idFields = index.getFields(Id.class);
+        if (idFields.length > 0) {
+            this.idField = idFields[0];
+        } else {
+            this.idField = FieldUtils.getField(entityClass, "_id", true);
+        }
+        int idIndex = -1;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(idField)) {
+                idIndex = i;
+                break;
+            }
+        }
+        this.idColumnIndex = idIndex;
+
+        // Fields with a Column annotation where name is the column name
+        for (Field field : index.getFields(Column.class)) {
+            String columnName = index.getAnnotation(field, Column.class).name();
+            if (!fieldsByColumnName.containsKey(columnName)) {
+                fieldsByColumnName.put(columnName, field);
+            }
+        }
+        // Fields where field name is the column name (the nearest declaration hides the super classes ones)
+        for (Field field : ReflectUtils.getFields(entityClass)) {
+            if (!fieldsByColumnName.containsKey(field.getName())) {
+                if (!Modifier.isPublic(field.getModifiers())) {
+                    field.setAccessible(true);
+                }
+                fieldsByColumnName.put(field.getName(), field);
+            }
+        }
+    }
+
+    /**
+     * Returns the metadata of the entity class in argument. The metadata is computed the first time and cached.
+     *
+     * @param entityClass
+     *            : {@link org.nds.dbdroid.annotation.Entity} class
+     * @return the {@link EntityMetadata} of the entity class
+     */
+    public static EntityMetadata forClass(Class<?> entityClass) {
+        if (entityClass == null) {
+            throw new IllegalArgumentException("entityClass must not be null");
+        }
+
+        EntityMetadata metadata = METADATA.get(entityClass);
+        if (metadata == null) {
+            metadata = new EntityMetadata(entityClass);
+            EntityMetadata existing = METADATA.putIfAbsent(entityClass, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+
+        return metadata;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * Returns the property fields of the entity. The returned array is shared and must not be modified.
+     *
+     * @return property fields
+     */
+    public Field[] getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the column names of the entity, in the same order as {@link #getFields()}. The returned array is shared and must not be modified.
+     *
+     * @return column names
+     */
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public int getColumnCount() {
+        return fields.length;
+    }
+
+    /**
+     * Returns the ordinal of the column in argument, used by {@link RowReader} and {@link RowWriter}.
+     * 
+     * @param columnName
+     *            : column name
+     * @return the column ordinal, or -1 if the entity has no such column
+     */
+    public int getColumnIndex(String columnName) {
+        Integer index = columnIndexes.get(columnName);
+        return index != null ? index.intValue() : -1;
+    }
+
+    public String getColumnName(int columnIndex) {
+        return columnNames[columnIndex];
+    }
+
+    public Field getField(int columnIndex) {
+        return fields[columnIndex];
+    }
+
+    /**
+     * Returns <code>true</code> if the column is mapped to a {@link org.nds.dbdroid.type.LazyValue} field: its value must not be read with the row.
+     * 
+     * @param columnIndex
+     *            : column ordinal
+     * @return <code>true</code> if the column is lazy
+     */
+    public boolean isLazy(int columnIndex) {
+        return lazyColumns[columnIndex];
+    }
+
+    public boolean hasLazyColumns() {
+        return hasLazyColumns;
+    }
+
+    /**
+     * Returns the {@link DbDroidType} of the column in argument (the type of the value for a {@link org.nds.dbdroid.type.LazyValue} field).
+     * 
+     * @param columnIndex
+     *            : column ordinal
+     * @return the {@link DbDroidType}, or <code>null</code> if the field type is not a basic type
+     */
+    public DbDroidType getColumnType(int columnIndex) {
+        return columnTypes[columnIndex];
+    }
+
+    /**
+     * Returns the ordinal of the id column.
+     * 
+     * @return the id column ordinal, or -1 if the id field is not a property field
+     */
+    public int getIdColumnIndex() {
+        return idColumnIndex;
+    }
+
+    public Field getIdField() {
+        if (idField == null) {
+            throw new IllegalArgumentException("No fields are found with the 'Id' annotation or '_id' name.");
+        }
+        return idField;
+    }
+
+    /**
+     * Returns the field mapped to the column name in argument: the field with a {@link Column} annotation where name is columnName, else the field
+     * named columnName.
+     *
+     * @param columnName
+     *            : column name
+     * @return the field, or <code>null</code> if not found
+     */
+    public Field getFieldByColumnName(String columnName) {
+        if (columnName == null) {
+            throw new IllegalArgumentException("The column name must not be null");
+        }
+
+        Field field = fieldsByColumnName.get(columnName);
+        if (field == null) {
+            // Public fields of the implemented interfaces
+            field = FieldUtils.getField(entityClass, columnName, true);
+            if (field != null) {
+                fieldsByColumnName.putIfAbsent(columnName, field);
+            }
+        }
+
+        return field;
+    }
+}
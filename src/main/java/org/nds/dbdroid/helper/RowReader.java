@@ -0,0 +1,44 @@
+package org.nds.dbdroid.helper;
+
+/**
+ * Read access to a database row by column ordinal, used to hydrate an {@link org.nds.dbdroid.annotation.Entity} without intermediate map.<br/>
+ * The column index is the ordinal of the column in the entity metadata (see {@link EntityMetadata#getColumnIndex(String)}): a backend selecting the
+ * columns in the order of {@link EntityMetadata#getColumnNames()} can map its cursor positions directly.
+ */
+public interface RowReader {
+
+    /**
+     * Returns <code>true</code> if the value of the column is NULL
+     * 
+     * @param columnIndex
+     *            : column ordinal
+     * @return <code>true</code> if the value is NULL
+     */
+    boolean isNull(int columnIndex);
+
+    String getString(int columnIndex);
+
+    boolean getBoolean(int columnIndex);
+
+    short getShort(int columnIndex);
+
+    int getInt(int columnIndex);
+
+    long getLong(int columnIndex);
+
+    float getFloat(int columnIndex);
+
+    double getDouble(int columnIndex);
+
+    byte[] getBlob(int columnIndex);
+
+    /**
+     * Returns the value of the column for the types without typed accessor. The value is converted to the field type with the
+     * {@link org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter}.
+     * 
+     * @param columnIndex
+     *            : column ordinal
+     * @return the column value
+     */
+    Object getObject(int columnIndex);
+}
@@ -0,0 +1,36 @@
+package org.nds.dbdroid.helper;
+
+/**
+ * Write access to a database row by column ordinal, used to store an {@link org.nds.dbdroid.annotation.Entity} without intermediate map.<br/>
+ * The column index is the ordinal of the column in the entity metadata (see {@link EntityMetadata#getColumnIndex(String)}).
+ */
+public interface RowWriter {
+
+    void putNull(int columnIndex);
+
+    void putString(int columnIndex, String value);
+
+    void putBoolean(int columnIndex, boolean value);
+
+    void putShort(int columnIndex, short value);
+
+    void putInt(int columnIndex, int value);
+
+    void putLong(int columnIndex, long value);
+
+    void putFloat(int columnIndex, float value);
+
+    void putDouble(int columnIndex, double value);
+
+    void putBlob(int columnIndex, byte[] value);
+
+    /**
+     * Writes a value for the types without typed accessor
+     * 
+     * @param columnIndex
+     *            : column ordinal
+     * @param value
+     *            : column value, not NULL
+     */
+    void putObject(int columnIndex, Object value);
+}
@@ -0,0 +1,85 @@
+package org.nds.dbdroid.helper;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Differences between the schema of a table stored by a previous generation and the schema of its entity (see
+ * {@link TableSchema#diff(TableSchema)}).
+ */
+public final class SchemaDiff {
+
+    private final String tableName;
+
+    private final boolean newTable;
+
+    private final List<String> addedColumns;
+
+    private final List<String> droppedColumns;
+
+    private final List<String> changedColumns;
+
+    SchemaDiff(String tableName, boolean newTable, List<String> addedColumns, List<String> droppedColumns, List<String> changedColumns) {
+        this.tableName = tableName;
+        this.newTable = newTable;
+        this.addedColumns = Collections.unmodifiableList(addedColumns);
+        this.droppedColumns = Collections.unmodifiableList(droppedColumns);
+        this.changedColumns = Collections.unmodifiableList(changedColumns);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Returns <code>true</code> if no schema was stored for the table: the table may not exist, or may have been created before the schemas were
+     * stored.
+     *
+     * @return <code>true</code> if the previous schema is unknown
+     */
+    public boolean isNewTable() {
+        return newTable;
+    }
+
+    /**
+     * Returns the columns of the entity which are not in the previous schema (all the columns for a new table)
+     *
+     * @return added column names
+     */
+    public List<String> getAddedColumns() {
+        return addedColumns;
+    }
+
+    /**
+     * Returns the columns of the previous schema which are not in the entity anymore
+     *
+     * @return dropped column names
+     */
+    public List<String> getDroppedColumns() {
+        return droppedColumns;
+    }
+
+    /**
+     * Returns the columns whose type changed, or which became the id column
+     *
+     * @return changed column names
+     */
+    public List<String> getChangedColumns() {
+        return changedColumns;
+    }
+
+    /**
+     * Returns <code>true</code> if the table does not need to be updated
+     *
+     * @return <code>true</code> if there is no difference
+     */
+    public boolean isEmpty() {
+        return !newTable && addedColumns.isEmpty() && droppedColumns.isEmpty() && changedColumns.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaDiff[" + tableName + (newTable ? ", new table" : "") + ", added=" + addedColumns + ", dropped=" + droppedColumns + ", changed="
+                + changedColumns + "]";
+    }
+}
@@ -0,0 +1,81 @@
+package org.nds.dbdroid.helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a SQL script into queries (see the property <code>dbdroid.script</code> and the migrations).<br/>
+ * The empty lines and the lines starting with <code>--</code>, <code>//</code> or <code>#</code> are skipped. A query ends with <code>;</code>, or
+ * with a line ending with <code>/</code>.
+ */
+public final class ScriptParser {
+
+    private ScriptParser() {
+    }
+
+    /**
+     * Reads the queries of a script
+     *
+     * @param script
+     *            : reader on the script, not closed by this method
+     * @return the queries, in the order of the script
+     * @throws IOException
+     *             if the script cannot be read
+     */
+    public static List<String> parse(Reader script) throws IOException {
+        List<String> queries = new ArrayList<String>();
+        BufferedReader reader = script instanceof BufferedReader ? (BufferedReader) script : new BufferedReader(script);
+
+        String line;
+        String query = "";
+        while ((line = reader.readLine()) != null) {
+            // Skip empty lines
+            if (line.trim().equals("")) {
+                continue;
+            }
+
+            // Skip comments
+            if (line.startsWith("--") || line.startsWith("//") || line.startsWith("#")) {
+                continue;
+            }
+
+            query += " " + line;
+
+            if (query.endsWith("/")) { // complete command
+                query = query.replace('/', ' '); // Remove the '/' since
+                                                 // jdbc complains
+                queries.add(replaceArguments(query, (String[]) null));
+                query = "";
+            } else if (query.contains(";")) { // One or several complete
+                                              // query(ies)
+                String[] q = query.split(";");
+                // Loop on different queries
+                for (int i = 0; i < (q.length - 1); i++) {
+                    queries.add(replaceArguments(q[i], (String[]) null));
+                }
+                // Check if the line ends with
+                if (query.endsWith(";")) {
+                    queries.add(replaceArguments(q[q.length - 1], (String[]) null));
+                    query = "";
+                } else {
+                    query = q[q.length - 1];
+                }
+            }
+        }
+        return queries;
+    }
+
+    private static String replaceArguments(String sqlQuery, String... args) {
+        String query = sqlQuery;
+        if (args != null) {
+            for (int a = 0; a < args.length; a++) {
+                query = query.replace("&" + (a + 1), args[a]);
+            }
+        }
+
+        return query;
+    }
+}
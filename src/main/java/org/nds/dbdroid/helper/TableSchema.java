@@ -0,0 +1,211 @@
+package org.nds.dbdroid.helper;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nds.dbdroid.type.DbDroidType;
+
+/**
+ * Schema of a table generated from an {@link org.nds.dbdroid.annotation.Entity}: the columns with their types and the id column.<br/>
+ * The schema is stored by the database engine as a descriptor string (see {@link #getDescriptor()}), so that the next generation in update mode
+ * can compare it with the entity metadata and update only the tables whose columns changed (see {@link #diff(TableSchema)}).
+ */
+public final class TableSchema {
+
+    private static final char COLUMN_SEPARATOR = ';';
+
+    private static final char TYPE_SEPARATOR = ':';
+
+    private static final String ID_MARKER = "ID";
+
+    private final String tableName;
+
+    /** Column name → type name */
+    private final Map<String, String> columns;
+
+    private final String idColumn;
+
+    private final String descriptor;
+
+    private String fingerprint;
+
+    private TableSchema(String tableName, Map<String, String> columns, String idColumn) {
+        this.tableName = tableName;
+        this.columns = columns;
+        this.idColumn = idColumn;
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(COLUMN_SEPARATOR);
+            }
+            sb.append(column.getKey()).append(TYPE_SEPARATOR).append(column.getValue());
+            if (column.getKey().equals(idColumn)) {
+                sb.append(TYPE_SEPARATOR).append(ID_MARKER);
+            }
+        }
+        this.descriptor = sb.toString();
+    }
+
+    /**
+     * Returns the schema of the table of the entity class in argument
+     *
+     * @param tableName
+     *            : table name
+     * @param entityClass
+     *            : {@link org.nds.dbdroid.annotation.Entity} class
+     * @return the table schema
+     */
+    public static TableSchema forEntity(String tableName, Class<?> entityClass) {
+        EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        for (int i = 0; i < metadata.getColumnCount(); i++) {
+            DbDroidType type = metadata.getColumnType(i);
+            columns.put(metadata.getColumnName(i), type != null ? type.name() : EntityHelper.getValueType(metadata.getField(i)).getName());
+        }
+        int idIndex = metadata.getIdColumnIndex();
+        return new TableSchema(tableName, columns, idIndex >= 0 ? metadata.getColumnName(idIndex) : null);
+    }
+
+    /**
+     * Returns the schema described by the descriptor in argument
+     *
+     * @param tableName
+     *            : table name
+     * @param descriptor
+     *            : descriptor returned by {@link #getDescriptor()}
+     * @return the table schema, or <code>null</code> if the descriptor is <code>null</code>
+     */
+    public static TableSchema parse(String tableName, String descriptor) {
+        if (descriptor == null) {
+            return null;
+        }
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        String idColumn = null;
+        for (String column : descriptor.split(String.valueOf(COLUMN_SEPARATOR))) {
+            if (column.length() == 0) {
+                continue;
+            }
+            String[] parts = column.split(String.valueOf(TYPE_SEPARATOR));
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Invalid schema descriptor for the table " + tableName + ": " + descriptor);
+            }
+            columns.put(parts[0], parts[1]);
+            if (parts.length > 2 && ID_MARKER.equals(parts[2])) {
+                idColumn = parts[0];
+            }
+        }
+        return new TableSchema(tableName, columns, idColumn);
+    }
+
+    /**
+     * Returns the differences between the schema in argument, stored by a previous generation, and this schema
+     *
+     * @param previous
+     *            : previous schema, or <code>null</code> if the table was not generated
+     * @return the differences, empty if the schemas are identical
+     */
+    public SchemaDiff diff(TableSchema previous) {
+        if (previous == null) {
+            return new SchemaDiff(tableName, true, new ArrayList<String>(columns.keySet()), Collections.<String> emptyList(),
+                    Collections.<String> emptyList());
+        }
+        if (previous.getFingerprint().equals(getFingerprint())) {
+            return new SchemaDiff(tableName, false, Collections.<String> emptyList(), Collections.<String> emptyList(),
+                    Collections.<String> emptyList());
+        }
+
+        List<String> added = new ArrayList<String>();
+        List<String> changed = new ArrayList<String>();
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            String previousType = previous.columns.get(column.getKey());
+            if (previousType == null) {
+                added.add(column.getKey());
+            } else if (!previousType.equals(column.getValue())) {
+                changed.add(column.getKey());
+            }
+        }
+        if (idColumn != null && !idColumn.equals(previous.idColumn) && !changed.contains(idColumn) && !added.contains(idColumn)) {
+            changed.add(idColumn);
+        }
+        List<String> dropped = new ArrayList<String>();
+        for (String column : previous.columns.keySet()) {
+            if (!columns.containsKey(column)) {
+                dropped.add(column);
+            }
+        }
+        return new SchemaDiff(tableName, false, added, dropped, changed);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Returns the column names, in the order of the entity fields
+     *
+     * @return column names
+     */
+    public List<String> getColumnNames() {
+        return new ArrayList<String>(columns.keySet());
+    }
+
+    /**
+     * Returns the type of a column: the name of its {@link DbDroidType}, or the java type name for the types without {@link DbDroidType}
+     *
+     * @param columnName
+     *            : column name
+     * @return the column type, or <code>null</code> if the column does not exist
+     */
+    public String getColumnType(String columnName) {
+        return columns.get(columnName);
+    }
+
+    public String getIdColumn() {
+        return idColumn;
+    }
+
+    /**
+     * Returns the string to store to describe this schema
+     *
+     * @return the descriptor
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Returns the SHA-1 hash of the descriptor, as a hexadecimal string
+     *
+     * @return the fingerprint
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-1").digest(descriptor.getBytes("UTF-8"));
+                StringBuilder sb = new StringBuilder(hash.length * 2);
+                for (byte b : hash) {
+                    sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                fingerprint = sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                // Every platform supports SHA-1: compare the descriptors
+                fingerprint = descriptor;
+            } catch (UnsupportedEncodingException e) {
+                fingerprint = descriptor;
+            }
+        }
+        return fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        return tableName + "(" + descriptor + ")";
+    }
+}
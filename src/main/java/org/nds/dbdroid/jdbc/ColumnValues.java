@@ -0,0 +1,76 @@
+package org.nds.dbdroid.jdbc;
+
+import org.nds.dbdroid.helper.RowWriter;
+
+/**
+ * {@link RowWriter} collecting the values of the columns to write, by column ordinal. The columns not written (NULL id, lazy value not loaded) are
+ * left out of the statements.
+ */
+final class ColumnValues implements RowWriter {
+
+    private final Object[] values;
+
+    private final boolean[] written;
+
+    ColumnValues(int columnCount) {
+        this.values = new Object[columnCount];
+        this.written = new boolean[columnCount];
+    }
+
+    boolean isWritten(int columnIndex) {
+        return written[columnIndex];
+    }
+
+    Object getValue(int columnIndex) {
+        return values[columnIndex];
+    }
+
+    int getColumnCount() {
+        return values.length;
+    }
+
+    private void put(int columnIndex, Object value) {
+        values[columnIndex] = value;
+        written[columnIndex] = true;
+    }
+
+    public void putNull(int columnIndex) {
+        put(columnIndex, null);
+    }
+
+    public void putString(int columnIndex, String value) {
+        put(columnIndex, value);
+    }
+
+    public void putBoolean(int columnIndex, boolean value) {
+        put(columnIndex, Boolean.valueOf(value));
+    }
+
+    public void putShort(int columnIndex, short value) {
+        put(columnIndex, Short.valueOf(value));
+    }
+
+    public void putInt(int columnIndex, int value) {
+        put(columnIndex, Integer.valueOf(value));
+    }
+
+    public void putLong(int columnIndex, long value) {
+        put(columnIndex, Long.valueOf(value));
+    }
+
+    public void putFloat(int columnIndex, float value) {
+        put(columnIndex, Float.valueOf(value));
+    }
+
+    public void putDouble(int columnIndex, double value) {
+        put(columnIndex, Double.valueOf(value));
+    }
+
+    public void putBlob(int columnIndex, byte[] value) {
+        put(columnIndex, value);
+    }
+
+    public void putObject(int columnIndex, Object value) {
+        put(columnIndex, value);
+    }
+}
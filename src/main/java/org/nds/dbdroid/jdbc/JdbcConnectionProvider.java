@@ -0,0 +1,88 @@
+package org.nds.dbdroid.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.nds.dbdroid.connection.PooledConnectionProvider;
+
+/**
+ * {@link PooledConnectionProvider} of JDBC connections opened with the {@link DriverManager}.<br/>
+ * The reader connections are read-only. The writer connection is in auto-commit mode: the batches are written in their own transaction by the
+ * {@link JdbcDataBaseManager}.<br/>
+ * Each connection is a separate session: with an in-memory database, the URL must name a database shared by the connections (ex:
+ * <code>jdbc:h2:mem:name;DB_CLOSE_DELAY=-1</code>).
+ */
+public class JdbcConnectionProvider extends PooledConnectionProvider<Connection> {
+
+    private final String url;
+
+    private final String user;
+
+    private final String password;
+
+    /**
+     * Creates a provider
+     *
+     * @param url
+     *            : JDBC URL of the database
+     * @param user
+     *            : database user, or <code>null</code>
+     * @param password
+     *            : user password, or <code>null</code>
+     * @param maxReaders
+     *            : maximum number of reader connections
+     */
+    public JdbcConnectionProvider(String url, String user, String password, int maxReaders) {
+        super(maxReaders);
+        if (url == null) {
+            throw new IllegalArgumentException("url must not be null");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    @Override
+    protected Connection openReader() {
+        Connection connection = openConnection();
+        try {
+            connection.setReadOnly(true);
+        } catch (SQLException e) {
+            closeConnection(connection);
+            throw new IllegalStateException("Cannot open a reader connection to " + url + ": " + e.getMessage(), e);
+        }
+        return connection;
+    }
+
+    @Override
+    protected Connection openWriter() {
+        return openConnection();
+    }
+
+    /**
+     * Opens a connection to the database
+     *
+     * @return the new connection
+     */
+    protected Connection openConnection() {
+        try {
+            return user != null ? DriverManager.getConnection(url, user, password) : DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open a connection to " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void closeConnection(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot close the connection to " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
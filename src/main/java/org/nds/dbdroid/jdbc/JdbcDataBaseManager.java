@@ -0,0 +1,1411 @@
+package org.nds.dbdroid.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
+import org.apache.commons.lang.ClassUtils;
+import org.nds.dbdroid.DataBaseManager;
+import org.nds.dbdroid.connection.ConnectionProvider;
+import org.nds.dbdroid.exception.DBDroidException;
+import org.nds.dbdroid.helper.EntityHelper;
+import org.nds.dbdroid.helper.EntityMetadata;
+import org.nds.dbdroid.helper.SchemaDiff;
+import org.nds.dbdroid.migration.Migration;
+import org.nds.dbdroid.query.AggregateFunction;
+import org.nds.dbdroid.query.Expression;
+import org.nds.dbdroid.query.LogicalOperator;
+import org.nds.dbdroid.query.Operator;
+import org.nds.dbdroid.query.Query;
+import org.nds.dbdroid.query.QueryValueResolver;
+import org.nds.dbdroid.type.DataType;
+import org.nds.dbdroid.type.DbDroidType;
+import org.nds.logging.Logger;
+import org.nds.logging.LoggerFactory;
+
+/**
+ * {@link DataBaseManager} on a JDBC database, for the JVM deployments sharing the entities of the Android clients.<br/>
+ * The tables are generated from the entity metadata, with the SQL types of {@link #createSqlTypes()}. The values are bound as parameters of
+ * prepared statements, and the entities written by {@link #onSaveOrUpdateAll(List)} (write-behind mode) are sent in batches, in one transaction.
+ * <br/>
+ * The connections are provided by a {@link ConnectionProvider} of {@link Connection} objects (by default a {@link JdbcConnectionProvider}), which
+ * is closed with the manager. The generated SQL is standard (H2, HSQLDB, PostgreSQL...): the subclasses adapt it to other engines by overriding
+ * {@link #createSqlTypes()}, {@link #getColumnDefinition(String, String, boolean, Class)} and {@link #appendLimit(StringBuilder, int, int)}.
+ */
+public class JdbcDataBaseManager extends DataBaseManager {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcDataBaseManager.class);
+
+    private static final int DEFAULT_MAX_READERS = 4;
+
+    private static final String SCHEMA_TABLE = "DBDROID_SCHEMA";
+
+    private static final String MIGRATIONS_TABLE = "DBDROID_MIGRATIONS";
+
+    private final QueryValueResolver queryValueResolver = new JdbcQueryValueResolver();
+
+    private final ConcurrentMap<Class<?>, TableMapping> mappings = new ConcurrentHashMap<Class<?>, TableMapping>();
+
+    private DataType dataType;
+
+    /** DDL statements of the current transaction, executed in one batch before the commit */
+    private List<String> ddlBatch;
+
+    /**
+     * Creates a manager opening its connections with the {@link java.sql.DriverManager}
+     *
+     * @param config
+     *            : XML configuration
+     * @param url
+     *            : JDBC URL of the database
+     * @param user
+     *            : database user, or <code>null</code>
+     * @param password
+     *            : user password, or <code>null</code>
+     */
+    public JdbcDataBaseManager(InputStream config, String url, String user, String password) {
+        this(config, new JdbcConnectionProvider(url, user, password, DEFAULT_MAX_READERS));
+    }
+
+    /**
+     * Creates a manager using the connections of the provider in argument
+     *
+     * @param config
+     *            : XML configuration
+     * @param connectionProvider
+     *            : provider of the JDBC connections
+     */
+    public JdbcDataBaseManager(InputStream config, ConnectionProvider<Connection> connectionProvider) {
+        super(config);
+        if (connectionProvider == null) {
+            throw new IllegalArgumentException("connectionProvider must not be null");
+        }
+        setConnectionProvider(connectionProvider);
+    }
+
+    @Override
+    public void onOpen() throws DBDroidException {
+        log.debug("JDBC database opened");
+    }
+
+    @Override
+    public void onClose() throws DBDroidException {
+        // The connections are closed with the connection provider
+        log.debug("JDBC database closed");
+    }
+
+    /**
+     * Returns the connection of the current operation
+     *
+     * @return the JDBC connection
+     */
+    protected final Connection getConnection() {
+        Connection connection = getCurrentConnection();
+        if (connection == null) {
+            throw new IllegalStateException("No connection: the operations must be called through the DataBaseManager methods");
+        }
+        return connection;
+    }
+
+    /**
+     * Returns the SQL types of the DbDroidTypes, used to create the tables.
+     *
+     * @return SQL type of each {@link DbDroidType}
+     */
+    protected Map<DbDroidType, String> createSqlTypes() {
+        Map<DbDroidType, String> sqlTypes = new EnumMap<DbDroidType, String>(DbDroidType.class);
+        sqlTypes.put(DbDroidType.BOOLEAN, "BOOLEAN");
+        sqlTypes.put(DbDroidType.LONG, "BIGINT");
+        sqlTypes.put(DbDroidType.SHORT, "SMALLINT");
+        sqlTypes.put(DbDroidType.INTEGER, "INTEGER");
+        sqlTypes.put(DbDroidType.BYTE, "TINYINT");
+        sqlTypes.put(DbDroidType.FLOAT, "REAL");
+        sqlTypes.put(DbDroidType.DOUBLE, "DOUBLE");
+        sqlTypes.put(DbDroidType.CHARACTER, "CHAR(1)");
+        sqlTypes.put(DbDroidType.STRING, "VARCHAR(255)");
+        sqlTypes.put(DbDroidType.TIMESTAMP, "TIMESTAMP");
+        sqlTypes.put(DbDroidType.TIME, "TIME");
+        sqlTypes.put(DbDroidType.DATE, "DATE");
+        sqlTypes.put(DbDroidType.BIG_DECIMAL, "DECIMAL(38,10)");
+        sqlTypes.put(DbDroidType.BIG_INTEGER, "DECIMAL(38,0)");
+        sqlTypes.put(DbDroidType.LOCALE, "VARCHAR(32)");
+        sqlTypes.put(DbDroidType.CALENDAR, "TIMESTAMP");
+        sqlTypes.put(DbDroidType.TIMEZONE, "VARCHAR(64)");
+        sqlTypes.put(DbDroidType.CLASS, "VARCHAR(255)");
+        sqlTypes.put(DbDroidType.BINARY, "BLOB");
+        sqlTypes.put(DbDroidType.WRAPPER_BINARY, "BLOB");
+        sqlTypes.put(DbDroidType.CHAR_ARRAY, "CLOB");
+        sqlTypes.put(DbDroidType.CHARACTER_ARRAY, "CLOB");
+        sqlTypes.put(DbDroidType.BLOB, "BLOB");
+        sqlTypes.put(DbDroidType.CLOB, "CLOB");
+        return sqlTypes;
+    }
+
+    @Override
+    public synchronized DataType getDataType() {
+        if (dataType == null) {
+            dataType = new DataType(createSqlTypes());
+        }
+        return dataType;
+    }
+
+    @Override
+    protected QueryValueResolver getQueryValueResolver() {
+        return queryValueResolver;
+    }
+
+    @Override
+    protected void onCheckEntity(Class<?> entityClass) throws DBDroidException {
+        EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+        if (metadata.getIdColumnIndex() < 0) {
+            throw new DBDroidException("No id column for the entity " + entityClass.getName());
+        }
+        for (Field field : metadata.getFields()) {
+            if (getSqlType(field) == null) {
+                throw new DBDroidException("No SQL type for the field '" + field.getName() + "' of the entity " + entityClass.getName());
+            }
+        }
+    }
+
+    @Override
+    protected void onCreateTable(String tableName, Field[] fields) throws DBDroidException {
+        StringBuilder sql = new StringBuilder("CREATE TABLE ").append(tableName).append(" (");
+        Field idField = getIdField(tableName);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(getColumnDefinition(fields[i], fields[i].equals(idField)));
+        }
+        sql.append(')');
+
+        try {
+            executeDdl(sql.toString());
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot create the table " + tableName, e);
+        }
+    }
+
+    /**
+     * Creates the table if it does not exist, else adds the missing columns. The columns without field are kept.
+     */
+    @Override
+    protected void onUpdateTable(String tableName, Field[] fields) throws DBDroidException {
+        try {
+            Set<String> columns = getTableColumns(tableName);
+            if (columns.isEmpty()) {
+                onCreateTable(tableName, fields);
+                return;
+            }
+            Field idField = getIdField(tableName);
+            for (Field field : fields) {
+                String columnName = EntityHelper.getColumnName(field);
+                if (!columns.contains(columnName.toUpperCase(Locale.ENGLISH))) {
+                    executeDdl("ALTER TABLE " + tableName + " ADD COLUMN " + getColumnDefinition(field, field.equals(idField)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot update the table " + tableName, e);
+        }
+    }
+
+    /**
+     * Adds the columns added since the previous generation. The dropped columns are kept with their data, and the columns whose type changed are
+     * not migrated.
+     */
+    @Override
+    protected void onUpdateTable(String tableName, Field[] fields, SchemaDiff diff) throws DBDroidException {
+        if (diff.isNewTable()) {
+            // The table may have been created before the schemas were stored
+            onUpdateTable(tableName, fields);
+            return;
+        }
+        Field idField = getIdField(tableName);
+        try {
+            // The stored schema may be behind the table (failed generation)
+            Set<String> columns = getTableColumns(tableName);
+            for (String columnName : diff.getAddedColumns()) {
+                if (columns.contains(columnName.toUpperCase(Locale.ENGLISH))) {
+                    continue;
+                }
+                for (Field field : fields) {
+                    if (columnName.equals(EntityHelper.getColumnName(field))) {
+                        executeDdl("ALTER TABLE " + tableName + " ADD COLUMN " + getColumnDefinition(field, field.equals(idField)));
+                        break;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot update the table " + tableName, e);
+        }
+        if (!diff.getDroppedColumns().isEmpty()) {
+            log.info("Columns without field kept in the table " + tableName + ": " + diff.getDroppedColumns());
+        }
+        if (!diff.getChangedColumns().isEmpty()) {
+            log.warn("Columns of the table " + tableName + " whose type changed, not migrated: " + diff.getChangedColumns());
+        }
+    }
+
+    /**
+     * Reads the schemas stored in the table DBDROID_SCHEMA
+     */
+    @Override
+    protected Map<String, String> onReadSchemas() throws DBDroidException {
+        Map<String, String> schemas = new HashMap<String, String>();
+        String sql = "SELECT TABLE_NAME, DESCRIPTOR FROM " + SCHEMA_TABLE;
+        try {
+            if (getTableColumns(SCHEMA_TABLE).isEmpty()) {
+                return schemas;
+            }
+            PreparedStatement ps = prepare(sql);
+            try {
+                ResultSet rs = ps.executeQuery();
+                try {
+                    while (rs.next()) {
+                        schemas.put(rs.getString(1), rs.getString(2));
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot read the table schemas", e);
+        }
+        return schemas;
+    }
+
+    @Override
+    protected void onWriteSchemas(Map<String, String> schemas) throws DBDroidException {
+        Connection connection = getConnection();
+        try {
+            flushDdl();
+            if (getTableColumns(SCHEMA_TABLE).isEmpty()) {
+                execute("CREATE TABLE " + SCHEMA_TABLE + " (TABLE_NAME VARCHAR(255) PRIMARY KEY, DESCRIPTOR CLOB)");
+            }
+            // Joins the current transaction, if any
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                execute("DELETE FROM " + SCHEMA_TABLE);
+                PreparedStatement ps = prepare("INSERT INTO " + SCHEMA_TABLE + " (TABLE_NAME, DESCRIPTOR) VALUES (?, ?)");
+                try {
+                    for (Map.Entry<String, String> schema : schemas.entrySet()) {
+                        ps.setString(1, schema.getKey());
+                        ps.setString(2, schema.getValue());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                } finally {
+                    ps.close();
+                }
+                if (autoCommit) {
+                    connection.commit();
+                }
+            } catch (SQLException e) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot write the table schemas", e);
+        }
+    }
+
+    /**
+     * Reads the migrations recorded in the table DBDROID_MIGRATIONS, created if needed
+     */
+    @Override
+    protected Map<String, Long> onReadAppliedMigrations() throws DBDroidException {
+        Map<String, Long> migrations = new HashMap<String, Long>();
+        String sql = "SELECT VERSION, CHECKSUM FROM " + MIGRATIONS_TABLE;
+        try {
+            if (getTableColumns(MIGRATIONS_TABLE).isEmpty()) {
+                execute("CREATE TABLE " + MIGRATIONS_TABLE
+                        + " (VERSION VARCHAR(64) PRIMARY KEY, DESCRIPTION VARCHAR(255), CHECKSUM BIGINT, APPLIED_ON TIMESTAMP)");
+                return migrations;
+            }
+            PreparedStatement ps = prepare(sql);
+            try {
+                ResultSet rs = ps.executeQuery();
+                try {
+                    while (rs.next()) {
+                        migrations.put(rs.getString(1), Long.valueOf(rs.getLong(2)));
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot read the applied migrations", e);
+        }
+        return migrations;
+    }
+
+    @Override
+    protected void onMigrationApplied(Migration migration) throws DBDroidException {
+        String sql = "INSERT INTO " + MIGRATIONS_TABLE + " (VERSION, DESCRIPTION, CHECKSUM, APPLIED_ON) VALUES (?, ?, ?, ?)";
+        try {
+            PreparedStatement ps = prepare(sql);
+            try {
+                ps.setString(1, migration.getVersion());
+                ps.setString(2, migration.getDescription());
+                ps.setLong(3, migration.getChecksum());
+                ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                ps.executeUpdate();
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot record the migration " + migration, e);
+        }
+    }
+
+    /**
+     * Disables the auto-commit mode of the current connection. The DDL statements of the table generation are executed in one batch, before the
+     * commit. Depending on the engine, the DDL statements may commit the transaction.
+     */
+    @Override
+    protected void onBeginTransaction() throws DBDroidException {
+        try {
+            getConnection().setAutoCommit(false);
+            ddlBatch = new ArrayList<String>();
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot begin a transaction", e);
+        }
+    }
+
+    @Override
+    protected void onCommit() throws DBDroidException {
+        Connection connection = getConnection();
+        try {
+            flushDdl();
+            connection.commit();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot commit the transaction", e);
+        } finally {
+            ddlBatch = null;
+        }
+    }
+
+    @Override
+    protected void onRollback() throws DBDroidException {
+        ddlBatch = null;
+        Connection connection = getConnection();
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot roll back the transaction", e);
+        }
+    }
+
+    @Override
+    protected void onResetTable(String tableName, Field[] fields) throws DBDroidException {
+        try {
+            executeDdl("DROP TABLE IF EXISTS " + tableName);
+        } catch (SQLException e) {
+            throw new DBDroidException("Cannot drop the table " + tableName, e);
+        }
+        onCreateTable(tableName, fields);
+    }
+
+    /**
+     * Returns the definition of a column in a CREATE TABLE or ALTER TABLE statement.<br/>
+     * By default, an integer id column is an identity column generated by default (SQL:2003).
+     *
+     * @param columnName
+     *            : column name
+     * @param sqlType
+     *            : SQL type of the column (see {@link #createSqlTypes()})
+     * @param id
+     *            : <code>true</code> for the id column
+     * @param valueType
+     *            : java type of the column values
+     * @return the column definition
+     */
+    protected String getColumnDefinition(String columnName, String sqlType, boolean id, Class<?> valueType) {
+        StringBuilder definition = new StringBuilder(columnName).append(' ').append(sqlType);
+        if (id) {
+            Class<?> type = valueType.isPrimitive() ? ClassUtils.primitiveToWrapper(valueType) : valueType;
+            if (Long.class.equals(type) || Integer.class.equals(type) || Short.class.equals(type)) {
+                definition.append(" GENERATED BY DEFAULT AS IDENTITY");
+            }
+            definition.append(" PRIMARY KEY");
+        }
+        return definition.toString();
+    }
+
+    private String getColumnDefinition(Field field, boolean id) {
+        return getColumnDefinition(EntityHelper.getColumnName(field), getSqlType(field), id, EntityHelper.getValueType(field));
+    }
+
+    /**
+     * Returns the SQL type of the field in argument, or <code>null</code> if the field type is not mapped
+     */
+    private String getSqlType(Field field) {
+        return getDataType().getMappedType(EntityHelper.getValueType(field));
+    }
+
+    private Field getIdField(String tableName) {
+        Class<?> entityClass = getEntityFromTableName(tableName);
+        return entityClass != null ? EntityMetadata.forClass(entityClass).getIdField() : null;
+    }
+
+    /**
+     * Returns the upper case names of the columns of the table, or an empty set if the table does not exist
+     */
+    private Set<String> getTableColumns(String tableName) throws SQLException {
+        Set<String> columns = new HashSet<String>();
+        DatabaseMetaData metaData = getConnection().getMetaData();
+        // The engines store the unquoted names in upper or lower case
+        String[] names = { tableName, tableName.toUpperCase(Locale.ENGLISH), tableName.toLowerCase(Locale.ENGLISH) };
+        for (int i = 0; i < names.length && columns.isEmpty(); i++) {
+            ResultSet rs = metaData.getColumns(null, null, names[i], null);
+            try {
+                while (rs.next()) {
+                    columns.add(rs.getString("COLUMN_NAME").toUpperCase(Locale.ENGLISH));
+                }
+            } finally {
+                rs.close();
+            }
+        }
+        return columns;
+    }
+
+    @Override
+    protected void onDelete(Object entity) {
+        TableMapping mapping = getMapping(entity.getClass());
+        Object id = EntityHelper.readField(mapping.metadata.getIdField(), entity);
+        if (id == null) {
+            return;
+        }
+        String sql = "DELETE FROM " + mapping.tableName + " WHERE " + mapping.idColumn + " = ?";
+        try {
+            PreparedStatement ps = prepare(sql);
+            try {
+                bind(ps, 1, id, mapping.idType);
+                ps.executeUpdate();
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+    }
+
+    @Override
+    protected <E> List<E> onFindAll(Class<E> entityClass) {
+        TableMapping mapping = getMapping(entityClass);
+        String sql = "SELECT " + mapping.selectList + " FROM " + mapping.tableName;
+        return queryEntities(entityClass, mapping, sql, new ArrayList<Object>(0), 0);
+    }
+
+    @Override
+    protected <E> E onFindById(Serializable id, Class<E> entityClass) {
+        TableMapping mapping = getMapping(entityClass);
+        String sql = "SELECT " + mapping.selectList + " FROM " + mapping.tableName + " WHERE " + mapping.idColumn + " = ?";
+        List<Object> parameters = new ArrayList<Object>(1);
+        parameters.add(id);
+        List<E> entities = queryEntities(entityClass, mapping, sql, parameters, 1);
+        return entities.isEmpty() ? null : entities.get(0);
+    }
+
+    /**
+     * Updates the row of the entity if it has an id, else inserts it and writes the generated id in the entity. The update writes only the columns
+     * modified since the entity was loaded or saved, when the dirty checking is enabled and the entity is tracked.
+     */
+    @Override
+    protected <E> E onSaveOrUpdate(E entity) {
+        TableMapping mapping = getMapping(entity.getClass());
+        ColumnValues values = mapping.write(entity);
+        String sql = null;
+        try {
+            if (values.isWritten(mapping.metadata.getIdColumnIndex())) {
+                int[] columns = mapping.getUpdateColumns(values, getDirtyColumnIndexes(entity));
+                sql = mapping.getUpdateSql(columns);
+                PreparedStatement ps = prepare(sql);
+                try {
+                    bindUpdate(ps, mapping, values, columns);
+                    if (ps.executeUpdate() > 0) {
+                        return entity;
+                    }
+                } finally {
+                    ps.close();
+                }
+            }
+            sql = mapping.getInsertSql(values);
+            PreparedStatement ps = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            try {
+                bindInsert(ps, mapping, values);
+                ps.executeUpdate();
+                if (!values.isWritten(mapping.metadata.getIdColumnIndex())) {
+                    readGeneratedId(ps, mapping, entity);
+                }
+            } finally {
+                ps.close();
+            }
+            return entity;
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+    }
+
+    /**
+     * Writes the entities in one transaction: the updates, then the inserts of the rows not found, are sent in batches of identical statements
+     * (the updates are grouped by set of modified columns, see {@link #onSaveOrUpdate(Object)}). The entities without id are inserted one by one to
+     * read their generated id.
+     */
+    @Override
+    protected List<Object> onSaveOrUpdateAll(List<Object> entities) {
+        Connection connection = getConnection();
+        String sql = null;
+        try {
+            // Joins the current transaction, if any
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                // Rows with id, grouped by UPDATE statement
+                Map<String, List<Row>> updates = new LinkedHashMap<String, List<Row>>();
+                for (Object entity : entities) {
+                    TableMapping mapping = getMapping(entity.getClass());
+                    ColumnValues values = mapping.write(entity);
+                    if (values.isWritten(mapping.metadata.getIdColumnIndex())) {
+                        int[] columns = mapping.getUpdateColumns(values, getDirtyColumnIndexes(entity));
+                        addRow(updates, mapping.getUpdateSql(columns), new Row(mapping, values, columns));
+                    } else {
+                        onSaveOrUpdate(entity);
+                    }
+                }
+
+                // Rows not found: inserted with their id
+                Map<String, List<Row>> inserts = new LinkedHashMap<String, List<Row>>();
+                for (Map.Entry<String, List<Row>> group : updates.entrySet()) {
+                    sql = group.getKey();
+                    List<Row> rows = group.getValue();
+                    int[] counts = executeBatch(sql, rows, true);
+                    for (int i = 0; i < counts.length; i++) {
+                        // SUCCESS_NO_INFO: the driver does not report the count, the row is supposed to exist
+                        if (counts[i] == 0) {
+                            Row row = rows.get(i);
+                            addRow(inserts, row.mapping.getInsertSql(row.values), row);
+                        }
+                    }
+                }
+                for (Map.Entry<String, List<Row>> group : inserts.entrySet()) {
+                    sql = group.getKey();
+                    executeBatch(sql, group.getValue(), false);
+                }
+
+                if (autoCommit) {
+                    connection.commit();
+                }
+            } catch (SQLException e) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+        return entities;
+    }
+
+    private static void addRow(Map<String, List<Row>> groups, String sql, Row row) {
+        List<Row> group = groups.get(sql);
+        if (group == null) {
+            group = new ArrayList<Row>();
+            groups.put(sql, group);
+        }
+        group.add(row);
+    }
+
+    private int[] executeBatch(String sql, List<Row> rows, boolean update) throws SQLException {
+        PreparedStatement ps = prepare(sql);
+        try {
+            for (Row row : rows) {
+                if (update) {
+                    bindUpdate(ps, row.mapping, row.values, row.updateColumns);
+                } else {
+                    bindInsert(ps, row.mapping, row.values);
+                }
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        } finally {
+            ps.close();
+        }
+    }
+
+    private void bindUpdate(PreparedStatement ps, TableMapping mapping, ColumnValues values, int[] columns) throws SQLException {
+        int parameter = 1;
+        for (int column : columns) {
+            bind(ps, parameter++, values.getValue(column), mapping.metadata.getColumnType(column));
+        }
+        bind(ps, parameter, values.getValue(mapping.metadata.getIdColumnIndex()), mapping.idType);
+    }
+
+    private void bindInsert(PreparedStatement ps, TableMapping mapping, ColumnValues values) throws SQLException {
+        int parameter = 1;
+        for (int i = 0; i < values.getColumnCount(); i++) {
+            if (values.isWritten(i)) {
+                bind(ps, parameter++, values.getValue(i), mapping.metadata.getColumnType(i));
+            }
+        }
+    }
+
+    private void readGeneratedId(PreparedStatement ps, TableMapping mapping, Object entity) throws SQLException {
+        ResultSet rs = ps.getGeneratedKeys();
+        try {
+            if (rs.next()) {
+                EntityHelper.writeField(mapping.metadata.getIdField(), rs.getObject(1), entity);
+            }
+        } finally {
+            rs.close();
+        }
+    }
+
+    @Override
+    protected void onRawQuery(String query) {
+        try {
+            execute(query);
+        } catch (SQLException e) {
+            throw sqlError(query, e);
+        }
+    }
+
+    @Override
+    protected Object onLoadColumn(Class<?> entityClass, Serializable id, String columnName) {
+        TableMapping mapping = getMapping(entityClass);
+        int columnIndex = mapping.metadata.getColumnIndex(columnName);
+        String sql = "SELECT " + columnName + " FROM " + mapping.tableName + " WHERE " + mapping.idColumn + " = ?";
+        try {
+            PreparedStatement ps = prepare(sql);
+            try {
+                bind(ps, 1, id, mapping.idType);
+                ResultSet rs = ps.executeQuery();
+                try {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    Object value = mapping.metadata.getColumnType(columnIndex) == DbDroidType.BINARY ? rs.getBytes(1) : rs.getObject(1);
+                    return convert(value, EntityHelper.getValueType(mapping.metadata.getField(columnIndex)));
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+    }
+
+    /**
+     * Streams the value to the column with a single-column UPDATE: the value is not read in memory. The character columns are read from the stream
+     * in UTF-8. Requires a JDBC 4 driver.
+     */
+    @Override
+    protected void onWriteColumnStream(Class<?> entityClass, Serializable id, String columnName, InputStream value) throws IOException {
+        TableMapping mapping = getMapping(entityClass);
+        DbDroidType type = mapping.metadata.getColumnType(mapping.metadata.getColumnIndex(columnName));
+        String sql = "UPDATE " + mapping.tableName + " SET " + columnName + " = ? WHERE " + mapping.idColumn + " = ?";
+        int count;
+        try {
+            PreparedStatement ps = prepare(sql);
+            try {
+                switch (type) {
+                    case STRING:
+                    case CHAR_ARRAY:
+                    case CHARACTER_ARRAY:
+                    case CLOB:
+                        ps.setCharacterStream(1, new InputStreamReader(value, "UTF-8"));
+                        break;
+                    default:
+                        ps.setBinaryStream(1, value);
+                        break;
+                }
+                bind(ps, 2, id, mapping.idType);
+                count = ps.executeUpdate();
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+        if (count == 0) {
+            throw new IOException("No row found for " + entityClass.getName() + " with id " + id);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <E> List<E> onQueryList(Query query) {
+        Class<E> entityClass = (Class<E>) query.getEntityClass();
+        TableMapping mapping = getMapping(entityClass);
+        JdbcExpressionRenderer renderer = createParameterRenderer();
+        String sql = buildSelect(query, mapping, mapping.selectList, renderer, true);
+        return queryEntities(entityClass, mapping, sql, renderer.getParameters(), 0);
+    }
+
+    @Override
+    protected List<Object[]> onQueryTuples(Query query) {
+        TableMapping mapping = getMapping(query.getEntityClass());
+        String[] selection = query.getSelection();
+        Class<?>[] types = new Class<?>[selection.length];
+        for (int i = 0; i < selection.length; i++) {
+            types[i] = EntityHelper.getValueType(mapping.metadata.getField(mapping.metadata.getColumnIndex(selection[i])));
+        }
+
+        JdbcExpressionRenderer renderer = createParameterRenderer();
+        String sql = buildSelect(query, mapping, join(selection), renderer, true);
+        List<Object[]> tuples = new ArrayList<Object[]>();
+        try {
+            PreparedStatement ps = prepare(sql);
+            try {
+                bindAll(ps, renderer.getParameters());
+                ResultSet rs = ps.executeQuery();
+                try {
+                    while (rs.next()) {
+                        Object[] tuple = new Object[selection.length];
+                        for (int i = 0; i < tuple.length; i++) {
+                            tuple[i] = convert(rs.getObject(i + 1), types[i]);
+                        }
+                        tuples.add(tuple);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+        return tuples;
+    }
+
+    @Override
+    protected long onCount(Query query) {
+        TableMapping mapping = getMapping(query.getEntityClass());
+        JdbcExpressionRenderer renderer = createParameterRenderer();
+        String sql;
+        if (isRowSetQuery(query)) {
+            // The rows are counted after DISTINCT, GROUP BY and paging
+            String selection = query.getSelection() != null ? join(query.getSelection()) : mapping.selectList;
+            sql = "SELECT COUNT(*) FROM (" + buildSelect(query, mapping, selection, renderer, false) + ") dbdroid_rows";
+        } else {
+            sql = buildSelect(query, mapping, "COUNT(*)", renderer, false);
+        }
+        Object count = querySingleValue(sql, renderer.getParameters(), 1);
+        return count != null ? ((Number) count).longValue() : 0;
+    }
+
+    @Override
+    protected boolean onExists(Query query) {
+        if (isRowSetQuery(query)) {
+            return super.onExists(query);
+        }
+        TableMapping mapping = getMapping(query.getEntityClass());
+        JdbcExpressionRenderer renderer = createParameterRenderer();
+        String sql = buildSelect(query, mapping, "1", renderer, false);
+        return querySingleValue(sql, renderer.getParameters(), 1) != null;
+    }
+
+    @Override
+    protected Object onAggregate(Query query, AggregateFunction function, String column) {
+        if (isRowSetQuery(query)) {
+            return super.onAggregate(query, function, column);
+        }
+        TableMapping mapping = getMapping(query.getEntityClass());
+        int columnIndex = mapping.metadata.getColumnIndex(column);
+        JdbcExpressionRenderer renderer = createParameterRenderer();
+        String sql = buildSelect(query, mapping, function.name() + "(" + column + ")", renderer, false);
+        Object value = querySingleValue(sql, renderer.getParameters(), 0);
+
+        switch (function) {
+            case COUNT:
+                return Long.valueOf(value != null ? ((Number) value).longValue() : 0);
+            case SUM:
+                if (value == null) {
+                    return null;
+                }
+                DbDroidType type = mapping.metadata.getColumnType(columnIndex);
+                if (type == DbDroidType.LONG || type == DbDroidType.INTEGER || type == DbDroidType.SHORT || type == DbDroidType.BYTE) {
+                    return Long.valueOf(((Number) value).longValue());
+                }
+                return Double.valueOf(((Number) value).doubleValue());
+            case AVG:
+                return value != null ? Double.valueOf(((Number) value).doubleValue()) : null;
+            default:
+                return convert(value, EntityHelper.getValueType(mapping.metadata.getField(columnIndex)));
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the rows of the query are not the rows of the table: DISTINCT, GROUP BY or paging
+     */
+    private static boolean isRowSetQuery(Query query) {
+        return query.isDistinct() || query.getGroupBy() != null || query.getFirstRow() > 0 || query.getMaxRows() >= 0;
+    }
+
+    private String buildSelect(Query query, TableMapping mapping, String selectList, JdbcExpressionRenderer renderer, boolean ordered) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (query.isDistinct()) {
+            sql.append("DISTINCT ");
+        }
+        sql.append(selectList).append(" FROM ").append(mapping.tableName);
+
+        List<Expression> conditions = query.getOptimizedExpressions();
+        if (conditions == null) {
+            sql.append(" WHERE 1 = 0");
+        } else if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(renderer.render(conditions));
+        }
+        String groupBy = query.getGroupBy();
+        if (groupBy != null && groupBy.length() > 0) {
+            sql.append(" GROUP BY ").append(groupBy);
+            String having = query.getHaving();
+            if (having != null && having.length() > 0) {
+                sql.append(" HAVING ").append(having);
+            }
+        }
+        String orderBy = query.getOrderBy();
+        if ((ordered || query.getFirstRow() > 0 || query.getMaxRows() >= 0) && orderBy != null && orderBy.length() > 0) {
+            sql.append(" ORDER BY ").append(orderBy);
+        }
+        appendLimit(sql, query.getFirstRow(), query.getMaxRows());
+        return sql.toString();
+    }
+
+    /**
+     * Appends the paging clause of a query. By default, <code>LIMIT maxRows OFFSET firstRow</code>.
+     *
+     * @param sql
+     *            : query
+     * @param firstRow
+     *            : index of the first row, negative if not set
+     * @param maxRows
+     *            : maximum number of rows, negative if not set
+     */
+    protected void appendLimit(StringBuilder sql, int firstRow, int maxRows) {
+        if (maxRows < 0 && firstRow <= 0) {
+            return;
+        }
+        sql.append(" LIMIT ").append(maxRows >= 0 ? maxRows : Integer.MAX_VALUE);
+        if (firstRow > 0) {
+            sql.append(" OFFSET ").append(firstRow);
+        }
+    }
+
+    private JdbcExpressionRenderer createParameterRenderer() {
+        return new JdbcExpressionRenderer(this, queryValueResolver);
+    }
+
+    private <E> List<E> queryEntities(Class<E> entityClass, TableMapping mapping, String sql, List<Object> parameters, int maxRows) {
+        List<E> entities = new ArrayList<E>();
+        try {
+            PreparedStatement ps = prepare(sql);
+            try {
+                if (maxRows > 0) {
+                    ps.setMaxRows(maxRows);
+                }
+                bindAll(ps, parameters);
+                ResultSet rs = ps.executeQuery();
+                try {
+                    ResultSetRowReader reader = new ResultSetRowReader(mapping.positions);
+                    reader.setResultSet(rs);
+                    boolean timed = isMetricsEnabled();
+                    long hydrationNanos = 0;
+                    while (rs.next()) {
+                        long start = timed ? System.nanoTime() : 0;
+                        E entity = newInstance(entityClass);
+                        EntityHelper.readRow(reader, entity);
+                        entities.add(entity);
+                        if (timed) {
+                            hydrationNanos += System.nanoTime() - start;
+                        }
+                    }
+                    if (timed) {
+                        addHydrationNanos(hydrationNanos);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+        return entities;
+    }
+
+    private Object querySingleValue(String sql, List<Object> parameters, int maxRows) {
+        try {
+            PreparedStatement ps = prepare(sql);
+            try {
+                if (maxRows > 0) {
+                    ps.setMaxRows(maxRows);
+                }
+                bindAll(ps, parameters);
+                ResultSet rs = ps.executeQuery();
+                try {
+                    return rs.next() ? rs.getObject(1) : null;
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw sqlError(sql, e);
+        }
+    }
+
+    @Override
+    protected String onExpressionString(Operator operator, String value) {
+        switch (operator) {
+            case EQUAL:
+                return " = " + value;
+            case NOT_EQUAL:
+                return " <> " + value;
+            case LIKE:
+                return " LIKE " + value;
+            case GREATER_THAN:
+                return " > " + value;
+            case LESS_THAN:
+                return " < " + value;
+            case GREATER_THAN_OR_EQUAL:
+                return " >= " + value;
+            case LESS_THAN_OR_EQUAL:
+                return " <= " + value;
+            case IN:
+                return " IN " + value;
+            case NOT_IN:
+                return " NOT IN " + value;
+            case IS_NULL:
+                return " IS NULL";
+            case IS_NOT_NULL:
+                return " IS NOT NULL";
+            default:
+                throw new IllegalArgumentException("Unsupported operator: " + operator);
+        }
+    }
+
+    @Override
+    protected String onExpressionString(LogicalOperator logicalOperator, String expression) {
+        switch (logicalOperator) {
+            case AND:
+                return " AND " + expression;
+            case OR:
+                return " OR " + expression;
+            case NOT:
+                return " AND NOT (" + expression + ")";
+            default:
+                throw new IllegalArgumentException("Unsupported logical operator: " + logicalOperator);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        log.debug(sql);
+        Statement statement = getConnection().createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Executes the DDL statement in argument, or adds it to the batch of the current transaction
+     */
+    private void executeDdl(String sql) throws SQLException {
+        if (ddlBatch == null) {
+            execute(sql);
+        } else {
+            log.debug(sql);
+            ddlBatch.add(sql);
+        }
+    }
+
+    /**
+     * Executes the DDL statements added to the batch of the current transaction
+     */
+    private void flushDdl() throws SQLException {
+        if (ddlBatch == null || ddlBatch.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<String>(ddlBatch);
+        ddlBatch.clear();
+        Statement statement = getConnection().createStatement();
+        try {
+            for (String sql : batch) {
+                statement.addBatch(sql);
+            }
+            statement.executeBatch();
+        } catch (BatchUpdateException e) {
+            // The drivers stopping at the first error return the counts of the statements executed before it
+            int executed = e.getUpdateCounts() != null ? e.getUpdateCounts().length : 0;
+            if (executed < batch.size()) {
+                SQLException error = new SQLException("Cannot execute the statement: " + batch.get(executed) + " (" + e.getMessage() + ")",
+                        e.getSQLState(), e.getErrorCode());
+                error.setNextException(e);
+                throw error;
+            }
+            throw e;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        log.debug(sql);
+        return getConnection().prepareStatement(sql);
+    }
+
+    private void bindAll(PreparedStatement ps, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            bind(ps, i + 1, value, value != null ? DataType.getBasicDbDroidType(value.getClass()) : null);
+        }
+    }
+
+    /**
+     * Binds a parameter of a prepared statement
+     *
+     * @param ps
+     *            : prepared statement
+     * @param index
+     *            : parameter index, starting at 1
+     * @param value
+     *            : parameter value
+     * @param type
+     *            : type of the column, used for the NULL values, or <code>null</code> if unknown
+     * @throws SQLException
+     */
+    protected void bind(PreparedStatement ps, int index, Object value, DbDroidType type) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, getSqlTypeCode(type));
+        } else if (value instanceof String) {
+            ps.setString(index, (String) value);
+        } else if (value instanceof Boolean) {
+            ps.setBoolean(index, ((Boolean) value).booleanValue());
+        } else if (value instanceof Integer) {
+            ps.setInt(index, ((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            ps.setLong(index, ((Long) value).longValue());
+        } else if (value instanceof Short) {
+            ps.setShort(index, ((Short) value).shortValue());
+        } else if (value instanceof Byte) {
+            ps.setByte(index, ((Byte) value).byteValue());
+        } else if (value instanceof Double) {
+            ps.setDouble(index, ((Double) value).doubleValue());
+        } else if (value instanceof Float) {
+            ps.setFloat(index, ((Float) value).floatValue());
+        } else if (value instanceof Character) {
+            ps.setString(index, value.toString());
+        } else if (value instanceof byte[]) {
+            ps.setBytes(index, (byte[]) value);
+        } else if (value instanceof Byte[]) {
+            Byte[] bytes = (Byte[]) value;
+            byte[] array = new byte[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                array[i] = bytes[i] != null ? bytes[i].byteValue() : 0;
+            }
+            ps.setBytes(index, array);
+        } else if (value instanceof char[]) {
+            ps.setString(index, new String((char[]) value));
+        } else if (value instanceof Character[]) {
+            Character[] chars = (Character[]) value;
+            StringBuilder sb = new StringBuilder(chars.length);
+            for (Character c : chars) {
+                if (c != null) {
+                    sb.append(c.charValue());
+                }
+            }
+            ps.setString(index, sb.toString());
+        } else if (value instanceof BigDecimal) {
+            ps.setBigDecimal(index, (BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            ps.setBigDecimal(index, new BigDecimal((BigInteger) value));
+        } else if (value instanceof java.sql.Date) {
+            ps.setDate(index, (java.sql.Date) value);
+        } else if (value instanceof java.sql.Time) {
+            ps.setTime(index, (java.sql.Time) value);
+        } else if (value instanceof Timestamp) {
+            ps.setTimestamp(index, (Timestamp) value);
+        } else if (value instanceof java.util.Date) {
+            ps.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+        } else if (value instanceof Calendar) {
+            ps.setTimestamp(index, new Timestamp(((Calendar) value).getTimeInMillis()));
+        } else if (value instanceof Locale) {
+            ps.setString(index, value.toString());
+        } else if (value instanceof TimeZone) {
+            ps.setString(index, ((TimeZone) value).getID());
+        } else if (value instanceof Class<?>) {
+            ps.setString(index, ((Class<?>) value).getName());
+        } else if (value instanceof Enum<?>) {
+            ps.setString(index, ((Enum<?>) value).name());
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    private static int getSqlTypeCode(DbDroidType type) {
+        if (type == null) {
+            return Types.NULL;
+        }
+        switch (type) {
+            case BOOLEAN:
+                return Types.BOOLEAN;
+            case LONG:
+                return Types.BIGINT;
+            case SHORT:
+                return Types.SMALLINT;
+            case INTEGER:
+                return Types.INTEGER;
+            case BYTE:
+                return Types.TINYINT;
+            case FLOAT:
+                return Types.REAL;
+            case DOUBLE:
+                return Types.DOUBLE;
+            case CHARACTER:
+                return Types.CHAR;
+            case TIMESTAMP:
+            case CALENDAR:
+                return Types.TIMESTAMP;
+            case TIME:
+                return Types.TIME;
+            case DATE:
+                return Types.DATE;
+            case BIG_DECIMAL:
+            case BIG_INTEGER:
+                return Types.DECIMAL;
+            case BINARY:
+            case WRAPPER_BINARY:
+            case BLOB:
+                return Types.BLOB;
+            case CHAR_ARRAY:
+            case CHARACTER_ARRAY:
+            case CLOB:
+                return Types.CLOB;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> targetType = type.isPrimitive() ? ClassUtils.primitiveToWrapper(type) : type;
+        return DefaultTypeConverter.INSTANCE.convert(targetType, value);
+    }
+
+    private static <E> E newInstance(Class<E> entityClass) {
+        try {
+            return entityClass.newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + entityClass.getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + entityClass.getName(), e);
+        }
+    }
+
+    private static String join(String[] columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(column);
+        }
+        return sb.toString();
+    }
+
+    private static IllegalStateException sqlError(String sql, SQLException e) {
+        return new IllegalStateException("Cannot run the query '" + sql + "': " + e.getMessage(), e);
+    }
+
+    private TableMapping getMapping(Class<?> entityClass) {
+        TableMapping mapping = mappings.get(entityClass);
+        if (mapping == null) {
+            String tableName = getTableNameFromEntity(entityClass);
+            mapping = new TableMapping(EntityMetadata.forClass(entityClass), tableName != null ? tableName : EntityHelper.getTableName(entityClass));
+            TableMapping existing = mappings.putIfAbsent(entityClass, mapping);
+            if (existing != null) {
+                mapping = existing;
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Table of an entity class: the selected columns (all the columns except the lazy ones) and their positions in the result sets
+     */
+    private static final class TableMapping {
+
+        private final EntityMetadata metadata;
+        private final String tableName;
+        private final String idColumn;
+        private final DbDroidType idType;
+        private final String selectList;
+        private final int[] positions;
+
+        TableMapping(EntityMetadata metadata, String tableName) {
+            this.metadata = metadata;
+            this.tableName = tableName;
+            int idIndex = metadata.getIdColumnIndex();
+            if (idIndex < 0) {
+                throw new IllegalArgumentException("No id column for the entity " + metadata.getEntityClass().getName());
+            }
+            this.idColumn = metadata.getColumnName(idIndex);
+            this.idType = metadata.getColumnType(idIndex);
+
+            StringBuilder sb = new StringBuilder();
+            this.positions = new int[metadata.getColumnCount()];
+            int position = 0;
+            for (int i = 0; i < positions.length; i++) {
+                if (metadata.isLazy(i)) {
+                    continue;
+                }
+                if (position > 0) {
+                    sb.append(", ");
+                }
+                sb.append(metadata.getColumnName(i));
+                positions[i] = ++position;
+            }
+            this.selectList = sb.toString();
+        }
+
+        ColumnValues write(Object entity) {
+            ColumnValues values = new ColumnValues(positions.length);
+            EntityHelper.writeRow(entity, values);
+            return values;
+        }
+
+        /**
+         * Returns the ordinals of the columns to set in the update: the written columns among the dirty ones, or all the written columns if the
+         * entity is not tracked (dirtyColumns <code>null</code>)
+         */
+        int[] getUpdateColumns(ColumnValues values, int[] dirtyColumns) {
+            int idIndex = metadata.getIdColumnIndex();
+            int[] columns = new int[dirtyColumns != null ? dirtyColumns.length : positions.length];
+            int count = 0;
+            for (int k = 0; k < columns.length; k++) {
+                int i = dirtyColumns != null ? dirtyColumns[k] : k;
+                if (i != idIndex && values.isWritten(i)) {
+                    columns[count++] = i;
+                }
+            }
+            if (count < columns.length) {
+                int[] trimmed = new int[count];
+                System.arraycopy(columns, 0, trimmed, 0, count);
+                return trimmed;
+            }
+            return columns;
+        }
+
+        String getUpdateSql(int[] columns) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+            for (int k = 0; k < columns.length; k++) {
+                if (k > 0) {
+                    sql.append(", ");
+                }
+                sql.append(metadata.getColumnName(columns[k])).append(" = ?");
+            }
+            if (columns.length == 0) {
+                // Only the id: the statement checks that the row exists
+                sql.append(idColumn).append(" = ").append(idColumn);
+            }
+            return sql.append(" WHERE ").append(idColumn).append(" = ?").toString();
+        }
+
+        String getInsertSql(ColumnValues values) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+            StringBuilder parameters = new StringBuilder();
+            for (int i = 0; i < positions.length; i++) {
+                if (values.isWritten(i)) {
+                    if (parameters.length() > 0) {
+                        sql.append(", ");
+                        parameters.append(", ");
+                    }
+                    sql.append(metadata.getColumnName(i));
+                    parameters.append('?');
+                }
+            }
+            if (parameters.length() == 0) {
+                return "INSERT INTO " + tableName + " DEFAULT VALUES";
+            }
+            return sql.append(") VALUES (").append(parameters).append(')').toString();
+        }
+    }
+
+    /**
+     * Row of a batch: the values of an entity to write
+     */
+    private static final class Row {
+
+        private final TableMapping mapping;
+        private final ColumnValues values;
+        private final int[] updateColumns;
+
+        Row(TableMapping mapping, ColumnValues values, int[] updateColumns) {
+            this.mapping = mapping;
+            this.values = values;
+            this.updateColumns = updateColumns;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.nds.dbdroid.jdbc;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.nds.dbdroid.DataBaseManager;
+import org.nds.dbdroid.query.Expression;
+import org.nds.dbdroid.query.ExpressionRenderer;
+import org.nds.dbdroid.query.LogicalExpression;
+import org.nds.dbdroid.query.QueryValueResolver;
+
+/**
+ * {@link ExpressionRenderer} rendering the values as <code>?</code> parameters of a prepared statement: the values are collected in the order of
+ * their parameters (see {@link #getParameters()}).<br/>
+ * The logical expressions are enclosed in parentheses, so that an OR expression combined with AND keeps its meaning.
+ */
+public class JdbcExpressionRenderer extends ExpressionRenderer {
+
+    private final List<Object> parameters = new ArrayList<Object>();
+
+    public JdbcExpressionRenderer(DataBaseManager dataBaseManager, QueryValueResolver queryValueResolver) {
+        super(dataBaseManager, queryValueResolver);
+    }
+
+    @Override
+    public String render(Expression expression) {
+        parameters.clear();
+        return super.render(expression);
+    }
+
+    @Override
+    public String render(List<Expression> conditions) {
+        parameters.clear();
+        return super.render(conditions);
+    }
+
+    @Override
+    public StringBuilder visit(LogicalExpression expression) {
+        sb.append('(');
+        super.visit(expression);
+        return sb.append(')');
+    }
+
+    @Override
+    protected void appendValue(Object value) {
+        if (value == null) {
+            // IS NULL and IS NOT NULL conditions
+            sb.append("NULL");
+        } else if (value instanceof Collection<?>) {
+            appendParameters(((Collection<?>) value).toArray());
+        } else if (value instanceof Map<?, ?>) {
+            appendParameters(((Map<?, ?>) value).values().toArray());
+        } else if (value.getClass().isArray() && !(value instanceof byte[])) {
+            int length = Array.getLength(value);
+            Object[] values = new Object[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Array.get(value, i);
+            }
+            appendParameters(values);
+        } else {
+            sb.append('?');
+            parameters.add(value);
+        }
+    }
+
+    private void appendParameters(Object[] values) {
+        if (values.length == 0) {
+            // Never satisfied, as an empty list
+            sb.append("(NULL)");
+            return;
+        }
+        sb.append('(');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('?');
+            parameters.add(values[i]);
+        }
+        sb.append(')');
+    }
+
+    /**
+     * Returns the values of the parameters of the last rendered expression
+     *
+     * @return parameter values, in the order of the parameters
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+}
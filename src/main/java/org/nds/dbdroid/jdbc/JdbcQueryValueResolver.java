@@ -0,0 +1,147 @@
+package org.nds.dbdroid.jdbc;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.nds.dbdroid.query.QueryValueResolver;
+
+/**
+ * {@link QueryValueResolver} rendering the values as SQL literals.<br/>
+ * The {@link JdbcDataBaseManager} binds the values of its queries as parameters: the literals are used to render the expressions in a readable
+ * form (logs, {@link org.nds.dbdroid.query.Query#toExpressionString()}).
+ */
+public class JdbcQueryValueResolver extends QueryValueResolver {
+
+    @Override
+    protected String getCollectionPrefix() {
+        return "(";
+    }
+
+    @Override
+    protected String getCollectionSeparator() {
+        return ", ";
+    }
+
+    @Override
+    protected String getCollectionSuffix() {
+        return ")";
+    }
+
+    @Override
+    protected String toNullString(Object value) {
+        return "NULL";
+    }
+
+    @Override
+    protected String toStringString(String value) {
+        return quote(value);
+    }
+
+    @Override
+    protected String toBooleanString(Boolean value) {
+        return value.booleanValue() ? "TRUE" : "FALSE";
+    }
+
+    @Override
+    protected String toByteString(Byte value) {
+        return value.toString();
+    }
+
+    @Override
+    protected String toShortString(Short value) {
+        return value.toString();
+    }
+
+    @Override
+    protected String toCharacterString(Character value) {
+        return quote(value.toString());
+    }
+
+    @Override
+    protected String toIntegerString(Integer value) {
+        return value.toString();
+    }
+
+    @Override
+    protected String toFloatString(Float value) {
+        return value.toString();
+    }
+
+    @Override
+    protected String toLongString(Long value) {
+        return value.toString();
+    }
+
+    @Override
+    protected String toDoubleString(Double value) {
+        return value.toString();
+    }
+
+    @Override
+    protected String toNumberString(Number value) {
+        return value.toString();
+    }
+
+    // The primitives are appended without boxing nor intermediate String: the same text as their toXxxString methods
+
+    @Override
+    protected void appendBoolean(StringBuilder sb, boolean value) {
+        sb.append(value ? "TRUE" : "FALSE");
+    }
+
+    @Override
+    protected void appendByte(StringBuilder sb, byte value) {
+        sb.append(value);
+    }
+
+    @Override
+    protected void appendShort(StringBuilder sb, short value) {
+        sb.append(value);
+    }
+
+    @Override
+    protected void appendInt(StringBuilder sb, int value) {
+        sb.append(value);
+    }
+
+    @Override
+    protected void appendLong(StringBuilder sb, long value) {
+        sb.append(value);
+    }
+
+    @Override
+    protected void appendFloat(StringBuilder sb, float value) {
+        sb.append(value);
+    }
+
+    @Override
+    protected void appendDouble(StringBuilder sb, double value) {
+        sb.append(value);
+    }
+
+    @Override
+    protected String toCollectionString(Collection<?> values) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Object value : values) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(toString(value));
+        }
+        return sb.append(')').toString();
+    }
+
+    @Override
+    protected String toMapString(Map<?, ?> value) {
+        return toCollectionString(value.values());
+    }
+
+    @Override
+    protected String toObjectString(Object value) {
+        return quote(value.toString());
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
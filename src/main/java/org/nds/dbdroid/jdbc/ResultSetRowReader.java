@@ -0,0 +1,115 @@
+package org.nds.dbdroid.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.nds.dbdroid.helper.RowReader;
+
+/**
+ * {@link RowReader} on the current row of a {@link ResultSet}: the column ordinals of the entity metadata are mapped to the positions of the columns
+ * in the result set.
+ */
+final class ResultSetRowReader implements RowReader {
+
+    private final int[] positions;
+
+    private ResultSet resultSet;
+
+    /**
+     * Creates a reader
+     *
+     * @param positions
+     *            : position in the result set (starting at 1) of each column ordinal, 0 if the column is not selected
+     */
+    ResultSetRowReader(int[] positions) {
+        this.positions = positions;
+    }
+
+    void setResultSet(ResultSet resultSet) {
+        this.resultSet = resultSet;
+    }
+
+    public boolean isNull(int columnIndex) {
+        try {
+            return positions[columnIndex] == 0 || resultSet.getObject(positions[columnIndex]) == null;
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public String getString(int columnIndex) {
+        try {
+            return resultSet.getString(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public boolean getBoolean(int columnIndex) {
+        try {
+            return resultSet.getBoolean(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public short getShort(int columnIndex) {
+        try {
+            return resultSet.getShort(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public int getInt(int columnIndex) {
+        try {
+            return resultSet.getInt(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public long getLong(int columnIndex) {
+        try {
+            return resultSet.getLong(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public float getFloat(int columnIndex) {
+        try {
+            return resultSet.getFloat(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public double getDouble(int columnIndex) {
+        try {
+            return resultSet.getDouble(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public byte[] getBlob(int columnIndex) {
+        try {
+            return resultSet.getBytes(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    public Object getObject(int columnIndex) {
+        try {
+            return resultSet.getObject(positions[columnIndex]);
+        } catch (SQLException e) {
+            throw readError(columnIndex, e);
+        }
+    }
+
+    private IllegalStateException readError(int columnIndex, SQLException e) {
+        return new IllegalStateException("Cannot read the column " + positions[columnIndex] + ": " + e.getMessage(), e);
+    }
+}
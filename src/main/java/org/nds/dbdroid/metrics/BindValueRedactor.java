@@ -0,0 +1,20 @@
+package org.nds.dbdroid.metrics;
+
+/**
+ * Hook replacing the sensitive bind values before they are captured by the {@link QueryLog} (ex: passwords, personal data)
+ */
+public interface BindValueRedactor {
+
+    /**
+     * Returns the value to capture in place of the bind value in argument
+     * 
+     * @param entityClass
+     *            : entity class of the query, or <code>null</code> for the raw queries
+     * @param column
+     *            : column compared to the value, or <code>null</code> if unknown
+     * @param value
+     *            : bind value
+     * @return the value to capture (ex: "***")
+     */
+    Object redact(Class<?> entityClass, String column, Object value);
+}
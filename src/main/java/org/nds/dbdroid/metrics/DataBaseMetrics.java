@@ -0,0 +1,188 @@
+package org.nds.dbdroid.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Metrics of the operations of a {@link org.nds.dbdroid.DataBaseManager}, per operation, entity and normalized query (see
+ * {@link org.nds.dbdroid.query.Query#getShape()}).<br/>
+ * Only the successful operations are recorded. The operations are timed by the {@link OperationTimer} returned by {@link #start()}.
+ */
+public class DataBaseMetrics {
+
+    /** String literals and numbers of a raw query */
+    private static final Pattern LITERALS = Pattern.compile("'(?:[^']|'')*'|\\b\\d+(?:\\.\\d+)?\\b");
+
+    /** Hydration time reported by the engines in the current thread, in nanoseconds */
+    private static final ThreadLocal<long[]> HYDRATION_NANOS = new ThreadLocal<long[]>() {
+
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private final ConcurrentMap<Key, OperationMetrics> metrics = new ConcurrentHashMap<Key, OperationMetrics>();
+
+    private volatile MetricsSink sink;
+
+    /**
+     * Starts the timing of an operation in the current thread
+     * 
+     * @return the timer to stop when the operation succeeds
+     */
+    public OperationTimer start() {
+        return new OperationTimer(this);
+    }
+
+    /**
+     * Adds hydration time to the operations running in the current thread
+     * 
+     * @param nanos
+     *            : time spent to convert rows to entities, in nanoseconds
+     */
+    public void addHydrationNanos(long nanos) {
+        HYDRATION_NANOS.get()[0] += nanos;
+    }
+
+    static long getHydrationNanos() {
+        return HYDRATION_NANOS.get()[0];
+    }
+
+    void record(Operation operation, Class<?> entityClass, String query, long nanos, long hydrationNanos, long rows, Boolean cacheHit) {
+        getMetrics(operation, entityClass != null ? entityClass.getName() : null, query).record(nanos, hydrationNanos, rows, cacheHit);
+    }
+
+    /**
+     * Returns the metrics of an operation
+     * 
+     * @param operation
+     *            : operation
+     * @param entityName
+     *            : entity class name, or <code>null</code>
+     * @param query
+     *            : normalized query, or <code>null</code>
+     * @return the metrics, created if needed
+     */
+    public OperationMetrics getMetrics(Operation operation, String entityName, String query) {
+        Key key = new Key(operation, entityName, query);
+        OperationMetrics operationMetrics = metrics.get(key);
+        if (operationMetrics == null) {
+            operationMetrics = new OperationMetrics(operation, entityName, query);
+            OperationMetrics previous = metrics.putIfAbsent(key, operationMetrics);
+            if (previous != null) {
+                operationMetrics = previous;
+            }
+        }
+        return operationMetrics;
+    }
+
+    /**
+     * Returns the metrics of all the operations recorded, the most time-consuming first
+     * 
+     * @return list of metrics
+     */
+    public List<OperationMetrics> getMetrics() {
+        List<OperationMetrics> list = new ArrayList<OperationMetrics>(metrics.values());
+        Collections.sort(list, new Comparator<OperationMetrics>() {
+
+            public int compare(OperationMetrics m1, OperationMetrics m2) {
+                long t1 = m1.getLatencies().getTotal();
+                long t2 = m2.getLatencies().getTotal();
+                return t1 > t2 ? -1 : (t1 < t2 ? 1 : 0);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Removes all the metrics recorded
+     */
+    public void reset() {
+        metrics.clear();
+    }
+
+    public void setSink(MetricsSink sink) {
+        this.sink = sink;
+    }
+
+    public MetricsSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Exports the metrics recorded to the sink, if any
+     */
+    public void export() {
+        MetricsSink currentSink = sink;
+        if (currentSink != null) {
+            currentSink.export(getMetrics());
+        }
+    }
+
+    /**
+     * Returns the raw query in argument without its values: the string literals and the numbers are replaced by '?'
+     * 
+     * @param query
+     *            : raw query
+     * @return normalized query
+     */
+    public static String normalize(String query) {
+        return LITERALS.matcher(query.trim()).replaceAll("?");
+    }
+
+    /**
+     * Returns the values of the raw query in argument: the string literals, without quotes, and the numbers, in the order of the '?' of the
+     * normalized query
+     * 
+     * @param query
+     *            : raw query
+     * @return the values of the query
+     */
+    public static List<String> getLiterals(String query) {
+        List<String> literals = new ArrayList<String>();
+        Matcher matcher = LITERALS.matcher(query.trim());
+        while (matcher.find()) {
+            String literal = matcher.group();
+            literals.add(literal.charAt(0) == '\'' ? literal.substring(1, literal.length() - 1).replace("''", "'") : literal);
+        }
+        return literals;
+    }
+
+    private static final class Key {
+
+        private final Operation operation;
+        private final String entityName;
+        private final String query;
+
+        Key(Operation operation, String entityName, String query) {
+            this.operation = operation;
+            this.entityName = entityName;
+            this.query = query;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = operation.hashCode();
+            result = 31 * result + (entityName != null ? entityName.hashCode() : 0);
+            result = 31 * result + (query != null ? query.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return operation == other.operation && (entityName != null ? entityName.equals(other.entityName) : other.entityName == null)
+                    && (query != null ? query.equals(other.query) : other.query == null);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.nds.dbdroid.metrics;
+
+import java.util.List;
+
+import org.nds.logging.Logger;
+import org.nds.logging.LoggerFactory;
+
+/**
+ * {@link MetricsSink} writing the metrics to the log, one line per operation
+ */
+public class LoggingMetricsSink implements MetricsSink {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingMetricsSink.class);
+
+    public void export(List<OperationMetrics> metrics) {
+        for (OperationMetrics operationMetrics : metrics) {
+            log.info(operationMetrics.toString());
+        }
+    }
+}
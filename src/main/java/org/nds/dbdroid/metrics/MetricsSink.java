@@ -0,0 +1,17 @@
+package org.nds.dbdroid.metrics;
+
+import java.util.List;
+
+/**
+ * Destination of the metrics exported by {@link DataBaseMetrics#export()}
+ */
+public interface MetricsSink {
+
+    /**
+     * Exports the metrics recorded since the creation or the last reset of the {@link DataBaseMetrics}
+     * 
+     * @param metrics
+     *            : metrics of each operation, entity and query, the most time-consuming first
+     */
+    void export(List<OperationMetrics> metrics);
+}
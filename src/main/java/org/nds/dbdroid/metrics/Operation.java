@@ -0,0 +1,30 @@
+package org.nds.dbdroid.metrics;
+
+/**
+ * Operations of the {@link org.nds.dbdroid.DataBaseManager} recorded by the {@link DataBaseMetrics}
+ */
+public enum Operation {
+
+    FIND_BY_ID,
+
+    FIND_ALL,
+
+    QUERY_LIST,
+
+    QUERY_TUPLES,
+
+    COUNT,
+
+    EXISTS,
+
+    AGGREGATE,
+
+    SAVE_OR_UPDATE,
+
+    /** Batch of entities written by the write-behind mode */
+    SAVE_OR_UPDATE_ALL,
+
+    DELETE,
+
+    RAW_QUERY
+}
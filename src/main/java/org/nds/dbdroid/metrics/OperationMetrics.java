@@ -0,0 +1,139 @@
+package org.nds.dbdroid.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of an operation on an entity, or of a query: latency histogram, rows, hydration time and query cache accesses.<br/>
+ * The engine time is the latency without the hydration time, which is the time spent to convert the rows to entities.
+ */
+public final class OperationMetrics {
+
+    private final Operation operation;
+
+    private final String entityName;
+
+    private final String query;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private final AtomicLong rows = new AtomicLong();
+
+    private final AtomicLong hydrationNanos = new AtomicLong();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    OperationMetrics(Operation operation, String entityName, String query) {
+        this.operation = operation;
+        this.entityName = entityName;
+        this.query = query;
+    }
+
+    void record(long nanos, long hydration, long rowCount, Boolean cacheHit) {
+        latencies.record(nanos);
+        rows.addAndGet(rowCount);
+        if (hydration > 0) {
+            hydrationNanos.addAndGet(hydration);
+        }
+        if (cacheHit != null) {
+            (cacheHit.booleanValue() ? cacheHits : cacheMisses).incrementAndGet();
+        }
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the name of the entity class
+     * 
+     * @return entity class name, or <code>null</code> for the raw queries
+     */
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Returns the normalized query: the query without its values
+     * 
+     * @return normalized query, or <code>null</code> for the operations without query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    /**
+     * Returns the number of rows returned or written by the operations
+     * 
+     * @return number of rows
+     */
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * Returns the time spent to convert the rows to entities, as reported by the database engine
+     * 
+     * @return hydration time in nanoseconds
+     */
+    public long getHydrationNanos() {
+        return hydrationNanos.get();
+    }
+
+    /**
+     * Returns the time spent in the operations without the hydration time
+     * 
+     * @return engine time in nanoseconds
+     */
+    public long getEngineNanos() {
+        return Math.max(0, latencies.getTotal() - hydrationNanos.get());
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Returns the ratio of the operations answered by the query cache
+     * 
+     * @return hit rate, from 0 to 1, or -1 if the query cache was not used
+     */
+    public double getCacheHitRate() {
+        long hits = cacheHits.get();
+        long accesses = hits + cacheMisses.get();
+        return accesses > 0 ? (double) hits / accesses : -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(operation.name());
+        if (entityName != null) {
+            sb.append(' ').append(entityName);
+        }
+        if (query != null) {
+            sb.append(" [").append(query).append(']');
+        }
+        sb.append(": count=").append(getCount()).append(", mean=").append(Math.round(latencies.getMean() / 1000)).append("us, p50=")
+                .append(latencies.getValueAtPercentile(50) / 1000).append("us, p99=").append(latencies.getValueAtPercentile(99) / 1000)
+                .append("us, max=").append(latencies.getMax() / 1000).append("us, rows=").append(getRows()).append(", hydration=")
+                .append(getHydrationNanos() / 1000).append("us");
+        double hitRate = getCacheHitRate();
+        if (hitRate >= 0) {
+            sb.append(", cache hits=").append(Math.round(hitRate * 100)).append('%');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package org.nds.dbdroid.metrics;
+
+/**
+ * Timer of an operation, recording it in the {@link DataBaseMetrics} if any
+ */
+public final class OperationTimer {
+
+    private final DataBaseMetrics metrics;
+
+    private final long startNanos = System.nanoTime();
+
+    private final long startHydrationNanos;
+
+    /**
+     * Starts the timing of an operation in the current thread
+     * 
+     * @param metrics
+     *            : metrics recording the operation, or <code>null</code> to time the operation only
+     */
+    public OperationTimer(DataBaseMetrics metrics) {
+        this.metrics = metrics;
+        this.startHydrationNanos = metrics != null ? DataBaseMetrics.getHydrationNanos() : 0;
+    }
+
+    /**
+     * Stops the timer and records the operation
+     * 
+     * @param operation
+     *            : operation
+     * @param entityClass
+     *            : entity class, or <code>null</code>
+     * @param query
+     *            : normalized query, or <code>null</code>
+     * @param rows
+     *            : number of rows returned or written
+     * @param cacheHit
+     *            : <code>true</code> if the query cache answered, <code>false</code> if it missed, <code>null</code> if it was not used
+     * @return the duration of the operation, in nanoseconds
+     */
+    public long stop(Operation operation, Class<?> entityClass, String query, long rows, Boolean cacheHit) {
+        long nanos = System.nanoTime() - startNanos;
+        if (metrics != null) {
+            metrics.record(operation, entityClass, query, nanos, DataBaseMetrics.getHydrationNanos() - startHydrationNanos, rows, cacheHit);
+        }
+        return nanos;
+    }
+}
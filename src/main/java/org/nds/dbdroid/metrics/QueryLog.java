@@ -0,0 +1,224 @@
+package org.nds.dbdroid.metrics;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.nds.logging.Logger;
+import org.nds.logging.LoggerFactory;
+
+/**
+ * Log of the queries lasting at least a threshold: the last captured queries are kept in a ring buffer (see {@link #getEntries()}) and sent to the
+ * {@link QueryLogListener}s.<br/>
+ * With the property <code>dbdroid.show_query</code> set to <code>true</code>, all the queries are captured and logged. With the property
+ * <code>dbdroid.slow_query_threshold</code> (in milliseconds), the queries lasting at least the threshold are captured and logged as warnings. The
+ * size of the ring buffer is set by the property <code>dbdroid.query_log_size</code> (100 by default).<br/>
+ * The bind values are captured after their redaction by the {@link BindValueRedactor}, if any. The captured values are bounded: the strings longer
+ * than 100 characters are truncated, the binary values are replaced by their size, and the collections and arrays (ex: values of an IN list) are
+ * copied, limited to their first 10 elements.
+ */
+public class QueryLog {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryLog.class);
+
+    private static final int MAX_STRING_LENGTH = 100;
+
+    private static final int MAX_ELEMENTS = 10;
+
+    private final long thresholdNanos;
+
+    private final AtomicReferenceArray<QueryLogEntry> entries;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final List<QueryLogListener> listeners = new CopyOnWriteArrayList<QueryLogListener>();
+
+    private volatile BindValueRedactor redactor;
+
+    private volatile boolean logged;
+
+    /**
+     * Creates a query log
+     * 
+     * @param capacity
+     *            : number of entries kept
+     * @param threshold
+     *            : minimum duration of the captured queries, 0 to capture all the queries
+     * @param unit
+     *            : unit of the threshold
+     */
+    public QueryLog(int capacity, long threshold, TimeUnit unit) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the query log must be greater than 0");
+        }
+        this.entries = new AtomicReferenceArray<QueryLogEntry>(capacity);
+        this.thresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * Returns <code>true</code> if a query lasting the duration in argument is captured
+     * 
+     * @param nanos
+     *            : duration of the query, in nanoseconds
+     * @return <code>true</code> if the duration reaches the threshold
+     */
+    public boolean isCaptured(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Captures a query
+     * 
+     * @param operation
+     *            : operation
+     * @param entityClass
+     *            : entity class, or <code>null</code>
+     * @param query
+     *            : normalized query, or <code>null</code>
+     * @param columns
+     *            : columns compared to the bind values, or <code>null</code> if unknown
+     * @param bindValues
+     *            : bind values, in the order of the '?' of the normalized query
+     * @param nanos
+     *            : duration of the query
+     * @param rows
+     *            : number of rows returned or written
+     * @param caller
+     *            : caller of the query, or <code>null</code>
+     */
+    public void capture(Operation operation, Class<?> entityClass, String query, String[] columns, Object[] bindValues, long nanos, long rows,
+            String caller) {
+        Object[] values = new Object[bindValues != null ? bindValues.length : 0];
+        BindValueRedactor currentRedactor = redactor;
+        for (int i = 0; i < values.length; i++) {
+            String column = columns != null ? columns[i] : null;
+            values[i] = truncate(currentRedactor != null ? currentRedactor.redact(entityClass, column, bindValues[i]) : bindValues[i]);
+        }
+        QueryLogEntry entry = new QueryLogEntry(operation, entityClass != null ? entityClass.getName() : null, query, values, nanos, rows, caller);
+
+        entries.set((int) (sequence.getAndIncrement() % entries.length()), entry);
+        if (logged) {
+            if (thresholdNanos > 0) {
+                log.warn("Slow query: " + entry);
+            } else {
+                log.info(entry.toString());
+            }
+        }
+        for (QueryLogListener listener : listeners) {
+            listener.onQuery(entry);
+        }
+    }
+
+    private static Object truncate(Object value) {
+        if (value instanceof byte[]) {
+            return "<" + ((byte[]) value).length + " bytes>";
+        }
+        if (value instanceof char[]) {
+            value = new String((char[]) value);
+        }
+        if (value instanceof String && ((String) value).length() > MAX_STRING_LENGTH) {
+            return ((String) value).substring(0, MAX_STRING_LENGTH) + "...";
+        }
+        if (value instanceof Collection<?>) {
+            Collection<?> collection = (Collection<?>) value;
+            List<Object> copy = new ArrayList<Object>(Math.min(collection.size(), MAX_ELEMENTS) + 1);
+            Iterator<?> iterator = collection.iterator();
+            while (iterator.hasNext() && copy.size() < MAX_ELEMENTS) {
+                copy.add(truncate(iterator.next()));
+            }
+            return more(copy, collection.size());
+        }
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            List<Object> copy = new ArrayList<Object>(Math.min(length, MAX_ELEMENTS) + 1);
+            for (int i = 0; i < length && copy.size() < MAX_ELEMENTS; i++) {
+                copy.add(truncate(Array.get(value, i)));
+            }
+            return more(copy, length);
+        }
+        return value;
+    }
+
+    private static List<Object> more(List<Object> copy, int size) {
+        if (size > copy.size()) {
+            copy.add("\u2026 (" + (size - copy.size()) + " more)");
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the captured queries kept in the ring buffer, the oldest first
+     * 
+     * @return captured queries
+     */
+    public List<QueryLogEntry> getEntries() {
+        long end = sequence.get();
+        int capacity = entries.length();
+        List<QueryLogEntry> list = new ArrayList<QueryLogEntry>(capacity);
+        for (long i = Math.max(0, end - capacity); i < end; i++) {
+            QueryLogEntry entry = entries.get((int) (i % capacity));
+            if (entry != null) {
+                list.add(entry);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the captured queries kept in the ring buffer, one per line, the oldest first
+     * 
+     * @return the dump of the ring buffer
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (QueryLogEntry entry : getEntries()) {
+            sb.append(entry).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of queries captured since the creation of the log
+     * 
+     * @return number of captured queries
+     */
+    public long getCapturedCount() {
+        return sequence.get();
+    }
+
+    public long getThreshold(TimeUnit unit) {
+        return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void addListener(QueryLogListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(QueryLogListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setRedactor(BindValueRedactor redactor) {
+        this.redactor = redactor;
+    }
+
+    /**
+     * Writes the captured queries to the log: as warnings if the threshold is not 0, else as information
+     * 
+     * @param logged
+     *            : <code>true</code> to log the captured queries
+     */
+    public void setLogged(boolean logged) {
+        this.logged = logged;
+    }
+
+    public boolean isLogged() {
+        return logged;
+    }
+}
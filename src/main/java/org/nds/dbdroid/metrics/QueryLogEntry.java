@@ -0,0 +1,110 @@
+package org.nds.dbdroid.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Query captured by the {@link QueryLog}
+ */
+public final class QueryLogEntry {
+
+    private final long timestamp;
+
+    private final Operation operation;
+
+    private final String entityName;
+
+    private final String query;
+
+    private final List<Object> bindValues;
+
+    private final long nanos;
+
+    private final long rows;
+
+    private final String caller;
+
+    QueryLogEntry(Operation operation, String entityName, String query, Object[] bindValues, long nanos, long rows, String caller) {
+        this.timestamp = System.currentTimeMillis();
+        this.operation = operation;
+        this.entityName = entityName;
+        this.query = query;
+        this.bindValues = bindValues != null ? Collections.unmodifiableList(Arrays.asList(bindValues)) : Collections.<Object> emptyList();
+        this.nanos = nanos;
+        this.rows = rows;
+        this.caller = caller;
+    }
+
+    /**
+     * Returns the time of the end of the query
+     * 
+     * @return time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Returns the normalized query (see {@link org.nds.dbdroid.query.Query#getShape()} and {@link DataBaseMetrics#normalize(String)})
+     * 
+     * @return normalized query, or <code>null</code> for the operations without query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the values of the query, in the order of the '?' of the normalized query, after redaction
+     * 
+     * @return bind values
+     */
+    public List<Object> getBindValues() {
+        return bindValues;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the method which called the {@link org.nds.dbdroid.DataBaseManager}, usually a DAO method
+     * 
+     * @return the caller (ex: <code>org.nds.dao.UserDao.findByName(UserDao.java:42)</code>), or <code>null</code> if unknown
+     */
+    public String getCaller() {
+        return caller;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(nanos / 1000000).append('.').append(nanos / 100000 % 10).append(" ms ").append(operation);
+        if (entityName != null) {
+            sb.append(' ').append(entityName);
+        }
+        if (query != null) {
+            sb.append(" [").append(query).append(']');
+        }
+        if (!bindValues.isEmpty()) {
+            sb.append(" binds=").append(bindValues);
+        }
+        sb.append(" rows=").append(rows);
+        if (caller != null) {
+            sb.append(" at ").append(caller);
+        }
+        return sb.toString();
+    }
+}
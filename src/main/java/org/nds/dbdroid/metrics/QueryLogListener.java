@@ -0,0 +1,15 @@
+package org.nds.dbdroid.metrics;
+
+/**
+ * Listener receiving the entries of a {@link QueryLog} as they are captured
+ */
+public interface QueryLogListener {
+
+    /**
+     * Called in the thread which ran the query
+     * 
+     * @param entry
+     *            : captured query
+     */
+    void onQuery(QueryLogEntry entry);
+}
@@ -0,0 +1,122 @@
+package org.nds.dbdroid.migration;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned migration script: a script whose file name is <code>V&lt;version&gt;__&lt;description&gt;.sql</code> (ex: <code>V1__create.sql</code>,
+ * <code>V1_2__seed_data.sql</code>).<br/>
+ * The migrations are run in the order of their versions, only once: the database engine records the version and the checksum of the applied
+ * migrations.
+ */
+public final class Migration implements Comparable<Migration> {
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+(?:[._]\\d+)*)__([^.]*)(?:\\..*)?");
+
+    private final String version;
+
+    private final long[] versionNumbers;
+
+    private final String description;
+
+    private final String location;
+
+    private final List<String> queries;
+
+    private final long checksum;
+
+    /**
+     * Creates a migration
+     *
+     * @param location
+     *            : location of the script, ending with its file name
+     * @param queries
+     *            : queries of the script
+     */
+    public Migration(String location, List<String> queries) {
+        String fileName = location.substring(Math.max(location.lastIndexOf('/'), location.lastIndexOf('\\')) + 1);
+        Matcher matcher = FILE_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid migration file name '" + fileName + "', expected V<version>__<description>.sql");
+        }
+        String[] numbers = matcher.group(1).split("[._]");
+        this.versionNumbers = new long[numbers.length];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numbers.length; i++) {
+            versionNumbers[i] = Long.parseLong(numbers[i]);
+            if (i > 0) {
+                sb.append('.');
+            }
+            sb.append(versionNumbers[i]);
+        }
+        this.version = sb.toString();
+        this.description = matcher.group(2).replace('_', ' ');
+        this.location = location;
+        this.queries = Collections.unmodifiableList(new ArrayList<String>(queries));
+        this.checksum = computeChecksum(queries);
+    }
+
+    /**
+     * Computes the CRC32 of the queries: the comments, the blank lines and the line separators of the script do not change the checksum
+     */
+    private static long computeChecksum(List<String> queries) {
+        CRC32 crc = new CRC32();
+        try {
+            for (String query : queries) {
+                crc.update(query.trim().getBytes("UTF-8"));
+                crc.update(';');
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the normalized version: the numbers separated by dots, without leading zeros (ex: <code>1.2</code> for <code>V01_2__...</code>)
+     *
+     * @return the version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Compares the versions number by number: 1.2 &lt; 1.10 &lt; 2
+     */
+    public int compareTo(Migration other) {
+        int length = Math.min(versionNumbers.length, other.versionNumbers.length);
+        for (int i = 0; i < length; i++) {
+            if (versionNumbers[i] != other.versionNumbers[i]) {
+                return versionNumbers[i] < other.versionNumbers[i] ? -1 : 1;
+            }
+        }
+        return versionNumbers.length - other.versionNumbers.length;
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " (" + description + ")";
+    }
+}
@@ -0,0 +1,14 @@
+package org.nds.dbdroid.query;
+
+/**
+ * Aggregate functions computed on a column of the rows found by a {@link Query}. NULL values are ignored.
+ */
+public enum AggregateFunction {
+
+    COUNT,
+    SUM,
+    MIN,
+    MAX,
+    AVG
+
+}
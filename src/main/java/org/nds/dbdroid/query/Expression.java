@@ -5,4 +5,6 @@ import org.nds.dbdroid.DataBaseManager;
 public interface Expression {
 
     String toQueryString(DataBaseManager dbManager);
+
+    <R> R accept(ExpressionVisitor<R> visitor);
 }
@@ -0,0 +1,120 @@
+package org.nds.dbdroid.query;
+
+import java.util.List;
+
+import org.nds.dbdroid.DataBaseManager;
+
+/**
+ * Renders {@link Expression} trees in a single pass, appending into one shared {@link StringBuilder}.<br/>
+ * By default, the operators are rendered with {@link DataBaseManager#toExpressionString(Operator, String)} and
+ * {@link DataBaseManager#toExpressionString(LogicalOperator, String)}. A database engine can override {@link #appendCondition(SimpleExpression)}
+ * and {@link #appendLogicalOperator(LogicalOperator, Expression)} to append its syntax directly, without intermediate strings.
+ */
+public class ExpressionRenderer implements ExpressionVisitor<StringBuilder> {
+
+    protected final DataBaseManager dataBaseManager;
+
+    protected final QueryValueResolver queryValueResolver;
+
+    protected final StringBuilder sb;
+
+    public ExpressionRenderer(DataBaseManager dataBaseManager, QueryValueResolver queryValueResolver) {
+        this(dataBaseManager, queryValueResolver, new StringBuilder());
+    }
+
+    public ExpressionRenderer(DataBaseManager dataBaseManager, QueryValueResolver queryValueResolver, StringBuilder sb) {
+        this.dataBaseManager = dataBaseManager;
+        this.queryValueResolver = queryValueResolver;
+        this.sb = sb;
+    }
+
+    /**
+     * Renders the expression in argument
+     *
+     * @param expression
+     *            : expression to render
+     * @return the rendered expression
+     */
+    public String render(Expression expression) {
+        sb.setLength(0);
+        expression.accept(this);
+        return sb.toString();
+    }
+
+    /**
+     * Renders the conditions in argument, combined with AND
+     *
+     * @param conditions
+     *            : conditions to render
+     * @return the rendered conditions
+     */
+    public String render(List<Expression> conditions) {
+        sb.setLength(0);
+        boolean first = true;
+        for (Expression condition : conditions) {
+            if (first) {
+                condition.accept(this);
+                first = false;
+            } else {
+                appendLogicalOperator(LogicalOperator.AND, condition);
+            }
+        }
+        return sb.toString();
+    }
+
+    public StringBuilder getBuffer() {
+        return sb;
+    }
+
+    public StringBuilder visit(SimpleExpression expression) {
+        sb.append(expression.getName());
+        appendCondition(expression);
+        return sb;
+    }
+
+    public StringBuilder visit(LogicalExpression expression) {
+        expression.getExpression1().accept(this);
+        appendLogicalOperator(expression.getLogicalOperator(), expression.getExpression2());
+        return sb;
+    }
+
+    /**
+     * Appends the operator and the value of the simple expression in argument, after its name.
+     *
+     * @param expression
+     *            : simple expression
+     */
+    protected void appendCondition(SimpleExpression expression) {
+        int start = sb.length();
+        appendValue(expression.getTypedValue() != null ? expression.getTypedValue().getValue() : null);
+        String value = sb.substring(start);
+        sb.setLength(start);
+        sb.append(dataBaseManager.toExpressionString(expression.getOperator(), value));
+    }
+
+    /**
+     * Appends the value in argument, converted by the {@link QueryValueResolver}.
+     *
+     * @param value
+     *            : value of a simple expression
+     */
+    protected void appendValue(Object value) {
+        queryValueResolver.appendTo(sb, value);
+    }
+
+    /**
+     * Appends the logical operator in argument and the expression which follows it.
+     *
+     * @param logicalOperator
+     *            : logical operator
+     * @param expression
+     *            : second expression of the logical operator
+     */
+    protected void appendLogicalOperator(LogicalOperator logicalOperator, Expression expression) {
+        int start = sb.length();
+        expression.accept(this);
+        String rendered = sb.substring(start);
+        sb.setLength(start);
+        sb.append(dataBaseManager.toExpressionString(logicalOperator, rendered));
+    }
+}
@@ -0,0 +1,15 @@
+package org.nds.dbdroid.query;
+
+/**
+ * Visitor of the {@link Expression} trees of a {@link Query}, used to render or evaluate the expressions without dispatching through the
+ * {@link org.nds.dbdroid.DataBaseManager}.
+ * 
+ * @param <R>
+ *            : result type
+ */
+public interface ExpressionVisitor<R> {
+
+    R visit(SimpleExpression expression);
+
+    R visit(LogicalExpression expression);
+}
@@ -0,0 +1,88 @@
+package org.nds.dbdroid.query;
+
+import java.util.Arrays;
+
+/**
+ * Grouping of the rows of a {@link Query} on columns of the entity, with an optional HAVING condition.
+ */
+public final class GroupBy {
+
+    private final String[] columns;
+    private final Expression having;
+
+    private GroupBy(String[] columns, Expression having) {
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("A group by needs at least one column");
+        }
+        for (String column : columns) {
+            if (column == null || column.length() == 0) {
+                throw new IllegalArgumentException("The columns of a group by must not be empty");
+            }
+        }
+        this.columns = columns;
+        this.having = having;
+    }
+
+    /**
+     * Groups the rows on the columns in argument
+     * 
+     * @param columns
+     *            : column names of the entity
+     * @return the {@link GroupBy}
+     */
+    public static GroupBy of(String... columns) {
+        return new GroupBy(columns != null ? columns.clone() : null, null);
+    }
+
+    /**
+     * Returns a copy of this group by, with the HAVING condition in argument
+     * 
+     * @param condition
+     *            : HAVING condition
+     * @return the new {@link GroupBy}
+     */
+    public GroupBy having(Expression condition) {
+        return new GroupBy(columns, condition);
+    }
+
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    String[] columns() {
+        return columns;
+    }
+
+    public Expression getHaving() {
+        return having;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(columns) * 31 + (having != null ? having.hashCode() : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof GroupBy)) {
+            return false;
+        }
+        GroupBy other = (GroupBy) obj;
+        return Arrays.equals(columns, other.columns) && (having == null ? other.having == null : having.equals(other.having));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,125 @@
+package org.nds.dbdroid.query;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.nds.dbdroid.helper.EntityHelper;
+import org.nds.dbdroid.helper.EntityMetadata;
+
+/**
+ * Iterator on the pages of a {@link Query}, using keyset pagination (see {@link Query#after(String, Serializable)}).<br/>
+ * The cursor (value of the keyset column and id of the last row read) can be saved with {@link #getCursorValue()} and {@link #getCursorId()}, and
+ * restored with {@link Query#after(String, Serializable, Serializable)} before creating a new iterator.
+ * 
+ * @param <E>
+ *            : {@link org.nds.dbdroid.annotation.Entity} type
+ */
+public class KeysetIterator<E> implements Iterator<List<E>> {
+
+    private final Query query;
+    private final String column;
+    private final int pageSize;
+    private final boolean descending;
+
+    private final Field columnField;
+    private final Field idField;
+
+    private Serializable cursorValue;
+    private Serializable cursorId;
+
+    private List<E> nextPage;
+    private boolean exhausted;
+
+    KeysetIterator(Query query, String column, int pageSize, boolean descending) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be greater than 0");
+        }
+        EntityMetadata metadata = EntityMetadata.forClass(query.getEntityClass());
+        int columnIndex = column != null ? metadata.getColumnIndex(column) : -1;
+        if (columnIndex < 0) {
+            throw new IllegalArgumentException("Unknown column '" + column + "' for the entity " + query.getEntityClass().getName());
+        }
+
+        this.query = query;
+        this.column = column;
+        this.pageSize = pageSize;
+        this.descending = descending;
+        this.columnField = metadata.getField(columnIndex);
+        this.idField = columnIndex != metadata.getIdColumnIndex() && metadata.getIdColumnIndex() >= 0 ? metadata.getIdField() : null;
+
+        if (column.equals(query.getKeysetColumn()) && descending == query.isKeysetDescending()) {
+            this.cursorValue = query.getKeysetValue();
+            this.cursorId = query.getKeysetId();
+        }
+    }
+
+    public boolean hasNext() {
+        if (nextPage == null && !exhausted) {
+            nextPage = fetch();
+        }
+        return nextPage != null;
+    }
+
+    public List<E> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<E> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the value of the keyset column of the last row read
+     * 
+     * @return the cursor value, or <code>null</code> before the first page
+     */
+    public Serializable getCursorValue() {
+        return cursorValue;
+    }
+
+    /**
+     * Returns the id of the last row read, used to break the ties when the keyset column is not the id column
+     * 
+     * @return the cursor id, or <code>null</code>
+     */
+    public Serializable getCursorId() {
+        return cursorId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<E> fetch() {
+        if (descending) {
+            query.before(column, cursorValue, cursorId);
+        } else {
+            query.after(column, cursorValue, cursorId);
+        }
+        query.setFirstRow(-1);
+        query.setMaxRows(pageSize);
+
+        List<E> page = (List<E>) query.queryList();
+        if (page == null || page.isEmpty()) {
+            exhausted = true;
+            return null;
+        }
+        if (page.size() < pageSize) {
+            exhausted = true;
+        }
+
+        E last = page.get(page.size() - 1);
+        cursorValue = (Serializable) EntityHelper.readField(columnField, last);
+        if (cursorValue == null) {
+            throw new IllegalStateException("NULL value of the keyset column '" + column + "' in " + last);
+        }
+        cursorId = idField != null ? (Serializable) EntityHelper.readField(idField, last) : null;
+
+        return page;
+    }
+}
@@ -18,6 +18,10 @@ public class LogicalExpression implements Expression {
         return dbManager.toExpressionString(this);
     }
 
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
     public Expression getExpression1() {
         return expression1;
     }
@@ -29,4 +33,29 @@ public class LogicalExpression implements Expression {
     public LogicalOperator getLogicalOperator() {
         return logicalOperator;
     }
+
+    @Override
+    public int hashCode() {
+        int hash = expression1 != null ? expression1.hashCode() : 0;
+        hash = hash * 31 + (expression2 != null ? expression2.hashCode() : 0);
+        return hash * 31 + (logicalOperator != null ? logicalOperator.hashCode() : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LogicalExpression)) {
+            return false;
+        }
+        LogicalExpression other = (LogicalExpression) obj;
+        return logicalOperator == other.logicalOperator && (expression1 == null ? other.expression1 == null : expression1.equals(other.expression1))
+                && (expression2 == null ? other.expression2 == null : expression2.equals(other.expression2));
+    }
+
+    @Override
+    public String toString() {
+        return "(" + expression1 + " " + logicalOperator + " " + expression2 + ")";
+    }
 }
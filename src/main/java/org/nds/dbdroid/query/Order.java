@@ -0,0 +1,70 @@
+package org.nds.dbdroid.query;
+
+/**
+ * Ordering of the rows of a {@link Query} on a column of the entity.
+ */
+public final class Order {
+
+    private final String column;
+    private final boolean ascending;
+
+    private Order(String column, boolean ascending) {
+        if (column == null || column.length() == 0) {
+            throw new IllegalArgumentException("The column of an order must not be empty");
+        }
+        this.column = column;
+        this.ascending = ascending;
+    }
+
+    /**
+     * Ascending order on the column in argument
+     * 
+     * @param column
+     *            : column name of the entity
+     * @return the {@link Order}
+     */
+    public static Order asc(String column) {
+        return new Order(column, true);
+    }
+
+    /**
+     * Descending order on the column in argument
+     * 
+     * @param column
+     *            : column name of the entity
+     * @return the {@link Order}
+     */
+    public static Order desc(String column) {
+        return new Order(column, false);
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    @Override
+    public int hashCode() {
+        return column.hashCode() * 31 + (ascending ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Order)) {
+            return false;
+        }
+        Order other = (Order) obj;
+        return ascending == other.ascending && column.equals(other.column);
+    }
+
+    @Override
+    public String toString() {
+        return column + (ascending ? " ASC" : " DESC");
+    }
+}
@@ -1,10 +1,13 @@
 package org.nds.dbdroid.query;
 
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.nds.dbdroid.DataBaseManager;
+import org.nds.dbdroid.helper.EntityMetadata;
 import org.nds.dbdroid.type.DbDroidType;
 import org.nds.dbdroid.type.TypedValue;
 
@@ -12,17 +15,32 @@ public class Query {
 
     private transient final DataBaseManager dataBaseManager;
 
-    private final LinkedList<Expression> expressions = new LinkedList<Expression>();
+    private final List<Expression> expressions = new ArrayList<Expression>();
 
     private final Class<?> entityClass;
 
+    private String[] selection;
+
     private boolean distinct;
     private String groupBy;
     private String having;
+    private GroupBy structuredGroupBy;
     private String orderBy;
+    private List<Order> orders;
     private int firstRow = -1;
     private int maxRows = -1;
 
+    private boolean cacheable;
+
+    private String keysetColumn;
+    private Serializable keysetValue;
+    private Serializable keysetId;
+    private boolean keysetDescending;
+
+    /** Result of {@link #getOptimizedExpressions()}, reset when the conditions change */
+    private List<Expression> optimizedExpressions;
+    private boolean optimized;
+
     public Query(DataBaseManager dataBaseManager, Class<?> entityClass) {
         this.dataBaseManager = dataBaseManager;
         this.entityClass = entityClass;
@@ -32,26 +50,463 @@ public class Query {
         return dataBaseManager.queryList(this);
     }
 
+    /**
+     * Returns the values of the selected columns (see {@link #select(String...)}) of the rows found, as tuples in the order of the selection.
+     * 
+     * @return list of tuples
+     */
+    public List<Object[]> queryTuples() {
+        return dataBaseManager.queryTuples(this);
+    }
+
+    /**
+     * Returns the values of the selected columns (see {@link #select(String...)}) of the rows found, converted to objects of the class in argument.
+     * Each column value is written in the field mapped to the column name (a field with a Column annotation or with the same name).
+     * 
+     * @param <D>
+     *            : result type
+     * @param resultClass
+     *            : result class, with a default constructor
+     * @return list of result objects
+     */
+    public <D> List<D> queryList(Class<D> resultClass) {
+        return dataBaseManager.queryList(this, resultClass);
+    }
+
+    /**
+     * Returns the values of the single selected column (see {@link #select(String...)}) of the rows found.
+     * 
+     * @return column values, NULL values are returned as 0
+     */
+    public long[] queryLongColumn() {
+        return dataBaseManager.queryLongColumn(this);
+    }
+
+    /**
+     * Returns the values of the single selected column (see {@link #select(String...)}) of the rows found.
+     * 
+     * @return column values, NULL values are returned as 0
+     */
+    public double[] queryDoubleColumn() {
+        return dataBaseManager.queryDoubleColumn(this);
+    }
+
+    /**
+     * Returns the number of rows found, without loading the entities if the database engine supports it.
+     * 
+     * @return number of rows
+     */
+    public long count() {
+        return dataBaseManager.count(this);
+    }
+
+    /**
+     * Returns <code>true</code> if at least one row is found.
+     * 
+     * @return <code>true</code> if the query finds a row
+     */
+    public boolean exists() {
+        return dataBaseManager.exists(this);
+    }
+
+    /**
+     * Returns the sum of the column values of the rows found.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @return a {@link Long} for an integer column, a {@link Double} else, or <code>null</code> if there is no value
+     */
+    public Number sum(String column) {
+        return (Number) dataBaseManager.aggregate(this, AggregateFunction.SUM, column);
+    }
+
+    /**
+     * Returns the minimum of the column values of the rows found.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @return the minimum value, or <code>null</code> if there is no value
+     */
+    public Object min(String column) {
+        return dataBaseManager.aggregate(this, AggregateFunction.MIN, column);
+    }
+
+    /**
+     * Returns the maximum of the column values of the rows found.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @return the maximum value, or <code>null</code> if there is no value
+     */
+    public Object max(String column) {
+        return dataBaseManager.aggregate(this, AggregateFunction.MAX, column);
+    }
+
+    /**
+     * Returns the average of the column values of the rows found.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @return the average, or <code>null</code> if there is no value
+     */
+    public Double avg(String column) {
+        return (Double) dataBaseManager.aggregate(this, AggregateFunction.AVG, column);
+    }
+
+    /**
+     * Selects the columns returned by {@link #queryTuples()}, {@link #queryList(Class)} and the column queries, so that the database engine reads
+     * only these columns.
+     * 
+     * @param columns
+     *            : column names of the entity
+     * @return this query
+     */
+    public Query select(String... columns) {
+        if (columns == null || columns.length == 0) {
+            this.selection = null;
+            return this;
+        }
+        EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+        for (String column : columns) {
+            checkColumn(metadata, column);
+        }
+        this.selection = columns.clone();
+        return this;
+    }
+
+    /**
+     * Returns the selected columns
+     * 
+     * @return the selected column names, or <code>null</code> if all the columns are selected
+     */
+    public String[] getSelection() {
+        return selection != null ? selection.clone() : null;
+    }
+
     public Query add(Expression expression) {
         expressions.add(expression);
+        optimized = false;
         return this;
     }
 
+    /**
+     * Returns a copy of this query, with the conditions in argument instead of the expressions of this query.
+     * 
+     * @param conditions
+     *            : conditions of the copy, combined with AND
+     * @return the copy
+     */
+    public Query withExpressions(List<Expression> conditions) {
+        Query copy = new Query(dataBaseManager, entityClass);
+        copy.expressions.addAll(conditions);
+        copy.selection = selection;
+        copy.distinct = distinct;
+        copy.groupBy = groupBy;
+        copy.having = having;
+        copy.structuredGroupBy = structuredGroupBy;
+        copy.orderBy = orderBy;
+        copy.orders = orders;
+        copy.firstRow = firstRow;
+        copy.maxRows = maxRows;
+        copy.keysetColumn = keysetColumn;
+        copy.keysetValue = keysetValue;
+        copy.keysetId = keysetId;
+        copy.keysetDescending = keysetDescending;
+        copy.cacheable = cacheable;
+        return copy;
+    }
+
+    public List<Expression> getExpressions() {
+        return Collections.unmodifiableList(expressions);
+    }
+
+    /**
+     * Returns the conditions of the query (the added expressions and the keyset condition), combined with AND, rewritten by the
+     * {@link QueryOptimizer}. The result is computed once, until an expression is added or the keyset position changes.
+     * 
+     * @return the optimized conditions (unmodifiable), or <code>null</code> if the conditions can never be satisfied
+     */
+    public List<Expression> getOptimizedExpressions() {
+        if (!optimized) {
+            List<Expression> conditions = expressions;
+            Expression keysetExpression = getKeysetExpression();
+            if (keysetExpression != null) {
+                conditions = new ArrayList<Expression>(expressions);
+                conditions.add(keysetExpression);
+            }
+            List<Expression> result = QueryOptimizer.optimize(conditions);
+            optimizedExpressions = result != null ? Collections.unmodifiableList(result) : null;
+            optimized = true;
+        }
+        return optimizedExpressions;
+    }
+
+    /**
+     * Returns <code>true</code> if the conditions of the query can never be satisfied: the query returns no rows without being run.
+     * 
+     * @return <code>true</code> if the result is always empty
+     */
+    public boolean isAlwaysEmpty() {
+        return getOptimizedExpressions() == null;
+    }
+
     public String toExpressionString() {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < expressions.size(); i++) {
-            Expression expr = expressions.get(i);
-            String s = expr.toQueryString(dataBaseManager);
-            if (i > 0) {
-                sb.append(dataBaseManager.toExpressionString(LogicalOperator.AND, s));
-            } else {
-                sb.append(s);
+        List<Expression> conditions = getOptimizedExpressions();
+        if (conditions == null) {
+            // Never satisfied: render the conditions as they are
+            conditions = new ArrayList<Expression>(expressions);
+            Expression keysetExpression = getKeysetExpression();
+            if (keysetExpression != null) {
+                conditions.add(keysetExpression);
             }
         }
 
+        return dataBaseManager.createExpressionRenderer().render(conditions);
+    }
+
+    /**
+     * Returns the shape of this query: the query without its values, the same for all the executions of a query built by the same code (ex:
+     * <code>SELECT Entity1 WHERE (name IN ? OR name = ?) ORDER BY name DESC LIMIT ?</code>).<br/>
+     * Used to aggregate the metrics of the queries.
+     * 
+     * @return the shape of the query
+     */
+    public String getShape() {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        if (distinct) {
+            sb.append("DISTINCT ");
+        }
+        if (selection != null) {
+            sb.append(Arrays.toString(selection)).append(" FROM ");
+        }
+        sb.append(entityClass.getSimpleName());
+        List<Expression> conditions = getShapeConditions();
+        ExpressionVisitor<StringBuilder> shapeRenderer = new ShapeRenderer(sb, null);
+        for (int i = 0; i < conditions.size(); i++) {
+            sb.append(i == 0 ? " WHERE " : " AND ");
+            conditions.get(i).accept(shapeRenderer);
+        }
+        if (getGroupBy() != null) {
+            sb.append(" GROUP BY ").append(getGroupBy());
+        }
+        if (having != null) {
+            sb.append(" HAVING ").append(having);
+        }
+        if (getOrderBy() != null) {
+            sb.append(" ORDER BY ").append(getOrderBy());
+        }
+        if (maxRows >= 0) {
+            sb.append(" LIMIT ?");
+        }
+        if (firstRow > 0) {
+            sb.append(" OFFSET ?");
+        }
         return sb.toString();
     }
 
+    /**
+     * Returns the conditions whose values are the '?' of the shape of this query (see {@link #getShape()}), in the same order
+     * 
+     * @return the conditions with a value
+     */
+    public List<SimpleExpression> getShapeParameters() {
+        List<SimpleExpression> parameters = new ArrayList<SimpleExpression>();
+        ExpressionVisitor<StringBuilder> shapeRenderer = new ShapeRenderer(new StringBuilder(), parameters);
+        for (Expression condition : getShapeConditions()) {
+            condition.accept(shapeRenderer);
+        }
+        return parameters;
+    }
+
+    private List<Expression> getShapeConditions() {
+        List<Expression> conditions = new ArrayList<Expression>(expressions);
+        Expression keysetExpression = getKeysetExpression();
+        if (keysetExpression != null) {
+            conditions.add(keysetExpression);
+        }
+        return conditions;
+    }
+
+    /**
+     * Renders the expressions with '?' in place of the values
+     */
+    private static final class ShapeRenderer implements ExpressionVisitor<StringBuilder> {
+
+        private final StringBuilder sb;
+
+        private final List<SimpleExpression> parameters;
+
+        ShapeRenderer(StringBuilder sb, List<SimpleExpression> parameters) {
+            this.sb = sb;
+            this.parameters = parameters;
+        }
+
+        public StringBuilder visit(SimpleExpression expression) {
+            sb.append(expression.getName()).append(' ').append(expression.getOperator());
+            if (expression.getOperator() != Operator.IS_NULL && expression.getOperator() != Operator.IS_NOT_NULL) {
+                sb.append(" ?");
+                if (parameters != null) {
+                    parameters.add(expression);
+                }
+            }
+            return sb;
+        }
+
+        public StringBuilder visit(LogicalExpression expression) {
+            sb.append('(');
+            expression.getExpression1().accept(this);
+            sb.append(expression.getLogicalOperator() == LogicalOperator.NOT ? " AND NOT " : " " + expression.getLogicalOperator() + " ");
+            expression.getExpression2().accept(this);
+            return sb.append(')');
+        }
+    }
+
+    /**
+     * Keyset pagination: returns the rows following the row with the value in argument, in the ascending order of the column.<br/>
+     * Unlike {@link #setFirstRow(int)}, the database engine seeks directly to the first row of the page, whatever the depth of the page. The column
+     * must be unique (the id column for example) and not NULL; else use {@link #after(String, Serializable, Serializable)}.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @param lastValue
+     *            : column value of the last row of the previous page, <code>null</code> for the first page
+     * @return this query
+     */
+    public Query after(String column, Serializable lastValue) {
+        return seek(column, lastValue, null, false);
+    }
+
+    /**
+     * Keyset pagination on a non unique column: returns the rows following the row with the values in argument, in the ascending order of the
+     * column and then of the id.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @param lastValue
+     *            : column value of the last row of the previous page, <code>null</code> for the first page
+     * @param lastId
+     *            : id of the last row of the previous page
+     * @return this query
+     */
+    public Query after(String column, Serializable lastValue, Serializable lastId) {
+        return seek(column, lastValue, lastId, false);
+    }
+
+    /**
+     * Keyset pagination: returns the rows preceding the row with the value in argument, in the descending order of the column.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @param lastValue
+     *            : column value of the last row of the previous page, <code>null</code> for the first page
+     * @return this query
+     * @see #after(String, Serializable)
+     */
+    public Query before(String column, Serializable lastValue) {
+        return seek(column, lastValue, null, true);
+    }
+
+    /**
+     * Keyset pagination on a non unique column: returns the rows preceding the row with the values in argument, in the descending order of the
+     * column and then of the id.
+     * 
+     * @param column
+     *            : column name of the entity
+     * @param lastValue
+     *            : column value of the last row of the previous page, <code>null</code> for the first page
+     * @param lastId
+     *            : id of the last row of the previous page
+     * @return this query
+     * @see #after(String, Serializable, Serializable)
+     */
+    public Query before(String column, Serializable lastValue, Serializable lastId) {
+        return seek(column, lastValue, lastId, true);
+    }
+
+    private Query seek(String column, Serializable lastValue, Serializable lastId, boolean descending) {
+        checkColumn(EntityMetadata.forClass(entityClass), column);
+        this.keysetColumn = column;
+        this.keysetValue = lastValue;
+        this.keysetId = lastId;
+        this.keysetDescending = descending;
+        this.optimized = false;
+        return this;
+    }
+
+    /**
+     * Returns an iterator on the pages of the rows found, using keyset pagination on the column in argument (see {@link #after(String, Serializable)}
+     * ).<br/>
+     * The iterator starts from the current keyset position of the query on this column, if any. This query is modified by the iterator.
+     * 
+     * @param <E>
+     *            : {@link org.nds.dbdroid.annotation.Entity} type
+     * @param column
+     *            : column name of the entity, not NULL
+     * @param pageSize
+     *            : maximum number of rows of a page
+     * @param descending
+     *            : <code>true</code> for the descending order of the column
+     * @return the page iterator
+     */
+    public <E> KeysetIterator<E> keysetIterator(String column, int pageSize, boolean descending) {
+        return new KeysetIterator<E>(this, column, pageSize, descending);
+    }
+
+    public String getKeysetColumn() {
+        return keysetColumn;
+    }
+
+    public Serializable getKeysetValue() {
+        return keysetValue;
+    }
+
+    public Serializable getKeysetId() {
+        return keysetId;
+    }
+
+    public boolean isKeysetDescending() {
+        return keysetDescending;
+    }
+
+    /**
+     * Returns the condition selecting the rows of the current keyset page: <code>column &gt; lastValue</code>, or
+     * <code>column &gt; lastValue OR (column = lastValue AND id &gt; lastId)</code> with a tie-breaking id.
+     * 
+     * @return the keyset condition, or <code>null</code> if there is no keyset position
+     */
+    public Expression getKeysetExpression() {
+        if (keysetColumn == null || keysetValue == null) {
+            return null;
+        }
+
+        EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+        Operator operator = keysetDescending ? Operator.LESS_THAN : Operator.GREATER_THAN;
+        DbDroidType type = metadata.getColumnType(metadata.getColumnIndex(keysetColumn));
+        Expression expression = createExpression(keysetColumn, keysetValue, type, operator);
+
+        String idColumn = getKeysetIdColumn();
+        if (idColumn != null && keysetId != null) {
+            DbDroidType idType = metadata.getColumnType(metadata.getIdColumnIndex());
+            Expression tie = createLogicalExpression(createExpression(keysetColumn, keysetValue, type, Operator.EQUAL),
+                    createExpression(idColumn, keysetId, idType, operator), LogicalOperator.AND);
+            expression = createLogicalExpression(expression, tie, LogicalOperator.OR);
+        }
+
+        return expression;
+    }
+
+    /**
+     * Returns the id column used to break the ties of the keyset column, or <code>null</code> if the keyset column is the id column
+     */
+    String getKeysetIdColumn() {
+        EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+        int idIndex = metadata.getIdColumnIndex();
+        if (idIndex < 0 || metadata.getColumnIndex(keysetColumn) == idIndex) {
+            return null;
+        }
+        return metadata.getColumnName(idIndex);
+    }
+
     public static SimpleExpression createExpression(String name, Serializable val, DbDroidType type, Operator operatior) {
         SimpleExpression condition = new SimpleExpression(name, new TypedValue(val, type), operatior);
         return condition;
@@ -75,31 +530,215 @@ public class Query {
         return distinct;
     }
 
+    /**
+     * Sets the GROUP BY clause as a raw string, which replaces the {@link GroupBy} object if any.
+     * 
+     * @param groupBy
+     *            : GROUP BY clause
+     * @return this query
+     * @see #groupBy(GroupBy)
+     */
     public Query groupBy(String groupBy) {
         this.groupBy = groupBy;
+        this.structuredGroupBy = null;
+        return this;
+    }
+
+    /**
+     * Sets the grouping of the rows, which replaces the raw GROUP BY and HAVING clauses if any.
+     * 
+     * @param groupBy
+     *            : {@link GroupBy} on columns of the entity
+     * @return this query
+     */
+    public Query groupBy(GroupBy groupBy) {
+        if (groupBy != null) {
+            EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+            for (String column : groupBy.columns()) {
+                checkColumn(metadata, column);
+            }
+        }
+        this.structuredGroupBy = groupBy;
+        this.groupBy = null;
+        this.having = null;
         return this;
     }
 
+    /**
+     * Returns the GROUP BY clause, rendered from the {@link GroupBy} object if any.
+     * 
+     * @return the GROUP BY clause
+     */
     public String getGroupBy() {
-        return groupBy;
+        return structuredGroupBy != null ? structuredGroupBy.toString() : groupBy;
     }
 
+    /**
+     * Returns the grouping of the rows.
+     * 
+     * @return the {@link GroupBy}, or <code>null</code> if there is no grouping or if it is given as a raw string
+     */
+    public GroupBy getStructuredGroupBy() {
+        return structuredGroupBy;
+    }
+
+    /**
+     * Sets the HAVING clause of the raw GROUP BY clause (see {@link #groupBy(String)}). The HAVING condition of a {@link GroupBy} object is given
+     * by {@link GroupBy#having(Expression)}.
+     * 
+     * @param having
+     *            : HAVING clause
+     * @return this query
+     * @throws IllegalStateException
+     *             if the grouping is a {@link GroupBy} object
+     */
     public Query having(String having) {
+        if (structuredGroupBy != null && having != null) {
+            throw new IllegalStateException("The HAVING condition of a GroupBy object must be set with GroupBy.having(Expression)");
+        }
         this.having = having;
         return this;
     }
 
+    /**
+     * Returns the HAVING clause, rendered from the condition of the {@link GroupBy} object if any.
+     * 
+     * @return the HAVING clause
+     */
     public String getHaving() {
+        if (structuredGroupBy != null) {
+            Expression condition = structuredGroupBy.getHaving();
+            return condition != null ? condition.toQueryString(dataBaseManager) : null;
+        }
         return having;
     }
 
+    /**
+     * Sets the ORDER BY clause as a raw string, which replaces the {@link Order} objects if any.
+     * 
+     * @param orderBy
+     *            : ORDER BY clause
+     * @return this query
+     * @see #orderBy(Order...)
+     */
     public Query orderBy(String orderBy) {
         this.orderBy = orderBy;
+        this.orders = null;
+        return this;
+    }
+
+    /**
+     * Sets the ordering of the rows, which replaces the raw ORDER BY clause if any.
+     * 
+     * @param orders
+     *            : {@link Order} objects on columns of the entity
+     * @return this query
+     */
+    public Query orderBy(Order... orders) {
+        List<Order> list = null;
+        if (orders != null && orders.length > 0) {
+            EntityMetadata metadata = EntityMetadata.forClass(entityClass);
+            list = new ArrayList<Order>(orders.length);
+            for (Order order : orders) {
+                if (order == null) {
+                    throw new IllegalArgumentException("The orders must not be null");
+                }
+                checkColumn(metadata, order.getColumn());
+                list.add(order);
+            }
+        }
+        this.orders = list;
+        this.orderBy = null;
         return this;
     }
 
+    /**
+     * Returns the ordering of the rows, with the keyset column (and the tie-breaking id column) first for keyset pagination.<br/>
+     * A database engine can use it to choose an index which already satisfies the ordering.
+     * 
+     * @return the {@link Order} objects, or <code>null</code> if the ordering is given as a raw string
+     */
+    public List<Order> getOrders() {
+        if (orderBy != null && orderBy.length() > 0) {
+            return null;
+        }
+
+        List<Order> list = keysetColumn != null ? getKeysetOrders() : new ArrayList<Order>();
+        if (orders != null) {
+            list.addAll(orders);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the ORDER BY clause, rendered from the {@link Order} objects if any. With keyset pagination, the keyset column (and the tie-breaking id
+     * column) comes first.
+     * 
+     * @return the ORDER BY clause
+     */
     public String getOrderBy() {
-        return orderBy;
+        List<Order> list = getOrders();
+        if (list == null) {
+            if (keysetColumn == null) {
+                return orderBy;
+            }
+            return renderOrders(getKeysetOrders()) + ", " + orderBy;
+        }
+        return list.isEmpty() ? null : renderOrders(list);
+    }
+
+    private List<Order> getKeysetOrders() {
+        List<Order> list = new ArrayList<Order>(2);
+        list.add(keysetDescending ? Order.desc(keysetColumn) : Order.asc(keysetColumn));
+        String idColumn = getKeysetIdColumn();
+        if (idColumn != null) {
+            list.add(keysetDescending ? Order.desc(idColumn) : Order.asc(idColumn));
+        }
+        return list;
+    }
+
+    private static String renderOrders(List<Order> list) {
+        StringBuilder sb = new StringBuilder();
+        for (Order order : list) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(order);
+        }
+        return sb.toString();
+    }
+
+    private void checkColumn(EntityMetadata metadata, String column) {
+        if (metadata.getColumnIndex(column) < 0) {
+            throw new IllegalArgumentException("Unknown column '" + column + "' for the entity " + entityClass.getName());
+        }
+    }
+
+    /**
+     * Allows the result of queryList() to be served from the query cache of the {@link DataBaseManager}, if any. Each call returns new entities,
+     * even when served from the cache.
+     * 
+     * @param cacheable
+     * @return this query
+     */
+    public Query setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+        return this;
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * Returns the key of the query in the query cache: two queries with the same entity class, optimized conditions, selection, grouping, ordering
+     * and paging have equal keys.
+     * 
+     * @return the cache key
+     */
+    public Object getCacheKey() {
+        return Arrays.asList(entityClass, getOptimizedExpressions(), selection != null ? Arrays.asList(selection) : null, Boolean.valueOf(distinct),
+                getGroupBy(), getHaving(), getOrderBy(), Integer.valueOf(firstRow), Integer.valueOf(maxRows));
     }
 
     public Query setFirstRow(int firstRow) {
@@ -0,0 +1,293 @@
+package org.nds.dbdroid.query;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nds.dbdroid.annotation.Entity;
+import org.nds.dbdroid.helper.EntityHelper;
+import org.nds.dbdroid.helper.EntityMetadata;
+import org.nds.dbdroid.type.LazyValue;
+
+/**
+ * Bounded LRU cache of query results, used by {@link org.nds.dbdroid.DataBaseManager#queryList(Query)} for the queries marked as cacheable (see
+ * {@link Query#setCacheable(boolean)}).<br/>
+ * The results are invalidated per entity class (table): each entity class has a generation incremented by every write on the table, and a result
+ * computed with an older generation is discarded.<br/>
+ * The entities are cached as copies of their column values, and each hit returns new entities: a caller can modify the entities it gets without
+ * altering the cache. The lazy columns not loaded are not cached, they are loaded again on demand.
+ */
+public class QueryCache {
+
+    private final int maxEntries;
+
+    private final int maxRows;
+
+    private final LinkedHashMap<Object, Entry> entries;
+
+    private final Map<Class<?>, Long> generations = new HashMap<Class<?>, Long>();
+
+    private long globalGeneration;
+
+    private int rows;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache
+     *
+     * @param maxEntries
+     *            : maximum number of cached query results
+     * @param maxRows
+     *            : maximum number of rows of all the cached results
+     */
+    public QueryCache(int maxEntries, int maxRows) {
+        if (maxEntries <= 0 || maxRows <= 0) {
+            throw new IllegalArgumentException("The cache size must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+        // Access order: the first entry is the least recently used
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached result of a query
+     *
+     * @param key
+     *            : query key (see {@link Query#getCacheKey()})
+     * @param entityClass
+     *            : entity class of the query
+     * @return a new list of new entities, or <code>null</code> if not cached or invalidated
+     */
+    public List<?> get(Object key, Class<?> entityClass) {
+        List<Object> rows;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            if (entry.generation != getGeneration(entityClass)) {
+                remove(key, entry);
+                invalidations++;
+                misses++;
+                return null;
+            }
+            hits++;
+            rows = entry.result;
+        }
+
+        // The cached rows are never modified: the entities are created outside the lock
+        List<Object> result = new ArrayList<Object>(rows.size());
+        for (Object row : rows) {
+            result.add(row instanceof CachedRow ? ((CachedRow) row).newEntity() : row);
+        }
+        return result;
+    }
+
+    /**
+     * Caches the result of a query, unless the table has been modified since the generation in argument.
+     *
+     * @param key
+     *            : query key (see {@link Query#getCacheKey()})
+     * @param entityClass
+     *            : entity class of the query
+     * @param generation
+     *            : generation of the entity class read before running the query (see {@link #getGeneration(Class)})
+     * @param result
+     *            : query result
+     */
+    public void put(Object key, Class<?> entityClass, long generation, List<?> result) {
+        if (result.size() > maxRows) {
+            return;
+        }
+        List<Object> cachedRows = new ArrayList<Object>(result.size());
+        for (Object value : result) {
+            cachedRows.add(value != null && value.getClass().isAnnotationPresent(Entity.class) ? new CachedRow(value) : value);
+        }
+        putRows(key, entityClass, generation, cachedRows);
+    }
+
+    private synchronized void putRows(Object key, Class<?> entityClass, long generation, List<Object> cachedRows) {
+        if (generation != getGeneration(entityClass)) {
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            rows -= previous.result.size();
+        }
+        entries.put(key, new Entry(cachedRows, generation));
+        rows += cachedRows.size();
+
+        // Evict the least recently used results
+        Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || rows > maxRows) && it.hasNext()) {
+            Map.Entry<Object, Entry> eldest = it.next();
+            rows -= eldest.getValue().result.size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns the current generation of the entity class in argument
+     *
+     * @param entityClass
+     *            : entity class
+     * @return the generation
+     */
+    public synchronized long getGeneration(Class<?> entityClass) {
+        Long generation = generations.get(entityClass);
+        // Both generations only increase: their sum changes when one of them changes
+        return globalGeneration + (generation != null ? generation.longValue() : 0);
+    }
+
+    /**
+     * Invalidates the results of the queries on the entity class in argument
+     *
+     * @param entityClass
+     *            : modified entity class
+     */
+    public synchronized void invalidate(Class<?> entityClass) {
+        Long generation = generations.get(entityClass);
+        generations.put(entityClass, Long.valueOf(generation != null ? generation.longValue() + 1 : 1));
+    }
+
+    /**
+     * Invalidates all the results
+     */
+    public synchronized void invalidateAll() {
+        globalGeneration++;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        rows = 0;
+        globalGeneration++;
+    }
+
+    private void remove(Object key, Entry entry) {
+        entries.remove(key);
+        rows -= entry.result.size();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getRowCount() {
+        return rows;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the ratio of the lookups which found a valid result
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryCache[entries=" + entries.size() + ", rows=" + rows + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", invalidations=" + invalidations + "]";
+    }
+
+    /**
+     * Column values of a cached entity
+     */
+    private static final class CachedRow {
+
+        private final EntityMetadata metadata;
+        private final Object[] values;
+
+        CachedRow(Object entity) {
+            this.metadata = EntityMetadata.forClass(entity.getClass());
+            this.values = new Object[metadata.getColumnCount()];
+            for (int i = 0; i < values.length; i++) {
+                Object value = read(metadata.getField(i), entity);
+                if (value instanceof LazyValue<?>) {
+                    LazyValue<?> lazyValue = (LazyValue<?>) value;
+                    value = lazyValue.isLoaded() ? new LazyValue<Object>(EntityHelper.copyValue(lazyValue.get())) : null;
+                } else {
+                    value = EntityHelper.copyValue(value);
+                }
+                values[i] = value;
+            }
+        }
+
+        Object newEntity() {
+            Object entity;
+            try {
+                entity = metadata.getEntityClass().newInstance();
+            } catch (InstantiationException e) {
+                throw new IllegalStateException("Cannot instantiate " + metadata.getEntityClass().getName(), e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot instantiate " + metadata.getEntityClass().getName(), e);
+            }
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value instanceof LazyValue<?>) {
+                    value = new LazyValue<Object>(EntityHelper.copyValue(((LazyValue<?>) value).get()));
+                } else {
+                    value = EntityHelper.copyValue(value);
+                }
+                write(metadata.getField(i), value, entity);
+            }
+            return entity;
+        }
+
+        private static Object read(Field field, Object entity) {
+            try {
+                return field.get(entity);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        private static void write(Field field, Object value, Object entity) {
+            try {
+                field.set(entity, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final List<Object> result;
+        private final long generation;
+
+        Entry(List<Object> result, long generation) {
+            this.result = result;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package org.nds.dbdroid.query;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.nds.dbdroid.type.TypedValue;
+
+/**
+ * Rewrites the conditions of a {@link Query} before they are rendered:
+ * <ul>
+ * <li>nested AND / OR expressions are flattened,</li>
+ * <li>duplicated conditions are removed,</li>
+ * <li>EQUAL conditions on the same column combined with OR are merged into an IN condition,</li>
+ * <li>conditions always true (NOT IN an empty list, IS NULL OR IS NOT NULL...) are removed,</li>
+ * <li>conditions never true (IN an empty list, two different EQUAL values, IS NULL AND another comparison...) are detected, so that the query
+ * returns no rows without running it,</li>
+ * <li>the conditions combined with AND are reordered by estimated selectivity, the most selective first.</li>
+ * </ul>
+ * A {@link LogicalExpression} with the NOT operator means <code>expression1 AND NOT expression2</code>.
+ */
+public final class QueryOptimizer {
+
+    private QueryOptimizer() {
+    }
+
+    /**
+     * Optimizes the conditions in argument, combined with AND.
+     *
+     * @param conditions
+     *            : conditions of a query
+     * @return the optimized conditions, combined with AND (an empty list if there is no condition left), or <code>null</code> if the conditions can
+     *         never be satisfied
+     */
+    public static List<Expression> optimize(List<? extends Expression> conditions) {
+        List<Node> terms = new ArrayList<Node>(conditions.size());
+        for (Expression expression : conditions) {
+            terms.add(toNode(expression));
+        }
+        Node node = simplify(new Junction(true, terms));
+
+        if (node == FALSE) {
+            return null;
+        }
+        List<Expression> result = new ArrayList<Expression>();
+        if (node == TRUE) {
+            return result;
+        }
+        List<Node> conjuncts = node instanceof Junction && ((Junction) node).and ? ((Junction) node).terms : Collections.singletonList(node);
+        for (Node conjunct : conjuncts) {
+            if (conjunct instanceof Not) {
+                if (result.isEmpty()) {
+                    // A negation must follow a positive condition
+                    return new ArrayList<Expression>(conditions);
+                }
+                Expression negated = toExpression(((Not) conjunct).node);
+                if (negated == null) {
+                    return new ArrayList<Expression>(conditions);
+                }
+                int last = result.size() - 1;
+                result.set(last, new LogicalExpression(result.get(last), negated, LogicalOperator.NOT));
+            } else {
+                Expression expression = toExpression(conjunct);
+                if (expression == null) {
+                    return new ArrayList<Expression>(conditions);
+                }
+                result.add(expression);
+            }
+        }
+        return result;
+    }
+
+    private static Node toNode(Expression expression) {
+        if (expression instanceof SimpleExpression) {
+            SimpleExpression simple = (SimpleExpression) expression;
+            if (simple.getOperator() == Operator.IN || simple.getOperator() == Operator.NOT_IN) {
+                Object value = simple.getTypedValue() != null ? simple.getTypedValue().getValue() : null;
+                if (isEmptyList(value)) {
+                    return simple.getOperator() == Operator.IN ? FALSE : TRUE;
+                }
+            }
+            return new Leaf(simple);
+        } else if (expression instanceof LogicalExpression) {
+            LogicalExpression logical = (LogicalExpression) expression;
+            Node node1 = toNode(logical.getExpression1());
+            Node node2 = toNode(logical.getExpression2());
+            switch (logical.getLogicalOperator()) {
+                case AND:
+                    return new Junction(true, node1, node2);
+                case OR:
+                    return new Junction(false, node1, node2);
+                case NOT:
+                    return new Junction(true, node1, negate(node2));
+                default:
+                    break;
+            }
+        }
+        return new Opaque(expression);
+    }
+
+    private static Node negate(Node node) {
+        if (node == TRUE) {
+            return FALSE;
+        } else if (node == FALSE) {
+            return TRUE;
+        } else if (node instanceof Not) {
+            return ((Not) node).node;
+        } else if (node instanceof Leaf) {
+            SimpleExpression simple = ((Leaf) node).expression;
+            Operator negated = negate(simple.getOperator());
+            if (negated != null) {
+                return new Leaf(new SimpleExpression(simple.getName(), simple.getTypedValue(), negated));
+            }
+        }
+        return new Not(node);
+    }
+
+    private static Operator negate(Operator operator) {
+        switch (operator) {
+            case EQUAL:
+                return Operator.NOT_EQUAL;
+            case NOT_EQUAL:
+                return Operator.EQUAL;
+            case GREATER_THAN:
+                return Operator.LESS_THAN_OR_EQUAL;
+            case LESS_THAN:
+                return Operator.GREATER_THAN_OR_EQUAL;
+            case GREATER_THAN_OR_EQUAL:
+                return Operator.LESS_THAN;
+            case LESS_THAN_OR_EQUAL:
+                return Operator.GREATER_THAN;
+            case IN:
+                return Operator.NOT_IN;
+            case NOT_IN:
+                return Operator.IN;
+            case IS_NULL:
+                return Operator.IS_NOT_NULL;
+            case IS_NOT_NULL:
+                return Operator.IS_NULL;
+            default:
+                return null;
+        }
+    }
+
+    private static Node simplify(Node node) {
+        if (node instanceof Not) {
+            Node inner = simplify(((Not) node).node);
+            return inner == TRUE || inner == FALSE ? negate(inner) : new Not(inner);
+        } else if (!(node instanceof Junction)) {
+            return node;
+        }
+
+        Junction junction = (Junction) node;
+        Node absorbing = junction.and ? FALSE : TRUE;
+        Node neutral = junction.and ? TRUE : FALSE;
+
+        // Flatten the nested junctions of the same kind, and remove the duplicated terms
+        Set<Node> terms = new LinkedHashSet<Node>();
+        if (!flatten(junction.and, junction.terms, terms, absorbing, neutral)) {
+            return absorbing;
+        }
+
+        List<Node> list = new ArrayList<Node>(terms);
+        if (junction.and) {
+            if (isContradiction(list)) {
+                return FALSE;
+            }
+            // The negations are put after the positive conditions (expression1 AND NOT expression2)
+            List<Node> negations = new ArrayList<Node>();
+            for (Iterator<Node> it = list.iterator(); it.hasNext();) {
+                Node term = it.next();
+                if (term instanceof Not) {
+                    negations.add(term);
+                    it.remove();
+                }
+            }
+            Collections.sort(list, SELECTIVITY);
+            list.addAll(negations);
+        } else {
+            if (isTautology(list)) {
+                return TRUE;
+            }
+            list = mergeEquals(list);
+        }
+
+        if (list.isEmpty()) {
+            return neutral;
+        } else if (list.size() == 1) {
+            return list.get(0);
+        }
+        return new Junction(junction.and, list);
+    }
+
+    /**
+     * Adds the simplified terms to the set, flattening the junctions of the same kind.
+     *
+     * @return <code>false</code> if a term is the absorbing element of the junction
+     */
+    private static boolean flatten(boolean and, List<Node> source, Set<Node> terms, Node absorbing, Node neutral) {
+        for (Node term : source) {
+            Node simplified = simplify(term);
+            if (simplified == absorbing) {
+                return false;
+            } else if (simplified == neutral) {
+                continue;
+            } else if (simplified instanceof Junction && ((Junction) simplified).and == and) {
+                if (!flatten(and, ((Junction) simplified).terms, terms, absorbing, neutral)) {
+                    return false;
+                }
+            } else {
+                terms.add(simplified);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isContradiction(List<Node> terms) {
+        for (int i = 0; i < terms.size(); i++) {
+            Node term = terms.get(i);
+            for (int j = i + 1; j < terms.size(); j++) {
+                Node other = terms.get(j);
+                if ((term instanceof Not && ((Not) term).node.equals(other)) || (other instanceof Not && ((Not) other).node.equals(term))) {
+                    return true;
+                }
+                if (term instanceof Leaf && other instanceof Leaf && isContradiction(((Leaf) term).expression, ((Leaf) other).expression)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isContradiction(SimpleExpression expression1, SimpleExpression expression2) {
+        if (expression1.getName() == null || !expression1.getName().equals(expression2.getName())) {
+            return false;
+        }
+        Operator operator1 = expression1.getOperator();
+        Operator operator2 = expression2.getOperator();
+        if (operator1 == Operator.IS_NULL || operator2 == Operator.IS_NULL) {
+            // NULL is neither equal, different, greater nor lower than any value
+            Operator other = operator1 == Operator.IS_NULL ? operator2 : operator1;
+            return other != Operator.IS_NULL;
+        }
+
+        Object value1 = getValue(expression1);
+        Object value2 = getValue(expression2);
+        if (value1 == null || value2 == null || !value1.getClass().equals(value2.getClass()) || value1.getClass().isArray()) {
+            return false;
+        }
+        if (operator1 == Operator.EQUAL && operator2 == Operator.EQUAL) {
+            return !value1.equals(value2);
+        }
+        if ((operator1 == Operator.EQUAL && operator2 == Operator.NOT_EQUAL) || (operator1 == Operator.NOT_EQUAL && operator2 == Operator.EQUAL)) {
+            return value1.equals(value2);
+        }
+        return false;
+    }
+
+    private static boolean isTautology(List<Node> terms) {
+        for (int i = 0; i < terms.size(); i++) {
+            if (!(terms.get(i) instanceof Leaf)) {
+                continue;
+            }
+            SimpleExpression expression1 = ((Leaf) terms.get(i)).expression;
+            for (int j = i + 1; j < terms.size(); j++) {
+                if (!(terms.get(j) instanceof Leaf)) {
+                    continue;
+                }
+                SimpleExpression expression2 = ((Leaf) terms.get(j)).expression;
+                if (expression1.getName() != null && expression1.getName().equals(expression2.getName())
+                        && ((expression1.getOperator() == Operator.IS_NULL && expression2.getOperator() == Operator.IS_NOT_NULL) || (expression1
+                                .getOperator() == Operator.IS_NOT_NULL && expression2.getOperator() == Operator.IS_NULL))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the EQUAL and IN conditions on the same column, combined with OR, into one IN condition.
+     */
+    private static List<Node> mergeEquals(List<Node> terms) {
+        List<Node> result = new ArrayList<Node>(terms.size());
+        boolean[] merged = new boolean[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            if (merged[i]) {
+                continue;
+            }
+            SimpleExpression expression = getInOrEqual(terms.get(i));
+            if (expression == null) {
+                result.add(terms.get(i));
+                continue;
+            }
+
+            Set<Object> values = null;
+            for (int j = i + 1; j < terms.size(); j++) {
+                SimpleExpression other = merged[j] ? null : getInOrEqual(terms.get(j));
+                if (other != null && expression.getName().equals(other.getName())
+                        && expression.getTypedValue().getType() == other.getTypedValue().getType()) {
+                    if (values == null) {
+                        values = new LinkedHashSet<Object>();
+                        addValues(expression, values);
+                    }
+                    addValues(other, values);
+                    merged[j] = true;
+                }
+            }
+
+            if (values == null) {
+                result.add(terms.get(i));
+            } else {
+                TypedValue typedValue = new TypedValue(new ArrayList<Object>(values), expression.getTypedValue().getType());
+                result.add(new Leaf(new SimpleExpression(expression.getName(), typedValue, Operator.IN)));
+            }
+        }
+        return result;
+    }
+
+    private static SimpleExpression getInOrEqual(Node node) {
+        if (node instanceof Leaf) {
+            SimpleExpression expression = ((Leaf) node).expression;
+            if (expression.getName() != null && expression.getTypedValue() != null) {
+                Object value = expression.getTypedValue().getValue();
+                if ((expression.getOperator() == Operator.EQUAL && value != null)
+                        || (expression.getOperator() == Operator.IN && (value instanceof Collection<?> || (value != null && value.getClass().isArray())))) {
+                    return expression;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void addValues(SimpleExpression expression, Set<Object> values) {
+        Object value = expression.getTypedValue().getValue();
+        if (expression.getOperator() == Operator.EQUAL) {
+            values.add(value);
+        } else if (value instanceof Collection<?>) {
+            values.addAll((Collection<?>) value);
+        } else {
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                values.add(Array.get(value, i));
+            }
+        }
+    }
+
+    private static Expression toExpression(Node node) {
+        if (node instanceof Leaf) {
+            return ((Leaf) node).expression;
+        } else if (node instanceof Opaque) {
+            return ((Opaque) node).expression;
+        } else if (node instanceof Junction) {
+            Junction junction = (Junction) node;
+            Expression result = null;
+            for (Node term : junction.terms) {
+                if (term instanceof Not) {
+                    // expression1 AND NOT expression2
+                    Expression negated = toExpression(((Not) term).node);
+                    if (!junction.and || result == null || negated == null) {
+                        return null;
+                    }
+                    result = new LogicalExpression(result, negated, LogicalOperator.NOT);
+                } else {
+                    Expression expression = toExpression(term);
+                    if (expression == null) {
+                        return null;
+                    }
+                    result = result == null ? expression : new LogicalExpression(result, expression, junction.and ? LogicalOperator.AND
+                            : LogicalOperator.OR);
+                }
+            }
+            return result;
+        }
+        // TRUE, FALSE and standalone negations cannot be expressed
+        return null;
+    }
+
+    private static boolean isEmptyList(Object value) {
+        if (value instanceof Collection<?>) {
+            return ((Collection<?>) value).isEmpty();
+        } else if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value) == 0;
+        }
+        return false;
+    }
+
+    private static Object getValue(SimpleExpression expression) {
+        return expression.getTypedValue() != null ? expression.getTypedValue().getValue() : null;
+    }
+
+    /**
+     * Estimated selectivity of a condition: the lowest rank filters the most rows
+     */
+    private static int getSelectivityRank(Node node) {
+        if (node instanceof Leaf) {
+            switch (((Leaf) node).expression.getOperator()) {
+                case EQUAL:
+                case IS_NULL:
+                    return 0;
+                case IN:
+                    return 1;
+                case GREATER_THAN:
+                case LESS_THAN:
+                case GREATER_THAN_OR_EQUAL:
+                case LESS_THAN_OR_EQUAL:
+                    return 2;
+                case LIKE:
+                    return 3;
+                default:
+                    return 4;
+            }
+        } else if (node instanceof Junction) {
+            int rank = 0;
+            for (Node term : ((Junction) node).terms) {
+                rank = Math.max(rank, getSelectivityRank(term));
+            }
+            return rank + 1;
+        }
+        return 5;
+    }
+
+    private static final Comparator<Node> SELECTIVITY = new Comparator<Node>() {
+
+        public int compare(Node node1, Node node2) {
+            return getSelectivityRank(node1) - getSelectivityRank(node2);
+        }
+    };
+
+    private static abstract class Node {
+    }
+
+    private static final Node TRUE = new Node() {
+
+        @Override
+        public String toString() {
+            return "TRUE";
+        }
+    };
+
+    private static final Node FALSE = new Node() {
+
+        @Override
+        public String toString() {
+            return "FALSE";
+        }
+    };
+
+    private static final class Leaf extends Node {
+
+        private final SimpleExpression expression;
+
+        Leaf(SimpleExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public int hashCode() {
+            return expression.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Leaf && expression.equals(((Leaf) obj).expression);
+        }
+    }
+
+    private static final class Opaque extends Node {
+
+        private final Expression expression;
+
+        Opaque(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public int hashCode() {
+            return expression != null ? expression.hashCode() : 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Opaque)) {
+                return false;
+            }
+            Expression other = ((Opaque) obj).expression;
+            return expression == null ? other == null : expression.equals(other);
+        }
+    }
+
+    private static final class Not extends Node {
+
+        private final Node node;
+
+        Not(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public int hashCode() {
+            return ~node.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Not && node.equals(((Not) obj).node);
+        }
+    }
+
+    private static final class Junction extends Node {
+
+        private final boolean and;
+        private final List<Node> terms;
+
+        Junction(boolean and, List<Node> terms) {
+            this.and = and;
+            this.terms = terms;
+        }
+
+        Junction(boolean and, Node node1, Node node2) {
+            this.and = and;
+            this.terms = new ArrayList<Node>(2);
+            this.terms.add(node1);
+            this.terms.add(node2);
+        }
+
+        @Override
+        public int hashCode() {
+            return terms.hashCode() * 31 + (and ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Junction)) {
+                return false;
+            }
+            Junction other = (Junction) obj;
+            return and == other.and && terms.equals(other.terms);
+        }
+    }
+}
@@ -1,55 +1,412 @@
 package org.nds.dbdroid.query;
 
 import java.lang.reflect.Array;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
-
-import org.apache.commons.lang.ArrayUtils;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class QueryValueResolver {
 
+    /**
+     * Kind of value, to dispatch the conversion with a lookup by class instead of a chain of instanceof
+     */
+    private static enum ValueKind {
+        STRING, BOOLEAN, BYTE, SHORT, CHARACTER, INTEGER, FLOAT, LONG, DOUBLE, NUMBER, COLLECTION, BOOLEAN_ARRAY, BYTE_ARRAY, SHORT_ARRAY, CHAR_ARRAY,
+        INT_ARRAY, LONG_ARRAY, FLOAT_ARRAY, DOUBLE_ARRAY, OBJECT_ARRAY, MAP, OBJECT
+    }
+
+    private static final ConcurrentMap<Class<?>, ValueKind> KINDS = new ConcurrentHashMap<Class<?>, ValueKind>();
+
+    static {
+        KINDS.put(String.class, ValueKind.STRING);
+        KINDS.put(Boolean.class, ValueKind.BOOLEAN);
+        KINDS.put(Byte.class, ValueKind.BYTE);
+        KINDS.put(Short.class, ValueKind.SHORT);
+        KINDS.put(Character.class, ValueKind.CHARACTER);
+        KINDS.put(Integer.class, ValueKind.INTEGER);
+        KINDS.put(Float.class, ValueKind.FLOAT);
+        KINDS.put(Long.class, ValueKind.LONG);
+        KINDS.put(Double.class, ValueKind.DOUBLE);
+        KINDS.put(boolean[].class, ValueKind.BOOLEAN_ARRAY);
+        KINDS.put(byte[].class, ValueKind.BYTE_ARRAY);
+        KINDS.put(short[].class, ValueKind.SHORT_ARRAY);
+        KINDS.put(char[].class, ValueKind.CHAR_ARRAY);
+        KINDS.put(int[].class, ValueKind.INT_ARRAY);
+        KINDS.put(long[].class, ValueKind.LONG_ARRAY);
+        KINDS.put(float[].class, ValueKind.FLOAT_ARRAY);
+        KINDS.put(double[].class, ValueKind.DOUBLE_ARRAY);
+    }
+
     public String toString(Object value) {
-        String resultValue = null;
         if (value == null) {
-            resultValue = toNullString(value);
-        } else if (value instanceof String) {
-            resultValue = toStringString((String) value);
-        } else if (value instanceof Boolean) {
-            resultValue = toBooleanString((Boolean) value);
-        } else if (value instanceof Byte) {
-            resultValue = toByteString((Byte) value);
-        } else if (value instanceof Short) {
-            resultValue = toShortString((Short) value);
-        } else if (value instanceof Character) {
-            resultValue = toCharacterString((Character) value);
-        } else if (value instanceof Integer) {
-            resultValue = toIntegerString((Integer) value);
-        } else if (value instanceof Float) {
-            resultValue = toFloatString((Float) value);
-        } else if (value instanceof Long) {
-            resultValue = toLongString((Long) value);
-        } else if (value instanceof Double) {
-            resultValue = toDoubleString((Double) value);
-        } else if (value instanceof Number) {
-            resultValue = toNumberString((Number) value);
-        } else if (value instanceof Collection) {
-            resultValue = toCollectionString((Collection<?>) value);
-        } else if (value.getClass().isArray()) {
-            int length = ArrayUtils.getLength(value);
-            List<Object> list = new ArrayList<Object>();
-            for (int i = 0; i < length; i++) {
-                Object obj = Array.get(value, i);
-                list.add(obj);
+            return toNullString(value);
+        }
+        switch (getKind(value.getClass())) {
+            case STRING:
+                return toStringString((String) value);
+            case BOOLEAN:
+                return toBooleanString((Boolean) value);
+            case BYTE:
+                return toByteString((Byte) value);
+            case SHORT:
+                return toShortString((Short) value);
+            case CHARACTER:
+                return toCharacterString((Character) value);
+            case INTEGER:
+                return toIntegerString((Integer) value);
+            case FLOAT:
+                return toFloatString((Float) value);
+            case LONG:
+                return toLongString((Long) value);
+            case DOUBLE:
+                return toDoubleString((Double) value);
+            case NUMBER:
+                return toNumberString((Number) value);
+            case COLLECTION:
+                return toCollectionString((Collection<?>) value);
+            case OBJECT_ARRAY:
+                return toCollectionString(Arrays.asList((Object[]) value));
+            case MAP:
+                return toMapString((Map<?, ?>) value);
+            case OBJECT:
+                return toObjectString(value);
+            default:
+                // Array of primitives, viewed as a collection without copy
+                return toCollectionString(new ArrayView(value));
+        }
+    }
+
+    /**
+     * Appends the value in argument converted to a String.<br/>
+     * The values are converted with the same methods as {@link #toString(Object)}, unless the subclass overrides the append methods. When the
+     * collection delimiters are defined (see {@link #getCollectionPrefix()}), the collections and arrays are appended element by element, without
+     * boxing the elements of the arrays of primitives.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : value to convert
+     */
+    public void appendTo(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append(toNullString(value));
+            return;
+        }
+        ValueKind kind = getKind(value.getClass());
+        switch (kind) {
+            case BOOLEAN:
+                appendBoolean(sb, ((Boolean) value).booleanValue());
+                return;
+            case BYTE:
+                appendByte(sb, ((Byte) value).byteValue());
+                return;
+            case SHORT:
+                appendShort(sb, ((Short) value).shortValue());
+                return;
+            case CHARACTER:
+                appendChar(sb, ((Character) value).charValue());
+                return;
+            case INTEGER:
+                appendInt(sb, ((Integer) value).intValue());
+                return;
+            case FLOAT:
+                appendFloat(sb, ((Float) value).floatValue());
+                return;
+            case LONG:
+                appendLong(sb, ((Long) value).longValue());
+                return;
+            case DOUBLE:
+                appendDouble(sb, ((Double) value).doubleValue());
+                return;
+            case STRING:
+            case NUMBER:
+            case MAP:
+            case OBJECT:
+                sb.append(toString(value));
+                return;
+            default:
+                break;
+        }
+
+        // Collections and arrays
+        String prefix = getCollectionPrefix();
+        String separator = getCollectionSeparator();
+        String suffix = getCollectionSuffix();
+        if (prefix == null || separator == null || suffix == null) {
+            sb.append(toString(value));
+            return;
+        }
+
+        sb.append(prefix);
+        switch (kind) {
+            case COLLECTION:
+                boolean first = true;
+                for (Object element : (Collection<?>) value) {
+                    if (!first) {
+                        sb.append(separator);
+                    }
+                    appendTo(sb, element);
+                    first = false;
+                }
+                break;
+            case OBJECT_ARRAY:
+                Object[] objects = (Object[]) value;
+                for (int i = 0; i < objects.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendTo(sb, objects[i]);
+                }
+                break;
+            case BOOLEAN_ARRAY:
+                boolean[] booleans = (boolean[]) value;
+                for (int i = 0; i < booleans.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendBoolean(sb, booleans[i]);
+                }
+                break;
+            case BYTE_ARRAY:
+                byte[] bytes = (byte[]) value;
+                for (int i = 0; i < bytes.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendByte(sb, bytes[i]);
+                }
+                break;
+            case SHORT_ARRAY:
+                short[] shorts = (short[]) value;
+                for (int i = 0; i < shorts.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendShort(sb, shorts[i]);
+                }
+                break;
+            case CHAR_ARRAY:
+                char[] chars = (char[]) value;
+                for (int i = 0; i < chars.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendChar(sb, chars[i]);
+                }
+                break;
+            case INT_ARRAY:
+                int[] ints = (int[]) value;
+                for (int i = 0; i < ints.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendInt(sb, ints[i]);
+                }
+                break;
+            case LONG_ARRAY:
+                long[] longs = (long[]) value;
+                for (int i = 0; i < longs.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendLong(sb, longs[i]);
+                }
+                break;
+            case FLOAT_ARRAY:
+                float[] floats = (float[]) value;
+                for (int i = 0; i < floats.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendFloat(sb, floats[i]);
+                }
+                break;
+            case DOUBLE_ARRAY:
+                double[] doubles = (double[]) value;
+                for (int i = 0; i < doubles.length; i++) {
+                    if (i > 0) {
+                        sb.append(separator);
+                    }
+                    appendDouble(sb, doubles[i]);
+                }
+                break;
+            default:
+                break;
+        }
+        sb.append(suffix);
+    }
+
+    private static ValueKind getKind(Class<?> clazz) {
+        ValueKind kind = KINDS.get(clazz);
+        if (kind == null) {
+            if (Number.class.isAssignableFrom(clazz)) {
+                kind = ValueKind.NUMBER;
+            } else if (Collection.class.isAssignableFrom(clazz)) {
+                kind = ValueKind.COLLECTION;
+            } else if (clazz.isArray()) {
+                kind = ValueKind.OBJECT_ARRAY;
+            } else if (Map.class.isAssignableFrom(clazz)) {
+                kind = ValueKind.MAP;
+            } else {
+                kind = ValueKind.OBJECT;
             }
-            resultValue = toCollectionString(list);
-        } else if (value instanceof Map) {
-            resultValue = toMapString((Map<?, ?>) value);
-        } else {
-            resultValue = toObjectString(value);
+            KINDS.putIfAbsent(clazz, kind);
+        }
+        return kind;
+    }
+
+    /**
+     * Returns the String appended before the elements of a collection, or <code>null</code> if the collections are converted with
+     * {@link #toCollectionString(Collection)}. The subclasses define the three collection delimiters to append the collections and arrays element
+     * by element.
+     * 
+     * @return the collection prefix, <code>null</code> by default
+     */
+    protected String getCollectionPrefix() {
+        return null;
+    }
+
+    /**
+     * Returns the String appended between the elements of a collection (see {@link #getCollectionPrefix()})
+     * 
+     * @return the collection separator, <code>null</code> by default
+     */
+    protected String getCollectionSeparator() {
+        return null;
+    }
+
+    /**
+     * Returns the String appended after the elements of a collection (see {@link #getCollectionPrefix()})
+     * 
+     * @return the collection suffix, <code>null</code> by default
+     */
+    protected String getCollectionSuffix() {
+        return null;
+    }
+
+    /**
+     * Appends a boolean value. By default, the value is converted with {@link #toBooleanString(Boolean)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : boolean value
+     */
+    protected void appendBoolean(StringBuilder sb, boolean value) {
+        sb.append(toBooleanString(Boolean.valueOf(value)));
+    }
+
+    /**
+     * Appends a byte value. By default, the value is converted with {@link #toByteString(Byte)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : byte value
+     */
+    protected void appendByte(StringBuilder sb, byte value) {
+        sb.append(toByteString(Byte.valueOf(value)));
+    }
+
+    /**
+     * Appends a short value. By default, the value is converted with {@link #toShortString(Short)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : short value
+     */
+    protected void appendShort(StringBuilder sb, short value) {
+        sb.append(toShortString(Short.valueOf(value)));
+    }
+
+    /**
+     * Appends a char value. By default, the value is converted with {@link #toCharacterString(Character)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : char value
+     */
+    protected void appendChar(StringBuilder sb, char value) {
+        sb.append(toCharacterString(Character.valueOf(value)));
+    }
+
+    /**
+     * Appends an int value. By default, the value is converted with {@link #toIntegerString(Integer)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : int value
+     */
+    protected void appendInt(StringBuilder sb, int value) {
+        sb.append(toIntegerString(Integer.valueOf(value)));
+    }
+
+    /**
+     * Appends a long value. By default, the value is converted with {@link #toLongString(Long)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : long value
+     */
+    protected void appendLong(StringBuilder sb, long value) {
+        sb.append(toLongString(Long.valueOf(value)));
+    }
+
+    /**
+     * Appends a float value. By default, the value is converted with {@link #toFloatString(Float)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : float value
+     */
+    protected void appendFloat(StringBuilder sb, float value) {
+        sb.append(toFloatString(Float.valueOf(value)));
+    }
+
+    /**
+     * Appends a double value. By default, the value is converted with {@link #toDoubleString(Double)}.
+     * 
+     * @param sb
+     *            : buffer
+     * @param value
+     *            : double value
+     */
+    protected void appendDouble(StringBuilder sb, double value) {
+        sb.append(toDoubleString(Double.valueOf(value)));
+    }
+
+    /**
+     * Read-only list view of an array of primitives
+     */
+    private static final class ArrayView extends AbstractList<Object> implements RandomAccess {
+
+        private final Object array;
+
+        private final int size;
+
+        ArrayView(Object array) {
+            this.array = array;
+            this.size = Array.getLength(array);
+        }
+
+        @Override
+        public Object get(int index) {
+            return Array.get(array, index);
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
-        return resultValue;
     }
 
     /**
@@ -153,7 +510,7 @@ public abstract class QueryValueResolver {
 
     /**
      * Converts {@link Collection} or objects array to a String.<br/>
-     * If we have an objects array, this is converted to a collection before to be passed to this method
+     * If we have an array, this is viewed as a collection (without copy) before to be passed to this method
      * 
      * @param value
      *            : {@link Collection} or objects array
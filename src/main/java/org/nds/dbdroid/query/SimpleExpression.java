@@ -1,5 +1,7 @@
 package org.nds.dbdroid.query;
 
+import java.util.Arrays;
+
 import org.nds.dbdroid.DataBaseManager;
 import org.nds.dbdroid.type.TypedValue;
 
@@ -19,6 +21,10 @@ public class SimpleExpression implements Expression {
         return dbManager.toExpressionString(this);
     }
 
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
     public String getName() {
         return name;
     }
@@ -27,7 +33,46 @@ public class SimpleExpression implements Expression {
         return queryValueResolver.toString(typedValue.getValue());
     }
 
+    public TypedValue getTypedValue() {
+        return typedValue;
+    }
+
     public Operator getOperator() {
         return operator;
     }
+
+    @Override
+    public int hashCode() {
+        int hash = name != null ? name.hashCode() : 0;
+        hash = hash * 31 + (operator != null ? operator.hashCode() : 0);
+        Object value = typedValue != null ? typedValue.getValue() : null;
+        if (value instanceof Object[]) {
+            hash = hash * 31 + Arrays.deepHashCode((Object[]) value);
+        } else if (value != null && !value.getClass().isArray()) {
+            hash = hash * 31 + value.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SimpleExpression)) {
+            return false;
+        }
+        SimpleExpression other = (SimpleExpression) obj;
+        if (operator != other.operator || (name == null ? other.name != null : !name.equals(other.name))) {
+            return false;
+        }
+        Object value = typedValue != null ? typedValue.getValue() : null;
+        Object otherValue = other.typedValue != null ? other.typedValue.getValue() : null;
+        return Arrays.deepEquals(new Object[] { value }, new Object[] { otherValue });
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + operator + " " + typedValue;
+    }
 }
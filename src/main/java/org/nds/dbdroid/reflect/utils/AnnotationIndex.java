@@ -0,0 +1,234 @@
+package org.nds.dbdroid.reflect.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Precomputed annotation index of a class: annotation type → annotated fields and methods, and field → resolved annotations.<br/>
+ * The index is built once per class (the first time it is requested) and then shared, so that lookups are done in constant time instead of walking
+ * the class hierarchy each time.
+ */
+public final class AnnotationIndex {
+
+    private static final Field[] NO_FIELDS = new Field[0];
+    private static final Method[] NO_METHODS = new Method[0];
+
+    private static final ConcurrentMap<Class<?>, AnnotationIndex> INDEXES = new ConcurrentHashMap<Class<?>, AnnotationIndex>();
+
+    private final Class<?> clazz;
+
+    /** Declared fields of the class, by name */
+    private final Map<String, Field> declaredFields = new HashMap<String, Field>();
+
+    /** Annotations of the declared fields, resolved with the equivalent fields of the super classes */
+    private final Map<String, Map<Class<? extends Annotation>, Annotation>> declaredFieldAnnotations = new HashMap<String, Map<Class<? extends Annotation>, Annotation>>();
+
+    /** Fields of the class and its super classes, by annotation type */
+    private final Map<Class<? extends Annotation>, Field[]> fieldsByAnnotation = new HashMap<Class<? extends Annotation>, Field[]>();
+
+    /** Methods of the class and its super classes, by annotation type */
+    private final Map<Class<? extends Annotation>, Method[]> methodsByAnnotation = new HashMap<Class<? extends Annotation>, Method[]>();
+
+    private AnnotationIndex(Class<?> clazz) {
+        this.clazz = clazz;
+    }
+
+    /**
+     * Returns the annotation index of the class in argument. The index is built the first time and cached.
+     *
+     * @param clazz
+     *            : class to index
+     * @return the {@link AnnotationIndex} of the class
+     */
+    public static AnnotationIndex forClass(Class<?> clazz) {
+        if (clazz == null) {
+            throw new IllegalArgumentException("clazz must not be null");
+        }
+
+        AnnotationIndex index = INDEXES.get(clazz);
+        if (index == null) {
+            index = new AnnotationIndex(clazz);
+            index.build();
+            AnnotationIndex existing = INDEXES.putIfAbsent(clazz, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+
+        return index;
+    }
+
+    public Class<?> getIndexedClass() {
+        return clazz;
+    }
+
+    /**
+     * Get a single Annotation of annotationType from the supplied Field, using the equivalent fields of the super classes if no annotation can be
+     * found on the given field itself.
+     *
+     * @param <A>
+     * @param field
+     *            : field declared by the indexed class or one of its super classes
+     * @param annotationType
+     * @return the annotation, or <code>null</code> if not found
+     */
+    public <A extends Annotation> A getAnnotation(Field field, Class<A> annotationType) {
+        Map<Class<? extends Annotation>, Annotation> annotations = getFieldAnnotations(field);
+        return annotations != null ? annotationType.cast(annotations.get(annotationType)) : null;
+    }
+
+    /**
+     * Returns <code>true</code> if the field in argument (or an equivalent field of the super classes) is annotated with annotationType.
+     *
+     * @param field
+     * @param annotationType
+     * @return
+     */
+    public boolean isAnnotationPresent(Field field, Class<? extends Annotation> annotationType) {
+        Map<Class<? extends Annotation>, Annotation> annotations = getFieldAnnotations(field);
+        return annotations != null && annotations.containsKey(annotationType);
+    }
+
+    /**
+     * Returns the fields of the indexed class and its super classes annotated with annotationType.<br/>
+     * The returned array is shared and must not be modified.
+     *
+     * @param annotationType
+     * @return annotated fields, in the order of {@link ReflectUtils#getFields(Class)}
+     */
+    public Field[] getFields(Class<? extends Annotation> annotationType) {
+        Field[] fields = fieldsByAnnotation.get(annotationType);
+        return fields != null ? fields : NO_FIELDS;
+    }
+
+    /**
+     * Returns the methods of the indexed class and its super classes annotated with annotationType.<br/>
+     * The returned array is shared and must not be modified.
+     *
+     * @param annotationType
+     * @return annotated methods, in the order of {@link ReflectUtils#getMethods(Class)}
+     */
+    public Method[] getMethods(Class<? extends Annotation> annotationType) {
+        Method[] methods = methodsByAnnotation.get(annotationType);
+        return methods != null ? methods : NO_METHODS;
+    }
+
+    private Map<Class<? extends Annotation>, Annotation> getFieldAnnotations(Field field) {
+        if (field == null) {
+            throw new IllegalArgumentException("field must not be null");
+        }
+
+        Class<?> declaringClass = field.getDeclaringClass();
+        AnnotationIndex index = declaringClass == clazz ? this : forClass(declaringClass);
+        return index.declaredFieldAnnotations.get(field.getName());
+    }
+
+    private void build() {
+        // Declared fields, with the annotations of the equivalent fields of the super classes
+        AnnotationIndex superIndex = null;
+        Class<?> superclass = clazz.getSuperclass();
+        if (superclass != null && !Object.class.equals(superclass)) {
+            superIndex = forClass(superclass);
+        }
+        for (Field field : clazz.getDeclaredFields()) {
+            Map<Class<? extends Annotation>, Annotation> annotations = new LinkedHashMap<Class<? extends Annotation>, Annotation>();
+            for (Annotation annotation : field.getAnnotations()) {
+                annotations.put(annotation.annotationType(), annotation);
+            }
+            if (superIndex != null) {
+                Map<Class<? extends Annotation>, Annotation> superAnnotations = superIndex.findEquivalentFieldAnnotations(field.getName());
+                if (superAnnotations != null) {
+                    for (Map.Entry<Class<? extends Annotation>, Annotation> entry : superAnnotations.entrySet()) {
+                        if (!annotations.containsKey(entry.getKey())) {
+                            annotations.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            }
+            declaredFields.put(field.getName(), field);
+            declaredFieldAnnotations.put(field.getName(), Collections.unmodifiableMap(annotations));
+        }
+
+        // Annotation type -> fields
+        Map<Class<? extends Annotation>, List<Field>> fields = new HashMap<Class<? extends Annotation>, List<Field>>();
+        for (Field field : ReflectUtils.getFields(clazz)) {
+            Map<Class<? extends Annotation>, Annotation> annotations = getFieldAnnotations(field);
+            if (annotations != null) {
+                for (Class<? extends Annotation> annotationType : annotations.keySet()) {
+                    List<Field> list = fields.get(annotationType);
+                    if (list == null) {
+                        list = new ArrayList<Field>();
+                        fields.put(annotationType, list);
+                    }
+                    list.add(field);
+                }
+            }
+        }
+        for (Map.Entry<Class<? extends Annotation>, List<Field>> entry : fields.entrySet()) {
+            fieldsByAnnotation.put(entry.getKey(), entry.getValue().toArray(new Field[entry.getValue().size()]));
+        }
+
+        // Annotation type -> methods
+        Map<Class<? extends Annotation>, List<Method>> methods = new HashMap<Class<? extends Annotation>, List<Method>>();
+        for (Method method : ReflectUtils.getMethods(clazz)) {
+            for (Class<? extends Annotation> annotationType : getMethodAnnotationTypes(method)) {
+                List<Method> list = methods.get(annotationType);
+                if (list == null) {
+                    list = new ArrayList<Method>();
+                    methods.put(annotationType, list);
+                }
+                list.add(method);
+            }
+        }
+        for (Map.Entry<Class<? extends Annotation>, List<Method>> entry : methods.entrySet()) {
+            methodsByAnnotation.put(entry.getKey(), entry.getValue().toArray(new Method[entry.getValue().size()]));
+        }
+    }
+
+    /**
+     * Returns the annotation types of the method in argument and of the equivalent methods of the super classes.
+     */
+    private static List<Class<? extends Annotation>> getMethodAnnotationTypes(Method method) {
+        List<Class<? extends Annotation>> annotationTypes = new ArrayList<Class<? extends Annotation>>();
+        for (Annotation annotation : method.getAnnotations()) {
+            annotationTypes.add(annotation.annotationType());
+        }
+        for (Class<?> cl = method.getDeclaringClass().getSuperclass(); cl != null && !Object.class.equals(cl); cl = cl.getSuperclass()) {
+            for (Method equivalentMethod : cl.getDeclaredMethods()) {
+                if (equivalentMethod.getName().equals(method.getName())
+                        && Arrays.equals(equivalentMethod.getParameterTypes(), method.getParameterTypes())) {
+                    for (Annotation annotation : equivalentMethod.getAnnotations()) {
+                        if (!annotationTypes.contains(annotation.annotationType())) {
+                            annotationTypes.add(annotation.annotationType());
+                        }
+                    }
+                }
+            }
+        }
+        return annotationTypes;
+    }
+
+    /**
+     * Returns the resolved annotations of the field with the name in argument, declared in this class or in the nearest super class.
+     */
+    private Map<Class<? extends Annotation>, Annotation> findEquivalentFieldAnnotations(String fieldName) {
+        if (declaredFields.containsKey(fieldName)) {
+            return declaredFieldAnnotations.get(fieldName);
+        }
+        Class<?> superclass = clazz.getSuperclass();
+        if (superclass == null || Object.class.equals(superclass)) {
+            return null;
+        }
+        return forClass(superclass).findEquivalentFieldAnnotations(fieldName);
+    }
+}
@@ -454,29 +454,12 @@ public final class AnnotationUtils {
     }
 
     public static <A extends Annotation> Method findMethod(Class<?> clazz, Class<A> annotationType) {
-        Method[] methods = ReflectUtils.getMethods(clazz);
-        for (Method method : methods) {
-            A annotation = getAnnotation(method, annotationType);
-            if (annotation != null) {
-                return method;
-            }
-        }
-
-        return null;
+        Method[] methods = AnnotationIndex.forClass(clazz).getMethods(annotationType);
+        return methods.length > 0 ? methods[0] : null;
     }
 
     public static <A extends Annotation> Method[] findMethods(Class<?> clazz, Class<A> annotationType) {
-        List<Method> methods = new ArrayList<Method>();
-
-        Method[] array = ReflectUtils.getMethods(clazz);
-        for (Method method : array) {
-            A annotation = getAnnotation(method, annotationType);
-            if (annotation != null) {
-                methods.add(method);
-            }
-        }
-
-        return methods.toArray(new Method[] {});
+        return AnnotationIndex.forClass(clazz).getMethods(annotationType).clone();
     }
 
     ////////// FIELD //////////
@@ -495,22 +478,7 @@ public final class AnnotationUtils {
             throw new IllegalArgumentException("field must not be null");
         }
 
-        A annotation = field.getAnnotation(annotationType);
-        Class<?> cl = field.getDeclaringClass();
-        while (annotation == null) {
-            cl = cl.getSuperclass();
-            if (cl == null || cl.equals(Object.class)) {
-                break;
-            }
-            try {
-                Field equivalentField = cl.getDeclaredField(field.getName());
-                annotation = equivalentField.getAnnotation(annotationType);
-            } catch (SecurityException e) {
-            } catch (NoSuchFieldException e) {
-            }
-        }
-
-        return annotation;
+        return AnnotationIndex.forClass(field.getDeclaringClass()).getAnnotation(field, annotationType);
     }
 
     /**
@@ -543,29 +511,12 @@ public final class AnnotationUtils {
     }
 
     public static <A extends Annotation> Field findField(Class<?> clazz, Class<A> annotationType) {
-        Field[] fields = ReflectUtils.getFields(clazz);
-        for (Field field : fields) {
-            A annotation = getAnnotation(field, annotationType);
-            if (annotation != null) {
-                return field;
-            }
-        }
-
-        return null;
+        Field[] fields = AnnotationIndex.forClass(clazz).getFields(annotationType);
+        return fields.length > 0 ? fields[0] : null;
     }
 
     public static <A extends Annotation> Field[] findFields(Class<?> clazz, Class<A> annotationType) {
-        List<Field> fields = new ArrayList<Field>();
-
-        Field[] array = ReflectUtils.getFields(clazz);
-        for (Field field : array) {
-            A annotation = getAnnotation(field, annotationType);
-            if (annotation != null) {
-                fields.add(field);
-            }
-        }
-
-        return fields.toArray(new Field[] {});
+        return AnnotationIndex.forClass(clazz).getFields(annotationType).clone();
     }
 
     public static <A extends Annotation> Field findPropertyField(Class<?> clazz, Class<A> annotationType) {
@@ -0,0 +1,15 @@
+package org.nds.dbdroid.startup;
+
+/**
+ * Listener notified when a {@link org.nds.dbdroid.DataBaseManager} is opened
+ */
+public interface StartupListener {
+
+    /**
+     * Called at the end of {@link org.nds.dbdroid.DataBaseManager#open()}, in the opening thread
+     * 
+     * @param report
+     *            : durations, counts and heap growth of the startup phases
+     */
+    void onStartup(StartupReport report);
+}
@@ -0,0 +1,42 @@
+package org.nds.dbdroid.startup;
+
+/**
+ * Phases of the opening of a {@link org.nds.dbdroid.DataBaseManager}, timed in the {@link StartupReport}
+ */
+public enum StartupPhase {
+
+    /** Parsing of the XML configuration, without the package scanning and the DAO creation */
+    PARSE_CONFIG("parse configuration"),
+
+    /** Scanning of the DAO and service packages, without the DAO creation */
+    SCAN_PACKAGES("scan packages"),
+
+    /** Instantiation of the DAOs and services */
+    CREATE_DAOS("create DAOs"),
+
+    /** Metadata building and checking of the entities */
+    INITIALIZE_ENTITIES("initialize entities"),
+
+    /** Generation of the tables (dbdroid.generate) */
+    GENERATE_DATABASE("generate database"),
+
+    /** Execution of the script (dbdroid.script) */
+    RUN_SCRIPT("run script"),
+
+    /** Execution of the pending migrations (dbdroid.migrations) */
+    RUN_MIGRATIONS("run migrations"),
+
+    /** Opening of the database engine ({@link org.nds.dbdroid.DataBaseManager#onOpen()}) */
+    OPEN_ENGINE("open engine");
+
+    private final String label;
+
+    private StartupPhase(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
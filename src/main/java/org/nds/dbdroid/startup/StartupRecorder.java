@@ -0,0 +1,111 @@
+package org.nds.dbdroid.startup;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the durations and the heap growth of the startup phases, and the startup counters.<br/>
+ * The phases can be nested (ex: the DAO creation during the package scanning): the time of a phase does not include the time of its nested
+ * phases.<br/>
+ * A recorder is used by the opening thread only: it is not thread-safe.
+ */
+public final class StartupRecorder {
+
+    private final long startNanos = System.nanoTime();
+
+    private final long startHeap = usedHeap();
+
+    private final Map<StartupPhase, long[]> phases = new EnumMap<StartupPhase, long[]>(StartupPhase.class);
+
+    private final Map<StartupReport.Counter, Long> counters = new EnumMap<StartupReport.Counter, Long>(StartupReport.Counter.class);
+
+    private final List<Frame> running = new ArrayList<Frame>();
+
+    /**
+     * Starts a phase, ended by {@link #end(StartupPhase)}
+     * 
+     * @param phase
+     *            : started phase
+     */
+    public void begin(StartupPhase phase) {
+        running.add(new Frame(phase, System.nanoTime(), usedHeap()));
+    }
+
+    /**
+     * Ends the phase started by the last call to {@link #begin(StartupPhase)}
+     * 
+     * @param phase
+     *            : ended phase
+     */
+    public void end(StartupPhase phase) {
+        if (running.isEmpty() || running.get(running.size() - 1).phase != phase) {
+            throw new IllegalStateException("The phase '" + phase + "' is not the current phase");
+        }
+        Frame frame = running.remove(running.size() - 1);
+        long nanos = System.nanoTime() - frame.startNanos;
+        long heap = usedHeap() - frame.startHeap;
+
+        long[] values = phases.get(phase);
+        if (values == null) {
+            values = new long[2];
+            phases.put(phase, values);
+        }
+        values[0] += nanos - frame.nestedNanos;
+        values[1] += heap - frame.nestedHeap;
+        if (!running.isEmpty()) {
+            Frame parent = running.get(running.size() - 1);
+            parent.nestedNanos += nanos;
+            parent.nestedHeap += heap;
+        }
+    }
+
+    /**
+     * Adds a value to a counter
+     * 
+     * @param counter
+     *            : incremented counter
+     * @param value
+     *            : value to add
+     */
+    public void add(StartupReport.Counter counter, long value) {
+        Long count = counters.get(counter);
+        counters.put(counter, Long.valueOf((count != null ? count.longValue() : 0) + value));
+    }
+
+    /**
+     * Returns the report of the phases ended so far
+     * 
+     * @return the startup report
+     */
+    public StartupReport toReport() {
+        Map<StartupPhase, Long> nanos = new EnumMap<StartupPhase, Long>(StartupPhase.class);
+        Map<StartupPhase, Long> heap = new EnumMap<StartupPhase, Long>(StartupPhase.class);
+        for (Map.Entry<StartupPhase, long[]> phase : phases.entrySet()) {
+            nanos.put(phase.getKey(), Long.valueOf(phase.getValue()[0]));
+            heap.put(phase.getKey(), Long.valueOf(phase.getValue()[1]));
+        }
+        return new StartupReport(System.nanoTime() - startNanos, usedHeap() - startHeap, nanos, heap, counters);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class Frame {
+
+        private final StartupPhase phase;
+        private final long startNanos;
+        private final long startHeap;
+        private long nestedNanos;
+        private long nestedHeap;
+
+        Frame(StartupPhase phase, long startNanos, long startHeap) {
+            this.phase = phase;
+            this.startNanos = startNanos;
+            this.startHeap = startHeap;
+        }
+    }
+}
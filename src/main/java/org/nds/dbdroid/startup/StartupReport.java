@@ -0,0 +1,156 @@
+package org.nds.dbdroid.startup;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Report of the opening of a {@link org.nds.dbdroid.DataBaseManager}: duration and heap growth of each {@link StartupPhase}, and startup
+ * counters.<br/>
+ * The heap growth is an estimate: the difference of the used heap before and after the phase, which does not count the memory collected during
+ * the phase and may be negative when a garbage collection runs.
+ */
+public final class StartupReport {
+
+    /**
+     * Counters of the startup
+     */
+    public enum Counter {
+
+        /** Classes found by the package scanning */
+        CLASSES_SCANNED("classes scanned"),
+
+        /** DAO instances created */
+        DAOS_CREATED("DAOs created"),
+
+        /** Service instances created */
+        SERVICES_CREATED("services created"),
+
+        /** Entities checked */
+        ENTITIES("entities"),
+
+        /** Tables created, updated or reset by the generation */
+        TABLES_GENERATED("tables generated"),
+
+        /** Statements executed by the script and the migrations */
+        STATEMENTS_EXECUTED("statements executed"),
+
+        /** Migrations applied */
+        MIGRATIONS_APPLIED("migrations applied");
+
+        private final String label;
+
+        private Counter(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final long totalNanos;
+
+    private final long totalHeapGrowth;
+
+    private final Map<StartupPhase, Long> nanos;
+
+    private final Map<StartupPhase, Long> heapGrowth;
+
+    private final Map<Counter, Long> counters;
+
+    StartupReport(long totalNanos, long totalHeapGrowth, Map<StartupPhase, Long> nanos, Map<StartupPhase, Long> heapGrowth, Map<Counter, Long> counters) {
+        this.totalNanos = totalNanos;
+        this.totalHeapGrowth = totalHeapGrowth;
+        this.nanos = Collections.unmodifiableMap(nanos);
+        this.heapGrowth = Collections.unmodifiableMap(heapGrowth);
+        this.counters = Collections.unmodifiableMap(new EnumMap<Counter, Long>(counters));
+    }
+
+    /**
+     * Returns the duration of the opening, in nanoseconds
+     * 
+     * @return total duration
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns the estimated heap growth during the opening, in bytes
+     * 
+     * @return total heap growth
+     */
+    public long getTotalHeapGrowth() {
+        return totalHeapGrowth;
+    }
+
+    /**
+     * Returns the duration of a phase, without its nested phases, in nanoseconds
+     * 
+     * @param phase
+     *            : startup phase
+     * @return the duration, 0 if the phase did not run
+     */
+    public long getNanos(StartupPhase phase) {
+        Long value = nanos.get(phase);
+        return value != null ? value.longValue() : 0;
+    }
+
+    /**
+     * Returns the estimated heap growth during a phase, without its nested phases, in bytes
+     * 
+     * @param phase
+     *            : startup phase
+     * @return the heap growth, 0 if the phase did not run
+     */
+    public long getHeapGrowth(StartupPhase phase) {
+        Long value = heapGrowth.get(phase);
+        return value != null ? value.longValue() : 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the phase in argument ran during the opening
+     * 
+     * @param phase
+     *            : startup phase
+     * @return <code>true</code> if the phase ran
+     */
+    public boolean hasRun(StartupPhase phase) {
+        return nanos.containsKey(phase);
+    }
+
+    public long getCount(Counter counter) {
+        Long value = counters.get(counter);
+        return value != null ? value.longValue() : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("dbdroid startup: ");
+        appendMillis(sb, totalNanos).append(", heap ");
+        appendKilobytes(sb, totalHeapGrowth);
+        for (StartupPhase phase : StartupPhase.values()) {
+            if (hasRun(phase)) {
+                sb.append("\n  ").append(phase).append(": ");
+                appendMillis(sb, getNanos(phase)).append(", heap ");
+                appendKilobytes(sb, getHeapGrowth(phase));
+            }
+        }
+        sb.append("\n ");
+        for (Counter counter : Counter.values()) {
+            sb.append(' ').append(counter).append(": ").append(getCount(counter)).append(counter.ordinal() < Counter.values().length - 1 ? "," : "");
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendMillis(StringBuilder sb, long nanos) {
+        long tenths = Math.round(nanos / 100000.0);
+        return sb.append(tenths / 10).append('.').append(Math.abs(tenths % 10)).append(" ms");
+    }
+
+    private static StringBuilder appendKilobytes(StringBuilder sb, long bytes) {
+        return sb.append(bytes >= 0 ? "+" : "").append(bytes / 1024).append(" KB");
+    }
+}
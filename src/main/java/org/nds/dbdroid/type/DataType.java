@@ -95,6 +95,17 @@ public class DataType {
     }
 
     public DbDroidType getDbDroidType(Class<?> clazz) {
+        return getBasicDbDroidType(clazz);
+    }
+
+    /**
+     * Returns the {@link DbDroidType} of the java type in argument, independently of the database mapping
+     * 
+     * @param clazz
+     *            : java type
+     * @return the {@link DbDroidType}, or <code>null</code> if the type is not a basic type
+     */
+    public static DbDroidType getBasicDbDroidType(Class<?> clazz) {
         return DATA_TYPES.get(clazz.getName());
     }
 
@@ -0,0 +1,151 @@
+package org.nds.dbdroid.type;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Holder of a column value loaded on demand, used for large columns (byte[], Byte[], char[], {@link String}...) which must not be loaded with the
+ * rest of the row.<br/>
+ * An {@link org.nds.dbdroid.annotation.Entity} declares a field <code>LazyValue&lt;byte[]&gt; document</code> instead of <code>byte[] document</code>:
+ * the value is only read from the database the first time {@link #get()} is called, or can be read as a stream with {@link #openStream()}.
+ *
+ * @param <T>
+ *            : value type
+ */
+public class LazyValue<T> {
+
+    /**
+     * Loads the value of a lazy column from the database
+     */
+    public interface Loader {
+
+        Object load();
+
+        InputStream openStream() throws IOException;
+    }
+
+    private Loader loader;
+
+    private T value;
+
+    private boolean loaded;
+
+    private int modificationCount;
+
+    /**
+     * Creates a holder with a NULL value
+     */
+    public LazyValue() {
+        this.loaded = true;
+    }
+
+    /**
+     * Creates a holder with the value in argument
+     *
+     * @param value
+     */
+    public LazyValue(T value) {
+        this.value = value;
+        this.loaded = true;
+    }
+
+    /**
+     * Creates a holder whose value will be loaded by the {@link Loader} in argument
+     *
+     * @param loader
+     */
+    public LazyValue(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the value, loading it the first time
+     *
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get() {
+        if (!loaded) {
+            value = (T) loader.load();
+            loaded = true;
+            loader = null;
+        }
+        return value;
+    }
+
+    public synchronized void set(T value) {
+        this.value = value;
+        this.loaded = true;
+        this.loader = null;
+        this.modificationCount++;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns the number of calls to {@link #set(Object)}, used to detect a modification of the value without loading it.
+     *
+     * @return the modification count
+     */
+    public synchronized int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Opens a stream on a binary value. If the value is not loaded yet, it is streamed from the database without being kept in memory.
+     *
+     * @return an {@link InputStream} on the value, or <code>null</code> if the value is NULL
+     * @throws IOException
+     */
+    public InputStream openStream() throws IOException {
+        Loader l;
+        synchronized (this) {
+            l = loaded ? null : loader;
+        }
+        if (l != null) {
+            return l.openStream();
+        }
+        byte[] bytes = toBytes(get());
+        return bytes != null ? new ByteArrayInputStream(bytes) : null;
+    }
+
+    /**
+     * Returns a read-only {@link ByteBuffer} on a binary value, loading it if needed
+     *
+     * @return the {@link ByteBuffer}, or <code>null</code> if the value is NULL
+     */
+    public ByteBuffer asByteBuffer() {
+        byte[] bytes = toBytes(get());
+        return bytes != null ? ByteBuffer.wrap(bytes).asReadOnlyBuffer() : null;
+    }
+
+    private static byte[] toBytes(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof byte[]) {
+            return (byte[]) value;
+        } else if (value instanceof Byte[]) {
+            Byte[] wrappers = (Byte[]) value;
+            byte[] bytes = new byte[wrappers.length];
+            for (int i = 0; i < wrappers.length; i++) {
+                bytes[i] = wrappers[i].byteValue();
+            }
+            return bytes;
+        }
+        throw new IllegalStateException("Not a binary value: " + value.getClass().getName());
+    }
+
+    @Override
+    public String toString() {
+        synchronized (this) {
+            if (!loaded) {
+                return "LazyValue[not loaded]";
+            }
+        }
+        return "LazyValue[" + value + "]";
+    }
+}
@@ -0,0 +1,108 @@
+package org.nds.dbdroid;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nds.dbdroid.entity.Entity1;
+import org.nds.dbdroid.exception.DBDroidException;
+import org.nds.dbdroid.mock.LegacyDataBaseManager;
+import org.nds.dbdroid.query.LogicalOperator;
+import org.nds.dbdroid.query.Operator;
+import org.nds.dbdroid.query.QueryValueResolver;
+import org.nds.dbdroid.type.DataType;
+
+public class DataBaseManagerTest {
+
+    @Test
+    public void testLegacyBackend() throws Exception {
+        DataBaseManager dbManager = new LegacyDataBaseManager(getClass().getResourceAsStream("config/dbdroid.xml"));
+        dbManager.open();
+        try {
+            Entity1 entity = new Entity1("legacy");
+            entity.set_id(Integer.valueOf(1000));
+            dbManager.saveOrUpdate(entity);
+            Assert.assertSame(entity, dbManager.findById(Integer.valueOf(1000), Entity1.class));
+
+            // The default hooks delegate to the operations of the backend
+            int count = dbManager.findAll(Entity1.class).size();
+            Assert.assertEquals(count, dbManager.count(dbManager.createQuery(Entity1.class)));
+            Assert.assertTrue(dbManager.exists(dbManager.createQuery(Entity1.class)));
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    @Test
+    public void testLazyColumnsWithoutLoader() throws Exception {
+        // Entity6 has a lazy column, the backend cannot load it
+        DataBaseManager dbManager = new TablesOnlyDataBaseManager(getClass().getResourceAsStream("jdbc/dbdroid.xml"));
+        try {
+            dbManager.open();
+            Assert.fail("The lazy columns of Entity6 cannot be loaded");
+        } catch (DBDroidException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("onLoadColumn"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingHook() throws Exception {
+        DataBaseManager dbManager = new TablesOnlyDataBaseManager(getClass().getResourceAsStream("config/dbdroid.xml"));
+        dbManager.findAll(Entity1.class);
+    }
+
+    /**
+     * Backend implementing only the abstract methods
+     */
+    private static class TablesOnlyDataBaseManager extends DataBaseManager {
+
+        TablesOnlyDataBaseManager(InputStream config) {
+            super(config);
+        }
+
+        @Override
+        public void onOpen() {
+        }
+
+        @Override
+        public void onClose() {
+        }
+
+        @Override
+        protected void onCheckEntity(Class<?> entityClass) {
+        }
+
+        @Override
+        protected void onCreateTable(String tableName, Field[] fields) {
+        }
+
+        @Override
+        protected void onUpdateTable(String tableName, Field[] fields) {
+        }
+
+        @Override
+        protected void onResetTable(String tableName, Field[] fields) {
+        }
+
+        @Override
+        public DataType getDataType() {
+            return null;
+        }
+
+        @Override
+        protected QueryValueResolver getQueryValueResolver() {
+            return null;
+        }
+
+        @Override
+        protected String onExpressionString(Operator operator, String value) {
+            return null;
+        }
+
+        @Override
+        protected String onExpressionString(LogicalOperator logicalOperator, String expression) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.nds.dbdroid.allocation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Counts the bytes allocated by the current thread, with <code>com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)</code>.<br/>
+ * The method is not part of the standard API: it is called by reflection, and {@link #isSupported()} returns <code>false</code> on the VMs which do
+ * not provide it.
+ */
+final class AllocationMeter {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final Method ALLOCATED_BYTES = findAllocatedBytesMethod();
+
+    private AllocationMeter() {
+    }
+
+    private static Method findAllocatedBytesMethod() {
+        try {
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (!beanClass.isInstance(THREAD_BEAN)) {
+                return null;
+            }
+            if (!((Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(THREAD_BEAN)).booleanValue()) {
+                return null;
+            }
+            beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(THREAD_BEAN, Boolean.TRUE);
+            return beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static boolean isSupported() {
+        return ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread
+     *
+     * @return allocated bytes
+     */
+    static long getAllocatedBytes() {
+        try {
+            return ((Long) ALLOCATED_BYTES.invoke(THREAD_BEAN, Long.valueOf(Thread.currentThread().getId()))).longValue();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read the allocated bytes", e);
+        }
+    }
+
+    /**
+     * Returns the average number of bytes allocated by an operation.<br/>
+     * The operation is run first without measure, so that the classes are loaded and the caches are filled: only the allocations of the steady
+     * state are counted.
+     *
+     * @param operation
+     *            : operation to measure
+     * @param iterations
+     *            : number of runs measured
+     * @return allocated bytes per run
+     */
+    static long bytesPerOperation(Runnable operation, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        // Also warms up the measure itself
+        getAllocatedBytes();
+        long before = getAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long after = getAllocatedBytes();
+        return (after - before) / iterations;
+    }
+}
@@ -0,0 +1,226 @@
+package org.nds.dbdroid.allocation;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.nds.dbdroid.entity.Entity1;
+import org.nds.dbdroid.helper.EntityHelper;
+import org.nds.dbdroid.helper.RowReader;
+import org.nds.dbdroid.helper.RowWriter;
+import org.nds.dbdroid.jdbc.JdbcDataBaseManager;
+import org.nds.dbdroid.jdbc.JdbcQueryValueResolver;
+import org.nds.dbdroid.query.QueryValueResolver;
+
+/**
+ * Upper bounds of the bytes allocated by the hot paths: an allocation regression fails the build.<br/>
+ * The bounds are about twice the current allocations, to tolerate the differences between VMs. The tests are skipped on the VMs which cannot count
+ * the allocated bytes.
+ */
+public class AllocationTest {
+
+    private static final int ITERATIONS = 10000;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+    }
+
+    @Test
+    public void testEntityHelper() {
+        final Entity1 entity = new Entity1("name");
+        entity.set_id(Integer.valueOf(1));
+        final Field nameField = EntityHelper.getFieldByColumnName("name", Entity1.class);
+
+        assertAllocatedAtMost("getColumnNamesWithValues", 256, new Runnable() {
+            public void run() {
+                EntityHelper.getColumnNamesWithValues(entity);
+            }
+        });
+        assertAllocatedAtMost("readField", 8, new Runnable() {
+            public void run() {
+                EntityHelper.readField(nameField, entity);
+            }
+        });
+        assertAllocatedAtMost("writeField", 8, new Runnable() {
+            public void run() {
+                EntityHelper.writeField(nameField, "other", entity);
+            }
+        });
+    }
+
+    @Test
+    public void testTypeConverter() {
+        final Integer value = Integer.valueOf(42);
+
+        assertAllocatedAtMost("convert to the same type", 8, new Runnable() {
+            public void run() {
+                DefaultTypeConverter.INSTANCE.convert(Integer.class, value);
+            }
+        });
+        assertAllocatedAtMost("convert to String", 96, new Runnable() {
+            public void run() {
+                DefaultTypeConverter.INSTANCE.convert(String.class, value);
+            }
+        });
+    }
+
+    @Test
+    public void testQueryValueResolver() {
+        final QueryValueResolver resolver = new JdbcQueryValueResolver();
+        final StringBuilder sb = new StringBuilder(1024);
+        final int[] ints = new int[100];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i * 1000;
+        }
+        final List<String> strings = new ArrayList<String>(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"));
+
+        // Array of primitives appended without boxing
+        assertAllocatedAtMost("appendTo int[]", 8, new Runnable() {
+            public void run() {
+                sb.setLength(0);
+                resolver.appendTo(sb, ints);
+            }
+        });
+        Assert.assertEquals(resolver.toString(ints), sb.toString());
+
+        assertAllocatedAtMost("toString collection", 2048, new Runnable() {
+            public void run() {
+                resolver.toString(strings);
+            }
+        });
+    }
+
+    @Test
+    public void testRowHydration() {
+        final RowReader row = new ConstantRow();
+
+        // Per row: the new entity only, the values are set without boxing nor intermediate map
+        assertAllocatedAtMost("readRow", 48, new Runnable() {
+            public void run() {
+                EntityHelper.readRow(row, new Entity1());
+            }
+        });
+    }
+
+    @Test
+    public void testSaveOrUpdate() throws Exception {
+        final Entity1 entity = new Entity1("name");
+        entity.set_id(Integer.valueOf(1));
+        final RowWriter row = new IgnoredRow();
+
+        assertAllocatedAtMost("writeRow", 8, new Runnable() {
+            public void run() {
+                EntityHelper.writeRow(entity, row);
+            }
+        });
+
+        final JdbcDataBaseManager dbManager = new JdbcDataBaseManager(getClass().getResourceAsStream("/org/nds/dbdroid/jdbc/dbdroid.xml"),
+                "jdbc:h2:mem:allocation;DB_CLOSE_DELAY=-1", "sa", "");
+        dbManager.open();
+        try {
+            dbManager.saveOrUpdate(entity);
+            // Per updated row, including the JDBC driver
+            assertAllocatedAtMost("saveOrUpdate", 2048, new Runnable() {
+                public void run() {
+                    dbManager.saveOrUpdate(entity);
+                }
+            });
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    /**
+     * Row of constant values
+     */
+    private static final class ConstantRow implements RowReader {
+
+        public boolean isNull(int columnIndex) {
+            return false;
+        }
+
+        public String getString(int columnIndex) {
+            return "name";
+        }
+
+        public boolean getBoolean(int columnIndex) {
+            return true;
+        }
+
+        public short getShort(int columnIndex) {
+            return 1;
+        }
+
+        public int getInt(int columnIndex) {
+            return 1;
+        }
+
+        public long getLong(int columnIndex) {
+            return 1L;
+        }
+
+        public float getFloat(int columnIndex) {
+            return 1f;
+        }
+
+        public double getDouble(int columnIndex) {
+            return 1d;
+        }
+
+        public byte[] getBlob(int columnIndex) {
+            return null;
+        }
+
+        public Object getObject(int columnIndex) {
+            return null;
+        }
+    }
+
+    /**
+     * Row ignoring the values
+     */
+    private static final class IgnoredRow implements RowWriter {
+
+        public void putNull(int columnIndex) {
+        }
+
+        public void putString(int columnIndex, String value) {
+        }
+
+        public void putBoolean(int columnIndex, boolean value) {
+        }
+
+        public void putShort(int columnIndex, short value) {
+        }
+
+        public void putInt(int columnIndex, int value) {
+        }
+
+        public void putLong(int columnIndex, long value) {
+        }
+
+        public void putFloat(int columnIndex, float value) {
+        }
+
+        public void putDouble(int columnIndex, double value) {
+        }
+
+        public void putBlob(int columnIndex, byte[] value) {
+        }
+
+        public void putObject(int columnIndex, Object value) {
+        }
+    }
+
+    private static void assertAllocatedAtMost(String operation, long maxBytes, Runnable runnable) {
+        long bytes = AllocationMeter.bytesPerOperation(runnable, ITERATIONS);
+        Assert.assertTrue(operation + " allocates " + bytes + " bytes, expected at most " + maxBytes, bytes <= maxBytes);
+    }
+}
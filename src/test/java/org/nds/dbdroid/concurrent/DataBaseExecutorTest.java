@@ -0,0 +1,163 @@
+package org.nds.dbdroid.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataBaseExecutorTest {
+
+    private DataBaseExecutor executor;
+
+    private List<String> events;
+
+    @Before
+    public void setUp() {
+        executor = new DataBaseExecutor(2, 10);
+        events = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testReadAfterWrites() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submitWrite(blockingTask("w1", latch));
+        executor.submitWrite(task("w2"));
+        Future<String> read = executor.submitRead(task("r"));
+
+        assertNotDone(read);
+        latch.countDown();
+        read.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(list("w1", "w2", "r"), events);
+    }
+
+    @Test
+    public void testCancelledWriteDoesNotReleaseRead() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submitWrite(blockingTask("w1", latch));
+        Future<String> read = executor.submitRead(task("r"));
+        Future<String> queued = executor.submitWrite(task("w2"));
+
+        Assert.assertTrue(queued.cancel(false));
+        // The first write is still running
+        assertNotDone(read);
+        latch.countDown();
+        read.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(list("w1", "r"), events);
+
+        // A read submitted after the cancelled write does not wait for it
+        Assert.assertEquals("r2", executor.submitRead(task("r2")).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWriteCancelledWhileRunning() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Future<String> write = executor.submitWrite(new Callable<String>() {
+
+            public String call() throws Exception {
+                started.countDown();
+                while (true) {
+                    try {
+                        latch.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        // Ignores the interruption until the end of the operation
+                    }
+                }
+                events.add("w1");
+                return "w1";
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> read = executor.submitRead(task("r"));
+
+        Assert.assertTrue(write.cancel(true));
+        // The cancelled write is still running
+        assertNotDone(read);
+        latch.countDown();
+        read.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(list("w1", "r"), events);
+    }
+
+    @Test
+    public void testRejectedWrite() throws Exception {
+        executor.shutdown();
+        executor = new DataBaseExecutor(2, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submitWrite(blockingTask("w1", latch));
+        // Waits for the writer thread to take the first write from the queue
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                executor.submitWrite(task("w2"));
+                break;
+            } catch (RejectedExecutionException e) {
+                Assert.assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+        try {
+            executor.submitWrite(task("w3"));
+            Assert.fail("The queue is full");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        Future<String> read = executor.submitRead(task("r"));
+
+        latch.countDown();
+        read.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(list("w1", "w2", "r"), events);
+    }
+
+    private Callable<String> task(final String name) {
+        return new Callable<String>() {
+
+            public String call() {
+                events.add(name);
+                return name;
+            }
+        };
+    }
+
+    private Callable<String> blockingTask(final String name, final CountDownLatch latch) {
+        return new Callable<String>() {
+
+            public String call() throws InterruptedException {
+                latch.await();
+                events.add(name);
+                return name;
+            }
+        };
+    }
+
+    private static void assertNotDone(Future<?> future) throws Exception {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("The read must wait for the writes submitted before it");
+        } catch (TimeoutException e) {
+            // expected
+        }
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<String>();
+        Collections.addAll(list, values);
+        return list;
+    }
+}
@@ -0,0 +1,84 @@
+package org.nds.dbdroid.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriteBehindQueueTest {
+
+    /**
+     * Writer failing the first calls
+     */
+    private static class FailingWriter implements WriteBehindQueue.Writer {
+
+        private final AtomicInteger failures;
+
+        private final CountDownLatch failed = new CountDownLatch(1);
+
+        private final List<Object> written = Collections.synchronizedList(new ArrayList<Object>());
+
+        FailingWriter(int failures) {
+            this.failures = new AtomicInteger(failures);
+        }
+
+        public void write(List<Object> entities) {
+            if (failures.getAndDecrement() > 0) {
+                failed.countDown();
+                throw new IllegalStateException("write failure");
+            }
+            written.addAll(entities);
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsRequeued() {
+        FailingWriter writer = new FailingWriter(1);
+        WriteBehindQueue queue = new WriteBehindQueue(writer, TimeUnit.HOURS.toMillis(1), 10);
+        queue.enqueue(String.class, 1, "a1");
+        queue.enqueue(String.class, 2, "b1");
+        try {
+            queue.flush();
+            Assert.fail("The writer fails");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("write failure", e.getMessage());
+        }
+        Assert.assertEquals("a1", queue.getPending(String.class, 1));
+        Assert.assertEquals("b1", queue.getPending(String.class, 2));
+        Assert.assertEquals(0, queue.getWrittenCount());
+
+        // The newer state of an entity replaces the state of the failed batch
+        queue.enqueue(String.class, 1, "a2");
+        queue.enqueue(String.class, 3, "c1");
+        queue.flush();
+        Assert.assertEquals(Arrays.<Object> asList("a2", "b1", "c1"), writer.written);
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(3, queue.getWrittenCount());
+        queue.close();
+    }
+
+    @Test
+    public void testBackgroundFailureIsPropagated() throws InterruptedException {
+        FailingWriter writer = new FailingWriter(1);
+        WriteBehindQueue queue = new WriteBehindQueue(writer, 10, 10);
+        queue.enqueue(String.class, 1, "a1");
+        Assert.assertTrue(writer.failed.await(5, TimeUnit.SECONDS));
+        try {
+            queue.flush();
+            Assert.fail("The background flush has failed");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("write failure", e.getCause().getMessage());
+        }
+        // Reported once; the entity is written by the background flusher or by this flush
+        queue.flush();
+        Assert.assertEquals(Arrays.<Object> asList("a1"), writer.written);
+        Assert.assertTrue(queue.isEmpty());
+        queue.close();
+    }
+}
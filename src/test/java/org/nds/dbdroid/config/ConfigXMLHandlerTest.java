@@ -1,5 +1,6 @@
 package org.nds.dbdroid.config;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Assert;
@@ -13,6 +14,9 @@ import org.nds.dbdroid.entity.Entity3;
 import org.nds.dbdroid.exception.DBDroidException;
 import org.nds.dbdroid.mock.MockDataBaseManager;
 import org.nds.dbdroid.service.Service1;
+import org.nds.dbdroid.startup.StartupListener;
+import org.nds.dbdroid.startup.StartupPhase;
+import org.nds.dbdroid.startup.StartupReport;
 
 public class ConfigXMLHandlerTest {
 
@@ -65,4 +69,32 @@ public class ConfigXMLHandlerTest {
             Assert.fail(e.getMessage());
         }
     }
+
+    @Test
+    public void testStartupReport() throws DBDroidException {
+        final List<StartupReport> reports = new ArrayList<StartupReport>();
+        DataBaseManager dbManager = new MockDataBaseManager(getClass().getResourceAsStream("dbdroid.xml"));
+        dbManager.addStartupListener(new StartupListener() {
+
+            public void onStartup(StartupReport report) {
+                reports.add(report);
+            }
+        });
+        dbManager.open();
+
+        Assert.assertEquals(1, reports.size());
+        StartupReport report = reports.get(0);
+        Assert.assertSame(report, dbManager.getStartupReport());
+        Assert.assertTrue(report.hasRun(StartupPhase.PARSE_CONFIG));
+        Assert.assertTrue(report.hasRun(StartupPhase.SCAN_PACKAGES));
+        Assert.assertTrue(report.hasRun(StartupPhase.RUN_SCRIPT));
+        Assert.assertFalse(report.hasRun(StartupPhase.RUN_MIGRATIONS));
+        Assert.assertTrue(report.getCount(StartupReport.Counter.CLASSES_SCANNED) > 0);
+        // Dao1 is declared twice: by its class and by its package
+        Assert.assertEquals(6, report.getCount(StartupReport.Counter.DAOS_CREATED));
+        Assert.assertTrue(report.getCount(StartupReport.Counter.STATEMENTS_EXECUTED) > 0);
+        Assert.assertTrue(report.getNanos(StartupPhase.PARSE_CONFIG) + report.getNanos(StartupPhase.SCAN_PACKAGES) <= report.getTotalNanos());
+
+        dbManager.close();
+    }
 }
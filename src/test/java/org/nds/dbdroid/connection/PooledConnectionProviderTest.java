@@ -0,0 +1,102 @@
+package org.nds.dbdroid.connection;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PooledConnectionProviderTest {
+
+    private ObjectConnectionProvider provider;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        provider = new ObjectConnectionProvider(1);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        provider.close();
+    }
+
+    @Test
+    public void testReaderReleased() throws Exception {
+        Object reader = provider.acquireReader();
+        Future<Object> waiting = executor.submit(new AcquireReader());
+        try {
+            waiting.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("The only reader is in use");
+        } catch (TimeoutException e) {
+            // Waiting for the reader
+        }
+        provider.release(reader);
+        Assert.assertSame(reader, waiting.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, provider.opened);
+    }
+
+    @Test
+    public void testCloseWhileWaiting() throws Exception {
+        Object reader = provider.acquireReader();
+        Future<Object> waiting = executor.submit(new AcquireReader());
+        Thread.sleep(200);
+        provider.close();
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            Assert.fail("The provider is closed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        // Not given back to the pool once closed
+        provider.release(reader);
+        try {
+            provider.acquireReader();
+            Assert.fail("The provider is closed");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    private class AcquireReader implements Callable<Object> {
+
+        public Object call() {
+            return provider.acquireReader();
+        }
+    }
+
+    private static class ObjectConnectionProvider extends PooledConnectionProvider<Object> {
+
+        private int opened;
+
+        ObjectConnectionProvider(int maxReaders) {
+            super(maxReaders);
+        }
+
+        @Override
+        protected Object openReader() {
+            opened++;
+            return new Object();
+        }
+
+        @Override
+        protected Object openWriter() {
+            return new Object();
+        }
+
+        @Override
+        protected void closeConnection(Object connection) {
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.nds.dbdroid.dao;
+
+import org.nds.dbdroid.DataBaseManager;
+import org.nds.dbdroid.entity.Entity6;
+
+public class Dao6 extends AndroidDAO<Entity6, Integer> {
+
+    public Dao6(DataBaseManager dbManager) {
+        super(dbManager);
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.nds.dbdroid.entity;
+
+import org.nds.dbdroid.annotation.Entity;
+import org.nds.dbdroid.annotation.Id;
+import org.nds.dbdroid.type.LazyValue;
+
+@Entity
+public class Entity6 {
+
+    @Id
+    private Integer _id;
+
+    private String name;
+
+    private LazyValue<byte[]> document;
+
+    // Default Constructor
+    public Entity6() {
+    }
+
+    public Entity6(String name, byte[] document) {
+        this.name = name;
+        this.document = new LazyValue<byte[]>(document);
+    }
+
+    public void set_id(Integer _id) {
+        this._id = _id;
+    }
+
+    public Integer get_id() {
+        return _id;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setDocument(LazyValue<byte[]> document) {
+        this.document = document;
+    }
+
+    public LazyValue<byte[]> getDocument() {
+        return document;
+    }
+}
@@ -0,0 +1,275 @@
+package org.nds.dbdroid.helper;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nds.dbdroid.annotation.Column;
+import org.nds.dbdroid.annotation.Entity;
+import org.nds.dbdroid.annotation.Id;
+import org.nds.dbdroid.entity.Entity1;
+import org.nds.dbdroid.reflect.utils.AnnotationUtils;
+import org.nds.dbdroid.type.DbDroidType;
+import org.nds.dbdroid.type.LazyValue;
+
+public class EntityHelperTest {
+
+    @Entity
+    public static class BaseEntity {
+        @Id
+        private Integer _id;
+
+        @Column(name = "LABEL")
+        private String name;
+
+        public Integer get_id() {
+            return _id;
+        }
+
+        public void set_id(Integer _id) {
+            this._id = _id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Entity(name = "CHILD")
+    public static class ChildEntity extends BaseEntity {
+        @Column(name = "VALUE")
+        private Long amount;
+
+        public Long getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Long amount) {
+            this.amount = amount;
+        }
+    }
+
+    @Entity
+    public static class LazyEntity {
+        @Id
+        private Integer _id;
+
+        private LazyValue<byte[]> document;
+
+        public Integer get_id() {
+            return _id;
+        }
+
+        public void set_id(Integer _id) {
+            this._id = _id;
+        }
+
+        public LazyValue<byte[]> getDocument() {
+            return document;
+        }
+
+        public void setDocument(LazyValue<byte[]> document) {
+            this.document = document;
+        }
+    }
+
+    @Test
+    public void testFieldByColumnName() throws Exception {
+        Field name = BaseEntity.class.getDeclaredField("name");
+        Field amount = ChildEntity.class.getDeclaredField("amount");
+
+        Assert.assertEquals(name, EntityHelper.getFieldByColumnName("LABEL", ChildEntity.class));
+        Assert.assertEquals(amount, EntityHelper.getFieldByColumnName("VALUE", ChildEntity.class));
+        // Fallback on the field name
+        Assert.assertEquals(amount, EntityHelper.getFieldByColumnName("amount", ChildEntity.class));
+        Assert.assertEquals(BaseEntity.class.getDeclaredField("_id"), EntityHelper.getFieldByColumnName("_id", ChildEntity.class));
+        Assert.assertNull(EntityHelper.getFieldByColumnName("unknown", ChildEntity.class));
+    }
+
+    @Test
+    public void testAnnotationIndex() throws Exception {
+        Field id = BaseEntity.class.getDeclaredField("_id");
+
+        Assert.assertEquals(id, EntityHelper.getIdField(ChildEntity.class));
+        Assert.assertTrue(EntityHelper.isIdField(id));
+        Assert.assertFalse(EntityHelper.isIdField(ChildEntity.class.getDeclaredField("amount")));
+        Assert.assertEquals(2, AnnotationUtils.findFields(ChildEntity.class, Column.class).length);
+        Assert.assertEquals("CHILD", EntityHelper.getTableName(ChildEntity.class));
+        Assert.assertEquals("ENTITY1", EntityHelper.getTableName(Entity1.class));
+    }
+
+    @Test
+    public void testColumnNamesWithValues() {
+        ChildEntity entity = new ChildEntity();
+        entity.setName("name");
+        entity.setAmount(10L);
+
+        Map<String, Object> values = EntityHelper.getColumnNamesWithValues(entity);
+        // Id field with NULL value is not stored
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals("name", values.get("LABEL"));
+        Assert.assertEquals(Long.valueOf(10), values.get("VALUE"));
+    }
+
+    @Test
+    public void testRowReaderWriter() {
+        EntityMetadata metadata = EntityMetadata.forClass(ChildEntity.class);
+        final Object[] row = new Object[metadata.getColumnCount()];
+
+        ChildEntity entity = new ChildEntity();
+        entity.setName("name");
+        entity.setAmount(10L);
+        EntityHelper.writeRow(entity, new ArrayRow(row));
+
+        Assert.assertNull(row[metadata.getIdColumnIndex()]);
+        Assert.assertEquals("name", row[metadata.getColumnIndex("LABEL")]);
+        Assert.assertEquals(Long.valueOf(10), row[metadata.getColumnIndex("VALUE")]);
+
+        row[metadata.getIdColumnIndex()] = Integer.valueOf(3);
+        ChildEntity hydrated = new ChildEntity();
+        EntityHelper.readRow(new ArrayRow(row), hydrated);
+
+        Assert.assertEquals(Integer.valueOf(3), hydrated.get_id());
+        Assert.assertEquals("name", hydrated.getName());
+        Assert.assertEquals(Long.valueOf(10), hydrated.getAmount());
+    }
+
+    @Test
+    public void testLazyColumn() {
+        EntityMetadata metadata = EntityMetadata.forClass(LazyEntity.class);
+        int index = metadata.getColumnIndex("document");
+        Assert.assertTrue(metadata.hasLazyColumns());
+        Assert.assertTrue(metadata.isLazy(index));
+        Assert.assertEquals(DbDroidType.BINARY, metadata.getColumnType(index));
+
+        Object[] row = new Object[metadata.getColumnCount()];
+        row[metadata.getIdColumnIndex()] = Integer.valueOf(1);
+        row[index] = new byte[] { 1, 2 };
+        LazyEntity entity = new LazyEntity();
+        EntityHelper.readRow(new ArrayRow(row), entity);
+        // Lazy column not read with the row
+        Assert.assertNull(entity.getDocument());
+
+        entity.setDocument(new LazyValue<byte[]>(new byte[] { 3 }));
+        EntityHelper.writeRow(entity, new ArrayRow(row));
+        Assert.assertArrayEquals(new byte[] { 3 }, (byte[]) row[index]);
+    }
+
+    @Test
+    public void testDirtyTracker() {
+        DirtyTracker tracker = new DirtyTracker();
+        EntityMetadata metadata = EntityMetadata.forClass(ChildEntity.class);
+
+        ChildEntity entity = new ChildEntity();
+        entity.setName("name");
+        entity.setAmount(10L);
+        Assert.assertNull(tracker.getDirtyColumnIndexes(entity));
+
+        tracker.snapshot(entity);
+        Assert.assertEquals(0, tracker.getDirtyColumnIndexes(entity).length);
+
+        entity.setAmount(11L);
+        int[] dirty = tracker.getDirtyColumnIndexes(entity);
+        Assert.assertEquals(1, dirty.length);
+        Assert.assertEquals("VALUE", metadata.getColumnName(dirty[0]));
+
+        tracker.snapshot(entity);
+        Assert.assertEquals(0, tracker.getDirtyColumnIndexes(entity).length);
+
+        tracker.remove(entity);
+        Assert.assertFalse(tracker.isTracked(entity));
+    }
+
+    private static class ArrayRow implements RowReader, RowWriter {
+        private final Object[] row;
+
+        ArrayRow(Object[] row) {
+            this.row = row;
+        }
+
+        public boolean isNull(int columnIndex) {
+            return row[columnIndex] == null;
+        }
+
+        public String getString(int columnIndex) {
+            return (String) row[columnIndex];
+        }
+
+        public boolean getBoolean(int columnIndex) {
+            return ((Boolean) row[columnIndex]).booleanValue();
+        }
+
+        public short getShort(int columnIndex) {
+            return ((Number) row[columnIndex]).shortValue();
+        }
+
+        public int getInt(int columnIndex) {
+            return ((Number) row[columnIndex]).intValue();
+        }
+
+        public long getLong(int columnIndex) {
+            return ((Number) row[columnIndex]).longValue();
+        }
+
+        public float getFloat(int columnIndex) {
+            return ((Number) row[columnIndex]).floatValue();
+        }
+
+        public double getDouble(int columnIndex) {
+            return ((Number) row[columnIndex]).doubleValue();
+        }
+
+        public byte[] getBlob(int columnIndex) {
+            return (byte[]) row[columnIndex];
+        }
+
+        public Object getObject(int columnIndex) {
+            return row[columnIndex];
+        }
+
+        public void putNull(int columnIndex) {
+            row[columnIndex] = null;
+        }
+
+        public void putString(int columnIndex, String value) {
+            row[columnIndex] = value;
+        }
+
+        public void putBoolean(int columnIndex, boolean value) {
+            row[columnIndex] = Boolean.valueOf(value);
+        }
+
+        public void putShort(int columnIndex, short value) {
+            row[columnIndex] = Short.valueOf(value);
+        }
+
+        public void putInt(int columnIndex, int value) {
+            row[columnIndex] = Integer.valueOf(value);
+        }
+
+        public void putLong(int columnIndex, long value) {
+            row[columnIndex] = Long.valueOf(value);
+        }
+
+        public void putFloat(int columnIndex, float value) {
+            row[columnIndex] = Float.valueOf(value);
+        }
+
+        public void putDouble(int columnIndex, double value) {
+            row[columnIndex] = Double.valueOf(value);
+        }
+
+        public void putBlob(int columnIndex, byte[] value) {
+            row[columnIndex] = value;
+        }
+
+        public void putObject(int columnIndex, Object value) {
+            row[columnIndex] = value;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.nds.dbdroid.helper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScriptParserTest {
+
+    @Test
+    public void testCommentsAndEmptyLinesSkipped() throws IOException {
+        List<String> queries = parse("-- comment\n\n// comment\n# comment\n   \nDELETE FROM t1;\n");
+        Assert.assertEquals(Arrays.asList(" DELETE FROM t1"), queries);
+    }
+
+    @Test
+    public void testQueryOnSeveralLines() throws IOException {
+        List<String> queries = parse("CREATE TABLE t1 (\n_id INTEGER,\nname VARCHAR(10));\nDELETE FROM t1;");
+        Assert.assertEquals(Arrays.asList(" CREATE TABLE t1 ( _id INTEGER, name VARCHAR(10))", " DELETE FROM t1"), queries);
+    }
+
+    @Test
+    public void testSeveralQueriesOnOneLine() throws IOException {
+        List<String> queries = parse("DELETE FROM t1; DELETE FROM t2; UPDATE t3\nSET name = 'a';");
+        Assert.assertEquals(Arrays.asList(" DELETE FROM t1", " DELETE FROM t2", " UPDATE t3 SET name = 'a'"), queries);
+    }
+
+    @Test
+    public void testSlashTerminator() throws IOException {
+        List<String> queries = parse("CREATE TRIGGER t1_trigger AFTER INSERT ON t1\nBEGIN\nDELETE FROM t2\nEND\n/\nDELETE FROM t1;");
+        // The '/' is replaced by a space
+        Assert.assertEquals(Arrays.asList(" CREATE TRIGGER t1_trigger AFTER INSERT ON t1 BEGIN DELETE FROM t2 END  ", " DELETE FROM t1"), queries);
+    }
+
+    @Test
+    public void testEmptyScript() throws IOException {
+        Assert.assertTrue(parse("-- only a comment\n\n").isEmpty());
+    }
+
+    private static List<String> parse(String script) throws IOException {
+        return ScriptParser.parse(new StringReader(script));
+    }
+}
@@ -0,0 +1,40 @@
+package org.nds.dbdroid.helper;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nds.dbdroid.entity.Entity1;
+
+public class TableSchemaTest {
+
+    @Test
+    public void testUnchangedSchema() {
+        TableSchema schema = TableSchema.forEntity("ENTITY1", Entity1.class);
+        Assert.assertEquals("_id:INTEGER:ID;name:STRING", schema.getDescriptor());
+
+        TableSchema stored = TableSchema.parse("ENTITY1", schema.getDescriptor());
+        Assert.assertEquals(schema.getFingerprint(), stored.getFingerprint());
+        Assert.assertEquals("_id", stored.getIdColumn());
+        Assert.assertTrue(schema.diff(stored).isEmpty());
+    }
+
+    @Test
+    public void testNewTable() {
+        SchemaDiff diff = TableSchema.forEntity("ENTITY1", Entity1.class).diff(null);
+        Assert.assertTrue(diff.isNewTable());
+        Assert.assertFalse(diff.isEmpty());
+        Assert.assertEquals(Arrays.asList("_id", "name"), diff.getAddedColumns());
+    }
+
+    @Test
+    public void testDiff() {
+        TableSchema stored = TableSchema.parse("ENTITY1", "_id:LONG:ID;label:STRING");
+        SchemaDiff diff = TableSchema.forEntity("ENTITY1", Entity1.class).diff(stored);
+
+        Assert.assertFalse(diff.isNewTable());
+        Assert.assertEquals(Arrays.asList("name"), diff.getAddedColumns());
+        Assert.assertEquals(Arrays.asList("label"), diff.getDroppedColumns());
+        Assert.assertEquals(Arrays.asList("_id"), diff.getChangedColumns());
+    }
+}
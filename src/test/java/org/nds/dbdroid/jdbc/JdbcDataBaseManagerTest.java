@@ -0,0 +1,495 @@
+package org.nds.dbdroid.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nds.dbdroid.dao.Dao1;
+import org.nds.dbdroid.entity.Entity1;
+import org.nds.dbdroid.entity.Entity2;
+import org.nds.dbdroid.entity.Entity6;
+import org.nds.dbdroid.exception.DBDroidException;
+import org.nds.dbdroid.metrics.BindValueRedactor;
+import org.nds.dbdroid.metrics.DataBaseMetrics;
+import org.nds.dbdroid.metrics.Operation;
+import org.nds.dbdroid.metrics.OperationMetrics;
+import org.nds.dbdroid.metrics.QueryLog;
+import org.nds.dbdroid.metrics.QueryLogEntry;
+import org.nds.dbdroid.query.AggregateFunction;
+import org.nds.dbdroid.query.KeysetIterator;
+import org.nds.dbdroid.query.LogicalOperator;
+import org.nds.dbdroid.query.Operator;
+import org.nds.dbdroid.query.Order;
+import org.nds.dbdroid.query.Query;
+import org.nds.dbdroid.query.QueryCache;
+import org.nds.dbdroid.startup.StartupReport;
+import org.nds.dbdroid.type.DbDroidType;
+
+public class JdbcDataBaseManagerTest {
+
+    private static int databaseCount;
+
+    private String url;
+
+    private JdbcDataBaseManager dbManager;
+
+    @Before
+    public void setUp() throws Exception {
+        url = "jdbc:h2:mem:dbdroid" + (databaseCount++) + ";DB_CLOSE_DELAY=-1";
+        dbManager = new JdbcDataBaseManager(getClass().getResourceAsStream("dbdroid.xml"), url, "sa", "");
+        dbManager.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dbManager.close();
+    }
+
+    @Test
+    public void testSaveFindDelete() {
+        Entity1 entity = dbManager.saveOrUpdate(new Entity1("name1"));
+        Assert.assertNotNull(entity.get_id());
+
+        Entity1 found = dbManager.findById(entity.get_id(), Entity1.class);
+        Assert.assertEquals("name1", found.getName());
+
+        found.setName("name2");
+        dbManager.saveOrUpdate(found);
+        Assert.assertEquals("name2", dbManager.findById(entity.get_id(), Entity1.class).getName());
+        Assert.assertEquals(1, dbManager.findAll(Entity1.class).size());
+
+        dbManager.delete(found);
+        Assert.assertNull(dbManager.findById(entity.get_id(), Entity1.class));
+    }
+
+    @Test
+    public void testLazyColumnStream() throws Exception {
+        Entity6 entity = dbManager.saveOrUpdate(new Entity6("name1", new byte[] { 1, 2 }));
+        dbManager.writeColumnStream(entity, "document", new ByteArrayInputStream(new byte[] { 3, 4, 5 }));
+        Assert.assertFalse(entity.getDocument().isLoaded());
+        Assert.assertArrayEquals(new byte[] { 3, 4, 5 }, entity.getDocument().get());
+
+        Entity6 found = dbManager.findById(entity.get_id(), Entity6.class);
+        Assert.assertEquals("name1", found.getName());
+        Assert.assertFalse(found.getDocument().isLoaded());
+        InputStream in = dbManager.openColumnStream(found, "document");
+        try {
+            Assert.assertEquals(3, in.read());
+        } finally {
+            in.close();
+        }
+        Assert.assertArrayEquals(new byte[] { 3, 4, 5 }, found.getDocument().get());
+    }
+
+    @Test
+    public void testTablesGeneratedConcurrently() {
+        Entity2 entity = dbManager.saveOrUpdate(new Entity2(Long.valueOf(42)));
+        Assert.assertEquals(Long.valueOf(42), dbManager.findById(entity.get_id(), Entity2.class).getTime());
+        Assert.assertEquals(0, dbManager.findAll(Entity1.class).size());
+    }
+
+    @Test
+    public void testQuery() {
+        for (String name : Arrays.asList("a", "b", "c", "d")) {
+            dbManager.saveOrUpdate(new Entity1(name));
+        }
+
+        ArrayList<String> names = new ArrayList<String>(Arrays.asList("a", "b"));
+        Query query = dbManager.createQuery(Entity1.class);
+        query.add(Query.createLogicalExpression(Query.createExpression("name", names, DbDroidType.STRING, Operator.IN),
+                Query.createExpression("name", "d", DbDroidType.STRING, Operator.EQUAL), LogicalOperator.OR));
+        query.orderBy("name DESC");
+
+        List<Entity1> entities = dbManager.queryList(query);
+        Assert.assertEquals(3, entities.size());
+        Assert.assertEquals("d", entities.get(0).getName());
+        Assert.assertEquals(3, query.count());
+        Assert.assertEquals("d", query.max("name"));
+
+        query.setMaxRows(2);
+        Assert.assertEquals(2, dbManager.queryList(query).size());
+        Assert.assertEquals(2, query.count());
+    }
+
+    @Test
+    public void testInListChunksWithDuplicates() {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (String name : Arrays.asList("a", "b", "c", "d", "e")) {
+            ids.add(dbManager.saveOrUpdate(new Entity1(name)).get_id());
+        }
+        dbManager.setInListChunkSize(2);
+
+        // More values than the chunk size, repeated across the chunks
+        ArrayList<Object> values = new ArrayList<Object>(Arrays.asList(ids.get(3), ids.get(0), ids.get(3), ids.get(1), ids.get(0),
+                Long.valueOf(ids.get(1).longValue()), ids.get(2)));
+        Query query = dbManager.createQuery(Entity1.class).orderBy(Order.asc("name"));
+        query.add(Query.createExpression("_id", values, DbDroidType.INTEGER, Operator.IN));
+
+        List<Entity1> entities = dbManager.queryList(query);
+        Assert.assertEquals(4, entities.size());
+        Assert.assertEquals("a", entities.get(0).getName());
+        Assert.assertEquals("d", entities.get(3).getName());
+        Assert.assertEquals(4, query.count());
+        Assert.assertTrue(query.exists());
+        Assert.assertEquals(4, dbManager.queryTuples(query.orderBy((Order[]) null).select("name")).size());
+    }
+
+    @Test
+    public void testInListChunksAggregate() {
+        ArrayList<Object> ids = new ArrayList<Object>();
+        for (Long time : Arrays.asList(Long.valueOf(10), Long.valueOf(20), Long.valueOf(10), null, Long.valueOf(20))) {
+            ids.add(dbManager.saveOrUpdate(new Entity2(time)).get_id());
+        }
+        dbManager.setInListChunkSize(2);
+
+        Query query = dbManager.createQuery(Entity2.class);
+        query.add(Query.createExpression("_id", ids, DbDroidType.INTEGER, Operator.IN));
+        Assert.assertEquals(5, query.count());
+        Assert.assertEquals(Long.valueOf(4), dbManager.aggregate(query, AggregateFunction.COUNT, "time"));
+        Assert.assertEquals(Long.valueOf(60), query.sum("time"));
+        Assert.assertEquals(Long.valueOf(10), query.min("time"));
+        Assert.assertEquals(Long.valueOf(20), query.max("time"));
+        Assert.assertEquals(Double.valueOf(15), query.avg("time"));
+
+        // The same times are found in several chunks
+        query.select("time").setDistinct(true);
+        Assert.assertEquals(3, query.count());
+    }
+
+    @Test
+    public void testProjection() {
+        for (long time : new long[] { 30, 10, 20 }) {
+            dbManager.saveOrUpdate(new Entity2(Long.valueOf(time)));
+        }
+
+        Query query = dbManager.createQuery(Entity2.class).select("time", "_id").orderBy("time");
+        List<Object[]> tuples = query.queryTuples();
+        Assert.assertEquals(3, tuples.size());
+        Assert.assertEquals(2, tuples.get(0).length);
+        Assert.assertEquals(10L, ((Number) tuples.get(0)[0]).longValue());
+
+        List<TimeView> views = query.queryList(TimeView.class);
+        Assert.assertEquals(3, views.size());
+        Assert.assertEquals(Long.valueOf(30), views.get(2).time);
+        Assert.assertEquals(((Number) tuples.get(2)[1]).intValue(), views.get(2)._id.intValue());
+
+        query.select("time");
+        Assert.assertArrayEquals(new long[] { 10, 20, 30 }, query.queryLongColumn());
+        Assert.assertEquals(60d, query.queryDoubleColumn()[0] + query.queryDoubleColumn()[1] + query.queryDoubleColumn()[2], 0d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProjectionUnknownColumn() {
+        dbManager.createQuery(Entity2.class).select("unknown");
+    }
+
+    @Test
+    public void testCountExistsAggregate() {
+        for (long time : new long[] { 30, 10, 20 }) {
+            dbManager.saveOrUpdate(new Entity2(Long.valueOf(time)));
+        }
+        dbManager.saveOrUpdate(new Entity2(null));
+
+        Query query = dbManager.createQuery(Entity2.class);
+        Assert.assertEquals(4, query.count());
+        Assert.assertTrue(query.exists());
+        Assert.assertEquals(Long.valueOf(60), query.sum("time"));
+        Assert.assertEquals(Long.valueOf(10), query.min("time"));
+        Assert.assertEquals(Long.valueOf(30), query.max("time"));
+        Assert.assertEquals(Double.valueOf(20), query.avg("time"));
+
+        // Paged query: computed in memory on the rows of the page
+        query.add(Query.createExpression("time", null, DbDroidType.LONG, Operator.IS_NOT_NULL));
+        query.orderBy("time DESC").setMaxRows(2);
+        Assert.assertEquals(2, query.count());
+        Assert.assertEquals(Long.valueOf(50), query.sum("time"));
+        Assert.assertEquals(Double.valueOf(25), query.avg("time"));
+
+        Query none = dbManager.createQuery(Entity2.class);
+        none.add(Query.createExpression("time", Long.valueOf(40), DbDroidType.LONG, Operator.GREATER_THAN));
+        Assert.assertEquals(0, none.count());
+        Assert.assertFalse(none.exists());
+        Assert.assertNull(none.sum("time"));
+        Assert.assertNull(none.max("time"));
+    }
+
+    @Test
+    public void testKeysetIterator() {
+        for (String name : Arrays.asList("b", "a", "c", "b", "a")) {
+            dbManager.saveOrUpdate(new Entity1(name));
+        }
+
+        KeysetIterator<Entity1> pages = dbManager.createQuery(Entity1.class).keysetIterator("name", 2, false);
+        List<String> names = new ArrayList<String>();
+        List<Integer> ids = new ArrayList<Integer>();
+        int pageCount = 0;
+        while (pages.hasNext()) {
+            for (Entity1 entity : pages.next()) {
+                names.add(entity.getName());
+                ids.add(entity.get_id());
+            }
+            pageCount++;
+        }
+        Assert.assertEquals(Arrays.asList("a", "a", "b", "b", "c"), names);
+        Assert.assertEquals(3, pageCount);
+        Assert.assertEquals("c", pages.getCursorValue());
+
+        // Resumed after the second row
+        Query query = dbManager.createQuery(Entity1.class).after("name", "a", ids.get(1));
+        KeysetIterator<Entity1> resumed = query.keysetIterator("name", 10, false);
+        List<Entity1> page = resumed.next();
+        Assert.assertEquals(3, page.size());
+        Assert.assertEquals(ids.get(2), page.get(0).get_id());
+        Assert.assertFalse(resumed.hasNext());
+    }
+
+    @Test
+    public void testMetrics() {
+        DataBaseMetrics metrics = new DataBaseMetrics();
+        dbManager.setMetrics(metrics);
+        dbManager.setQueryCache(new QueryCache(10, 100));
+        for (String name : Arrays.asList("a", "b", "c")) {
+            dbManager.saveOrUpdate(new Entity1(name));
+        }
+        for (String name : Arrays.asList("a", "b", "a")) {
+            Query query = dbManager.createQuery(Entity1.class).setCacheable(true);
+            query.add(Query.createExpression("name", name, DbDroidType.STRING, Operator.EQUAL));
+            Assert.assertEquals(1, dbManager.queryList(query).size());
+        }
+
+        OperationMetrics saves = metrics.getMetrics(Operation.SAVE_OR_UPDATE, Entity1.class.getName(), null);
+        Assert.assertEquals(3, saves.getCount());
+        Assert.assertEquals(3, saves.getRows());
+
+        OperationMetrics queries = metrics.getMetrics(Operation.QUERY_LIST, Entity1.class.getName(), "SELECT Entity1 WHERE name EQUAL ?");
+        Assert.assertEquals(3, queries.getCount());
+        Assert.assertEquals(3, queries.getRows());
+        Assert.assertEquals(1, queries.getCacheHits());
+        Assert.assertEquals(2, queries.getCacheMisses());
+        Assert.assertTrue(queries.getHydrationNanos() > 0);
+        Assert.assertTrue(queries.getEngineNanos() > 0);
+    }
+
+    @Test
+    public void testQueryCacheHitNotShared() {
+        dbManager.setQueryCache(new QueryCache(10, 100));
+        dbManager.saveOrUpdate(new Entity1("a"));
+        Query query = dbManager.createQuery(Entity1.class).setCacheable(true);
+
+        Entity1 first = dbManager.<Entity1> queryList(query).get(0);
+        Entity1 hit = dbManager.<Entity1> queryList(query).get(0);
+        Assert.assertEquals(1, dbManager.getQueryCache().getHitCount());
+        Assert.assertNotSame(first, hit);
+
+        // Modified but not saved: the cache still returns the row read from the database
+        hit.setName("modified");
+        first.setName("modified");
+        List<Entity1> again = dbManager.queryList(query);
+        Assert.assertEquals(2, dbManager.getQueryCache().getHitCount());
+        Assert.assertEquals("a", again.get(0).getName());
+        Assert.assertEquals(first.get_id(), again.get(0).get_id());
+    }
+
+    @Test
+    public void testQueryCacheLazyColumn() throws Exception {
+        dbManager.setQueryCache(new QueryCache(10, 100));
+        dbManager.saveOrUpdate(new Entity6("name1", new byte[] { 1, 2 }));
+        Query query = dbManager.createQuery(Entity6.class).setCacheable(true);
+
+        dbManager.queryList(query);
+        Entity6 hit = dbManager.<Entity6> queryList(query).get(0);
+        Assert.assertEquals(1, dbManager.getQueryCache().getHitCount());
+        Assert.assertFalse(hit.getDocument().isLoaded());
+        Assert.assertArrayEquals(new byte[] { 1, 2 }, hit.getDocument().get());
+    }
+
+    @Test
+    public void testQueryLog() {
+        QueryLog queryLog = new QueryLog(2, 0, TimeUnit.MILLISECONDS);
+        queryLog.setRedactor(new BindValueRedactor() {
+
+            public Object redact(Class<?> entityClass, String column, Object value) {
+                return "name".equals(column) ? "***" : value;
+            }
+        });
+        dbManager.setQueryLog(queryLog);
+
+        Entity1 entity = dbManager.saveOrUpdate(new Entity1("secret"));
+        dbManager.getDAO(Dao1.class).findById(entity.get_id());
+        Query query = dbManager.createQuery(Entity1.class);
+        query.add(Query.createExpression("name", "secret", DbDroidType.STRING, Operator.EQUAL));
+        dbManager.queryList(query);
+
+        Assert.assertEquals(3, queryLog.getCapturedCount());
+        List<QueryLogEntry> entries = queryLog.getEntries();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(Operation.FIND_BY_ID, entries.get(0).getOperation());
+        Assert.assertEquals(Arrays.asList((Object) entity.get_id()), entries.get(0).getBindValues());
+        Assert.assertTrue(entries.get(0).getCaller().contains("JdbcDataBaseManagerTest.testQueryLog"));
+
+        QueryLogEntry entry = entries.get(1);
+        Assert.assertEquals("SELECT Entity1 WHERE name EQUAL ?", entry.getQuery());
+        Assert.assertEquals(Arrays.asList((Object) "***"), entry.getBindValues());
+        Assert.assertEquals(1, entry.getRows());
+    }
+
+    @Test
+    public void testUpdateDirtyColumns() throws Exception {
+        dbManager.setDirtyCheckingEnabled(true);
+        Entity6 entity = dbManager.saveOrUpdate(new Entity6("name1", new byte[] { 1, 2 }));
+        // Column written by another connection: not overwritten by an update of the name only
+        updateDocument(entity.get_id(), "0909");
+        entity.setName("name2");
+        dbManager.saveOrUpdate(entity);
+        Entity6 found = dbManager.findById(entity.get_id(), Entity6.class);
+        Assert.assertEquals("name2", found.getName());
+        Assert.assertArrayEquals(new byte[] { 9, 9 }, found.getDocument().get());
+
+        // Untracked entity: all the columns are written
+        Entity6 untracked = new Entity6("name3", new byte[] { 3 });
+        untracked.set_id(entity.get_id());
+        dbManager.saveOrUpdate(untracked);
+        found = dbManager.findById(entity.get_id(), Entity6.class);
+        Assert.assertEquals("name3", found.getName());
+        Assert.assertArrayEquals(new byte[] { 3 }, found.getDocument().get());
+
+        // Batch of the write-behind mode
+        Entity1 other = dbManager.saveOrUpdate(new Entity1("other"));
+        updateDocument(entity.get_id(), "0707");
+        dbManager.setWriteBehindLatency(60000);
+        untracked.setName("name4");
+        dbManager.saveOrUpdate(untracked);
+        other.setName("other2");
+        dbManager.saveOrUpdate(other);
+        dbManager.flush();
+        dbManager.setWriteBehindLatency(0);
+        found = dbManager.findById(entity.get_id(), Entity6.class);
+        Assert.assertEquals("name4", found.getName());
+        Assert.assertArrayEquals(new byte[] { 7, 7 }, found.getDocument().get());
+        Assert.assertEquals("other2", dbManager.findById(other.get_id(), Entity1.class).getName());
+    }
+
+    private void updateDocument(Integer id, String hex) throws SQLException {
+        Connection connection = DriverManager.getConnection(url, "sa", "");
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                Assert.assertEquals(1, statement.executeUpdate("UPDATE Entity6 SET document = X'" + hex + "' WHERE _id = " + id));
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testWriteBehindBatch() throws Exception {
+        Entity1 entity = dbManager.saveOrUpdate(new Entity1("name1"));
+        dbManager.setWriteBehindLatency(60000);
+
+        entity.setName("updated");
+        dbManager.saveOrUpdate(entity);
+        Entity1 inserted = new Entity1("inserted");
+        inserted.set_id(Integer.valueOf(entity.get_id().intValue() + 100));
+        dbManager.saveOrUpdate(inserted);
+        dbManager.flush();
+
+        dbManager.setWriteBehindLatency(0);
+        Assert.assertEquals("updated", dbManager.findById(entity.get_id(), Entity1.class).getName());
+        Assert.assertEquals("inserted", dbManager.findById(inserted.get_id(), Entity1.class).getName());
+    }
+
+    @Test
+    public void testWriteBehindConcurrentWithRawQueries() throws Exception {
+        final List<Entity1> entities = new ArrayList<Entity1>();
+        for (int i = 0; i < 10; i++) {
+            entities.add(dbManager.saveOrUpdate(new Entity1("name" + i)));
+        }
+        // The background flusher writes while the raw queries and the reads run
+        dbManager.setWriteBehindLatency(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writes = pool.submit(new Callable<Void>() {
+
+                public Void call() {
+                    for (int round = 0; round < 200; round++) {
+                        for (Entity1 entity : entities) {
+                            entity.setName("round" + round);
+                            dbManager.saveOrUpdate(entity);
+                        }
+                    }
+                    return null;
+                }
+            });
+            Future<?> reads = pool.submit(new Callable<Void>() {
+
+                public Void call() {
+                    for (int i = 0; i < 200; i++) {
+                        dbManager.rawQuery("UPDATE Entity1 SET name = name");
+                        Assert.assertEquals(10, dbManager.findAll(Entity1.class).size());
+                        Assert.assertEquals(10, dbManager.count(dbManager.createQuery(Entity1.class)));
+                    }
+                    return null;
+                }
+            });
+            writes.get(30, TimeUnit.SECONDS);
+            reads.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdown();
+        }
+        dbManager.flush();
+        for (Entity1 entity : entities) {
+            Assert.assertEquals("round199", dbManager.findById(entity.get_id(), Entity1.class).getName());
+        }
+    }
+
+    @Test
+    public void testNotReopenedAfterClose() throws Exception {
+        dbManager.close();
+        try {
+            dbManager.open();
+            Assert.fail("A closed manager cannot be opened again");
+        } catch (DBDroidException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMigrationsAppliedOnce() throws Exception {
+        String url = "jdbc:h2:mem:dbdroid" + (databaseCount++) + ";DB_CLOSE_DELAY=-1";
+        for (int i = 0; i < 2; i++) {
+            JdbcDataBaseManager manager = new JdbcDataBaseManager(getClass().getResourceAsStream("dbdroid-migrations.xml"), url, "sa", "");
+            manager.open();
+            try {
+                List<Entity1> entities = manager.findAll(Entity1.class);
+                Assert.assertEquals(3, entities.size());
+                Assert.assertEquals(i == 0 ? 2 : 0, manager.getStartupReport().getCount(StartupReport.Counter.MIGRATIONS_APPLIED));
+            } finally {
+                manager.close();
+            }
+        }
+    }
+
+    public static class TimeView {
+
+        private Long time;
+
+        private Integer _id;
+    }
+}
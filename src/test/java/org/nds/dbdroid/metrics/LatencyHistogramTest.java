@@ -0,0 +1,36 @@
+package org.nds.dbdroid.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        long previous = -1;
+        for (int bucket = 0; bucket < 200; bucket++) {
+            long upperBound = LatencyHistogram.getUpperBound(bucket);
+            Assert.assertEquals(bucket, LatencyHistogram.getBucket(upperBound));
+            Assert.assertEquals(bucket, LatencyHistogram.getBucket(previous + 1));
+            previous = upperBound;
+        }
+        Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(LatencyHistogram.getBucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1000000, histogram.getMax());
+        Assert.assertEquals(500500.0, histogram.getMean(), 0.001);
+
+        long p50 = histogram.getValueAtPercentile(50);
+        Assert.assertTrue(p50 >= 500000 && p50 <= 500000 * 1.125);
+        long p99 = histogram.getValueAtPercentile(99);
+        Assert.assertTrue(p99 >= 990000 && p99 <= 1000000);
+        Assert.assertEquals(1000000, histogram.getValueAtPercentile(100));
+    }
+}
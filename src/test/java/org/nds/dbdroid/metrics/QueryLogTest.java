@@ -0,0 +1,65 @@
+package org.nds.dbdroid.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryLogTest {
+
+    @Test
+    public void testCollectionsCopiedAndCapped() {
+        QueryLog queryLog = new QueryLog(10, 0, TimeUnit.MILLISECONDS);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < 25; i++) {
+            ids.add(Integer.valueOf(i));
+        }
+        queryLog.capture(Operation.QUERY_LIST, null, "SELECT Entity1 WHERE _id IN ?", new String[] { "_id" }, new Object[] { ids }, 1, 0, null);
+        ids.clear();
+
+        List<?> captured = (List<?>) queryLog.getEntries().get(0).getBindValues().get(0);
+        Assert.assertEquals(11, captured.size());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), captured.subList(0, 10));
+        Assert.assertEquals("\u2026 (15 more)", captured.get(10));
+    }
+
+    @Test
+    public void testArraysCopiedAndCapped() {
+        QueryLog queryLog = new QueryLog(10, 0, TimeUnit.MILLISECONDS);
+        long[] values = new long[12];
+        String[] names = new String[] { "a", "b" };
+        queryLog.capture(Operation.QUERY_LIST, null, null, null, new Object[] { values, names, new byte[300] }, 1, 0, null);
+        names[0] = "modified";
+
+        List<Object> bindValues = queryLog.getEntries().get(0).getBindValues();
+        List<?> captured = (List<?>) bindValues.get(0);
+        Assert.assertEquals(11, captured.size());
+        Assert.assertEquals(Long.valueOf(0), captured.get(0));
+        Assert.assertEquals("\u2026 (2 more)", captured.get(10));
+        Assert.assertEquals(Arrays.asList("a", "b"), bindValues.get(1));
+        Assert.assertEquals("<300 bytes>", bindValues.get(2));
+    }
+
+    @Test
+    public void testRedactedValuesTruncated() {
+        QueryLog queryLog = new QueryLog(10, 0, TimeUnit.MILLISECONDS);
+        queryLog.setRedactor(new BindValueRedactor() {
+
+            public Object redact(Class<?> entityClass, String column, Object value) {
+                return "name".equals(column) ? "***" : value;
+            }
+        });
+        char[] longValue = new char[150];
+        Arrays.fill(longValue, 'x');
+        queryLog.capture(Operation.QUERY_LIST, null, null, new String[] { "name", "description", "ids" }, new Object[] { "secret",
+                new String(longValue), new int[20] }, 1, 0, null);
+
+        List<Object> bindValues = queryLog.getEntries().get(0).getBindValues();
+        Assert.assertEquals("***", bindValues.get(0));
+        Assert.assertEquals(103, ((String) bindValues.get(1)).length());
+        Assert.assertEquals("\u2026 (10 more)", ((List<?>) bindValues.get(2)).get(10));
+    }
+}
@@ -65,12 +65,12 @@ public class MockDataBaseManager extends DataBaseManager {
     }
 
     @Override
-    public void delete(Object entity) {
+    protected void onDelete(Object entity) {
         log.debug("## delete " + entity);
     }
 
     @Override
-    public <E> List<E> findAll(Class<E> entityClass) {
+    protected <E> List<E> onFindAll(Class<E> entityClass) {
         log.debug("## find all (" + entityClass + ")");
 
         List<E> list = null;
@@ -87,7 +87,7 @@ public class MockDataBaseManager extends DataBaseManager {
     }
 
     @Override
-    public <E> E findById(Serializable id, Class<E> entityClazz) {
+    protected <E> E onFindById(Serializable id, Class<E> entityClazz) {
         log.debug("## find by id " + id);
 
         E object = null;
@@ -101,7 +101,7 @@ public class MockDataBaseManager extends DataBaseManager {
     }
 
     @Override
-    public <E> E saveOrUpdate(E entity) {
+    protected <E> E onSaveOrUpdate(E entity) {
         log.debug("## save or update (" + entity + ")");
 
         Map<Serializable, Object> objects = entities.get(entity.getClass());
@@ -117,7 +117,7 @@ public class MockDataBaseManager extends DataBaseManager {
     }
 
     @Override
-    public void rawQuery(String query) {
+    protected void onRawQuery(String query) {
         log.debug("## run raw query: " + query);
         if (query.toUpperCase().startsWith("INSERT INTO")) {
             int beginIndex = query.toUpperCase().indexOf("INSERT INTO") + "INSERT INTO".length();
@@ -171,7 +171,7 @@ public class MockDataBaseManager extends DataBaseManager {
     }
 
     @Override
-    public <E> List<E> queryList(Query query) {
+    protected <E> List<E> onQueryList(Query query) {
         return null;
     }
 
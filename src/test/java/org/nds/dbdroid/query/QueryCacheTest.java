@@ -0,0 +1,75 @@
+package org.nds.dbdroid.query;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryCacheTest {
+
+    @Test
+    public void testLruEviction() {
+        QueryCache cache = new QueryCache(2, 100);
+        cache.put("q1", String.class, cache.getGeneration(String.class), Arrays.asList("a"));
+        cache.put("q2", String.class, cache.getGeneration(String.class), Arrays.asList("b"));
+        // q1 becomes the most recently used
+        Assert.assertEquals(Arrays.asList("a"), cache.get("q1", String.class));
+        cache.put("q3", String.class, cache.getGeneration(String.class), Arrays.asList("c"));
+
+        Assert.assertNull(cache.get("q2", String.class));
+        Assert.assertNotNull(cache.get("q1", String.class));
+        Assert.assertNotNull(cache.get("q3", String.class));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(3, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(0.75, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testRowBound() {
+        QueryCache cache = new QueryCache(10, 3);
+        cache.put("q1", String.class, 0, Arrays.asList("a", "b"));
+        cache.put("q2", String.class, 0, Arrays.asList("c", "d"));
+
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(2, cache.getRowCount());
+        Assert.assertNull(cache.get("q1", String.class));
+
+        // Larger than the cache
+        cache.put("q3", String.class, 0, Arrays.asList("a", "b", "c", "d"));
+        Assert.assertNull(cache.get("q3", String.class));
+    }
+
+    @Test
+    public void testInvalidation() {
+        QueryCache cache = new QueryCache(10, 100);
+        cache.put("q1", String.class, cache.getGeneration(String.class), Arrays.asList("a"));
+        cache.put("q2", Integer.class, cache.getGeneration(Integer.class), Arrays.asList(Integer.valueOf(1)));
+
+        cache.invalidate(String.class);
+        Assert.assertNull(cache.get("q1", String.class));
+        Assert.assertNotNull(cache.get("q2", Integer.class));
+        Assert.assertEquals(1, cache.getInvalidationCount());
+
+        cache.invalidateAll();
+        Assert.assertNull(cache.get("q2", Integer.class));
+
+        // A result computed before a write is not cached
+        long generation = cache.getGeneration(String.class);
+        cache.invalidate(String.class);
+        cache.put("q1", String.class, generation, Arrays.asList("a"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCopies() {
+        QueryCache cache = new QueryCache(10, 100);
+        cache.put("q1", String.class, 0, Arrays.asList("a"));
+
+        @SuppressWarnings("unchecked")
+        List<Object> result = (List<Object>) cache.get("q1", String.class);
+        result.add("b");
+        Assert.assertEquals(Arrays.asList("a"), cache.get("q1", String.class));
+    }
+}
@@ -0,0 +1,89 @@
+package org.nds.dbdroid.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nds.dbdroid.type.DbDroidType;
+
+public class QueryOptimizerTest {
+
+    private static SimpleExpression eq(String name, Integer value) {
+        return Query.createExpression(name, value, DbDroidType.INTEGER, Operator.EQUAL);
+    }
+
+    private static LogicalExpression and(Expression expression1, Expression expression2) {
+        return Query.createLogicalExpression(expression1, expression2, LogicalOperator.AND);
+    }
+
+    private static LogicalExpression or(Expression expression1, Expression expression2) {
+        return Query.createLogicalExpression(expression1, expression2, LogicalOperator.OR);
+    }
+
+    private static List<Expression> optimize(Expression... expressions) {
+        return QueryOptimizer.optimize(Arrays.asList(expressions));
+    }
+
+    @Test
+    public void testFlattenAndDeduplicate() {
+        SimpleExpression a = eq("A", 1);
+        SimpleExpression b = Query.createExpression("B", "x%", DbDroidType.STRING, Operator.LIKE);
+        List<Expression> result = optimize(and(a, and(b, eq("A", 1))));
+
+        // The most selective condition first
+        Assert.assertEquals(Arrays.asList(a, b), result);
+    }
+
+    @Test
+    public void testMergeEqualsIntoIn() {
+        List<Expression> result = optimize(or(eq("A", 1), or(eq("A", 2), eq("A", 1))));
+
+        Assert.assertEquals(1, result.size());
+        SimpleExpression in = (SimpleExpression) result.get(0);
+        Assert.assertEquals(Operator.IN, in.getOperator());
+        Assert.assertEquals("A", in.getName());
+        Assert.assertEquals(Arrays.asList(1, 2), new ArrayList<Object>((Collection<?>) in.getTypedValue().getValue()));
+    }
+
+    @Test
+    public void testTautologies() {
+        SimpleExpression isNull = Query.createExpression("A", null, DbDroidType.INTEGER, Operator.IS_NULL);
+        SimpleExpression isNotNull = Query.createExpression("A", null, DbDroidType.INTEGER, Operator.IS_NOT_NULL);
+        SimpleExpression notInEmpty = Query.createExpression("B", new ArrayList<Integer>(), DbDroidType.INTEGER, Operator.NOT_IN);
+
+        Assert.assertTrue(optimize(or(isNull, isNotNull), notInEmpty).isEmpty());
+        Assert.assertEquals(Arrays.asList(eq("C", 3)), optimize(notInEmpty, eq("C", 3)));
+    }
+
+    @Test
+    public void testContradictions() {
+        SimpleExpression inEmpty = Query.createExpression("B", new Integer[0], DbDroidType.INTEGER, Operator.IN);
+        SimpleExpression isNull = Query.createExpression("A", null, DbDroidType.INTEGER, Operator.IS_NULL);
+
+        Assert.assertNull(optimize(eq("A", 1), eq("A", 2)));
+        Assert.assertNull(optimize(eq("C", 1), inEmpty));
+        Assert.assertNull(optimize(isNull, eq("A", 1)));
+        Assert.assertNull(optimize(Query.createLogicalExpression(eq("A", 1), eq("A", 1), LogicalOperator.NOT)));
+        // A contradiction in one branch of OR only removes this branch
+        Assert.assertEquals(Arrays.asList(eq("C", 1)), optimize(or(and(eq("A", 1), eq("A", 2)), eq("C", 1))));
+    }
+
+    @Test
+    public void testNot() {
+        SimpleExpression like = Query.createExpression("B", "x%", DbDroidType.STRING, Operator.LIKE);
+        List<Expression> result = optimize(Query.createLogicalExpression(eq("A", 1), or(like, eq("C", 2)), LogicalOperator.NOT));
+
+        // expression1 AND NOT expression2
+        Assert.assertEquals(1, result.size());
+        LogicalExpression not = (LogicalExpression) result.get(0);
+        Assert.assertEquals(LogicalOperator.NOT, not.getLogicalOperator());
+        Assert.assertEquals(eq("A", 1), not.getExpression1());
+
+        // NOT of a simple condition is rewritten with the inverse operator
+        result = optimize(Query.createLogicalExpression(eq("A", 1), eq("C", 2), LogicalOperator.NOT));
+        Assert.assertEquals(Arrays.asList(eq("A", 1), Query.createExpression("C", 2, DbDroidType.INTEGER, Operator.NOT_EQUAL)), result);
+    }
+}
@@ -0,0 +1,96 @@
+package org.nds.dbdroid.query;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nds.dbdroid.entity.Entity1;
+import org.nds.dbdroid.type.DbDroidType;
+
+public class QueryTest {
+
+    private static Query query() {
+        return new Query(null, Entity1.class);
+    }
+
+    @Test
+    public void testKeysetOnId() {
+        Query query = query().after("_id", Integer.valueOf(5));
+        Assert.assertEquals("_id ASC", query.getOrderBy());
+
+        SimpleExpression expression = (SimpleExpression) query.getKeysetExpression();
+        Assert.assertEquals("_id", expression.getName());
+        Assert.assertEquals(Operator.GREATER_THAN, expression.getOperator());
+        Assert.assertEquals(Integer.valueOf(5), expression.getTypedValue().getValue());
+
+        // First page: no condition
+        Assert.assertNull(query().before("_id", null).getKeysetExpression());
+    }
+
+    @Test
+    public void testKeysetWithTieBreakingId() {
+        Query query = query().orderBy(Order.asc("name")).before("name", "m", Integer.valueOf(7));
+        Assert.assertEquals(Arrays.asList(Order.desc("name"), Order.desc("_id"), Order.asc("name")), query.getOrders());
+        Assert.assertEquals("name DESC, _id DESC, name ASC", query.getOrderBy());
+
+        LogicalExpression expression = (LogicalExpression) query.getKeysetExpression();
+        Assert.assertEquals(LogicalOperator.OR, expression.getLogicalOperator());
+        Assert.assertEquals(Operator.LESS_THAN, ((SimpleExpression) expression.getExpression1()).getOperator());
+        LogicalExpression tie = (LogicalExpression) expression.getExpression2();
+        Assert.assertEquals(LogicalOperator.AND, tie.getLogicalOperator());
+        Assert.assertEquals("_id", ((SimpleExpression) tie.getExpression2()).getName());
+        Assert.assertEquals(Operator.LESS_THAN, ((SimpleExpression) tie.getExpression2()).getOperator());
+
+        // The keyset condition is part of the conditions of the query
+        Assert.assertEquals(Arrays.asList((Expression) expression), query.getOptimizedExpressions());
+    }
+
+    @Test
+    public void testKeysetBeforeRawOrderBy() {
+        Query query = query().orderBy("name").after("_id", Integer.valueOf(1));
+        Assert.assertNull(query.getOrders());
+        Assert.assertEquals("_id ASC, name", query.getOrderBy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeysetUnknownColumn() {
+        query().after("unknown", Integer.valueOf(1));
+    }
+
+    @Test
+    public void testHaving() {
+        Query query = query().groupBy("name").having("COUNT(*) > 1");
+        Assert.assertEquals("name", query.getGroupBy());
+        Assert.assertEquals("COUNT(*) > 1", query.getHaving());
+
+        // Replaced by the GroupBy object
+        query.groupBy(GroupBy.of("name"));
+        Assert.assertNull(query.getHaving());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRawHavingWithGroupBy() {
+        query().groupBy(GroupBy.of("name")).having("COUNT(*) > 1");
+    }
+
+    @Test
+    public void testOptimizedExpressionsMemoized() {
+        SimpleExpression a = Query.createExpression("name", "a", DbDroidType.STRING, Operator.EQUAL);
+        Query query = query().add(a);
+        List<Expression> optimized = query.getOptimizedExpressions();
+        Assert.assertSame(optimized, query.getOptimizedExpressions());
+
+        // Invalidated by the mutators
+        query.after("_id", Integer.valueOf(3));
+        Assert.assertEquals(2, query.getOptimizedExpressions().size());
+        query.add(Query.createExpression("name", "b", DbDroidType.STRING, Operator.EQUAL));
+        Assert.assertNull(query.getOptimizedExpressions());
+        Assert.assertTrue(query.isAlwaysEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOptimizedExpressionsUnmodifiable() {
+        query().getOptimizedExpressions().add(Query.createExpression("name", "a", DbDroidType.STRING, Operator.EQUAL));
+    }
+}
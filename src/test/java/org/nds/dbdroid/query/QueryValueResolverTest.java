@@ -0,0 +1,136 @@
+package org.nds.dbdroid.query;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nds.dbdroid.jdbc.JdbcQueryValueResolver;
+
+public class QueryValueResolverTest {
+
+    private static final Object[] VALUES = new Object[] { null, "it's", Boolean.TRUE, Byte.valueOf((byte) 40), Short.valueOf((short) 1),
+            Character.valueOf('a'), Integer.valueOf(-7), Float.valueOf(1.5f), Long.valueOf(Long.MAX_VALUE), Double.valueOf(0.1), new BigDecimal("2.50"),
+            Arrays.asList("a", null, Integer.valueOf(2)), new Object[] { "b", Long.valueOf(3) }, new boolean[] { true, false }, new byte[] { 1, 2 },
+            new short[] { 3 }, new char[] { 'x', 'y' }, new int[] { 4, 5 }, new long[] { 6 }, new float[] { 7.5f }, new double[] { 8.25 },
+            new int[0], Collections.singletonMap("key", "value"), Operator.EQUAL };
+
+    /**
+     * Resolver without collection delimiters: appendTo falls back to the toXxxString methods
+     */
+    private static final QueryValueResolver DEFAULT_RESOLVER = new QueryValueResolver() {
+
+        @Override
+        protected String toNullString(Object value) {
+            return "null";
+        }
+
+        @Override
+        protected String toStringString(String value) {
+            return "S(" + value + ")";
+        }
+
+        @Override
+        protected String toBooleanString(Boolean value) {
+            return "Z(" + value + ")";
+        }
+
+        @Override
+        protected String toByteString(Byte value) {
+            return "B(" + value + ")";
+        }
+
+        @Override
+        protected String toShortString(Short value) {
+            return "H(" + value + ")";
+        }
+
+        @Override
+        protected String toCharacterString(Character value) {
+            return "C(" + value + ")";
+        }
+
+        @Override
+        protected String toIntegerString(Integer value) {
+            return "I(" + value + ")";
+        }
+
+        @Override
+        protected String toFloatString(Float value) {
+            return "F(" + value + ")";
+        }
+
+        @Override
+        protected String toLongString(Long value) {
+            return "J(" + value + ")";
+        }
+
+        @Override
+        protected String toDoubleString(Double value) {
+            return "D(" + value + ")";
+        }
+
+        @Override
+        protected String toNumberString(Number value) {
+            return "N(" + value + ")";
+        }
+
+        @Override
+        protected String toCollectionString(Collection<?> values) {
+            StringBuilder sb = new StringBuilder("L");
+            for (Object value : values) {
+                sb.append('[').append(toString(value)).append(']');
+            }
+            return sb.toString();
+        }
+
+        @Override
+        protected String toMapString(Map<?, ?> value) {
+            return "M" + value;
+        }
+
+        @Override
+        protected String toObjectString(Object value) {
+            return "O(" + value + ")";
+        }
+    };
+
+    private static String append(QueryValueResolver resolver, Object value) {
+        StringBuilder sb = new StringBuilder("prefix:");
+        resolver.appendTo(sb, value);
+        return sb.substring("prefix:".length());
+    }
+
+    @Test
+    public void testAppendToSameAsToString() {
+        QueryValueResolver jdbcResolver = new JdbcQueryValueResolver();
+        for (Object value : VALUES) {
+            Assert.assertEquals(DEFAULT_RESOLVER.toString(value), append(DEFAULT_RESOLVER, value));
+            Assert.assertEquals(jdbcResolver.toString(value), append(jdbcResolver, value));
+        }
+    }
+
+    @Test
+    public void testDefaultResolver() {
+        Assert.assertEquals("L[I(4)][I(5)]", append(DEFAULT_RESOLVER, new int[] { 4, 5 }));
+        Assert.assertEquals("L[S(a)][null][I(2)]", append(DEFAULT_RESOLVER, Arrays.asList("a", null, Integer.valueOf(2))));
+        Assert.assertEquals("N(2.50)", append(DEFAULT_RESOLVER, new BigDecimal("2.50")));
+    }
+
+    @Test
+    public void testJdbcLiterals() {
+        QueryValueResolver resolver = new JdbcQueryValueResolver();
+        Assert.assertEquals("'it''s'", append(resolver, "it's"));
+        Assert.assertEquals("NULL", append(resolver, null));
+        Assert.assertEquals("TRUE", append(resolver, Boolean.TRUE));
+        Assert.assertEquals("('a', NULL, 2)", append(resolver, Arrays.asList("a", null, Integer.valueOf(2))));
+        Assert.assertEquals("(TRUE, FALSE)", append(resolver, new boolean[] { true, false }));
+        Assert.assertEquals("('x', 'y')", append(resolver, new char[] { 'x', 'y' }));
+        Assert.assertEquals("(8.25)", append(resolver, new double[] { 8.25 }));
+        Assert.assertEquals("()", append(resolver, new int[0]));
+        Assert.assertEquals("'EQUAL'", append(resolver, Operator.EQUAL));
+    }
+}
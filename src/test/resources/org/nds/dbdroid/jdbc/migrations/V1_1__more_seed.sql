@@ -0,0 +1 @@
+INSERT INTO ENTITY1 (NAME) VALUES ('seed3');
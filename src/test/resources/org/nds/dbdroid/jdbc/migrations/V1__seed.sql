@@ -0,0 +1,3 @@
+-- Seed data
+INSERT INTO ENTITY1 (NAME) VALUES ('seed1');
+INSERT INTO ENTITY1 (NAME) VALUES ('seed2');